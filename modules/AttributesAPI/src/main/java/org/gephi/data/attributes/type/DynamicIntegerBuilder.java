@@ -0,0 +1,115 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.data.attributes.type;
+
+import java.util.Arrays;
+
+/**
+ * Builder of {@link DynamicInteger} values. Intervals are appended in time order
+ * and stored with primitive values until {@link #build()} is called.
+ */
+public final class DynamicIntegerBuilder extends DynamicTypeBuilder<Integer> {
+	private int[] values;
+
+	/**
+	 * Constructs a new empty builder.
+	 */
+	public DynamicIntegerBuilder() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a new builder which appends intervals to the intervals of
+	 * {@code source}.
+	 *
+	 * @param source the intervals to start from (could be null)
+	 */
+	public DynamicIntegerBuilder(DynamicInteger source) {
+		super(source);
+		values = new int[16];
+	}
+
+	/**
+	 * Appends the [{@code low}, {@code high}] interval with {@code value}.
+	 *
+	 * @param low   the left endpoint
+	 * @param high  the right endpoint
+	 * @param lopen indicates if the left endpoint is excluded
+	 * @param ropen indicates if the right endpoint is excluded
+	 * @param value the value of the interval
+	 *
+	 * @throws IllegalArgumentException if {@code low} > {@code high} or if the
+	 *                                  intervals are not appended in time order.
+	 */
+	public void add(double low, double high, boolean lopen, boolean ropen, int value) {
+		int index = append(low, high, lopen, ropen);
+		values[index] = value;
+	}
+
+	/**
+	 * Appends an interval with the bounds of {@code interval} and
+	 * {@code value}.
+	 *
+	 * @param interval the bounds of the interval
+	 * @param value    the value of the interval
+	 *
+	 * @throws IllegalArgumentException if the intervals are not appended in
+	 *                                  time order.
+	 */
+	public void add(Interval interval, int value) {
+		add(interval.getLow(), interval.getHigh(), interval.isLowExcluded(), interval.isHighExcluded(), value);
+	}
+
+	@Override
+	protected void grow(int capacity) {
+		values = Arrays.copyOf(values, capacity);
+	}
+
+	@Override
+	protected Integer getValue(int index) {
+		return values[index];
+	}
+
+	@Override
+	public DynamicInteger build() {
+		return new DynamicInteger(getIntervals());
+	}
+}
@@ -0,0 +1,169 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.data.attributes.type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mutable accumulator of intervals which is frozen into an immutable
+ * {@code DynamicType} once complete.
+ *
+ * <p>Extending a {@code DynamicType} with the {@code DynamicType(source, in)}
+ * constructors copies the whole interval tree, so building a series of
+ * <i>n</i> intervals this way costs <i>O</i>(<i>n</i>&sup2;). A builder
+ * appends intervals in time order into primitive arrays instead and creates
+ * the interval tree once, in {@link #build()}.
+ *
+ * <p>Intervals must be appended with non-decreasing left endpoints.
+ *
+ * @param <T> type of data
+ */
+public abstract class DynamicTypeBuilder<T> {
+	private static final int DEFAULT_CAPACITY = 16;
+	private final DynamicType<T> source;
+	private double[] lows;
+	private double[] highs;
+	private boolean[] lopens;
+	private boolean[] ropens;
+	private int size;
+
+	/**
+	 * Constructs a new builder which appends intervals to the intervals of
+	 * {@code source}.
+	 *
+	 * @param source the intervals to start from (could be null)
+	 */
+	protected DynamicTypeBuilder(DynamicType<T> source) {
+		this.source = source;
+		lows = new double[DEFAULT_CAPACITY];
+		highs = new double[DEFAULT_CAPACITY];
+		lopens = new boolean[DEFAULT_CAPACITY];
+		ropens = new boolean[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Reserves a slot for a new interval and returns its index. Subclasses
+	 * store the value at this index.
+	 *
+	 * @param low   the left endpoint
+	 * @param high  the right endpoint
+	 * @param lopen indicates if the left endpoint is excluded
+	 * @param ropen indicates if the right endpoint is excluded
+	 *
+	 * @return the index of the new interval.
+	 *
+	 * @throws IllegalArgumentException if {@code low} > {@code high} or if
+	 *                                  {@code low} is less than the left
+	 *                                  endpoint of the last interval.
+	 */
+	protected int append(double low, double high, boolean lopen, boolean ropen) {
+		if (low > high)
+			throw new IllegalArgumentException(
+						"The left endpoint of the interval must be less than " +
+						"the right endpoint.");
+		if (size > 0 && low < lows[size - 1])
+			throw new IllegalArgumentException(
+						"Intervals must be appended in time order.");
+
+		if (size == lows.length) {
+			int capacity = size * 2;
+			lows = Arrays.copyOf(lows, capacity);
+			highs = Arrays.copyOf(highs, capacity);
+			lopens = Arrays.copyOf(lopens, capacity);
+			ropens = Arrays.copyOf(ropens, capacity);
+			grow(capacity);
+		}
+		lows[size] = low;
+		highs[size] = high;
+		lopens[size] = lopen;
+		ropens[size] = ropen;
+		return size++;
+	}
+
+	/**
+	 * Grows the value storage of the subclass to {@code capacity}.
+	 *
+	 * @param capacity the new capacity
+	 */
+	protected abstract void grow(int capacity);
+
+	/**
+	 * Returns the value stored at {@code index}.
+	 *
+	 * @param index the index of the interval
+	 *
+	 * @return the value stored at {@code index}.
+	 */
+	protected abstract T getValue(int index);
+
+	/**
+	 * Returns the intervals of the source followed by the appended intervals.
+	 *
+	 * @return all the intervals of this builder.
+	 */
+	protected List<Interval<T>> getIntervals() {
+		List<Interval<T>> intervals = new ArrayList<Interval<T>>(size);
+		if (source != null)
+			intervals.addAll(source.getIntervals());
+		for (int i = 0; i < size; ++i)
+			intervals.add(new Interval<T>(lows[i], highs[i], lopens[i], ropens[i], getValue(i)));
+		return intervals;
+	}
+
+	/**
+	 * Returns the number of appended intervals.
+	 *
+	 * @return the number of appended intervals.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates an immutable {@code DynamicType} with the source and appended
+	 * intervals. The builder can still be used afterwards.
+	 *
+	 * @return a new {@code DynamicType} instance.
+	 */
+	public abstract DynamicType<T> build();
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2008-2010 Gephi
+ * Website : http://www.gephi.org
+ * 
+ * This file is part of Gephi.
+ *
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.benchmarks;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphFactory;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.store.GraphModelImpl;
+
+/**
+ * Generates deterministic undirected synthetic graphs for the benchmarks. The
+ * same family, edge count and seed always give the same graph, node
+ * positions included, so results can be compared across commits.
+ */
+public final class GraphGenerator {
+
+    /**
+     * Graph families.
+     */
+    public enum Family {
+
+        /**
+         * Erdős–Rényi random graph with an average degree of 10.
+         */
+        ER,
+        /**
+         * Barabási–Albert preferential attachment graph, 5 edges per new node.
+         */
+        BA,
+        /**
+         * Square 2D lattice.
+         */
+        GRID
+    }
+    private static final int AVERAGE_DEGREE = 10;
+    private static final int ATTACHMENTS = 5;
+    private static final float AREA = 1000f;
+
+    private GraphGenerator() {
+    }
+
+    /**
+     * Creates a new graph model with a graph of the given family and about
+     * <code>edgeCount</code> edges.
+     * @param family the graph family
+     * @param edgeCount the number of edges
+     * @param seed the random seed
+     * @return a new graph model
+     */
+    public static GraphModel generate(Family family, int edgeCount, long seed) {
+        GraphModel graphModel = new GraphModelImpl();
+        Graph graph = graphModel.getUndirectedGraph();
+        Random random = new Random(seed);
+        switch (family) {
+            case ER:
+                erdosRenyi(graphModel, graph, edgeCount, random);
+                break;
+            case BA:
+                barabasiAlbert(graphModel, graph, edgeCount, random);
+                break;
+            case GRID:
+                grid(graphModel, graph, edgeCount, random);
+                break;
+        }
+        return graphModel;
+    }
+
+    private static void erdosRenyi(GraphModel graphModel, Graph graph, int edgeCount, Random random) {
+        int nodeCount = Math.max(2, 2 * edgeCount / AVERAGE_DEGREE);
+        Node[] nodes = addNodes(graphModel, graph, nodeCount, random);
+        Set<Long> pairs = new HashSet<Long>();
+        long maxEdges = (long) nodeCount * (nodeCount - 1) / 2;
+        while (pairs.size() < Math.min(edgeCount, maxEdges)) {
+            int source = random.nextInt(nodeCount);
+            int target = random.nextInt(nodeCount);
+            if (source == target) {
+                continue;
+            }
+            long pair = source < target ? (long) source * nodeCount + target : (long) target * nodeCount + source;
+            if (pairs.add(pair)) {
+                addEdge(graphModel, graph, nodes[source], nodes[target]);
+            }
+        }
+    }
+
+    private static void barabasiAlbert(GraphModel graphModel, Graph graph, int edgeCount, Random random) {
+        int nodeCount = Math.max(ATTACHMENTS + 1, edgeCount / ATTACHMENTS + 1);
+        Node[] nodes = addNodes(graphModel, graph, nodeCount, random);
+
+        //Each edge end is recorded once, drawing from it is drawing by degree
+        int[] ends = new int[2 * (ATTACHMENTS * (ATTACHMENTS + 1) / 2 + (nodeCount - ATTACHMENTS - 1) * ATTACHMENTS)];
+        int endCount = 0;
+        for (int i = 0; i <= ATTACHMENTS; i++) {
+            for (int j = 0; j < i; j++) {
+                addEdge(graphModel, graph, nodes[i], nodes[j]);
+                ends[endCount++] = i;
+                ends[endCount++] = j;
+            }
+        }
+        int[] targets = new int[ATTACHMENTS];
+        for (int i = ATTACHMENTS + 1; i < nodeCount; i++) {
+            int found = 0;
+            while (found < ATTACHMENTS) {
+                int target = ends[random.nextInt(endCount)];
+                boolean duplicate = false;
+                for (int k = 0; k < found; k++) {
+                    duplicate |= targets[k] == target;
+                }
+                if (!duplicate) {
+                    targets[found++] = target;
+                }
+            }
+            for (int k = 0; k < ATTACHMENTS; k++) {
+                addEdge(graphModel, graph, nodes[i], nodes[targets[k]]);
+                ends[endCount++] = i;
+                ends[endCount++] = targets[k];
+            }
+        }
+    }
+
+    private static void grid(GraphModel graphModel, Graph graph, int edgeCount, Random random) {
+        //A side x side lattice has 2 * side * (side - 1) edges
+        int side = (int) Math.ceil(0.5 + Math.sqrt(0.25 + edgeCount / 2.0));
+        Node[] nodes = addNodes(graphModel, graph, side * side, random);
+        int added = 0;
+        for (int row = 0; row < side && added < edgeCount; row++) {
+            for (int col = 0; col < side && added < edgeCount; col++) {
+                int i = row * side + col;
+                if (col + 1 < side) {
+                    addEdge(graphModel, graph, nodes[i], nodes[i + 1]);
+                    added++;
+                }
+                if (row + 1 < side && added < edgeCount) {
+                    addEdge(graphModel, graph, nodes[i], nodes[i + side]);
+                    added++;
+                }
+            }
+        }
+    }
+
+    private static Node[] addNodes(GraphModel graphModel, Graph graph, int count, Random random) {
+        GraphFactory factory = graphModel.factory();
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            Node node = factory.newNode(String.valueOf(i));
+            node.setX((random.nextFloat() - 0.5f) * AREA);
+            node.setY((random.nextFloat() - 0.5f) * AREA);
+            graph.addNode(node);
+            nodes[i] = node;
+        }
+        return nodes;
+    }
+
+    private static void addEdge(GraphModel graphModel, Graph graph, Node source, Node target) {
+        graph.addEdge(graphModel.factory().newEdge(source, target, 1f, false));
+    }
+}
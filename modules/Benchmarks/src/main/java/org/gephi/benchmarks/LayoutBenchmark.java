@@ -0,0 +1,128 @@
+/*
+ * Copyright 2008-2010 Gephi
+ * Website : http://www.gephi.org
+ * 
+ * This file is part of Gephi.
+ *
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.layout.plugin.force.yifanHu.YifanHu;
+import org.gephi.layout.plugin.forceAtlas2.ForceAtlas2Builder;
+import org.gephi.layout.plugin.fruchterman.FruchtermanReingold;
+import org.gephi.layout.plugin.fruchterman.FruchtermanReingoldBuilder;
+import org.gephi.layout.spi.Layout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks one iteration (<code>goAlgo()</code>) of the force-directed
+ * layouts on synthetic graphs. The layout is initialized once per trial with
+ * its default properties and keeps moving the nodes between invocations.
+ * <p>
+ * Exact Fruchterman-Reingold repulsion is quadratic in the number of nodes, a
+ * single iteration takes minutes past a few hundred thousand edges. Above
+ * <code>EXACT_REPULSION_MAX_EDGES</code> the Fruchterman-Reingold runs use its
+ * grid repulsion instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LayoutBenchmark {
+
+    private static final long SEED = 42;
+    private static final int EXACT_REPULSION_MAX_EDGES = 100000;
+
+    public enum Algorithm {
+
+        FORCE_ATLAS_2, YIFAN_HU, FRUCHTERMAN_REINGOLD
+    }
+    @Param({"FORCE_ATLAS_2", "YIFAN_HU", "FRUCHTERMAN_REINGOLD"})
+    public Algorithm algorithm;
+    @Param({"ER", "BA", "GRID"})
+    public GraphGenerator.Family family;
+    @Param({"10000", "100000", "1000000"})
+    public int edges;
+    private Layout layout;
+
+    @Setup(Level.Trial)
+    public void init() {
+        GraphModel graphModel = GraphGenerator.generate(family, edges, SEED);
+        switch (algorithm) {
+            case FORCE_ATLAS_2:
+                layout = new ForceAtlas2Builder().buildLayout();
+                break;
+            case YIFAN_HU:
+                layout = new YifanHu().buildLayout();
+                break;
+            case FRUCHTERMAN_REINGOLD:
+                layout = new FruchtermanReingoldBuilder().buildLayout();
+                break;
+        }
+        layout.setGraphModel(graphModel);
+        layout.resetPropertiesValues();
+        if (algorithm == Algorithm.FRUCHTERMAN_REINGOLD && edges > EXACT_REPULSION_MAX_EDGES) {
+            ((FruchtermanReingold) layout).setGridRepulsion(Boolean.TRUE);
+        }
+        layout.initAlgo();
+    }
+
+    @TearDown(Level.Trial)
+    public void end() {
+        layout.endAlgo();
+    }
+
+    @Benchmark
+    public void iteration() {
+        layout.goAlgo();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2008-2010 Gephi
+ * Website : http://www.gephi.org
+ * 
+ * This file is part of Gephi.
+ *
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.model.IndexedAttributeModel;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.statistics.plugin.ClusteringCoefficient;
+import org.gephi.statistics.plugin.CompactGraph;
+import org.gephi.statistics.plugin.GraphDistance;
+import org.gephi.statistics.plugin.Modularity;
+import org.gephi.statistics.plugin.PageRank;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the statistics algorithms on synthetic graphs. The compact
+ * graph cache is cleared before each invocation so the snapshot construction
+ * is part of the measure, as it is for a single run in Gephi.
+ * <p>
+ * Graph distance runs in approximate mode, the exact all-pairs computation
+ * being out of reach on the larger graphs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class StatisticsBenchmark {
+
+    private static final long SEED = 42;
+    private static final int PIVOTS = 64;
+    @Param({"ER", "BA", "GRID"})
+    public GraphGenerator.Family family;
+    @Param({"10000", "100000", "1000000"})
+    public int edges;
+    private GraphModel graphModel;
+    private AttributeModel attributeModel;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        graphModel = GraphGenerator.generate(family, edges, SEED);
+        attributeModel = new IndexedAttributeModel(null);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        CompactGraph.clearCache();
+    }
+
+    @Benchmark
+    public PageRank pageRank() {
+        PageRank pageRank = new PageRank();
+        pageRank.setDirected(false);
+        pageRank.execute(graphModel, attributeModel);
+        return pageRank;
+    }
+
+    @Benchmark
+    public Modularity modularity() {
+        Modularity modularity = new Modularity();
+        modularity.setRandom(false);
+        modularity.execute(graphModel, attributeModel);
+        return modularity;
+    }
+
+    @Benchmark
+    public GraphDistance graphDistance() {
+        GraphDistance graphDistance = new GraphDistance();
+        graphDistance.setDirected(false);
+        graphDistance.setApproximate(true);
+        graphDistance.setPivotCount(PIVOTS);
+        graphDistance.execute(graphModel, attributeModel);
+        return graphDistance;
+    }
+
+    @Benchmark
+    public ClusteringCoefficient clusteringCoefficient() {
+        ClusteringCoefficient clusteringCoefficient = new ClusteringCoefficient();
+        clusteringCoefficient.setDirected(false);
+        clusteringCoefficient.execute(graphModel, attributeModel);
+        return clusteringCoefficient;
+    }
+}
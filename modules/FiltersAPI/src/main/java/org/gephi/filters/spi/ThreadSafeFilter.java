@@ -1,6 +1,5 @@
 /*
-Copyright 2008-2011 Gephi
-Authors : Mathieu Jacomy <mathieu.jacomy@gmail.com>
+Copyright 2008-2012 Gephi
 Website : http://www.gephi.org
 
 This file is part of Gephi.
@@ -38,21 +37,23 @@ made subject to such option by the copyright holder.
 Contributor(s):
 
 Portions Copyrighted 2011 Gephi Consortium.
- */
-package org.gephi.layout.plugin.forceAtlas2;
-
-import org.gephi.graph.spi.LayoutData;
+*/
+package org.gephi.filters.spi;
 
 /**
- * Data stored in Nodes and used by ForceAtlas2
- * @author Mathieu Jacomy
+ * Marker interface for node, edge and attributable filters which
+ * <code>evaluate()</code> method can be called concurrently from several
+ * threads. That is the case of filters which, once <code>init()</code> has been
+ * called, only read the element, its attributes or the graph and don't modify
+ * any state.
+ * <p>
+ * Such filters are evaluated in parallel on large graphs. The
+ * <code>init()</code> and <code>finish()</code> methods are still called once,
+ * from the filtering thread.
+ *
+ * @see NodeFilter
+ * @see EdgeFilter
+ * @see AttributableFilter
  */
-public class ForceAtlas2LayoutData implements LayoutData {
-    //Data
-
-    public double dx = 0;
-    public double dy = 0;
-    public double old_dx = 0;
-    public double old_dy = 0;
-    public double mass = 1;
+public interface ThreadSafeFilter extends Filter {
 }
@@ -0,0 +1,196 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.filters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.gephi.data.attributes.api.AttributeEvent;
+import org.gephi.data.attributes.api.AttributeListener;
+import org.gephi.filters.spi.Filter;
+import org.gephi.filters.spi.FilterProperty;
+
+/**
+ * Results of sub-queries kept between two executions of a query, so only the
+ * branches which parameters changed are evaluated again. Results are stored
+ * as node and edge bitsets and looked up by a key made of the filter
+ * instances and their parameter values, for the query and all its
+ * descendants.
+ * <p>
+ * The cache is cleared when the graph structure version changes or when
+ * attribute values are modified. Least recently used results are evicted
+ * when the size of the bitsets exceeds the memory budget.
+ */
+public class FilterCache implements AttributeListener {
+
+    private final long maxSize;
+    private final LinkedHashMap<List<Object>, Entry> entries;
+    private long size;
+    private int nodeVersion = -1;
+    private int edgeVersion = -1;
+
+    public FilterCache() {
+        this(Runtime.getRuntime().maxMemory() / 32);
+    }
+
+    public FilterCache(long maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Clears the cache if the graph structure changed since the last call.
+     */
+    public synchronized void validate(int nodeVersion, int edgeVersion) {
+        if (nodeVersion != this.nodeVersion || edgeVersion != this.edgeVersion) {
+            clear();
+            this.nodeVersion = nodeVersion;
+            this.edgeVersion = edgeVersion;
+        }
+    }
+
+    public synchronized Entry get(List<Object> key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(List<Object> key, BitSet nodes, BitSet edges, BitSet metaEdges) {
+        Entry entry = new Entry((BitSet) nodes.clone(), (BitSet) edges.clone(), (BitSet) metaEdges.clone());
+        if (entry.size > maxSize) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += entry.size;
+        for (Iterator<Entry> itr = entries.values().iterator(); itr.hasNext() && size > maxSize;) {
+            size -= itr.next().size;
+            itr.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public void attributesChanged(AttributeEvent event) {
+        if (!event.is(AttributeEvent.EventType.ADD_COLUMN)) {
+            clear();
+        }
+    }
+
+    /**
+     * Returns the key of <code>query</code>, built from the current parameters
+     * of the query's filter and its descendants.
+     */
+    public static List<Object> getKey(AbstractQueryImpl query) {
+        List<Object> key = new ArrayList<Object>();
+        Filter filter = query.getFilter();
+        key.add(new Identity(filter));
+        FilterProperty[] properties = filter.getProperties();
+        if (properties != null) {
+            for (FilterProperty property : properties) {
+                Object value = property.getValue();
+                if (value instanceof Collection) {
+                    value = new ArrayList<Object>((Collection) value);
+                } else if (value instanceof Object[]) {
+                    value = Arrays.asList(((Object[]) value).clone());
+                }
+                key.add(value);
+            }
+        }
+        for (AbstractQueryImpl child : query.children) {
+            key.add(getKey(child));
+        }
+        return key;
+    }
+
+    public static class Entry {
+
+        private final BitSet nodes;
+        private final BitSet edges;
+        private final BitSet metaEdges;
+        private final long size;
+
+        private Entry(BitSet nodes, BitSet edges, BitSet metaEdges) {
+            this.nodes = nodes;
+            this.edges = edges;
+            this.metaEdges = metaEdges;
+            this.size = (nodes.size() + edges.size() + metaEdges.size()) / 8;
+        }
+
+        public BitSet getNodes() {
+            return nodes;
+        }
+
+        public BitSet getEdges() {
+            return edges;
+        }
+
+        public BitSet getMetaEdges() {
+            return metaEdges;
+        }
+    }
+
+    private static class Identity {
+
+        private final Object object;
+
+        public Identity(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Identity && ((Identity) obj).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+}
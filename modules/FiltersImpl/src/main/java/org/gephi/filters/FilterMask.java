@@ -0,0 +1,164 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.filters;
+
+import java.util.BitSet;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+
+/**
+ * Elements of a graph which passed the filters evaluated so far, as bitsets
+ * indexed by node and edge id. Filters results are combined in the bitsets
+ * and the graph is only modified when <code>materialize()</code> is called,
+ * by removing in one pass all the elements that have been rejected.
+ */
+class FilterMask {
+
+    private final HierarchicalGraph graph;
+    private final BitSet nodes;
+    private final BitSet edges;
+    private final BitSet metaEdges;
+    private boolean dirty;
+
+    public FilterMask(Graph graph) {
+        this.graph = (HierarchicalGraph) graph;
+        this.nodes = new BitSet();
+        this.edges = new BitSet();
+        this.metaEdges = new BitSet();
+        for (Node n : this.graph.getNodes()) {
+            nodes.set(n.getId());
+        }
+        for (Edge e : this.graph.getEdges()) {
+            edges.set(e.getId());
+        }
+        for (Edge e : this.graph.getMetaEdges()) {
+            metaEdges.set(e.getId());
+        }
+    }
+
+    public HierarchicalGraph getGraph() {
+        return graph;
+    }
+
+    public BitSet getNodes() {
+        return nodes;
+    }
+
+    public BitSet getEdges() {
+        return edges;
+    }
+
+    public BitSet getMetaEdges() {
+        return metaEdges;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public boolean contains(Node node) {
+        return nodes.get(node.getId());
+    }
+
+    public boolean contains(Edge edge) {
+        return edges.get(edge.getId())
+                && nodes.get(edge.getSource().getId())
+                && nodes.get(edge.getTarget().getId());
+    }
+
+    public boolean containsMetaEdge(Edge edge) {
+        return metaEdges.get(edge.getId())
+                && nodes.get(edge.getSource().getId())
+                && nodes.get(edge.getTarget().getId());
+    }
+
+    public void retainNodes(BitSet passed) {
+        dirty |= retain(nodes, passed);
+    }
+
+    public void retainEdges(BitSet passed) {
+        dirty |= retain(edges, passed);
+    }
+
+    public void retainMetaEdges(BitSet passed) {
+        dirty |= retain(metaEdges, passed);
+    }
+
+    public void retain(FilterCache.Entry entry) {
+        retainNodes(entry.getNodes());
+        retainEdges(entry.getEdges());
+        retainMetaEdges(entry.getMetaEdges());
+    }
+
+    private boolean retain(BitSet set, BitSet passed) {
+        int count = set.cardinality();
+        set.and(passed);
+        return set.cardinality() != count;
+    }
+
+    /**
+     * Removes from the graph the elements rejected since the last call. Nodes
+     * are removed first so their edges don't have to be visited.
+     */
+    public void materialize() {
+        if (!dirty) {
+            return;
+        }
+        for (Node n : graph.getNodes().toArray()) {
+            if (!nodes.get(n.getId())) {
+                graph.removeNode(n);
+            }
+        }
+        for (Edge e : graph.getEdges().toArray()) {
+            if (!edges.get(e.getId())) {
+                graph.removeEdge(e);
+            }
+        }
+        for (Edge e : graph.getMetaEdges().toArray()) {
+            if (!metaEdges.get(e.getId())) {
+                graph.removeMetaEdge(e);
+            }
+        }
+        dirty = false;
+    }
+}
@@ -42,176 +42,419 @@
 package org.gephi.filters;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.gephi.filters.api.Range;
 import org.gephi.filters.spi.*;
 import org.gephi.graph.api.*;
 
 /**
+ * Executes queries. Node, edge and attributable filters don't modify their
+ * input graph directly, they are evaluated into the bitsets of a
+ * {@link FilterMask}, combined along a chain of filters. The graph is modified
+ * only once at the end of the chain, or before a node or edge filter as these
+ * may look at the graph structure (e.g. degree). Attributable filters only
+ * look at the element and are evaluated on the graph not yet materialized,
+ * in particular range values of attribute filters are collected on the
+ * elements that reached the last materialization.
+ * <p>
+ * Filters implementing {@link ThreadSafeFilter} are evaluated in parallel
+ * chunks on large graphs, each chunk filling its own bitset. Chunk results are
+ * then merged with a bitwise OR.
+ * <p>
+ * When a {@link FilterCache} is given, sub-queries which filters and
+ * parameters didn't change since the last execution are not evaluated, their
+ * result is rebuilt from the cache.
  *
  * @author Mathieu Bastian
  */
 public class FilterProcessor {
 
+    //Minimum number of elements to evaluate a ThreadSafeFilter in parallel
+    private static final int PARALLEL_THRESHOLD = 10000;
+    private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    private final int threadCount = THREAD_COUNT;
+    private final boolean sharedPool;
+    private ExecutorService pool;
+    private final FilterCache cache;
+
+    public FilterProcessor() {
+        this(null, null);
+    }
+
+    public FilterProcessor(FilterCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * Creates a processor evaluating thread-safe filters on the given pool.
+     * The pool is owned by the caller and isn't shut down by the processor,
+     * it can be reused across executions. When <code>null</code>, a pool is
+     * created when needed and shut down at the end of each execution.
+     *
+     * @param cache the sub-queries results cache, or <code>null</code>
+     * @param pool the pool to use, or <code>null</code>
+     */
+    public FilterProcessor(FilterCache cache, ExecutorService pool) {
+        this.cache = cache;
+        this.pool = pool;
+        this.sharedPool = pool != null;
+    }
+
+    /**
+     * Creates a pool suitable for {@link #FilterProcessor(FilterCache, ExecutorService)}.
+     * Its threads are daemon threads, the caller shuts it down when done.
+     *
+     * @return a new fixed thread pool sized to the number of processors
+     */
+    public static ExecutorService newPool() {
+        return Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Filter Processor " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
     public Graph process(AbstractQueryImpl query, GraphModel graphModel) {
-        List<GraphView> views = new ArrayList<GraphView>();
-        query = simplifyQuery(query);
-        AbstractQueryImpl[] tree = getTree(query, true);
-        for (int i = 0; i < tree.length; i++) {
-            AbstractQueryImpl q = tree[tree.length - i - 1];
-            Graph[] input = new Graph[0];
-            if (q.getChildrenCount() > 0) {
-                input = new Graph[q.getChildrenCount()];
-                for (int j = 0; j < input.length; j++) {
-                    input[j] = q.getChildAt(j).getResult();
+        try {
+            List<GraphView> views = new ArrayList<GraphView>();
+            Map<AbstractQueryImpl, FilterMask> masks = new HashMap<AbstractQueryImpl, FilterMask>();
+            query = simplifyQuery(query);
+            AbstractQueryImpl[] tree = getTree(query, true);
+
+            //Find the sub-queries which result is cached, their descendants are skipped
+            Map<AbstractQueryImpl, FilterCache.Entry> cachedResults = new HashMap<AbstractQueryImpl, FilterCache.Entry>();
+            Set<AbstractQueryImpl> skipped = new HashSet<AbstractQueryImpl>();
+            if (cache != null) {
+                HierarchicalGraph mainGraph = graphModel.getHierarchicalGraph();
+                cache.validate(mainGraph.getNodeVersion(), mainGraph.getEdgeVersion());
+                for (AbstractQueryImpl q : tree) {
+                    if (!skipped.contains(q)) {
+                        FilterCache.Entry entry = cache.get(FilterCache.getKey(q));
+                        if (entry != null) {
+                            cachedResults.put(q, entry);
+                            AbstractQueryImpl[] subTree = getTree(q, true);
+                            skipped.addAll(Arrays.asList(subTree).subList(1, subTree.length));
+                        }
+                    }
                 }
-            } else {
-                //Leaves
-                GraphView newView = graphModel.newView();
-                views.add(newView);
-                input = new Graph[]{graphModel.getGraph(newView)};    //duplicate root
             }
-            //PROCESS
-            if (q instanceof OperatorQueryImpl && !((OperatorQueryImpl) q).isSimple()) {
-                OperatorQueryImpl operatorQuery = (OperatorQueryImpl) q;
-                Operator op = (Operator) operatorQuery.getFilter();
-                q.setResult(op.filter(input));
-            } else if (q instanceof OperatorQueryImpl && ((OperatorQueryImpl) q).isSimple()) {
-                OperatorQueryImpl operatorQuery = (OperatorQueryImpl) q;
-                Operator op = (Operator) operatorQuery.getFilter();
-                GraphView newView = graphModel.newView();
-                views.add(newView);
-                Graph newGraph = graphModel.getGraph(newView);
-                List<Filter> filters = new ArrayList<Filter>();
-                for (int k = 0; k < operatorQuery.getChildrenCount(); k++) {
-                    Filter filter = operatorQuery.getChildAt(k).getFilter();
-                    if (init(filter, newGraph)) {
-                        filters.add(filter);
+
+            for (int i = 0; i < tree.length; i++) {
+                AbstractQueryImpl q = tree[tree.length - i - 1];
+                if (skipped.contains(q)) {
+                    continue;
+                }
+                FilterMask resultMask = null;
+                FilterCache.Entry cachedResult = cachedResults.get(q);
+                if (cachedResult != null) {
+                    GraphView newView = graphModel.newView();
+                    views.add(newView);
+                    resultMask = new FilterMask(graphModel.getGraph(newView));
+                    resultMask.retain(cachedResult);
+                    if (q.getParent() instanceof FilterQueryImpl) {
+                        masks.put(q, resultMask);
+                    } else {
+                        resultMask.materialize();
                     }
+                    q.setResult(resultMask.getGraph());
+                    continue;
                 }
-                q.setResult(op.filter(newGraph, filters.toArray(new Filter[0])));
-            } else {
-                FilterQueryImpl filterQuery = (FilterQueryImpl) q;
-                Filter filter = filterQuery.getFilter();
-                if (filter instanceof NodeFilter && filter instanceof EdgeFilter) {
-                    processNodeFilter((NodeFilter) filter, input[0]);
-                    processEdgeFilter((EdgeFilter) filter, input[0]);
-                    q.setResult(input[0]);
-                } else if (filter instanceof NodeFilter) {
-                    processNodeFilter((NodeFilter) filter, input[0]);
-                    q.setResult(input[0]);
-                } else if (filter instanceof EdgeFilter) {
-                    processEdgeFilter((EdgeFilter) filter, input[0]);
-                    q.setResult(input[0]);
-                } else if (filter instanceof AttributableFilter) {
-                    processAttributableFilter((AttributableFilter) filter, input[0]);
-                    q.setResult(input[0]);
-                } else if (filter instanceof ComplexFilter) {
-                    ComplexFilter cf = (ComplexFilter) filter;
-                    q.setResult(cf.filter(input[0]));
+                Graph[] input = new Graph[0];
+                FilterMask inputMask = null;
+                if (q.getChildrenCount() > 0) {
+                    input = new Graph[q.getChildrenCount()];
+                    for (int j = 0; j < input.length; j++) {
+                        input[j] = q.getChildAt(j).getResult();
+                    }
+                    inputMask = masks.remove(q.getChildAt(0));
+                } else {
+                    //Leaves
+                    GraphView newView = graphModel.newView();
+                    views.add(newView);
+                    input = new Graph[]{graphModel.getGraph(newView)};    //duplicate root
+                }
+                //PROCESS
+                if (q instanceof OperatorQueryImpl && !((OperatorQueryImpl) q).isSimple()) {
+                    OperatorQueryImpl operatorQuery = (OperatorQueryImpl) q;
+                    Operator op = (Operator) operatorQuery.getFilter();
+                    q.setResult(op.filter(input));
+                } else if (q instanceof OperatorQueryImpl && ((OperatorQueryImpl) q).isSimple()) {
+                    OperatorQueryImpl operatorQuery = (OperatorQueryImpl) q;
+                    Operator op = (Operator) operatorQuery.getFilter();
+                    GraphView newView = graphModel.newView();
+                    views.add(newView);
+                    Graph newGraph = graphModel.getGraph(newView);
+                    List<Filter> filters = new ArrayList<Filter>();
+                    for (int k = 0; k < operatorQuery.getChildrenCount(); k++) {
+                        Filter filter = operatorQuery.getChildAt(k).getFilter();
+                        if (init(filter, newGraph)) {
+                            filters.add(filter);
+                        }
+                    }
+                    q.setResult(op.filter(newGraph, filters.toArray(new Filter[0])));
                 } else {
-                    q.setResult(input[0]);  //Put input as result, the filter don't do anything
+                    FilterQueryImpl filterQuery = (FilterQueryImpl) q;
+                    Filter filter = filterQuery.getFilter();
+                    if (filter instanceof NodeFilter || filter instanceof EdgeFilter || filter instanceof AttributableFilter) {
+                        FilterMask mask = inputMask != null ? inputMask : new FilterMask(input[0]);
+                        resultMask = mask;
+                        if (filter instanceof NodeFilter && filter instanceof EdgeFilter) {
+                            processNodeFilter((NodeFilter) filter, mask);
+                            processEdgeFilter((EdgeFilter) filter, mask);
+                        } else if (filter instanceof NodeFilter) {
+                            processNodeFilter((NodeFilter) filter, mask);
+                        } else if (filter instanceof EdgeFilter) {
+                            processEdgeFilter((EdgeFilter) filter, mask);
+                        } else {
+                            processAttributableFilter((AttributableFilter) filter, mask);
+                        }
+
+                        //Materialize only when the chain ends
+                        if (q.getParent() instanceof FilterQueryImpl) {
+                            masks.put(q, mask);
+                        } else {
+                            mask.materialize();
+                        }
+                        q.setResult(input[0]);
+                    } else {
+                        if (inputMask != null) {
+                            inputMask.materialize();
+                        }
+                        if (filter instanceof ComplexFilter) {
+                            ComplexFilter cf = (ComplexFilter) filter;
+                            q.setResult(cf.filter(input[0]));
+                        } else {
+                            q.setResult(input[0]);  //Put input as result, the filter don't do anything
+                        }
+                    }
+                }
+
+                if (cache != null) {
+                    if (resultMask == null) {
+                        resultMask = new FilterMask(q.getResult());
+                    }
+                    cache.put(FilterCache.getKey(q), resultMask.getNodes(), resultMask.getEdges(), resultMask.getMetaEdges());
+                }
+            }
+            Graph finalResult = tree[0].result;
+
+            //Destroy intermediate views
+            GraphView finalView = finalResult.getView();
+            for (GraphView v : views) {
+                if (v != finalView) {
+                    graphModel.destroyView(v);
                 }
             }
+            return finalResult;
+        } finally {
+            if (pool != null && !sharedPool) {
+                pool.shutdown();
+                pool = null;
+            }
         }
-        Graph finalResult = tree[0].result;
+    }
 
-        //Destroy intermediate views
-        GraphView finalView = finalResult.getView();
-        for (GraphView v : views) {
-            if (v != finalView) {
-                graphModel.destroyView(v);
+    private void processAttributableFilter(AttributableFilter attributableFilter, FilterMask mask) {
+        //The bounds of a range are the values of its input, which must not contain rejected elements
+        if (attributableFilter instanceof RangeFilter) {
+            mask.materialize();
+        }
+        HierarchicalGraph hgraph = mask.getGraph();
+        if (init(attributableFilter, hgraph)) {
+            if (attributableFilter.getType().equals(AttributableFilter.Type.NODE)) {
+                mask.retainNodes(evaluateNodes(attributableFilter, hgraph, mask));
+            } else {
+                mask.retainEdges(evaluateEdges(attributableFilter, hgraph, hgraph.getEdges().toArray(), mask, false));
+                mask.retainMetaEdges(evaluateEdges(attributableFilter, hgraph, hgraph.getMetaEdges().toArray(), mask, true));
             }
+            attributableFilter.finish();
         }
-        return finalResult;
     }
 
-    private void processAttributableFilter(AttributableFilter attributableFilter, Graph graph) {
-        if (((AttributableFilter) attributableFilter).getType().equals(AttributableFilter.Type.NODE)) {
-            if (init(attributableFilter, graph)) {
-                List<Node> nodesToRemove = new ArrayList<Node>();
-                for (Node n : graph.getNodes()) {
-                    if (!attributableFilter.evaluate(graph, n)) {
-                        nodesToRemove.add(n);
-                    }
-                }
+    private void processNodeFilter(NodeFilter nodeFilter, FilterMask mask) {
+        mask.materialize();
+        HierarchicalGraph hgraph = mask.getGraph();
+        if (init(nodeFilter, hgraph)) {
+            mask.retainNodes(evaluateNodes(nodeFilter, hgraph, null));
+            nodeFilter.finish();
+        }
+    }
 
-                for (Node n : nodesToRemove) {
-                    graph.removeNode(n);
-                }
-                attributableFilter.finish();
-            }
-        } else {
-            HierarchicalGraph hgraph = (HierarchicalGraph) graph;
-            if (init(attributableFilter, graph)) {
-                List<Edge> edgesToRemove = new ArrayList<Edge>();
-                for (Edge e : hgraph.getEdges()) {
-                    if (!attributableFilter.evaluate(hgraph, e)) {
-                        edgesToRemove.add(e);
-                    }
-                }
+    private void processEdgeFilter(EdgeFilter edgeFilter, FilterMask mask) {
+        mask.materialize();
+        HierarchicalGraph hgraph = mask.getGraph();
+        if (init(edgeFilter, hgraph)) {
+            mask.retainEdges(evaluateEdges(edgeFilter, hgraph, hgraph.getEdges().toArray(), null, false));
+            mask.retainMetaEdges(evaluateEdges(edgeFilter, hgraph, hgraph.getMetaEdges().toArray(), null, true));
+            edgeFilter.finish();
+        }
+    }
 
-                for (Edge e : edgesToRemove) {
-                    hgraph.removeEdge(e);
-                }
-                edgesToRemove.clear();
+    private BitSet evaluateNodes(Filter filter, Graph graph, FilterMask mask) {
+        Node[] nodes = graph.getNodes().toArray();
+        int taskCount = getTaskCount(filter, nodes.length);
+        if (taskCount == 1) {
+            return new NodesTask(filter, graph, nodes, 0, nodes.length, mask).call();
+        }
+        List<Future<BitSet>> futures = new ArrayList<Future<BitSet>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) nodes.length * t / taskCount);
+            int to = (int) ((long) nodes.length * (t + 1) / taskCount);
+            futures.add(getPool().submit(new NodesTask(filter, graph, nodes, from, to, mask)));
+        }
+        return reduce(futures);
+    }
 
-                for (Edge e : hgraph.getMetaEdges()) {
-                    if (!attributableFilter.evaluate(hgraph, e)) {
-                        edgesToRemove.add(e);
-                    }
-                }
-                for (Edge e : edgesToRemove) {
-                    hgraph.removeMetaEdge(e);
-                }
+    private BitSet evaluateEdges(Filter filter, Graph graph, Edge[] edges, FilterMask mask, boolean metaEdges) {
+        int taskCount = getTaskCount(filter, edges.length);
+        if (taskCount == 1) {
+            return new EdgesTask(filter, graph, edges, 0, edges.length, mask, metaEdges).call();
+        }
+        List<Future<BitSet>> futures = new ArrayList<Future<BitSet>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) edges.length * t / taskCount);
+            int to = (int) ((long) edges.length * (t + 1) / taskCount);
+            futures.add(getPool().submit(new EdgesTask(filter, graph, edges, from, to, mask, metaEdges)));
+        }
+        return reduce(futures);
+    }
 
-                attributableFilter.finish();
-            }
+    private int getTaskCount(Filter filter, int elementCount) {
+        if (filter instanceof ThreadSafeFilter && threadCount > 1 && elementCount >= PARALLEL_THRESHOLD) {
+            return threadCount;
         }
+        return 1;
     }
 
-    private void processNodeFilter(NodeFilter nodeFilter, Graph graph) {
-        if (init(nodeFilter, graph)) {
-            List<Node> nodesToRemove = new ArrayList<Node>();
-            for (Node n : graph.getNodes()) {
-                if (!nodeFilter.evaluate(graph, n)) {
-                    nodesToRemove.add(n);
-                }
+    //A failing chunk fails the whole query, as it would when evaluated sequentially
+    private BitSet reduce(List<Future<BitSet>> futures) {
+        BitSet result = new BitSet();
+        try {
+            for (Future<BitSet> future : futures) {
+                result.or(future.get());
             }
-
-            for (Node n : nodesToRemove) {
-                graph.removeNode(n);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            for (Future<BitSet> future : futures) {
+                future.cancel(true);
             }
-            nodeFilter.finish();
         }
+        return result;
     }
 
-    private void processEdgeFilter(EdgeFilter edgeFilter, Graph graph) {
-        HierarchicalGraph hgraph = (HierarchicalGraph) graph;
-        if (init(edgeFilter, graph)) {
-            List<Edge> edgesToRemove = new ArrayList<Edge>();
-            for (Edge e : hgraph.getEdges()) {
-                if (!edgeFilter.evaluate(hgraph, e)) {
-                    edgesToRemove.add(e);
+    private ExecutorService getPool() {
+        if (pool == null) {
+            pool = newPool();
+        }
+        return pool;
+    }
+
+    private static class NodesTask implements Callable<BitSet> {
+
+        private final Filter filter;
+        private final Graph graph;
+        private final Node[] nodes;
+        private final int from;
+        private final int to;
+        private final FilterMask mask;
+
+        public NodesTask(Filter filter, Graph graph, Node[] nodes, int from, int to, FilterMask mask) {
+            this.filter = filter;
+            this.graph = graph;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.mask = mask;
+        }
+
+        public BitSet call() {
+            BitSet passed = new BitSet();
+            for (int i = from; i < to; i++) {
+                Node n = nodes[i];
+                if (mask != null && !mask.contains(n)) {
+                    continue;
+                }
+                boolean keep;
+                if (filter instanceof NodeFilter) {
+                    keep = ((NodeFilter) filter).evaluate(graph, n);
+                } else {
+                    keep = ((AttributableFilter) filter).evaluate(graph, n);
+                }
+                if (keep) {
+                    passed.set(n.getId());
                 }
             }
+            return passed;
+        }
+    }
 
-            for (Edge e : edgesToRemove) {
-                hgraph.removeEdge(e);
-            }
-            edgesToRemove.clear();
+    private static class EdgesTask implements Callable<BitSet> {
+
+        private final Filter filter;
+        private final Graph graph;
+        private final Edge[] edges;
+        private final int from;
+        private final int to;
+        private final FilterMask mask;
+        private final boolean metaEdges;
+
+        public EdgesTask(Filter filter, Graph graph, Edge[] edges, int from, int to, FilterMask mask, boolean metaEdges) {
+            this.filter = filter;
+            this.graph = graph;
+            this.edges = edges;
+            this.from = from;
+            this.to = to;
+            this.mask = mask;
+            this.metaEdges = metaEdges;
+        }
 
-            for (Edge e : hgraph.getMetaEdges()) {
-                if (!edgeFilter.evaluate(hgraph, e)) {
-                    edgesToRemove.add(e);
+        public BitSet call() {
+            BitSet passed = new BitSet();
+            for (int i = from; i < to; i++) {
+                Edge e = edges[i];
+                if (mask != null && !(metaEdges ? mask.containsMetaEdge(e) : mask.contains(e))) {
+                    continue;
+                }
+                boolean keep;
+                if (filter instanceof EdgeFilter) {
+                    keep = ((EdgeFilter) filter).evaluate(graph, e);
+                } else {
+                    keep = ((AttributableFilter) filter).evaluate(graph, e);
+                }
+                if (keep) {
+                    passed.set(e.getId());
                 }
             }
-            for (Edge e : edgesToRemove) {
-                hgraph.removeMetaEdge(e);
-            }
-
-            edgeFilter.finish();
+            return passed;
         }
     }
 
@@ -256,7 +499,7 @@ public class FilterProcessor {
             res = ((NodeFilter) filter).init(graph);
         } else if (filter instanceof EdgeFilter) {
             res = ((EdgeFilter) filter).init(graph);
-        } else if (filter instanceof NodeFilter) {
+        } else if (filter instanceof AttributableFilter) {
             res = ((AttributableFilter) filter).init(graph);
         }
 
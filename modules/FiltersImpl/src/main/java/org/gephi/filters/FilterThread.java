@@ -43,7 +43,10 @@ package org.gephi.filters;
 
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.filters.api.PropertyExecutor.Callback;
 import org.gephi.filters.api.Query;
 import org.gephi.filters.spi.FilterProperty;
@@ -70,6 +73,8 @@ public class FilterThread extends Thread {
     private boolean running = true;
     private final Object lock = new Object();
     private final boolean filtering;
+    private final FilterCache cache;
+    private final ExecutorService pool;
 
     public FilterThread(FilterModelImpl model) {
         super("Filter Thread");
@@ -78,11 +83,28 @@ public class FilterThread extends Thread {
         this.filtering = model.isFiltering();
         rootQuery = new AtomicReference<AbstractQueryImpl>();
         modifiersMap = new ConcurrentHashMap<String, PropertyModifier>();
+
+        //Sub-queries results, cleared when attribute values change
+        cache = new FilterCache();
+        AttributeModel attributeModel = getAttributeModel();
+        if (attributeModel != null) {
+            attributeModel.addAttributeListener(cache);
+        }
+
+        //Evaluates thread-safe filters, reused by every query of this thread
+        pool = FilterProcessor.newPool();
     }
 
     @Override
     public void run() {
+        try {
+            execute();
+        } finally {
+            pool.shutdown();
+        }
+    }
 
+    private void execute() {
         while (running) {
             AbstractQueryImpl q;
             while ((q = rootQuery.getAndSet(null)) == null && running) {
@@ -144,7 +166,7 @@ public class FilterThread extends Thread {
     }
 
     private void filter(AbstractQueryImpl query) {
-        FilterProcessor processor = new FilterProcessor();
+        FilterProcessor processor = new FilterProcessor(cache, pool);
         GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel();
         Graph result = processor.process((AbstractQueryImpl) query, graphModel);
 //        System.out.println("#Nodes: " + result.getNodeCount());
@@ -163,7 +185,7 @@ public class FilterThread extends Thread {
     }
 
     private void select(AbstractQueryImpl query) {
-        FilterProcessor processor = new FilterProcessor();
+        FilterProcessor processor = new FilterProcessor(cache, pool);
         GraphModel graphModel = Lookup.getDefault().lookup(GraphController.class).getModel();
         Graph result = processor.process((AbstractQueryImpl) query, graphModel);
 //        System.out.println("#Nodes: " + result.getNodeCount());
@@ -195,11 +217,26 @@ public class FilterThread extends Thread {
 
     public void setRunning(boolean running) {
         this.running = running;
+        if (!running) {
+            AttributeModel attributeModel = getAttributeModel();
+            if (attributeModel != null) {
+                attributeModel.removeAttributeListener(cache);
+            }
+            cache.clear();
+        }
         synchronized (this.lock) {
             lock.notify();
         }
     }
 
+    private AttributeModel getAttributeModel() {
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        if (attributeController != null && model.getGraphModel() != null) {
+            return attributeController.getModel(model.getGraphModel().getWorkspace());
+        }
+        return null;
+    }
+
     public void addModifier(PropertyModifier modifier) {
         modifiersMap.put(modifier.property.getName(), modifier);
     }
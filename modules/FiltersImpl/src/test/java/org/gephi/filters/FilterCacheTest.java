@@ -0,0 +1,224 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.filters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.gephi.data.attributes.api.AttributeEvent;
+import org.gephi.data.attributes.api.AttributeEvent.EventType;
+import org.gephi.filters.spi.Filter;
+import org.gephi.filters.spi.FilterProperty;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class FilterCacheTest {
+
+    @Test
+    public void testPut() {
+        FilterCache cache = new FilterCache();
+        BitSet nodes = bits(1, 2);
+        BitSet edges = bits(3);
+        cache.put(key("a"), nodes, edges, bits());
+
+        //The entry doesn't share the sets of the caller
+        nodes.clear();
+        edges.set(4);
+        FilterCache.Entry entry = cache.get(key("a"));
+        assertEquals(bits(1, 2), entry.getNodes());
+        assertEquals(bits(3), entry.getEdges());
+        assertEquals(bits(), entry.getMetaEdges());
+        assertNull(cache.get(key("b")));
+    }
+
+    @Test
+    public void testValidate() {
+        FilterCache cache = new FilterCache();
+        cache.validate(1, 1);
+        cache.put(key("a"), bits(1), bits(), bits());
+        cache.validate(1, 1);
+        assertNotNull(cache.get(key("a")));
+
+        cache.validate(1, 2);
+        assertNull(cache.get(key("a")));
+        cache.put(key("a"), bits(1), bits(), bits());
+        cache.validate(2, 2);
+        assertNull(cache.get(key("a")));
+    }
+
+    @Test
+    public void testAttributesChanged() {
+        FilterCache cache = new FilterCache();
+        cache.put(key("a"), bits(1), bits(), bits());
+        cache.attributesChanged(event(EventType.ADD_COLUMN));
+        assertNotNull(cache.get(key("a")));
+
+        cache.attributesChanged(event(EventType.SET_VALUE));
+        assertNull(cache.get(key("a")));
+    }
+
+    @Test
+    public void testEviction() {
+        //Entries of small sets take 3 * 64 bits
+        FilterCache cache = new FilterCache(48);
+        cache.put(key("a"), bits(1), bits(1), bits(1));
+        cache.put(key("b"), bits(1), bits(1), bits(1));
+        assertNotNull(cache.get(key("a")));
+
+        //The least recently used entry goes first
+        cache.put(key("c"), bits(1), bits(1), bits(1));
+        assertNotNull(cache.get(key("a")));
+        assertNull(cache.get(key("b")));
+        assertNotNull(cache.get(key("c")));
+
+        //Replacing an entry frees its size
+        cache.put(key("c"), bits(1), bits(1), bits(1));
+        assertNotNull(cache.get(key("a")));
+        assertNotNull(cache.get(key("c")));
+
+        //An entry larger than the cache isn't stored and evicts nothing
+        cache.put(key("d"), bits(500), bits(1), bits(1));
+        assertNull(cache.get(key("d")));
+        assertNotNull(cache.get(key("a")));
+        assertNotNull(cache.get(key("c")));
+    }
+
+    @Test
+    public void testKey() {
+        TestFilter filter = new TestFilter();
+        FilterQueryImpl query = new FilterQueryImpl(filter);
+        List<Object> key = FilterCache.getKey(query);
+        assertEquals(key, FilterCache.getKey(query));
+
+        //Keys follow the parameters
+        filter.setValue(2);
+        assertFalse(key.equals(FilterCache.getKey(query)));
+        filter.setValue(1);
+        assertEquals(key, FilterCache.getKey(query));
+
+        //Collections are copied, a change after the key is built is seen
+        filter.getValues().add("x");
+        assertFalse(key.equals(FilterCache.getKey(query)));
+        key = FilterCache.getKey(query);
+
+        //Filters are compared by identity
+        TestFilter other = new TestFilter();
+        other.getValues().add("x");
+        assertFalse(key.equals(FilterCache.getKey(new FilterQueryImpl(other))));
+
+        //Sub-queries are part of the key
+        FilterQueryImpl child = new FilterQueryImpl(other);
+        query.addSubQuery(child);
+        List<Object> parentKey = FilterCache.getKey(query);
+        assertFalse(key.equals(parentKey));
+        other.setValue(3);
+        assertFalse(parentKey.equals(FilterCache.getKey(query)));
+    }
+
+    private static List<Object> key(Object... values) {
+        return new ArrayList<Object>(Arrays.asList(values));
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet set = new BitSet();
+        for (int id : ids) {
+            set.set(id);
+        }
+        return set;
+    }
+
+    private static AttributeEvent event(final EventType eventType) {
+        return GraphProxies.newProxy(AttributeEvent.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getEventType")) {
+                    return eventType;
+                } else if (method.getName().equals("is")) {
+                    return Arrays.asList((Object[]) args[0]).contains(eventType);
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    public static class TestFilter implements Filter {
+
+        private FilterProperty[] filterProperties;
+        private Integer value = 1;
+        private List<String> values = new ArrayList<String>();
+
+        public String getName() {
+            return "Test";
+        }
+
+        public FilterProperty[] getProperties() {
+            if (filterProperties == null) {
+                try {
+                    filterProperties = new FilterProperty[]{
+                        FilterProperty.createProperty(this, Integer.class, "value"),
+                        FilterProperty.createProperty(this, List.class, "values")};
+                } catch (NoSuchMethodException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+            return filterProperties;
+        }
+
+        public Integer getValue() {
+            return value;
+        }
+
+        public void setValue(Integer value) {
+            this.value = value;
+        }
+
+        public List<String> getValues() {
+            return values;
+        }
+
+        public void setValues(List<String> values) {
+            this.values = values;
+        }
+    }
+}
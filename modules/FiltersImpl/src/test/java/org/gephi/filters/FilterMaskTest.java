@@ -0,0 +1,179 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.filters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeIterable;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class FilterMaskTest {
+
+    @Test
+    public void testRetain() {
+        TestGraph graph = new TestGraph();
+        FilterMask mask = new FilterMask(graph.getGraph());
+        assertEquals(bits(0, 1, 2, 3), mask.getNodes());
+        assertEquals(bits(0, 1, 2), mask.getEdges());
+        assertEquals(bits(3), mask.getMetaEdges());
+        assertFalse(mask.isDirty());
+
+        //Passing every element doesn't change the mask
+        mask.retainNodes(bits(0, 1, 2, 3, 4));
+        mask.retainEdges(bits(0, 1, 2));
+        assertFalse(mask.isDirty());
+
+        mask.retainNodes(bits(0, 1, 3));
+        assertTrue(mask.isDirty());
+        assertTrue(mask.contains(graph.nodes.get(0)));
+        assertFalse(mask.contains(graph.nodes.get(2)));
+
+        //Edges are rejected with their source or target
+        assertTrue(mask.contains(graph.edges.get(0)));
+        assertFalse(mask.contains(graph.edges.get(1)));
+        assertTrue(mask.containsMetaEdge(graph.metaEdges.get(0)));
+
+        mask.retainEdges(bits(1, 2));
+        assertFalse(mask.contains(graph.edges.get(0)));
+        assertTrue(mask.contains(graph.edges.get(2)));
+    }
+
+    @Test
+    public void testMaterialize() {
+        TestGraph graph = new TestGraph();
+        FilterMask mask = new FilterMask(graph.getGraph());
+        mask.materialize();
+        assertEquals(0, graph.removed);
+
+        mask.retainNodes(bits(0, 1, 3));
+        mask.retainEdges(bits(1, 2));
+        mask.materialize();
+        assertFalse(mask.isDirty());
+        assertEquals(2, graph.removed);
+        assertEquals(3, graph.nodes.size());
+        assertFalse(graph.nodes.contains(graph.allNodes[2]));
+        assertEquals(1, graph.edges.size());
+        assertEquals(2, graph.edges.get(0).getId());
+        assertEquals(1, graph.metaEdges.size());
+
+        //Nothing rejected since, the graph is left as is
+        mask.retainNodes(bits(0, 1, 3));
+        mask.materialize();
+        assertEquals(2, graph.removed);
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet set = new BitSet();
+        for (int id : ids) {
+            set.set(id);
+        }
+        return set;
+    }
+
+    /**
+     * Nodes 0 to 3, edges 0 (0-1), 1 (1-2), 2 (3-0) and meta edge 3 (0-3).
+     * Removals are counted, a node being removed with its edges.
+     */
+    private static class TestGraph {
+
+        private final Node[] allNodes = new Node[4];
+        private final List<Node> nodes = new ArrayList<Node>();
+        private final List<Edge> edges = new ArrayList<Edge>();
+        private final List<Edge> metaEdges = new ArrayList<Edge>();
+        private int removed;
+
+        public TestGraph() {
+            for (int i = 0; i < allNodes.length; i++) {
+                allNodes[i] = GraphProxies.newNode(i);
+                nodes.add(allNodes[i]);
+            }
+            edges.add(GraphProxies.newEdge(0, allNodes[0], allNodes[1]));
+            edges.add(GraphProxies.newEdge(1, allNodes[1], allNodes[2]));
+            edges.add(GraphProxies.newEdge(2, allNodes[3], allNodes[0]));
+            metaEdges.add(GraphProxies.newEdge(3, allNodes[0], allNodes[3]));
+        }
+
+        public HierarchicalGraph getGraph() {
+            return GraphProxies.newProxy(HierarchicalGraph.class, new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    String name = method.getName();
+                    if (name.equals("getNodes")) {
+                        return GraphProxies.newIterable(NodeIterable.class, nodes);
+                    } else if (name.equals("getEdges")) {
+                        return GraphProxies.newIterable(EdgeIterable.class, edges);
+                    } else if (name.equals("getMetaEdges")) {
+                        return GraphProxies.newIterable(EdgeIterable.class, metaEdges);
+                    } else if (name.equals("removeNode")) {
+                        removed++;
+                        nodes.remove((Node) args[0]);
+                        removeEdges(edges, (Node) args[0]);
+                        removeEdges(metaEdges, (Node) args[0]);
+                        return true;
+                    } else if (name.equals("removeEdge")) {
+                        removed++;
+                        return edges.remove((Edge) args[0]);
+                    } else if (name.equals("removeMetaEdge")) {
+                        removed++;
+                        return metaEdges.remove((Edge) args[0]);
+                    }
+                    throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+
+        private static void removeEdges(List<Edge> edges, Node node) {
+            for (int i = edges.size() - 1; i >= 0; i--) {
+                if (edges.get(i).getSource() == node || edges.get(i).getTarget() == node) {
+                    edges.remove(i);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.filters.plugin;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeEvent;
+import org.gephi.data.attributes.api.AttributeListener;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeOrigin;
+import org.gephi.data.attributes.api.AttributeUtils;
+import org.gephi.data.attributes.api.AttributeValue;
+import org.gephi.filters.api.Range;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.EdgeData;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeData;
+import org.openide.util.Lookup;
+
+/**
+ * Numeric values of a node or edge column, or of a node metric like the
+ * degree, sorted with the ids of their elements. The minimum and maximum are
+ * known in constant time and the elements in a range are found by binary
+ * search.
+ * <p>
+ * Range filters keep a {@link Selection}, i.e. the ids of the elements in
+ * their range. When the range moves only the elements between the old and the
+ * new bounds are added or removed, on a copy of the previous selection.
+ * <p>
+ * Indexes are shared, immutable and built over the whole graph. They are
+ * rebuilt when the graph structure changes. Values set on a column are
+ * queued by the attribute events and merged into a new column index the next
+ * time it is requested. Computed columns, e.g. statistics results, don't fire
+ * events and are therefore not indexed.
+ */
+public class SortedIndex {
+
+    private static final Map<AttributeColumn, SortedIndex> COLUMN_INDEXES = new WeakHashMap<AttributeColumn, SortedIndex>();
+    private static final Map<GraphModel, Map<Object, SortedIndex>> NODE_INDEXES = new WeakHashMap<GraphModel, Map<Object, SortedIndex>>();
+    private static final Map<AttributeModel, IndexInvalidator> INVALIDATORS = new WeakHashMap<AttributeModel, IndexInvalidator>();
+    private static final Map<AttributeColumn, ValueChanges> COLUMN_CHANGES = new WeakHashMap<AttributeColumn, ValueChanges>();
+    private final double[] values;
+    private final int[] ids;
+    private final Number[] numbers;
+    private final int nodeVersion;
+    private final int edgeVersion;
+
+    private SortedIndex(double[] values, int[] ids, Number[] numbers, int nodeVersion, int edgeVersion) {
+        this.values = values;
+        this.ids = ids;
+        this.numbers = numbers;
+        this.nodeVersion = nodeVersion;
+        this.edgeVersion = edgeVersion;
+    }
+
+    /**
+     * Returns the index of <code>column</code>, or <code>null</code> if the
+     * column is dynamic, as its values then depend on the visible interval,
+     * or computed, as its values change without events.
+     */
+    public static synchronized SortedIndex getColumnIndex(AttributeColumn column, Graph graph) {
+        if (AttributeUtils.getDefault().isDynamicNumberColumn(column)
+                || column.getOrigin().equals(AttributeOrigin.COMPUTED)) {
+            return null;
+        }
+        HierarchicalGraph mainGraph = graph.getGraphModel().getHierarchicalGraph();
+        SortedIndex index = COLUMN_INDEXES.get(column);
+        ValueChanges changes = COLUMN_CHANGES.remove(column);
+        if (index != null && changes != null && index.isValid(mainGraph)) {
+            index = index.update(changes);
+            if (index != null) {
+                COLUMN_INDEXES.put(column, index);
+            }
+        }
+        if (index == null || !index.isValid(mainGraph)) {
+            registerInvalidator(graph.getGraphModel());
+            NumbersBuilder builder = new NumbersBuilder();
+            if (AttributeUtils.getDefault().isNodeColumn(column)) {
+                for (Node n : mainGraph.getNodes()) {
+                    builder.add(n.getId(), n.getNodeData().getAttributes().getValue(column.getIndex()));
+                }
+            } else {
+                for (Edge e : mainGraph.getEdgesAndMetaEdges()) {
+                    builder.add(e.getId(), e.getEdgeData().getAttributes().getValue(column.getIndex()));
+                }
+            }
+            index = builder.build(mainGraph);
+            COLUMN_INDEXES.put(column, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the node values computed by <code>values</code>, or
+     * <code>null</code> if <code>graph</code> is not the whole graph, as these
+     * values depend on the graph structure.
+     */
+    public static synchronized SortedIndex getNodeIndex(Object key, Graph graph, NodeValues values) {
+        if (!isWholeGraph(graph)) {
+            return null;
+        }
+        GraphModel graphModel = graph.getGraphModel();
+        Map<Object, SortedIndex> indexes = NODE_INDEXES.get(graphModel);
+        if (indexes == null) {
+            indexes = new HashMap<Object, SortedIndex>();
+            NODE_INDEXES.put(graphModel, indexes);
+        }
+        HierarchicalGraph mainGraph = graphModel.getHierarchicalGraph();
+        SortedIndex index = indexes.get(key);
+        if (index == null || !index.isValid(mainGraph)) {
+            NumbersBuilder builder = new NumbersBuilder();
+            for (Node n : graph.getNodes()) {
+                builder.add(n.getId(), values.getValue(graph, n));
+            }
+            index = builder.build(mainGraph);
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns <code>true</code> if <code>graph</code> contains all the nodes
+     * and edges of the main view.
+     */
+    public static boolean isWholeGraph(Graph graph) {
+        HierarchicalGraph hgraph = (HierarchicalGraph) graph;
+        HierarchicalGraph mainGraph = graph.getGraphModel().getHierarchicalGraph();
+        return hgraph.getNodeCount() == mainGraph.getNodeCount()
+                && hgraph.getTotalEdgeCount() == mainGraph.getTotalEdgeCount();
+    }
+
+    private static void registerInvalidator(GraphModel graphModel) {
+        AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+        if (attributeController != null) {
+            AttributeModel attributeModel = attributeController.getModel(graphModel.getWorkspace());
+            if (attributeModel != null && !INVALIDATORS.containsKey(attributeModel)) {
+                IndexInvalidator invalidator = new IndexInvalidator();
+                attributeModel.addAttributeListener(invalidator);
+                INVALIDATORS.put(attributeModel, invalidator);
+            }
+        }
+    }
+
+    private boolean isValid(Graph mainGraph) {
+        return nodeVersion == mainGraph.getNodeVersion() && edgeVersion == mainGraph.getEdgeVersion();
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Number getMinimum() {
+        return numbers.length > 0 ? numbers[0] : null;
+    }
+
+    public Number getMaximum() {
+        return numbers.length > 0 ? numbers[numbers.length - 1] : null;
+    }
+
+    /**
+     * Returns the sorted values, as expected by <code>RangeFilter.getValues()</code>.
+     */
+    public Number[] getValues() {
+        return Arrays.copyOf(numbers, numbers.length);
+    }
+
+    /**
+     * Returns the selection of the elements in <code>range</code>. When
+     * <code>previous</code> is a selection of this index, only the elements
+     * between its bounds and the new bounds are visited, on a copy.
+     * <code>previous</code> is never modified, so it can still be read by
+     * a filter running concurrently.
+     */
+    public Selection select(Range range, Selection previous) {
+        double lower = range.getLowerBound().doubleValue();
+        double upper = range.getUpperBound().doubleValue();
+        int from = range.isLeftInclusive() ? firstAbove(lower, true) : firstAbove(lower, false);
+        int to = range.isRightInclusive() ? firstAbove(upper, false) : firstAbove(upper, true);
+        to = Math.max(from, to);
+
+        if (previous == null || previous.index != this) {
+            BitSet elements = new BitSet();
+            set(elements, from, to, true);
+            return new Selection(this, elements, from, to);
+        }
+        if (previous.from == from && previous.to == to) {
+            return previous;
+        }
+        BitSet elements = (BitSet) previous.elements.clone();
+        //Elements leaving the range
+        set(elements, previous.from, Math.min(previous.to, from), false);
+        set(elements, Math.max(previous.from, to), previous.to, false);
+        //Elements entering the range
+        set(elements, from, Math.min(to, previous.from), true);
+        set(elements, Math.max(from, previous.to), to, true);
+        return new Selection(this, elements, from, to);
+    }
+
+    /**
+     * Returns a new index with the values in <code>changes</code>, merged in
+     * the sorted arrays without sorting them again. Returns <code>null</code>
+     * if a value is set on an element this index doesn't know, as it may not
+     * be in the main view.
+     */
+    private SortedIndex update(ValueChanges changes) {
+        BitSet indexed = new BitSet();
+        for (int i = 0; i < ids.length; i++) {
+            indexed.set(ids[i]);
+        }
+        //The last value set on an element wins
+        BitSet changed = new BitSet();
+        NumbersBuilder builder = new NumbersBuilder();
+        for (int i = changes.size - 1; i >= 0; i--) {
+            int id = changes.ids[i];
+            if (!indexed.get(id)) {
+                if (changes.values[i] instanceof Number) {
+                    return null;
+                }
+            } else if (!changed.get(id)) {
+                changed.set(id);
+                builder.add(id, changes.values[i]);
+            }
+        }
+        SortedIndex added = builder.build(nodeVersion, edgeVersion);
+
+        int length = values.length - changed.cardinality() + added.values.length;
+        double[] newValues = new double[length];
+        int[] newIds = new int[length];
+        Number[] newNumbers = new Number[length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < length; k++) {
+            while (i < ids.length && changed.get(ids[i])) {
+                i++;
+            }
+            if (i < ids.length && (j == added.values.length || Double.compare(values[i], added.values[j]) <= 0)) {
+                newValues[k] = values[i];
+                newIds[k] = ids[i];
+                newNumbers[k] = numbers[i++];
+            } else {
+                newValues[k] = added.values[j];
+                newIds[k] = added.ids[j];
+                newNumbers[k] = added.numbers[j++];
+            }
+        }
+        return new SortedIndex(newValues, newIds, newNumbers, nodeVersion, edgeVersion);
+    }
+
+    private void set(BitSet elements, int from, int to, boolean value) {
+        for (int i = from; i < to; i++) {
+            elements.set(ids[i], value);
+        }
+    }
+
+    /**
+     * Returns the index of the first value greater or equal than
+     * <code>value</code>, or strictly greater if <code>inclusive</code> is
+     * <code>false</code>.
+     */
+    private int firstAbove(double value, boolean inclusive) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < value || (!inclusive && values[mid] == value)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Elements of an index which value is in a given range.
+     */
+    public static class Selection {
+
+        private final SortedIndex index;
+        private final BitSet elements;
+        private final int from;
+        private final int to;
+
+        private Selection(SortedIndex index, BitSet elements, int from, int to) {
+            this.index = index;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean contains(int id) {
+            return elements.get(id);
+        }
+    }
+
+    /**
+     * Computes the indexed value of a node.
+     */
+    public interface NodeValues {
+
+        public Number getValue(Graph graph, Node node);
+    }
+
+    private static class NumbersBuilder {
+
+        private Number[] numbers = new Number[16];
+        private int[] ids = new int[16];
+        private int size;
+
+        public void add(int id, Object value) {
+            if (value instanceof Number) {
+                if (size == numbers.length) {
+                    numbers = Arrays.copyOf(numbers, size * 2);
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                numbers[size] = (Number) value;
+                ids[size] = id;
+                size++;
+            }
+        }
+
+        public SortedIndex build(Graph mainGraph) {
+            return build(mainGraph.getNodeVersion(), mainGraph.getEdgeVersion());
+        }
+
+        public SortedIndex build(int nodeVersion, int edgeVersion) {
+            double[] keys = new double[size];
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = numbers[i].doubleValue();
+                order[i] = i;
+            }
+            sort(keys, order, new int[size], 0, size);
+
+            double[] sortedValues = new double[size];
+            int[] sortedIds = new int[size];
+            Number[] sortedNumbers = new Number[size];
+            for (int i = 0; i < size; i++) {
+                sortedValues[i] = keys[order[i]];
+                sortedIds[i] = ids[order[i]];
+                sortedNumbers[i] = numbers[order[i]];
+            }
+            return new SortedIndex(sortedValues, sortedIds, sortedNumbers, nodeVersion, edgeVersion);
+        }
+
+        /**
+         * Merge sort of the positions in <code>order</code> by their key,
+         * stable and without boxing.
+         */
+        private static void sort(double[] keys, int[] order, int[] buffer, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            sort(keys, order, buffer, from, mid);
+            sort(keys, order, buffer, mid, to);
+            if (Double.compare(keys[order[mid - 1]], keys[order[mid]]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            int i = from;
+            int j = mid;
+            for (int k = from; k < to; k++) {
+                if (j == to || (i < mid && Double.compare(keys[buffer[i]], keys[buffer[j]]) <= 0)) {
+                    order[k] = buffer[i++];
+                } else {
+                    order[k] = buffer[j++];
+                }
+            }
+        }
+    }
+
+    /**
+     * Values set on a column since its index was built, in event order.
+     */
+    private static class ValueChanges {
+
+        private int[] ids = new int[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        public void add(int id, Object value) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            ids[size] = id;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    private static class IndexInvalidator implements AttributeListener {
+
+        public void attributesChanged(AttributeEvent event) {
+            if (event.is(AttributeEvent.EventType.UNSET_VALUE, AttributeEvent.EventType.ADD_COLUMN)) {
+                //The new value follows in a SET_VALUE event
+                return;
+            }
+            synchronized (SortedIndex.class) {
+                if (event.is(AttributeEvent.EventType.SET_VALUE)) {
+                    Object[] objects = event.getData().getTouchedObjects();
+                    AttributeValue[] touchedValues = event.getData().getTouchedValues();
+                    for (int i = 0; i < objects.length; i++) {
+                        AttributeColumn column = touchedValues[i].getColumn();
+                        SortedIndex index = COLUMN_INDEXES.get(column);
+                        if (index != null) {
+                            ValueChanges changes = COLUMN_CHANGES.get(column);
+                            if (changes == null) {
+                                changes = new ValueChanges();
+                                COLUMN_CHANGES.put(column, changes);
+                            }
+                            if (objects[i] instanceof NodeData && changes.size < index.size() / 4) {
+                                changes.add(((NodeData) objects[i]).getRootNode().getId(), touchedValues[i].getValue());
+                            } else if (objects[i] instanceof EdgeData && changes.size < index.size() / 4) {
+                                changes.add(((EdgeData) objects[i]).getEdge().getId(), touchedValues[i].getValue());
+                            } else {
+                                //Unknown element, or cheaper to rebuild
+                                COLUMN_INDEXES.remove(column);
+                                COLUMN_CHANGES.remove(column);
+                            }
+                        }
+                    }
+                } else {
+                    for (AttributeColumn column : event.getSource().getColumns()) {
+                        COLUMN_INDEXES.remove(column);
+                        COLUMN_CHANGES.remove(column);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -54,6 +54,7 @@ import org.gephi.filters.api.Range;
 import org.gephi.filters.plugin.AbstractAttributeFilter;
 import org.gephi.filters.plugin.AbstractAttributeFilterBuilder;
 import org.gephi.filters.plugin.DynamicAttributesHelper;
+import org.gephi.filters.plugin.SortedIndex;
 import org.gephi.filters.plugin.graph.RangeUI;
 import org.gephi.filters.spi.*;
 import org.gephi.graph.api.*;
@@ -114,10 +115,12 @@ public class AttributeRangeBuilder implements CategoryBuilder {
         }
     }
 
-    public static class AttributeRangeFilter extends AbstractAttributeFilter implements RangeFilter {
+    public static class AttributeRangeFilter extends AbstractAttributeFilter implements RangeFilter, ThreadSafeFilter {
 
         private Range range;
         private DynamicAttributesHelper dynamicHelper = new DynamicAttributesHelper(this, null);
+        private SortedIndex index;
+        private SortedIndex.Selection selection;
 
         public AttributeRangeFilter(AttributeColumn column) {
             super(NbBundle.getMessage(AttributeRangeBuilder.class, "AttributeRangeBuilder.name"),
@@ -139,10 +142,18 @@ public class AttributeRangeBuilder implements CategoryBuilder {
                 }
             }
             dynamicHelper = new DynamicAttributesHelper(this, hg);
+            index = SortedIndex.getColumnIndex(column, graph);
+            selection = index != null && range != null ? index.select(range, selection) : null;
             return true;
         }
 
         public boolean evaluate(Graph graph, Attributable attributable) {
+            if (selection != null) {
+                if (attributable instanceof Node) {
+                    return selection.contains(((Node) attributable).getId());
+                }
+                return selection.contains(((Edge) attributable).getId());
+            }
             Object val = attributable.getAttributes().getValue(column.getIndex());
             val = dynamicHelper.getDynamicValue(val);
             if (val != null) {
@@ -156,6 +167,12 @@ public class AttributeRangeBuilder implements CategoryBuilder {
         }
 
         public Number[] getValues(Graph graph) {
+            if (SortedIndex.isWholeGraph(graph)) {
+                SortedIndex columnIndex = SortedIndex.getColumnIndex(column, graph);
+                if (columnIndex != null) {
+                    return columnIndex.getValues();
+                }
+            }
             List<Number> vals = new ArrayList<Number>();
             if (AttributeUtils.getDefault().isNodeColumn(column)) {
                 for (Node n : graph.getNodes()) {
@@ -186,6 +203,7 @@ public class AttributeRangeBuilder implements CategoryBuilder {
         }
 
         public void setRange(Range range) {
+            //The selection is updated in init(), never while a query evaluates it
             this.range = range;
         }
     }
@@ -96,7 +96,7 @@ public class EdgeWeightBuilder implements FilterBuilder {
     public void destroy(Filter filter) {
     }
 
-    public static class EdgeWeightFilter extends AbstractFilter implements RangeFilter, EdgeFilter {
+    public static class EdgeWeightFilter extends AbstractFilter implements RangeFilter, EdgeFilter, ThreadSafeFilter {
 
         private Range range;
         private DynamicAttributesHelper dynamicHelper = new DynamicAttributesHelper(this, null);
@@ -84,7 +84,7 @@ public class SelfLoopFilterBuilder implements FilterBuilder {
     public void destroy(Filter filter) {
     }
 
-    public static class SelfLoopFilter implements EdgeFilter {
+    public static class SelfLoopFilter implements EdgeFilter, ThreadSafeFilter {
 
         public boolean init(Graph graph) {
             return true;
@@ -48,6 +48,7 @@ import javax.swing.JPanel;
 import org.gephi.filters.api.FilterLibrary;
 import org.gephi.filters.api.Range;
 import org.gephi.filters.plugin.AbstractFilter;
+import org.gephi.filters.plugin.SortedIndex;
 import org.gephi.filters.spi.*;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.HierarchicalGraph;
@@ -94,9 +95,17 @@ public class DegreeRangeBuilder implements FilterBuilder {
     public void destroy(Filter filter) {
     }
 
-    public static class DegreeRangeFilter extends AbstractFilter implements RangeFilter, NodeFilter {
+    public static class DegreeRangeFilter extends AbstractFilter implements RangeFilter, NodeFilter, ThreadSafeFilter {
 
+        private static final SortedIndex.NodeValues DEGREE = new SortedIndex.NodeValues() {
+
+            public Number getValue(Graph graph, Node node) {
+                return ((HierarchicalGraph) graph).getTotalDegree(node);
+            }
+        };
         private Range range;
+        private SortedIndex index;
+        private SortedIndex.Selection selection;
 
         public DegreeRangeFilter() {
             super(NbBundle.getMessage(DegreeRangeBuilder.class, "DegreeRangeBuilder.name"));
@@ -108,10 +117,15 @@ public class DegreeRangeBuilder implements FilterBuilder {
             if (graph.getNodeCount() == 0) {
                 return false;
             }
+            index = SortedIndex.getNodeIndex(DegreeRangeFilter.class, graph, DEGREE);
+            selection = index != null && range != null ? index.select(range, selection) : null;
             return true;
         }
 
         public boolean evaluate(Graph graph, Node node) {
+            if (selection != null) {
+                return selection.contains(node.getId());
+            }
             int degree = ((HierarchicalGraph) graph).getTotalDegree(node);
             return range.isInRange(degree);
         }
@@ -120,6 +134,10 @@ public class DegreeRangeBuilder implements FilterBuilder {
         }
 
         public Number[] getValues(Graph graph) {
+            SortedIndex degreeIndex = SortedIndex.getNodeIndex(DegreeRangeFilter.class, graph, DEGREE);
+            if (degreeIndex != null) {
+                return degreeIndex.getValues();
+            }
             HierarchicalGraph hgraph = (HierarchicalGraph) graph;
             List<Integer> values = new ArrayList<Integer>(((HierarchicalGraph) graph).getNodeCount());
             for (Node n : hgraph.getNodes()) {
@@ -138,6 +156,7 @@ public class DegreeRangeBuilder implements FilterBuilder {
         }
 
         public void setRange(Range range) {
+            //The selection is updated in init(), never while a query evaluates it
             this.range = range;
         }
     }
@@ -41,15 +41,24 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.filters.plugin.graph;
 
+import java.util.BitSet;
 import javax.swing.Icon;
 import javax.swing.JPanel;
+import org.gephi.data.attributes.api.AttributeColumn;
+import org.gephi.data.attributes.api.AttributeController;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.api.AttributeOrigin;
+import org.gephi.data.attributes.api.AttributeTable;
+import org.gephi.data.attributes.api.AttributeType;
 import org.gephi.filters.api.FilterLibrary;
 import org.gephi.filters.spi.Category;
 import org.gephi.filters.spi.ComplexFilter;
 import org.gephi.filters.spi.Filter;
 import org.gephi.filters.spi.FilterBuilder;
 import org.gephi.filters.spi.FilterProperty;
+import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.HierarchicalGraph;
 import org.gephi.graph.api.Node;
 import org.openide.util.Exceptions;
 import org.openide.util.Lookup;
@@ -96,23 +105,174 @@ public class KCoreBuilder implements FilterBuilder {
 
     public static class KCoreFilter implements ComplexFilter {
 
+        public static final String CORENESS = "coreness";
         private FilterProperty[] filterProperties;
         private Integer k = 1;
+        private boolean storeCoreness = false;
+        //Core numbers of the last graph, reused while only k changes
+        private int[] cores;
+        private BitSet coreNodes;
+        private BitSet coreEdges;
+        private int nodeVersion = -1;
+        private int edgeVersion = -1;
+        private boolean corenessStored;
 
         public Graph filter(Graph graph) {
-            int removed = 0;
-            do {
-                removed = 0;
-                for (Node n : graph.getNodes().toArray()) {
-                    if (graph.getDegree(n) < k) {
-                        graph.removeNode(n);
-                        removed++;
-                    }
+            Node[] nodes = graph.getNodes().toArray();
+            if (!isCoreValid(graph, nodes)) {
+                computeCores(graph, nodes);
+            }
+            if (storeCoreness && !corenessStored) {
+                storeCores(graph, nodes);
+            }
+            for (Node n : nodes) {
+                if (cores[n.getId()] < k) {
+                    graph.removeNode(n);
                 }
-            } while (removed > 0);
+            }
             return graph;
         }
 
+        private boolean isCoreValid(Graph graph, Node[] nodes) {
+            HierarchicalGraph mainGraph = graph.getGraphModel().getHierarchicalGraph();
+            int mainNodeVersion = mainGraph.getNodeVersion();
+            int mainEdgeVersion = mainGraph.getEdgeVersion();
+            BitSet nodeIds = new BitSet();
+            for (Node n : nodes) {
+                nodeIds.set(n.getId());
+            }
+            BitSet edgeIds = new BitSet();
+            for (Edge e : graph.getEdges()) {
+                edgeIds.set(e.getId());
+            }
+            boolean valid = cores != null
+                    && nodeVersion == mainNodeVersion && edgeVersion == mainEdgeVersion
+                    && nodeIds.equals(coreNodes) && edgeIds.equals(coreEdges);
+            coreNodes = nodeIds;
+            coreEdges = edgeIds;
+            nodeVersion = mainNodeVersion;
+            edgeVersion = mainEdgeVersion;
+            return valid;
+        }
+
+        /**
+         * Batagelj-Zaversnik core decomposition: nodes are bucket-sorted by
+         * degree and peeled in increasing order, each edge being visited once.
+         * The degree left to a node when it is peeled is its core number.
+         */
+        private void computeCores(Graph graph, Node[] nodes) {
+            int nodeCount = nodes.length;
+            int maxId = coreNodes.length();
+            int[] index = new int[maxId];
+            for (int i = 0; i < nodeCount; i++) {
+                index[nodes[i].getId()] = i;
+            }
+
+            //Adjacency, self-loops only count in the degree as they go with their node
+            int[] degree = new int[nodeCount];
+            int[] offsets = new int[nodeCount + 1];
+            int[] neighbors = new int[16];
+            int size = 0;
+            int maxDegree = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                Node n = nodes[i];
+                degree[i] = graph.getDegree(n);
+                maxDegree = Math.max(maxDegree, degree[i]);
+                offsets[i] = size;
+                for (Edge e : graph.getEdges(n)) {
+                    Node opposite = graph.getOpposite(n, e);
+                    if (opposite != n) {
+                        if (size == neighbors.length) {
+                            int[] newNeighbors = new int[size * 2];
+                            System.arraycopy(neighbors, 0, newNeighbors, 0, size);
+                            neighbors = newNeighbors;
+                        }
+                        neighbors[size++] = index[opposite.getId()];
+                    }
+                }
+            }
+            offsets[nodeCount] = size;
+
+            //Bucket sort by degree
+            int[] bins = new int[maxDegree + 1];
+            for (int i = 0; i < nodeCount; i++) {
+                bins[degree[i]]++;
+            }
+            int start = 0;
+            for (int d = 0; d <= maxDegree; d++) {
+                int count = bins[d];
+                bins[d] = start;
+                start += count;
+            }
+            int[] positions = new int[nodeCount];
+            int[] sorted = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                positions[i] = bins[degree[i]];
+                sorted[positions[i]] = i;
+                bins[degree[i]]++;
+            }
+            for (int d = maxDegree; d > 0; d--) {
+                bins[d] = bins[d - 1];
+            }
+            bins[0] = 0;
+
+            //Peel
+            for (int i = 0; i < nodeCount; i++) {
+                int v = sorted[i];
+                for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                    int u = neighbors[j];
+                    if (degree[u] > degree[v]) {
+                        int du = degree[u];
+                        int pu = positions[u];
+                        int pw = bins[du];
+                        int w = sorted[pw];
+                        if (u != w) {
+                            positions[u] = pw;
+                            sorted[pu] = w;
+                            positions[w] = pu;
+                            sorted[pw] = u;
+                        }
+                        bins[du]++;
+                        degree[u]--;
+                    }
+                }
+            }
+
+            cores = new int[maxId];
+            for (int i = 0; i < nodeCount; i++) {
+                cores[nodes[i].getId()] = degree[i];
+            }
+            corenessStored = false;
+        }
+
+        /**
+         * Writes the core numbers in the coreness column, during the filter
+         * pass. The column is COMPUTED so setting its values fires no attribute
+         * event, and the ADD_COLUMN event of its creation is ignored by the
+         * FilterCache and SortedIndex listeners: storing doesn't invalidate
+         * cached results nor queue index changes. Being COMPUTED, the column
+         * can't be indexed by range filters either.
+         */
+        private void storeCores(Graph graph, Node[] nodes) {
+            AttributeController attributeController = Lookup.getDefault().lookup(AttributeController.class);
+            if (attributeController == null) {
+                return;
+            }
+            AttributeModel attributeModel = attributeController.getModel(graph.getGraphModel().getWorkspace());
+            if (attributeModel == null) {
+                return;
+            }
+            AttributeTable nodeTable = attributeModel.getNodeTable();
+            AttributeColumn corenessCol = nodeTable.getColumn(CORENESS);
+            if (corenessCol == null) {
+                corenessCol = nodeTable.addColumn(CORENESS, NbBundle.getMessage(KCoreBuilder.class, "KCoreBuilder.nodecolumn.Coreness"), AttributeType.INT, AttributeOrigin.COMPUTED, 0);
+            }
+            for (Node n : nodes) {
+                n.getNodeData().getAttributes().setValue(corenessCol.getIndex(), cores[n.getId()]);
+            }
+            corenessStored = true;
+        }
+
         public String getName() {
             return NbBundle.getMessage(KCoreBuilder.class, "KCoreBuilder.name");
         }
@@ -122,7 +282,8 @@ public class KCoreBuilder implements FilterBuilder {
                 filterProperties = new FilterProperty[0];
                 try {
                     filterProperties = new FilterProperty[]{
-                        FilterProperty.createProperty(this, Integer.class, "k"),};
+                        FilterProperty.createProperty(this, Integer.class, "k"),
+                        FilterProperty.createProperty(this, Boolean.class, "storeCoreness")};
                 } catch (Exception ex) {
                     Exceptions.printStackTrace(ex);
                 }
@@ -137,5 +298,13 @@ public class KCoreBuilder implements FilterBuilder {
         public void setK(Integer k) {
             this.k = k;
         }
+
+        public boolean isStoreCoreness() {
+            return storeCoreness;
+        }
+
+        public void setStoreCoreness(boolean storeCoreness) {
+            this.storeCoreness = storeCoreness;
+        }
     }
 }
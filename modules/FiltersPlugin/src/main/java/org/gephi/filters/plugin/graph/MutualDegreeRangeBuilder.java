@@ -48,6 +48,7 @@ import javax.swing.JPanel;
 import org.gephi.filters.api.FilterLibrary;
 import org.gephi.filters.api.Range;
 import org.gephi.filters.plugin.AbstractFilter;
+import org.gephi.filters.plugin.SortedIndex;
 import org.gephi.filters.spi.*;
 import org.gephi.graph.api.*;
 import org.openide.util.Lookup;
@@ -92,9 +93,17 @@ public class MutualDegreeRangeBuilder implements FilterBuilder {
     public void destroy(Filter filter) {
     }
 
-    public static class MutualDegreeRangeFilter extends AbstractFilter implements RangeFilter, NodeFilter {
+    public static class MutualDegreeRangeFilter extends AbstractFilter implements RangeFilter, NodeFilter, ThreadSafeFilter {
 
+        private static final SortedIndex.NodeValues MUTUAL_DEGREE = new SortedIndex.NodeValues() {
+
+            public Number getValue(Graph graph, Node node) {
+                return ((HierarchicalDirectedGraph) graph).getMutualDegree(node);
+            }
+        };
         private Range range;
+        private SortedIndex index;
+        private SortedIndex.Selection selection;
 
         public MutualDegreeRangeFilter() {
             super(NbBundle.getMessage(MutualDegreeRangeFilter.class, "MutualDegreeRangeBuilder.name"));
@@ -107,10 +116,15 @@ public class MutualDegreeRangeBuilder implements FilterBuilder {
             if (graph.getNodeCount() == 0 || !(graph instanceof DirectedGraph)) {
                 return false;
             }
+            index = SortedIndex.getNodeIndex(MutualDegreeRangeFilter.class, graph, MUTUAL_DEGREE);
+            selection = index != null && range != null ? index.select(range, selection) : null;
             return true;
         }
 
         public boolean evaluate(Graph graph, Node node) {
+            if (selection != null) {
+                return selection.contains(node.getId());
+            }
             int degree = ((HierarchicalDirectedGraph) graph).getMutualDegree(node);
             return range.isInRange(degree);
         }
@@ -119,6 +133,10 @@ public class MutualDegreeRangeBuilder implements FilterBuilder {
         }
 
         public Number[] getValues(Graph graph) {
+            SortedIndex degreeIndex = SortedIndex.getNodeIndex(MutualDegreeRangeFilter.class, graph, MUTUAL_DEGREE);
+            if (degreeIndex != null) {
+                return degreeIndex.getValues();
+            }
             HierarchicalDirectedGraph hgraph = (HierarchicalDirectedGraph) graph;
             List<Integer> values = new ArrayList<Integer>(((HierarchicalGraph) graph).getNodeCount());
             for (Node n : hgraph.getNodes()) {
@@ -137,6 +155,7 @@ public class MutualDegreeRangeBuilder implements FilterBuilder {
         }
 
         public void setRange(Range range) {
+            //The selection is updated in init(), never while a query evaluates it
             this.range = range;
         }
     }
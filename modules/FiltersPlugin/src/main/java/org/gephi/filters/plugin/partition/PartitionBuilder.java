@@ -56,6 +56,7 @@ import org.gephi.filters.spi.Filter;
 import org.gephi.filters.spi.FilterBuilder;
 import org.gephi.filters.spi.FilterProperty;
 import org.gephi.filters.spi.NodeFilter;
+import org.gephi.filters.spi.ThreadSafeFilter;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphController;
@@ -159,14 +160,14 @@ public class PartitionBuilder implements CategoryBuilder {
         }
     }
 
-    public static class NodePartitionFilter extends PartitionFilter implements NodeFilter {
+    public static class NodePartitionFilter extends PartitionFilter implements NodeFilter, ThreadSafeFilter {
 
         public NodePartitionFilter(Partition partition) {
             super(partition);
         }
     }
 
-    public static class EdgePartitionFilter extends PartitionFilter implements EdgeFilter {
+    public static class EdgePartitionFilter extends PartitionFilter implements EdgeFilter, ThreadSafeFilter {
 
         public EdgePartitionFilter(Partition partition) {
             super(partition);
@@ -0,0 +1,128 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.filters.plugin.graph;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Node;
+
+/**
+ * Proxies of the graph API for tests, which answer the few methods the
+ * filters call and throw <code>UnsupportedOperationException</code> for the
+ * others.
+ */
+final class GraphProxies {
+
+    private GraphProxies() {
+    }
+
+    /**
+     * Node which id is <code>id</code>, only equal to itself.
+     */
+    static Node newNode(final int id) {
+        return newProxy(Node.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getId") || name.equals("hashCode")) {
+                    return id;
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    /**
+     * Edge which id is <code>id</code>, only equal to itself.
+     */
+    static Edge newEdge(final int id, final Node source, final Node target) {
+        return newProxy(Edge.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getId") || name.equals("hashCode")) {
+                    return id;
+                } else if (name.equals("getSource")) {
+                    return source;
+                } else if (name.equals("getTarget")) {
+                    return target;
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+
+    /**
+     * <code>NodeIterable</code> or <code>EdgeIterable</code> over a copy of
+     * <code>list</code>, so elements can be removed while iterating.
+     */
+    static <T> T newIterable(Class<T> type, List<?> list) {
+        final List<?> copy = new ArrayList<Object>(list);
+        return newProxy(type, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("iterator")) {
+                    return copy.iterator();
+                } else if (method.getName().equals("toArray")) {
+                    Object array = Array.newInstance(method.getReturnType().getComponentType(), copy.size());
+                    for (int i = 0; i < copy.size(); i++) {
+                        Array.set(array, i, copy.get(i));
+                    }
+                    return array;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(GraphProxies.class.getClassLoader(), new Class[]{type}, handler));
+    }
+}
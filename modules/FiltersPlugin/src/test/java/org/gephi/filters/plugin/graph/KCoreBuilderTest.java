@@ -0,0 +1,259 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.filters.plugin.graph;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.gephi.filters.plugin.graph.KCoreBuilder.KCoreFilter;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.HierarchicalGraph;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.NodeIterable;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Core decomposition of the K-core filter, compared with peeling the nodes
+ * which degree is lower than k until none is left. Graphs have self-loops,
+ * counted twice in the degree, and multi-edges.
+ */
+public class KCoreBuilderTest {
+
+    @Test
+    public void testCores() {
+        //Triangle 0-1-2, node 3 linked twice to 0, node 4 linked to 2 with a self-loop,
+        //node 5 with only a self-loop, isolated node 6 and the 4-clique 7-8-9-10
+        TestGraph graph = new TestGraph(11);
+        graph.addEdge(0, 1);
+        graph.addEdge(1, 2);
+        graph.addEdge(2, 0);
+        graph.addEdge(3, 0);
+        graph.addEdge(3, 0);
+        graph.addEdge(4, 2);
+        graph.addEdge(4, 4);
+        graph.addEdge(5, 5);
+        for (int i = 7; i < 11; i++) {
+            for (int j = i + 1; j < 11; j++) {
+                graph.addEdge(i, j);
+            }
+        }
+
+        KCoreFilter filter = new KCoreFilter();
+        assertEquals(ids(0, 1, 2, 3, 4, 5, 7, 8, 9, 10), filter(filter, graph, 1));
+        assertEquals(ids(0, 1, 2, 3, 4, 5, 7, 8, 9, 10), filter(filter, graph, 2));
+        assertEquals(ids(7, 8, 9, 10), filter(filter, graph, 3));
+        assertEquals(ids(), filter(filter, graph, 4));
+    }
+
+    @Test
+    public void testPeeling() {
+        Random random = new Random(42);
+        for (int t = 0; t < 20; t++) {
+            int nodeCount = 20 + random.nextInt(200);
+            TestGraph graph = new TestGraph(nodeCount);
+            int edgeCount = random.nextInt(nodeCount * 4);
+            for (int i = 0; i < edgeCount; i++) {
+                graph.addEdge(random.nextInt(nodeCount), random.nextInt(nodeCount));
+            }
+            KCoreFilter filter = new KCoreFilter();
+            for (int k = 1; k < 12; k++) {
+                assertEquals(peel(graph.copy(), k), filter(filter, graph, k));
+            }
+        }
+    }
+
+    @Test
+    public void testGraphChange() {
+        TestGraph graph = new TestGraph(4);
+        graph.addEdge(0, 1);
+        graph.addEdge(1, 2);
+        graph.addEdge(2, 3);
+        KCoreFilter filter = new KCoreFilter();
+        assertEquals(ids(), filter(filter, graph, 2));
+
+        //Closing the cycle changes the main graph version, cores are computed again
+        graph.addEdge(3, 0);
+        assertEquals(ids(0, 1, 2, 3), filter(filter, graph, 2));
+    }
+
+    private static Set<Integer> filter(KCoreFilter filter, TestGraph graph, int k) {
+        TestGraph copy = graph.copy();
+        filter.setK(k);
+        filter.filter(copy.getGraph());
+        return copy.getNodeIds();
+    }
+
+    /* The previous implementation of the filter */
+    private static Set<Integer> peel(TestGraph graph, int k) {
+        boolean removed = true;
+        while (removed) {
+            removed = false;
+            for (int n : new ArrayList<Integer>(graph.nodes)) {
+                if (graph.getDegree(n) < k) {
+                    graph.removeNode(n);
+                    removed = true;
+                }
+            }
+        }
+        return graph.getNodeIds();
+    }
+
+    private static Set<Integer> ids(int... ids) {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Graph which nodes are ids and edges pairs of ids, seen through a
+     * <code>HierarchicalGraph</code> proxy. Copies share the main graph, which
+     * version changes when an edge is added.
+     */
+    private static class TestGraph {
+
+        private final TestGraph main;
+        private final Node[] allNodes;
+        private final List<Integer> nodes = new ArrayList<Integer>();
+        private final List<int[]> edges;
+        private int version;
+
+        public TestGraph(int nodeCount) {
+            this.main = this;
+            this.allNodes = new Node[nodeCount];
+            this.edges = new ArrayList<int[]>();
+            for (int i = 0; i < nodeCount; i++) {
+                allNodes[i] = GraphProxies.newNode(i);
+                nodes.add(i);
+            }
+        }
+
+        private TestGraph(TestGraph main) {
+            this.main = main;
+            this.allNodes = main.allNodes;
+            this.nodes.addAll(main.nodes);
+            this.edges = new ArrayList<int[]>(main.edges);
+        }
+
+        public TestGraph copy() {
+            return new TestGraph(main);
+        }
+
+        public void addEdge(int source, int target) {
+            edges.add(new int[]{source, target, edges.size()});
+            version++;
+        }
+
+        public void removeNode(int node) {
+            nodes.remove(Integer.valueOf(node));
+            for (int i = edges.size() - 1; i >= 0; i--) {
+                if (edges.get(i)[0] == node || edges.get(i)[1] == node) {
+                    edges.remove(i);
+                }
+            }
+        }
+
+        public int getDegree(int node) {
+            int degree = 0;
+            for (int[] edge : edges) {
+                degree += (edge[0] == node ? 1 : 0) + (edge[1] == node ? 1 : 0);
+            }
+            return degree;
+        }
+
+        public Set<Integer> getNodeIds() {
+            return new HashSet<Integer>(nodes);
+        }
+
+        public HierarchicalGraph getGraph() {
+            return GraphProxies.newProxy(HierarchicalGraph.class, new InvocationHandler() {
+
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    String name = method.getName();
+                    if (name.equals("getNodes")) {
+                        List<Node> list = new ArrayList<Node>();
+                        for (int n : nodes) {
+                            list.add(allNodes[n]);
+                        }
+                        return GraphProxies.newIterable(NodeIterable.class, list);
+                    } else if (name.equals("getEdges")) {
+                        List<Edge> list = new ArrayList<Edge>();
+                        for (int[] edge : edges) {
+                            if (args == null || allNodes[edge[0]] == args[0] || allNodes[edge[1]] == args[0]) {
+                                list.add(GraphProxies.newEdge(edge[2], allNodes[edge[0]], allNodes[edge[1]]));
+                            }
+                        }
+                        return GraphProxies.newIterable(EdgeIterable.class, list);
+                    } else if (name.equals("getOpposite")) {
+                        Edge edge = (Edge) args[1];
+                        return edge.getSource() == args[0] ? edge.getTarget() : edge.getSource();
+                    } else if (name.equals("getDegree")) {
+                        return getDegree(((Node) args[0]).getId());
+                    } else if (name.equals("removeNode")) {
+                        removeNode(((Node) args[0]).getId());
+                        return true;
+                    } else if (name.equals("getGraphModel")) {
+                        return GraphProxies.newProxy(GraphModel.class, new InvocationHandler() {
+
+                            public Object invoke(Object proxy, Method method, Object[] args) {
+                                if (method.getName().equals("getHierarchicalGraph")) {
+                                    return main.getGraph();
+                                }
+                                throw new UnsupportedOperationException(method.getName());
+                            }
+                        });
+                    } else if (name.equals("getNodeVersion") || name.equals("getEdgeVersion")) {
+                        return version;
+                    }
+                    throw new UnsupportedOperationException(name);
+                }
+            });
+        }
+    }
+}
@@ -42,9 +42,13 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.layout;
 
 import org.gephi.graph.api.GraphController;
+import org.gephi.layout.spi.BufferedLayout;
 import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.ProfiledLayout;
 import org.gephi.layout.api.LayoutController;
 import org.gephi.layout.api.LayoutModel;
+import org.gephi.layout.api.LayoutProfiler;
+import org.gephi.layout.api.PositionBuffer;
 import org.gephi.project.api.ProjectController;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.ProgressTicket;
@@ -126,7 +130,7 @@ public class LayoutControllerImpl implements LayoutController {
     @Override
     public void executeLayout() {
         if (model.getSelectedLayout() != null) {
-            layoutRun = new LayoutRun(model.getSelectedLayout());
+            layoutRun = new LayoutRun(model.getSelectedLayout(), model.getPositionBuffer(), model.getProfiler());
             model.getExecutor().execute(layoutRun, layoutRun);
             model.setRunning(true);
         }
@@ -135,7 +139,7 @@ public class LayoutControllerImpl implements LayoutController {
     @Override
     public void executeLayout(int numIterations) {
         if (model.getSelectedLayout() != null) {
-            layoutRun = new LayoutRun(model.getSelectedLayout(), numIterations);
+            layoutRun = new LayoutRun(model.getSelectedLayout(), model.getPositionBuffer(), model.getProfiler(), numIterations);
             model.getExecutor().execute(layoutRun, layoutRun);
             model.setRunning(true);
         }
@@ -159,17 +163,23 @@ public class LayoutControllerImpl implements LayoutController {
     private static class LayoutRun implements LongTask, Runnable {
 
         private final Layout layout;
+        private final PositionBuffer positionBuffer;
+        private final LayoutProfiler profiler;
         private boolean stopRun = false;
         private ProgressTicket progressTicket;
         private final Integer iterations;
 
-        public LayoutRun(Layout layout) {
+        public LayoutRun(Layout layout, PositionBuffer positionBuffer, LayoutProfiler profiler) {
             this.layout = layout;
+            this.positionBuffer = positionBuffer;
+            this.profiler = profiler;
             this.iterations = null;
         }
 
-        public LayoutRun(Layout layout, int numIterations) {
+        public LayoutRun(Layout layout, PositionBuffer positionBuffer, LayoutProfiler profiler, int numIterations) {
             this.layout = layout;
+            this.positionBuffer = positionBuffer;
+            this.profiler = profiler;
             this.iterations = numIterations;
         }
 
@@ -177,16 +187,32 @@ public class LayoutControllerImpl implements LayoutController {
         public void run() {
             Progress.setDisplayName(progressTicket, layout.getBuilder().getName());
             Progress.start(progressTicket);
+            if (layout instanceof BufferedLayout) {
+                ((BufferedLayout) layout).setPositionBuffer(positionBuffer);
+            }
+            if (layout instanceof ProfiledLayout) {
+                ((ProfiledLayout) layout).setProfiler(profiler);
+            }
+            profiler.reset();
             layout.initAlgo();
             long i = 0;
             while (layout.canAlgo() && !stopRun) {
+                profiler.startIteration();
                 layout.goAlgo();
+                profiler.endIteration();
                 i++;
                 if (iterations != null && iterations.longValue() == i) {
                     break;
                 }
             }
             layout.endAlgo();
+            if (layout instanceof BufferedLayout) {
+                ((BufferedLayout) layout).setPositionBuffer(null);
+                positionBuffer.clear();
+            }
+            if (layout instanceof ProfiledLayout) {
+                ((ProfiledLayout) layout).setProfiler(null);
+            }
             if (i > 1) {
                 Progress.finish(progressTicket, NbBundle.getMessage(LayoutControllerImpl.class, "LayoutRun.end", layout.getBuilder().getName(), i));
             } else {
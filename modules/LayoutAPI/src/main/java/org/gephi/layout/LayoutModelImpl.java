@@ -56,6 +56,8 @@ import javax.xml.stream.XMLStreamWriter;
 import javax.xml.stream.events.XMLEvent;
 import org.gephi.graph.api.GraphController;
 import org.gephi.layout.api.LayoutModel;
+import org.gephi.layout.api.LayoutProfiler;
+import org.gephi.layout.api.PositionBuffer;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -78,12 +80,16 @@ public class LayoutModelImpl implements LayoutModel {
     private final Map<LayoutPropertyKey, Object> savedProperties;
     private Layout selectedLayout;
     private LayoutBuilder selectedBuilder;
+    private final PositionBuffer positionBuffer;
+    private final LayoutProfiler profiler;
     //Util
     private final LongTaskExecutor executor;
 
     public LayoutModelImpl() {
         listeners = new ArrayList<PropertyChangeListener>();
         savedProperties = new HashMap<LayoutPropertyKey, Object>();
+        positionBuffer = new PositionBuffer();
+        profiler = new LayoutProfiler();
 
         executor = new LongTaskExecutor(true, "layout", 5);
         executor.setLongTaskListener(new LongTaskListener() {
@@ -145,6 +151,16 @@ public class LayoutModelImpl implements LayoutModel {
         return executor.isRunning();
     }
 
+    @Override
+    public PositionBuffer getPositionBuffer() {
+        return positionBuffer;
+    }
+
+    @Override
+    public LayoutProfiler getProfiler() {
+        return profiler;
+    }
+
     protected void setRunning(boolean running) {
         firePropertyChangeEvent(RUNNING, !running, running);
     }
@@ -0,0 +1,131 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Timings and counters of one layout iteration, recorded by a
+ * {@link LayoutProfiler}.
+ * <p>
+ * The iteration time is always there; phase times and counters are only
+ * there for layouts which report them, see {@link LayoutProfiler} for the
+ * standard names. Times are in milliseconds.
+ */
+public final class LayoutMetrics {
+
+    private final long iteration;
+    private final long duration;
+    private final Map<String, Long> phaseTimes;
+    private final Map<String, Long> counters;
+
+    LayoutMetrics(long iteration, long duration, Map<String, Long> phaseTimes, Map<String, Long> counters) {
+        this.iteration = iteration;
+        this.duration = duration;
+        this.phaseTimes = Collections.unmodifiableMap(phaseTimes);
+        this.counters = Collections.unmodifiableMap(counters);
+    }
+
+    /**
+     * Returns the number of the iteration, starting at 1 when the layout
+     * starts.
+     */
+    public long getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Returns the time the whole iteration took, in milliseconds.
+     */
+    public double getIterationTime() {
+        return duration / 1e6;
+    }
+
+    /**
+     * Returns the phases timed during the iteration, in the order they ran.
+     */
+    public Set<String> getPhases() {
+        return phaseTimes.keySet();
+    }
+
+    /**
+     * Returns the time spent in <code>phase</code> during the iteration, in
+     * milliseconds, or zero if the phase didn't run.
+     * @param phase     the phase name
+     */
+    public double getPhaseTime(String phase) {
+        Long time = phaseTimes.get(phase);
+        return time != null ? time / 1e6 : 0.0;
+    }
+
+    /**
+     * Returns the counters incremented during the iteration.
+     */
+    public Set<String> getCounters() {
+        return counters.keySet();
+    }
+
+    /**
+     * Returns the value of <code>counter</code> for the iteration, or zero if
+     * it wasn't incremented.
+     * @param counter   the counter name
+     */
+    public long getCounter(String counter) {
+        Long count = counters.get(counter);
+        return count != null ? count : 0L;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Iteration ").append(iteration).append(": ");
+        builder.append(String.format("%.3f", getIterationTime())).append(" ms");
+        for (String phase : phaseTimes.keySet()) {
+            builder.append(", ").append(phase).append('=').append(String.format("%.3f", getPhaseTime(phase)));
+        }
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            builder.append(", ").append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+}
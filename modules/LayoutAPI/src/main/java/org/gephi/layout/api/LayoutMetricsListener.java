@@ -39,15 +39,22 @@ Contributor(s):
 
 Portions Copyrighted 2011 Gephi Consortium.
 */
-package org.gephi.layout.plugin.labelAdjust;
-
-import org.gephi.layout.plugin.ForceVectorNodeLayoutData;
+package org.gephi.layout.api;
 
 /**
+ * Listener notified by a {@link LayoutProfiler} at the end of each layout
+ * iteration.
+ * <p>
+ * Listeners are called from the layout thread, between two iterations, and
+ * should therefore return quickly.
  *
  * @author Mathieu Bastian
  */
-public class LabelAdjustLayoutData extends ForceVectorNodeLayoutData {
+public interface LayoutMetricsListener {
 
-    int labelAdjustQuadNode;
+    /**
+     * Called when an iteration is finished.
+     * @param metrics   the metrics of the iteration
+     */
+    public void iterationPerformed(LayoutMetrics metrics);
 }
@@ -41,7 +41,9 @@ Portions Copyrighted 2011 Gephi Consortium.
 */
 package org.gephi.layout.api;
 
+import org.gephi.layout.spi.BufferedLayout;
 import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.ProfiledLayout;
 import org.gephi.layout.spi.LayoutBuilder;
 import java.beans.PropertyChangeListener;
 import org.gephi.project.api.Workspace;
@@ -90,6 +92,25 @@ public interface LayoutModel {
      */
     public boolean isRunning();
 
+    /**
+     * Returns the buffer where running layouts publish their positions, if
+     * they implement {@link BufferedLayout}. Viewers can read consistent
+     * positions there without locking the graph. The buffer is cleared when
+     * the layout ends, positions are then on the graph.
+     * @return the position buffer of this workspace
+     */
+    public PositionBuffer getPositionBuffer();
+
+    /**
+     * Returns the profiler of the layouts run in this workspace. It keeps the
+     * duration of the last iterations, and the time of each phase for layouts
+     * implementing {@link ProfiledLayout}. Add a
+     * {@link LayoutMetricsListener} to it to receive the metrics of each
+     * iteration.
+     * @return the layout profiler of this workspace
+     */
+    public LayoutProfiler getProfiler();
+
     /**
      * Add a property change listener for this model. The <code>listener</code>
      * is notified when layout is selected and when running flag change.
@@ -0,0 +1,238 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.api;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.gephi.layout.spi.ProfiledLayout;
+
+/**
+ * Records the duration of layout iterations and, for layouts implementing
+ * {@link ProfiledLayout}, the time spent in each phase of an iteration and
+ * counters such as the number of nodes visited.
+ * <p>
+ * The runner of the layout calls {@link #startIteration()} and
+ * {@link #endIteration()} around <code>goAlgo()</code>. In between, the layout
+ * calls {@link #startPhase(String)} when a phase begins, which also ends the
+ * previous one, and {@link #addCount(String, long)}. The metrics of each
+ * iteration are sent to listeners and the iteration times are kept in a
+ * rolling history.
+ * <p>
+ * Phases must be started from the layout thread; counters can be added from
+ * any thread, preferably once per task.
+ *
+ * @see LayoutModel#getProfiler()
+ */
+public class LayoutProfiler {
+
+    //Phases
+    public static final String TREE_BUILD = "treeBuild";
+    public static final String REPULSION = "repulsion";
+    public static final String ATTRACTION = "attraction";
+    public static final String GRAVITY = "gravity";
+    public static final String POSITION_UPDATE = "positionUpdate";
+    //Counters
+    /**
+     * Number of nodes, or regions of nodes, a force was computed from.
+     */
+    public static final String NODES_VISITED = "nodesVisited";
+    /**
+     * Number of regions whose nodes were approximated by their center of
+     * mass, or of node pairs ignored.
+     */
+    public static final String APPROXIMATIONS = "approximations";
+    private final List<LayoutMetricsListener> listeners = new CopyOnWriteArrayList<LayoutMetricsListener>();
+    //History, in milliseconds
+    private final double[] history;
+    private int historyStart;
+    private int historySize;
+    private LayoutMetrics lastMetrics;
+    //Current iteration
+    private long iteration;
+    private long iterationStart;
+    private String phase;
+    private long phaseStart;
+    private Map<String, Long> phaseTimes = new LinkedHashMap<String, Long>();
+    private Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+    public LayoutProfiler() {
+        this(100);
+    }
+
+    /**
+     * @param historyCapacity the number of iterations kept in the history
+     */
+    public LayoutProfiler(int historyCapacity) {
+        history = new double[Math.max(1, historyCapacity)];
+    }
+
+    /**
+     * Starts timing an iteration.
+     */
+    public void startIteration() {
+        phase = null;
+        phaseTimes = new LinkedHashMap<String, Long>();
+        synchronized (this) {
+            counters = new LinkedHashMap<String, Long>();
+        }
+        iterationStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the current phase, if any, and starts timing <code>phase</code>.
+     * A phase can run several times in an iteration, times are summed.
+     * @param phase     the phase name
+     */
+    public void startPhase(String phase) {
+        long now = System.nanoTime();
+        endPhase(now);
+        this.phase = phase;
+        this.phaseStart = now;
+    }
+
+    /**
+     * Ends the current phase, if any.
+     */
+    public void endPhase() {
+        endPhase(System.nanoTime());
+    }
+
+    /**
+     * Adds <code>count</code> to <code>counter</code> for the current
+     * iteration.
+     * @param counter   the counter name
+     * @param count     the value to add
+     */
+    public synchronized void addCount(String counter, long count) {
+        Long value = counters.get(counter);
+        counters.put(counter, value != null ? value + count : count);
+    }
+
+    /**
+     * Ends the iteration, adds its time to the history and notifies listeners.
+     * @return the metrics of the iteration
+     */
+    public LayoutMetrics endIteration() {
+        long now = System.nanoTime();
+        endPhase(now);
+        LayoutMetrics metrics;
+        synchronized (this) {
+            metrics = new LayoutMetrics(++iteration, now - iterationStart, phaseTimes, counters);
+            if (historySize < history.length) {
+                history[(historyStart + historySize++) % history.length] = metrics.getIterationTime();
+            } else {
+                history[historyStart] = metrics.getIterationTime();
+                historyStart = (historyStart + 1) % history.length;
+            }
+            lastMetrics = metrics;
+        }
+        for (LayoutMetricsListener listener : listeners) {
+            listener.iterationPerformed(metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Clears the history and restarts iteration numbers, for instance when a
+     * layout starts.
+     */
+    public synchronized void reset() {
+        iteration = 0;
+        historyStart = 0;
+        historySize = 0;
+        lastMetrics = null;
+    }
+
+    /**
+     * Returns the duration of the last iterations in milliseconds, oldest
+     * first.
+     */
+    public synchronized double[] getHistory() {
+        double[] result = new double[historySize];
+        for (int i = 0; i < historySize; i++) {
+            result[i] = history[(historyStart + i) % history.length];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the average duration of the iterations in the history, in
+     * milliseconds, or zero if the history is empty.
+     */
+    public synchronized double getAverageIterationTime() {
+        if (historySize == 0) {
+            return 0.0;
+        }
+        double sum = 0;
+        for (int i = 0; i < historySize; i++) {
+            sum += history[(historyStart + i) % history.length];
+        }
+        return sum / historySize;
+    }
+
+    /**
+     * Returns the metrics of the last iteration, or <code>null</code> if no
+     * iteration ended since the last reset.
+     */
+    public synchronized LayoutMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    public void addListener(LayoutMetricsListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(LayoutMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void endPhase(long now) {
+        if (phase != null) {
+            Long time = phaseTimes.get(phase);
+            phaseTimes.put(phase, (time != null ? time : 0L) + now - phaseStart);
+            phase = null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.api;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.gephi.graph.api.Node;
+
+/**
+ * Double buffer of node positions between a layout and its viewers.
+ * <p>
+ * The layout thread writes the positions of an iteration in a back buffer,
+ * which is swapped atomically with the front buffer by
+ * {@link #publish(Node[], float[], float[], int)}. Viewers get the front
+ * buffer with {@link #getSnapshot()}, at their own rate and without taking
+ * the graph lock, and never see positions from two different iterations.
+ * <p>
+ * The former front buffer is reused as the next back buffer, unless a viewer
+ * got it meanwhile, in which case it is left to the viewer and a new buffer is
+ * allocated. Publishing is therefore allocation-free when viewers sample less
+ * often than the layout iterates.
+ * <p>
+ * There must be only one writer at a time; there can be any number of
+ * readers.
+ *
+ * @see LayoutModel#getPositionBuffer()
+ */
+public class PositionBuffer {
+
+    private final AtomicReference<PositionSnapshot> front = new AtomicReference<PositionSnapshot>();
+    private PositionSnapshot back;
+    private long version;
+
+    /**
+     * Publishes the positions of the first <code>nodeCount</code> nodes, which
+     * are copied. Must be called from the layout thread only.
+     *
+     * @param nodes the nodes, in the order of <code>x</code> and
+     * <code>y</code>
+     * @param x the x positions
+     * @param y the y positions
+     * @param nodeCount the number of nodes to publish
+     */
+    public void publish(Node[] nodes, float[] x, float[] y, int nodeCount) {
+        PositionSnapshot snapshot = back;
+        if (snapshot == null || snapshot.x.length < nodeCount) {
+            snapshot = new PositionSnapshot(nodeCount);
+        }
+        System.arraycopy(nodes, 0, snapshot.nodes, 0, nodeCount);
+        System.arraycopy(x, 0, snapshot.x, 0, nodeCount);
+        System.arraycopy(y, 0, snapshot.y, 0, nodeCount);
+        snapshot.nodeCount = nodeCount;
+        snapshot.version = ++version;
+        snapshot.state.set(PositionSnapshot.PUBLISHED);
+
+        PositionSnapshot old = front.getAndSet(snapshot);
+
+        //Reuse the former front buffer if no viewer got it
+        if (old != null && old.state.compareAndSet(PositionSnapshot.PUBLISHED, PositionSnapshot.RECYCLED)) {
+            back = old;
+        } else {
+            back = null;
+        }
+    }
+
+    /**
+     * Returns the last published positions, or <code>null</code> if nothing
+     * was published yet. The returned snapshot is immutable and can be kept.
+     */
+    public PositionSnapshot getSnapshot() {
+        while (true) {
+            PositionSnapshot snapshot = front.get();
+            if (snapshot == null) {
+                return null;
+            }
+            int state = snapshot.state.get();
+            if (state == PositionSnapshot.TAKEN
+                    || (state == PositionSnapshot.PUBLISHED && snapshot.state.compareAndSet(PositionSnapshot.PUBLISHED, PositionSnapshot.TAKEN))) {
+                return snapshot;
+            }
+            //The writer recycled it after a swap, the front buffer is newer
+        }
+    }
+
+    /**
+     * Drops the published positions, for instance when the layout ends.
+     */
+    public void clear() {
+        front.set(null);
+        back = null;
+    }
+}
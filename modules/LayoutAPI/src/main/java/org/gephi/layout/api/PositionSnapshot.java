@@ -0,0 +1,117 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gephi.graph.api.Node;
+
+/**
+ * Positions of the nodes at the end of a layout iteration, as published in a
+ * {@link PositionBuffer}. Once obtained from
+ * {@link PositionBuffer#getSnapshot()}, a snapshot never changes and is
+ * consistent: all positions come from the same iteration.
+ *
+ * @see PositionBuffer
+ */
+public final class PositionSnapshot {
+
+    static final int PUBLISHED = 0;
+    static final int TAKEN = 1;
+    static final int RECYCLED = 2;
+    //Recycling state, see PositionBuffer
+    final AtomicInteger state = new AtomicInteger(RECYCLED);
+    Node[] nodes;
+    float[] x;
+    float[] y;
+    int nodeCount;
+    long version;
+
+    PositionSnapshot(int capacity) {
+        nodes = new Node[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+    }
+
+    /**
+     * Returns the number of nodes in this snapshot.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the <code>index</code>-th node of this snapshot.
+     */
+    public Node getNode(int index) {
+        checkIndex(index);
+        return nodes[index];
+    }
+
+    /**
+     * Returns the x position of the <code>index</code>-th node.
+     */
+    public float getX(int index) {
+        checkIndex(index);
+        return x[index];
+    }
+
+    /**
+     * Returns the y position of the <code>index</code>-th node.
+     */
+    public float getY(int index) {
+        checkIndex(index);
+        return y[index];
+    }
+
+    /**
+     * Returns the publication number of this snapshot, which increases with
+     * each publication in the buffer.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= nodeCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", node count: " + nodeCount);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.spi;
+
+/**
+ * Layout algorithm running on a {@link LayoutWorkspace} rather than on the
+ * graph.
+ * <p>
+ * The kernel only reads and writes the workspace arrays, the
+ * <code>Layout</code> driving it is responsible for loading the workspace
+ * before {@link #initKernel(LayoutWorkspace)} and for synchronizing it with
+ * the graph, typically every few iterations and when the layout ends. If the
+ * workspace is loaded again, because the graph changed, the kernel is ended
+ * and initialized again.
+ *
+ * @see LayoutWorkspace
+ */
+public interface LayoutKernel {
+
+    /**
+     * Prepares the kernel to run on <code>workspace</code>, which is already
+     * loaded.
+     * @param workspace     the workspace the kernel is to be working on
+     */
+    public void initKernel(LayoutWorkspace workspace);
+
+    /**
+     * Runs one iteration of the algorithm on <code>workspace</code>.
+     * @param workspace     the workspace given to <code>initKernel()</code>
+     */
+    public void step(LayoutWorkspace workspace);
+
+    /**
+     * Releases what the kernel allocated in <code>initKernel()</code>.
+     * @param workspace     the workspace given to <code>initKernel()</code>
+     */
+    public void endKernel(LayoutWorkspace workspace);
+}
@@ -0,0 +1,341 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.spi;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.Node;
+import org.gephi.layout.api.PositionBuffer;
+
+/**
+ * Structure-of-arrays copy of a graph, on which a {@link LayoutKernel} runs.
+ * <p>
+ * Nodes are indices, from <code>0</code> to <code>getNodeCount() - 1</code>,
+ * and their data is stored in primitive arrays: position, force (or
+ * displacement) being accumulated, mass, size and whether the node is fixed.
+ * Edges are stored once, in compressed rows by source: the edges of node
+ * <code>i</code> are <code>[getEdgeStart()[i], getEdgeStart()[i + 1])</code>,
+ * with their target index and weight. Self-loops are not included.
+ * <p>
+ * The graph is read once by {@link #load(Graph)} and is not touched again
+ * until {@link #sync(Graph)}, which writes the positions back. Kernels can
+ * therefore iterate on the arrays without any lock or virtual call.
+ * <p>
+ * Arrays are reused across loads and only grow, so they may be longer than
+ * the node or edge count. A workspace can also be loaded directly from edge
+ * lists, for instance to hold the coarse levels of a multilevel algorithm.
+ *
+ * @see LayoutKernel
+ */
+public class LayoutWorkspace {
+
+    private Node[] nodes;
+    private int nodeCount;
+    //Versions of the graph when loaded
+    private int nodeVersion;
+    private int edgeVersion;
+    //Nodes
+    private float[] x;
+    private float[] y;
+    private float[] dx;
+    private float[] dy;
+    private float[] mass;
+    private float[] size;
+    private boolean[] fixed;
+    //Positions when last synced with the graph
+    private float[] syncedX;
+    private float[] syncedY;
+    //Edges
+    private int edgeCount;
+    private int[] edgeStart;
+    private int[] edgeTargets;
+    private float[] edgeWeights;
+
+    /**
+     * Copies the nodes and edges of <code>graph</code>. The mass of a node is
+     * <code>1 + degree</code>, forces are reset to zero.
+     * @param graph         the graph to copy, usually the visible graph
+     */
+    public void load(Graph graph) {
+        graph.readLock();
+        int graphNodeVersion = graph.getNodeVersion();
+        int graphEdgeVersion = graph.getEdgeVersion();
+        Node[] graphNodes = graph.getNodes().toArray();
+        ensureNodeCapacity(graphNodes.length);
+        Map<Node, Integer> indices = new HashMap<Node, Integer>(2 * graphNodes.length);
+        for (int i = 0; i < graphNodes.length; i++) {
+            Node n = graphNodes[i];
+            indices.put(n, i);
+            x[i] = n.x();
+            y[i] = n.y();
+            dx[i] = 0;
+            dy[i] = 0;
+            mass[i] = 1 + graph.getDegree(n);
+            size[i] = n.size();
+            fixed[i] = n.isFixed();
+            syncedX[i] = x[i];
+            syncedY[i] = y[i];
+        }
+
+        Edge[] graphEdges = graph.getEdges().toArray();
+        int[] sources = new int[graphEdges.length];
+        int[] targets = new int[graphEdges.length];
+        float[] weights = new float[graphEdges.length];
+        int count = 0;
+        for (Edge e : graphEdges) {
+            if (e.getSource() != e.getTarget()) {
+                sources[count] = indices.get(e.getSource());
+                targets[count] = indices.get(e.getTarget());
+                weights[count] = (float) e.getWeight();
+                count++;
+            }
+        }
+        graph.readUnlock();
+
+        nodes = graphNodes;
+        nodeCount = graphNodes.length;
+        nodeVersion = graphNodeVersion;
+        edgeVersion = graphEdgeVersion;
+        setEdges(count, sources, targets, weights);
+    }
+
+    /**
+     * Loads <code>nodeCount</code> nodes that don't belong to any graph, with
+     * the given edges. Positions and forces are zero, sizes one and the mass
+     * of a node is <code>1 + degree</code>.
+     * @param nodeCount     the number of nodes
+     * @param edgeCount     the number of edges
+     * @param sources       the source index of each edge
+     * @param targets       the target index of each edge
+     * @param weights       the weight of each edge, or <code>null</code> for
+     *                      weights of one
+     */
+    public void load(int nodeCount, int edgeCount, int[] sources, int[] targets, float[] weights) {
+        ensureNodeCapacity(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = 0;
+            y[i] = 0;
+            dx[i] = 0;
+            dy[i] = 0;
+            mass[i] = 1;
+            size[i] = 1;
+            fixed[i] = false;
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            mass[sources[e]]++;
+            mass[targets[e]]++;
+        }
+        nodes = null;
+        this.nodeCount = nodeCount;
+        setEdges(edgeCount, sources, targets, weights);
+    }
+
+    /**
+     * Writes the positions back to the nodes of <code>graph</code> and reads
+     * what changed on the graph side since the last synchronization: nodes
+     * moved by someone else (e.g. dragged by the user) keep their new
+     * position, and sizes and fixed states are updated.
+     * <p>
+     * Nothing happens if the workspace wasn't loaded from a graph.
+     * @param graph         the graph the workspace was loaded from
+     * @return              <code>true</code> if nodes or edges were added to
+     *                      or removed from <code>graph</code>, according to
+     *                      its node and edge versions, in which case it should
+     *                      be loaded again
+     */
+    public boolean sync(Graph graph) {
+        if (nodes == null) {
+            return false;
+        }
+        graph.readLock();
+        for (int i = 0; i < nodeCount; i++) {
+            Node n = nodes[i];
+            float nx = n.x();
+            float ny = n.y();
+            if (nx != syncedX[i] || ny != syncedY[i]) {
+                x[i] = nx;
+                y[i] = ny;
+            } else if (nx != x[i] || ny != y[i]) {
+                n.setX(x[i]);
+                n.setY(y[i]);
+            }
+            syncedX[i] = x[i];
+            syncedY[i] = y[i];
+            size[i] = n.size();
+            fixed[i] = n.isFixed();
+        }
+        boolean changed = graph.getNodeVersion() != nodeVersion || graph.getEdgeVersion() != edgeVersion;
+        graph.readUnlock();
+        return changed;
+    }
+
+    /**
+     * Publishes the current positions in <code>positionBuffer</code>. Unlike
+     * {@link #sync(Graph)}, the graph isn't touched.
+     * <p>
+     * Nothing happens if the workspace wasn't loaded from a graph.
+     * @param positionBuffer    the buffer viewers read positions from
+     */
+    public void publish(PositionBuffer positionBuffer) {
+        if (nodes != null) {
+            positionBuffer.publish(nodes, x, y, nodeCount);
+        }
+    }
+
+    /**
+     * Releases the references to the nodes, arrays are kept for the next
+     * load.
+     */
+    public void clear() {
+        nodes = null;
+        nodeCount = 0;
+        edgeCount = 0;
+    }
+
+    private void setEdges(int count, int[] sources, int[] targets, float[] weights) {
+        if (edgeStart == null || edgeStart.length < nodeCount + 1) {
+            edgeStart = new int[nodeCount + 1];
+        }
+        if (edgeTargets == null || edgeTargets.length < count) {
+            edgeTargets = new int[count];
+            edgeWeights = new float[count];
+        }
+        edgeCount = count;
+
+        // Counting sort by source
+        for (int i = 0; i <= nodeCount; i++) {
+            edgeStart[i] = 0;
+        }
+        for (int e = 0; e < count; e++) {
+            edgeStart[sources[e] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            edgeStart[i + 1] += edgeStart[i];
+        }
+        for (int e = 0; e < count; e++) {
+            int slot = edgeStart[sources[e]]++;
+            edgeTargets[slot] = targets[e];
+            edgeWeights[slot] = weights != null ? weights[e] : 1f;
+        }
+        for (int i = nodeCount; i > 0; i--) {
+            edgeStart[i] = edgeStart[i - 1];
+        }
+        edgeStart[0] = 0;
+    }
+
+    private void ensureNodeCapacity(int count) {
+        if (x == null || x.length < count) {
+            x = new float[count];
+            y = new float[count];
+            dx = new float[count];
+            dy = new float[count];
+            mass = new float[count];
+            size = new float[count];
+            fixed = new boolean[count];
+            syncedX = new float[count];
+            syncedY = new float[count];
+        }
+    }
+
+    /**
+     * Returns the nodes, in index order, or <code>null</code> if the workspace
+     * wasn't loaded from a graph.
+     * @return              the nodes of the graph
+     */
+    public Node[] getNodes() {
+        return nodes;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public float[] getX() {
+        return x;
+    }
+
+    public float[] getY() {
+        return y;
+    }
+
+    public float[] getDx() {
+        return dx;
+    }
+
+    public float[] getDy() {
+        return dy;
+    }
+
+    public float[] getMass() {
+        return mass;
+    }
+
+    public float[] getSize() {
+        return size;
+    }
+
+    public boolean[] getFixed() {
+        return fixed;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the offsets of the edges of each node, of length
+     * <code>getNodeCount() + 1</code> at least.
+     * @return              the edge offsets, by source
+     */
+    public int[] getEdgeStart() {
+        return edgeStart;
+    }
+
+    public int[] getEdgeTargets() {
+        return edgeTargets;
+    }
+
+    public float[] getEdgeWeights() {
+        return edgeWeights;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin;
+
+import org.gephi.layout.api.PositionBuffer;
+import org.gephi.layout.spi.BufferedLayout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutKernel;
+import org.gephi.layout.spi.LayoutWorkspace;
+
+/**
+ * Base class for layout algorithms implemented as a {@link LayoutKernel}.
+ * <p>
+ * The visible graph is loaded in a {@link LayoutWorkspace} when the layout
+ * starts, and the workspace is synchronized with the graph every
+ * <code>syncInterval</code> iterations and when the layout ends. If the graph
+ * changed in between, the workspace is loaded again and the kernel restarted.
+ * <p>
+ * When a {@link PositionBuffer} is set, positions are also published there
+ * every <code>publishInterval</code> iterations, which lets viewers follow the
+ * layout even with a long synchronization interval.
+ */
+public abstract class AbstractKernelLayout extends AbstractLayout implements LayoutKernel, BufferedLayout {
+
+    protected final LayoutWorkspace workspace = new LayoutWorkspace();
+    private PositionBuffer positionBuffer;
+    private int syncInterval = 1;
+    private int publishInterval = 1;
+    private int iterations;
+
+    public AbstractKernelLayout(LayoutBuilder layoutBuilder) {
+        super(layoutBuilder);
+    }
+
+    @Override
+    public void initAlgo() {
+        if (graphModel == null) {
+            return;
+        }
+        workspace.load(graphModel.getGraphVisible());
+        iterations = 0;
+        initKernel(workspace);
+    }
+
+    @Override
+    public void goAlgo() {
+        step(workspace);
+        iterations++;
+        if (positionBuffer != null && iterations % publishInterval == 0) {
+            workspace.publish(positionBuffer);
+        }
+        if (iterations % syncInterval == 0) {
+            if (workspace.sync(graphModel.getGraphVisible())) {
+                endKernel(workspace);
+                workspace.load(graphModel.getGraphVisible());
+                initKernel(workspace);
+            }
+        }
+    }
+
+    @Override
+    public void endAlgo() {
+        if (graphModel != null) {
+            workspace.sync(graphModel.getGraphVisible());
+        }
+        endKernel(workspace);
+        workspace.clear();
+    }
+
+    /**
+     * Returns the workspace the kernel is moving at this iteration. It is the
+     * workspace of the graph, unless the layout is working on a coarser copy
+     * of it, like the levels of a multilevel layout.
+     *
+     * @return the workspace positions currently change in
+     */
+    public LayoutWorkspace getActiveWorkspace() {
+        return workspace;
+    }
+
+    @Override
+    public void setPositionBuffer(PositionBuffer positionBuffer) {
+        this.positionBuffer = positionBuffer;
+    }
+
+    /**
+     * @return the number of iterations between two synchronizations with the
+     * graph
+     */
+    public int getSyncInterval() {
+        return syncInterval;
+    }
+
+    /**
+     * @param syncInterval the number of iterations between two
+     * synchronizations with the graph, positions are only visible on the graph
+     * after a synchronization
+     */
+    public void setSyncInterval(int syncInterval) {
+        this.syncInterval = Math.max(1, syncInterval);
+    }
+
+    /**
+     * @return the number of iterations between two publications in the
+     * position buffer
+     */
+    public int getPublishInterval() {
+        return publishInterval;
+    }
+
+    /**
+     * @param publishInterval the number of iterations between two
+     * publications in the position buffer, if any
+     */
+    public void setPublishInterval(int publishInterval) {
+        this.publishInterval = Math.max(1, publishInterval);
+    }
+}
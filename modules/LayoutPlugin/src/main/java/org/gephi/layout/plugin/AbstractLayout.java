@@ -42,19 +42,25 @@
 package org.gephi.layout.plugin;
 
 import org.gephi.graph.api.GraphModel;
-import org.gephi.layout.spi.Layout;
+import org.gephi.layout.api.LayoutProfiler;
 import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.ProfiledLayout;
 
 /**
  * Base class for layout algorithms.
+ * <p>
+ * Subclasses report their phases and counters with
+ * {@link #startPhase(String)} and {@link #addCount(String, long)}, which do
+ * nothing when no profiler is set.
  *
  * @author Helder Suzuki <heldersuzuki@gephi.org>
  */
-public abstract class AbstractLayout implements Layout {
+public abstract class AbstractLayout implements ProfiledLayout {
 
     private final LayoutBuilder layoutBuilder;
     protected GraphModel graphModel;
     private boolean converged;
+    private LayoutProfiler profiler;
 
     public AbstractLayout(LayoutBuilder layoutBuilder) {
         this.layoutBuilder = layoutBuilder;
@@ -82,4 +88,33 @@ public abstract class AbstractLayout implements Layout {
     public boolean isConverged() {
         return converged;
     }
+
+    @Override
+    public void setProfiler(LayoutProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Ends the current phase, if any, and starts timing <code>phase</code>.
+     * @param phase the phase name, usually one of the {@link LayoutProfiler}
+     * constants
+     */
+    protected void startPhase(String phase) {
+        if (profiler != null) {
+            profiler.startPhase(phase);
+        }
+    }
+
+    /**
+     * Adds <code>count</code> to <code>counter</code> for the current
+     * iteration.
+     * @param counter the counter name, usually one of the
+     * {@link LayoutProfiler} constants
+     * @param count the value to add
+     */
+    protected void addCount(String counter, long count) {
+        if (profiler != null) {
+            profiler.addCount(counter, count);
+        }
+    }
 }
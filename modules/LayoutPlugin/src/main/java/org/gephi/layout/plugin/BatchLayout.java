@@ -0,0 +1,533 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.layout.api.LayoutMetrics;
+import org.gephi.layout.api.LayoutProfiler;
+import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.LayoutWorkspace;
+import org.gephi.layout.spi.ProfiledLayout;
+
+/**
+ * Headless runner for unattended layouts. A layout runs until the first of
+ * these conditions is met:
+ * <ul><li>it has converged: the total displacement, or the energy, of an
+ * iteration stayed under a threshold for a number of consecutive
+ * iterations;</li>
+ * <li>the iteration budget is spent;</li>
+ * <li>the time budget is spent;</li>
+ * <li>the layout stops by itself, when <code>canAlgo()</code> is
+ * false;</li>
+ * <li>it is cancelled.</li></ul>
+ * Metrics are computed at each iteration and sent to listeners, for instance a
+ * {@link CsvListener}. They include the time of each phase for layouts
+ * implementing {@link ProfiledLayout}. Positions are read where the layout
+ * moves them: the active workspace of an {@link AbstractKernelLayout}, which
+ * is ahead of the graph between synchronizations and can be a coarse level,
+ * or the visible graph for other layouts. Only iterations on the graph itself
+ * count towards convergence, coarse levels converge on their own.
+ * <p>
+ * The same runner, and its settings, can lay out several graphs at the same
+ * time on a shared pool, with one layout instance per graph. Layouts must be
+ * ready to run: graph model set and properties configured.
+ * <p>
+ * <b>Example:</b>
+ * <pre>
+ * BatchLayout batchLayout = new BatchLayout();
+ * batchLayout.setMaxDuration(30, TimeUnit.SECONDS);
+ * batchLayout.setConvergence(BatchLayout.Criterion.DISPLACEMENT, 1.0, 20);
+ * batchLayout.addListener(new BatchLayout.CsvListener(writer));
+ * ExecutorService pool = Executors.newFixedThreadPool(4);
+ * for (Workspace workspace : workspaces) {
+ *     GraphModel graphModel = graphController.getGraphModel(workspace);
+ *     ForceAtlas2 layout = new ForceAtlas2Builder().buildLayout();
+ *     layout.setGraphModel(graphModel);
+ *     batchLayout.submit(workspace.toString(), layout, graphModel, pool);
+ * }
+ * </pre>
+ */
+public class BatchLayout {
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private int maxIterations = Integer.MAX_VALUE;
+    private long maxDuration = Long.MAX_VALUE;
+    private Criterion criterion = Criterion.DISPLACEMENT;
+    private double convergenceThreshold = 0;
+    private int convergenceIterations = 1;
+    private volatile boolean cancel;
+
+    /**
+     * Runs <code>layout</code> in the calling thread.
+     *
+     * @param name the name of the run, given to listeners
+     * @param layout the layout to run, already set on <code>graphModel</code>
+     * @param graphModel the graph model of the layout, where positions are
+     * read unless the layout is an {@link AbstractKernelLayout}
+     * @return how the run ended
+     */
+    public Result execute(String name, Layout layout, GraphModel graphModel) {
+        return new Run(name, layout, graphModel).call();
+    }
+
+    /**
+     * Runs <code>layout</code> on <code>pool</code>.
+     *
+     * @see #execute(String, Layout, GraphModel)
+     */
+    public Future<Result> submit(String name, Layout layout, GraphModel graphModel, ExecutorService pool) {
+        return pool.submit(new Run(name, layout, graphModel));
+    }
+
+    /**
+     * Stops all the runs in progress of this runner, which end after their
+     * current iteration. Runs started afterwards are cancelled as well.
+     */
+    public void cancel() {
+        cancel = true;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @return the time budget of a run, in milliseconds
+     */
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(long duration, TimeUnit timeUnit) {
+        this.maxDuration = TimeUnit.MILLISECONDS.convert(duration, timeUnit);
+    }
+
+    /**
+     * Sets the convergence criterion: a run stops once <code>criterion</code>
+     * stayed under <code>threshold</code> for <code>iterations</code>
+     * consecutive iterations. A threshold of zero disables it.
+     */
+    public void setConvergence(Criterion criterion, double threshold, int iterations) {
+        this.criterion = criterion;
+        this.convergenceThreshold = threshold;
+        this.convergenceIterations = Math.max(1, iterations);
+    }
+
+    public Criterion getConvergenceCriterion() {
+        return criterion;
+    }
+
+    public double getConvergenceThreshold() {
+        return convergenceThreshold;
+    }
+
+    public int getConvergenceIterations() {
+        return convergenceIterations;
+    }
+
+    private class Run implements Callable<Result> {
+
+        private final String name;
+        private final Layout layout;
+        private final GraphModel graphModel;
+        private final LayoutProfiler profiler = new LayoutProfiler();
+        private float[] x = new float[0];
+        private float[] y = new float[0];
+        private float[] graphX = new float[0];
+        private float[] graphY = new float[0];
+        private Object measured;
+        private int nodeCount = -1;
+        private double displacement;
+        private double energy;
+
+        public Run(String name, Layout layout, GraphModel graphModel) {
+            this.name = name;
+            this.layout = layout;
+            this.graphModel = graphModel;
+        }
+
+        @Override
+        public Result call() {
+            long start = System.nanoTime();
+            int iteration = 0;
+            int convergedIterations = 0;
+            StopCondition stopCondition = null;
+            if (layout instanceof ProfiledLayout) {
+                ((ProfiledLayout) layout).setProfiler(profiler);
+            }
+            layout.initAlgo();
+            try {
+                measure();
+                while (stopCondition == null) {
+                    if (cancel || Thread.currentThread().isInterrupted()) {
+                        stopCondition = StopCondition.CANCELLED;
+                    } else if (!layout.canAlgo()) {
+                        stopCondition = StopCondition.LAYOUT_ENDED;
+                    } else if (iteration >= maxIterations) {
+                        stopCondition = StopCondition.MAX_ITERATIONS;
+                    } else if (System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(maxDuration)) {
+                        stopCondition = StopCondition.MAX_DURATION;
+                    } else {
+                        profiler.startIteration();
+                        layout.goAlgo();
+                        LayoutMetrics profile = profiler.endIteration();
+                        iteration++;
+
+                        boolean measured = measure();
+                        Metrics metrics = new Metrics(name, layout, iteration, displacement, energy, profile);
+                        for (Listener listener : listeners) {
+                            listener.iterationPerformed(metrics);
+                        }
+
+                        double value = criterion == Criterion.DISPLACEMENT ? displacement : energy;
+                        if (measured && convergenceThreshold > 0 && value < convergenceThreshold) {
+                            convergedIterations++;
+                        } else {
+                            convergedIterations = 0;
+                        }
+                        if (convergedIterations >= convergenceIterations) {
+                            stopCondition = StopCondition.CONVERGED;
+                        }
+                    }
+                }
+            } finally {
+                layout.endAlgo();
+                if (layout instanceof ProfiledLayout) {
+                    ((ProfiledLayout) layout).setProfiler(null);
+                }
+            }
+
+            Result result = new Result(name, stopCondition, iteration, (System.nanoTime() - start) / 1000000, displacement, energy);
+            for (Listener listener : listeners) {
+                listener.layoutFinished(result);
+            }
+            return result;
+        }
+
+        /* Compares the current positions with the previous ones. Returns
+         * false when they can't count towards convergence: the positions
+         * don't match the previous ones, or the layout is on a coarse level.
+         */
+        private boolean measure() {
+            if (layout instanceof AbstractKernelLayout) {
+                AbstractKernelLayout kernelLayout = (AbstractKernelLayout) layout;
+                LayoutWorkspace active = kernelLayout.getActiveWorkspace();
+                boolean matched = measure(active, active.getX(), active.getY(), active.getNodeCount());
+                return matched && active == kernelLayout.workspace;
+            }
+            Graph graph = graphModel.getGraphVisible();
+            graph.readLock();
+            try {
+                int count = graph.getNodeCount();
+                if (graphX.length < count) {
+                    graphX = new float[count];
+                    graphY = new float[count];
+                }
+                int i = 0;
+                for (Node n : graph.getNodes()) {
+                    graphX[i] = n.x();
+                    graphY[i] = n.y();
+                    i++;
+                }
+                return measure(graphModel, graphX, graphY, count);
+            } finally {
+                graph.readUnlock();
+            }
+        }
+
+        /* Positions can only be matched with the previous ones if they come
+         * from the same source, with the same node count. Otherwise
+         * displacement and energy are NaN.
+         */
+        private boolean measure(Object source, float[] nodeX, float[] nodeY, int count) {
+            boolean matched = source == measured && count == nodeCount;
+            if (x.length < count) {
+                x = new float[count];
+                y = new float[count];
+            }
+            displacement = 0;
+            energy = 0;
+            for (int i = 0; i < count; i++) {
+                if (matched) {
+                    double d = Math.hypot(nodeX[i] - x[i], nodeY[i] - y[i]);
+                    displacement += d;
+                    energy += d * d / 2;
+                }
+                x[i] = nodeX[i];
+                y[i] = nodeY[i];
+            }
+            measured = source;
+            nodeCount = count;
+            if (!matched) {
+                displacement = Double.NaN;
+                energy = Double.NaN;
+            }
+            return matched;
+        }
+    }
+
+    /**
+     * Quantity tested for convergence.
+     */
+    public enum Criterion {
+
+        /**
+         * Sum of the distances nodes moved during the iteration.
+         */
+        DISPLACEMENT,
+        /**
+         * Kinetic energy of the iteration, half the sum of the squared
+         * distances nodes moved.
+         */
+        ENERGY
+    }
+
+    public enum StopCondition {
+
+        CONVERGED, MAX_ITERATIONS, MAX_DURATION, LAYOUT_ENDED, CANCELLED
+    }
+
+    /**
+     * Receives the metrics of runs. Runs on a pool call listeners from their
+     * own thread.
+     */
+    public static interface Listener {
+
+        public void iterationPerformed(Metrics metrics);
+
+        public void layoutFinished(Result result);
+    }
+
+    /**
+     * Metrics of one iteration. Displacement and energy are <code>NaN</code>
+     * when the node count changed during the iteration, or when the layout
+     * went to another level.
+     */
+    public static class Metrics {
+
+        private final String name;
+        private final Layout layout;
+        private final int iteration;
+        private final double displacement;
+        private final double energy;
+        private final LayoutMetrics profile;
+
+        public Metrics(String name, Layout layout, int iteration, double displacement, double energy, LayoutMetrics profile) {
+            this.name = name;
+            this.layout = layout;
+            this.iteration = iteration;
+            this.displacement = displacement;
+            this.energy = energy;
+            this.profile = profile;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Layout getLayout() {
+            return layout;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public double getDisplacement() {
+            return displacement;
+        }
+
+        public double getEnergy() {
+            return energy;
+        }
+
+        /**
+         * @return the time spent in <code>goAlgo()</code>
+         */
+        public double getMilliseconds() {
+            return profile.getIterationTime();
+        }
+
+        /**
+         * @return the phase times and counters of the iteration, empty if the
+         * layout doesn't implement {@link ProfiledLayout}
+         */
+        public LayoutMetrics getProfile() {
+            return profile;
+        }
+    }
+
+    public static class Result {
+
+        private final String name;
+        private final StopCondition stopCondition;
+        private final int iterations;
+        private final long duration;
+        private final double displacement;
+        private final double energy;
+
+        public Result(String name, StopCondition stopCondition, int iterations, long duration, double displacement, double energy) {
+            this.name = name;
+            this.stopCondition = stopCondition;
+            this.iterations = iterations;
+            this.duration = duration;
+            this.displacement = displacement;
+            this.energy = energy;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public StopCondition getStopCondition() {
+            return stopCondition;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * @return the duration of the run in milliseconds, including
+         * <code>initAlgo()</code> and <code>endAlgo()</code>
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return the displacement of the last iteration
+         */
+        public double getDisplacement() {
+            return displacement;
+        }
+
+        /**
+         * @return the energy of the last iteration
+         */
+        public double getEnergy() {
+            return energy;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + stopCondition + " after " + iterations + " iterations (" + duration + " ms)";
+        }
+    }
+
+    /**
+     * Writes one CSV line per iteration:
+     * <code>name,iteration,displacement,energy,milliseconds,profile</code>,
+     * where the profile lists the phase times and counters as
+     * <code>name=value</code> pairs separated by semicolons. The writer is
+     * flushed when a run finishes, and is not closed.
+     */
+    public static class CsvListener implements Listener {
+
+        private final Writer writer;
+
+        public CsvListener(Writer writer) {
+            this.writer = writer;
+            write("name,iteration,displacement,energy,milliseconds,profile\n");
+        }
+
+        @Override
+        public void iterationPerformed(Metrics metrics) {
+            LayoutMetrics profile = metrics.getProfile();
+            StringBuilder profileString = new StringBuilder();
+            for (String phase : profile.getPhases()) {
+                profileString.append(profileString.length() > 0 ? ";" : "");
+                profileString.append(String.format(Locale.US, "%s=%.3f", phase, profile.getPhaseTime(phase)));
+            }
+            for (String counter : profile.getCounters()) {
+                profileString.append(profileString.length() > 0 ? ";" : "");
+                profileString.append(counter).append('=').append(profile.getCounter(counter));
+            }
+            write(String.format(Locale.US, "\"%s\",%d,%f,%f,%.3f,%s\n",
+                    metrics.getName().replace("\"", "\"\""), metrics.getIteration(),
+                    metrics.getDisplacement(), metrics.getEnergy(), metrics.getMilliseconds(), profileString));
+        }
+
+        @Override
+        public void layoutFinished(Result result) {
+            synchronized (writer) {
+                try {
+                    writer.flush();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+        private void write(String line) {
+            synchronized (writer) {
+                try {
+                    writer.write(line);
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin;
+
+import java.util.Arrays;
+
+/**
+ * Spatial hash of axis-aligned rectangles, identified by positive
+ * <code>int</code> ids.
+ * <p>
+ * The plane is divided into square cells of <code>cellSize</code> and each
+ * rectangle is registered in every cell it covers. Cells are kept in an open
+ * addressing hash table, so the indexed area doesn't need to be known in
+ * advance. Updating a rectangle only touches cells when its range of cells
+ * changes, which makes updates cheap when items move by small steps from one
+ * iteration to the next.
+ * <p>
+ * Queries don't modify the index and can run concurrently, as long as no
+ * update runs at the same time.
+ */
+public class SpatialHash {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private float cellSize;
+    //Items
+    private boolean[] present = new boolean[0];
+    private int[] minCellX = new int[0];
+    private int[] minCellY = new int[0];
+    private int[] maxCellX = new int[0];
+    private int[] maxCellY = new int[0];
+    private int size;
+    //Cells
+    private long[] keys;
+    private int[][] cellItems;
+    private int[] cellSizes;
+    private int cellCount;
+
+    public SpatialHash(float cellSize) {
+        setCellSize(cellSize);
+    }
+
+    /**
+     * Sets the size of cells, which clears the index.
+     */
+    public void setCellSize(float cellSize) {
+        if (!(cellSize > 0) || Float.isInfinite(cellSize)) {
+            throw new IllegalArgumentException("The cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        clear();
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Removes all the items.
+     */
+    public void clear() {
+        Arrays.fill(present, false);
+        size = 0;
+        keys = new long[64];
+        Arrays.fill(keys, EMPTY);
+        cellItems = new int[64][];
+        cellSizes = new int[64];
+        cellCount = 0;
+    }
+
+    /**
+     * Returns the number of items in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int id) {
+        return id < present.length && present[id];
+    }
+
+    /**
+     * Adds the item <code>id</code> or updates its rectangle.
+     *
+     * @return <code>true</code> if the cells of the item changed
+     */
+    public boolean put(int id, float xmin, float ymin, float xmax, float ymax) {
+        int x0 = cell(xmin);
+        int y0 = cell(ymin);
+        int x1 = cell(xmax);
+        int y1 = cell(ymax);
+        if (contains(id)) {
+            if (minCellX[id] == x0 && minCellY[id] == y0 && maxCellX[id] == x1 && maxCellY[id] == y1) {
+                return false;
+            }
+            removeFromCells(id);
+        } else {
+            ensureItemCapacity(id + 1);
+            present[id] = true;
+            size++;
+        }
+        minCellX[id] = x0;
+        minCellY[id] = y0;
+        maxCellX[id] = x1;
+        maxCellY[id] = y1;
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                addToCell(slot(cx, cy, true), id);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the item <code>id</code>, if present.
+     */
+    public void remove(int id) {
+        if (contains(id)) {
+            removeFromCells(id);
+            present[id] = false;
+            size--;
+        }
+    }
+
+    /**
+     * Calls <code>visitor</code> once for every other item sharing a cell with
+     * item <code>id</code>. These are the only items whose rectangle can
+     * intersect the one of <code>id</code>.
+     */
+    public void visitNeighbors(int id, Visitor visitor) {
+        if (!contains(id)) {
+            return;
+        }
+        int x0 = minCellX[id];
+        int y0 = minCellY[id];
+        for (int cx = x0; cx <= maxCellX[id]; cx++) {
+            for (int cy = y0; cy <= maxCellY[id]; cy++) {
+                int slot = slot(cx, cy, false);
+                if (slot == -1) {
+                    continue;
+                }
+                int[] items = cellItems[slot];
+                for (int i = 0, count = cellSizes[slot]; i < count; i++) {
+                    int other = items[i];
+                    // Two items may share several cells, only the first of
+                    // them, in both directions, reports the pair
+                    if (other != id && cx == Math.max(x0, minCellX[other]) && cy == Math.max(y0, minCellY[other])) {
+                        visitor.visit(id, other);
+                    }
+                }
+            }
+        }
+    }
+
+    private int cell(float coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private void removeFromCells(int id) {
+        for (int cx = minCellX[id]; cx <= maxCellX[id]; cx++) {
+            for (int cy = minCellY[id]; cy <= maxCellY[id]; cy++) {
+                int slot = slot(cx, cy, false);
+                int[] items = cellItems[slot];
+                int count = cellSizes[slot];
+                for (int i = 0; i < count; i++) {
+                    if (items[i] == id) {
+                        items[i] = items[count - 1];
+                        cellSizes[slot] = count - 1;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void addToCell(int slot, int id) {
+        int[] items = cellItems[slot];
+        int count = cellSizes[slot];
+        if (items == null) {
+            items = new int[4];
+            cellItems[slot] = items;
+        } else if (count == items.length) {
+            items = Arrays.copyOf(items, count * 2);
+            cellItems[slot] = items;
+        }
+        items[count] = id;
+        cellSizes[slot] = count + 1;
+    }
+
+    /* Returns the slot of the cell, or -1 if it doesn't exist and create is
+     * false
+     */
+    private int slot(int cx, int cy, boolean create) {
+        long key = ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        if (2 * (cellCount + 1) > keys.length) {
+            rehash();
+            return slot(cx, cy, true);
+        }
+        keys[slot] = key;
+        cellCount++;
+        return slot;
+    }
+
+    /* Rebuilds the table from the non-empty cells, at most a quarter full */
+    private void rehash() {
+        int liveCells = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && cellSizes[i] > 0) {
+                liveCells++;
+            }
+        }
+        int capacity = 64;
+        while (capacity < 4 * (liveCells + 1)) {
+            capacity *= 2;
+        }
+        long[] oldKeys = keys;
+        int[][] oldItems = cellItems;
+        int[] oldSizes = cellSizes;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        cellItems = new int[capacity][];
+        cellSizes = new int[capacity];
+        cellCount = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            // Cells left empty by moves are dropped
+            if (oldKeys[i] != EMPTY && oldSizes[i] > 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                cellItems[slot] = oldItems[i];
+                cellSizes[slot] = oldSizes[i];
+                cellCount++;
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void ensureItemCapacity(int count) {
+        if (present.length < count) {
+            int capacity = Math.max(count, present.length * 2);
+            present = Arrays.copyOf(present, capacity);
+            minCellX = Arrays.copyOf(minCellX, capacity);
+            minCellY = Arrays.copyOf(minCellY, capacity);
+            maxCellX = Arrays.copyOf(maxCellX, capacity);
+            maxCellY = Arrays.copyOf(maxCellY, capacity);
+        }
+    }
+
+    /**
+     * Receives the pairs of neighbor items.
+     */
+    public static interface Visitor {
+
+        public void visit(int id, int other);
+    }
+}
@@ -41,9 +41,11 @@
  */
 package org.gephi.layout.plugin.force;
 
-import org.gephi.graph.api.Node;
+import org.gephi.layout.spi.LayoutWorkspace;
 
 /**
+ * Moves a node of a {@link LayoutWorkspace} according to the force stored in
+ * its <code>dx</code> and <code>dy</code>.
  *
  * @author Helder Suzuki <heldersuzuki@gephi.org>
  */
@@ -51,5 +53,5 @@ public interface Displacement {
 
     public void setStep(float step);
 
-    public void moveNode(Node node, ForceVector forceData);
+    public void moveNode(LayoutWorkspace workspace, int node);
 }
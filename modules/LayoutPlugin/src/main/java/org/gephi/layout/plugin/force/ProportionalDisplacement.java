@@ -41,7 +41,7 @@
  */
 package org.gephi.layout.plugin.force;
 
-import org.gephi.graph.api.Node;
+import org.gephi.layout.spi.LayoutWorkspace;
 
 /**
  * The movement of the node is in the direction of the force and it's
@@ -68,18 +68,15 @@ public class ProportionalDisplacement implements Displacement {
     }
 
     @Override
-    public void moveNode(Node node, ForceVector forceData) {
-        ForceVector displacement = new ForceVector(forceData);
-        displacement.multiply(step);
-
-        float x = node.x() + displacement.x();
-        float y = node.y() + displacement.y();
+    public void moveNode(LayoutWorkspace workspace, int node) {
+        float x = workspace.getX()[node] + step * workspace.getDx()[node];
+        float y = workspace.getY()[node] + step * workspace.getDy()[node];
 
         if (assertValue(x)) {
-            node.setX(x);
+            workspace.getX()[node] = x;
         }
         if (assertValue(y)) {
-            node.setY(y);
+            workspace.getY()[node] = y;
         }
     }
 }
@@ -41,7 +41,7 @@
  */
 package org.gephi.layout.plugin.force;
 
-import org.gephi.graph.api.Node;
+import org.gephi.layout.spi.LayoutWorkspace;
 
 /**
  * The node is moved a fixed distance (step) in the direction of the force.
@@ -62,18 +62,19 @@ public class StepDisplacement implements Displacement {
     }
 
     @Override
-    public void moveNode(Node node, ForceVector forceData) {
-        ForceVector displacement = forceData.normalize();
-        displacement.multiply(step);
+    public void moveNode(LayoutWorkspace workspace, int node) {
+        float dx = workspace.getDx()[node];
+        float dy = workspace.getDy()[node];
+        float norm = (float) Math.sqrt(dx * dx + dy * dy);
 
-        float x = node.x() + displacement.x();
-        float y = node.y() + displacement.y();
+        float x = workspace.getX()[node] + dx / norm * step;
+        float y = workspace.getY()[node] + dy / norm * step;
 
         if (assertValue(x)) {
-            node.setX(x);
+            workspace.getX()[node] = x;
         }
         if (assertValue(y)) {
-            node.setY(y);
+            workspace.getY()[node] = y;
         }
     }
 
@@ -57,6 +57,10 @@ public class BarnesHut {
      */
     private float theta = (float) 1.2;
     private AbstractForce force;
+    /* when weighted, forces are multiplied by the tree weight instead of its
+     * number of nodes, leaves included
+     */
+    private boolean weighted = false;
 
     public BarnesHut(AbstractForce force) {
         this.force = force;
@@ -77,12 +81,17 @@ public class BarnesHut {
             if (distance < 1e-8) {
                 return null;
             }
+            if (weighted) {
+                ForceVector f = force.calculateForce(node, tree, distance);
+                f.multiply(tree.weight());
+                return f;
+            }
             return force.calculateForce(node, tree);
         }
 
         if (distance * theta > tree.size()) {
             ForceVector f = force.calculateForce(node, tree, distance);
-            f.multiply(tree.mass());
+            f.multiply(weighted ? tree.weight() : tree.mass());
             return f;
         }
 
@@ -100,4 +109,12 @@ public class BarnesHut {
     public float getTheta() {
         return theta;
     }
+
+    public void setWeighted(boolean weighted) {
+        this.weighted = weighted;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
 }
@@ -0,0 +1,375 @@
+/*
+ Copyright 2008-2011 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.force.quadtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Barnes Hut optimization on primitive arrays, for layouts working on a
+ * <code>LayoutWorkspace</code>.
+ * <p>
+ * Regions are split in quadrants around their mass center, and into one-node
+ * regions when all the nodes fall in the same quadrant. Nodes are indices and
+ * are partitioned in place, so each region is a <code>[start, end)</code>
+ * range of the <code>order</code> array. Regions deeper than
+ * <code>maxDepth</code> are not split and act as a single point of mass.
+ * <p>
+ * Every region has at least two subregions, so a region with <code>m</code>
+ * nodes and id <code>r</code> owns at most the ids <code>[r, r + 2m - 1)</code>.
+ * Children ids are reserved from that bound, so subtrees can be built
+ * concurrently without synchronization. Ids follow a pre-order, and <code>skip</code> points to the
+ * next region once a subtree is done, which makes the traversal stackless and
+ * allocation-free.
+ * <p>
+ * The instance is meant to be reused across iterations: arrays are only
+ * reallocated when the node count grows.
+ */
+public class BarnesHutTree {
+
+    private int maxDepth = Integer.MAX_VALUE;
+    //Nodes
+    private int nodeCount;
+    private double[] x;
+    private double[] y;
+    private double[] nodeMass;
+    private int[] order;
+    private int[] buffer;
+    //Regions
+    private int[] start;
+    private int[] end;
+    private int[] firstChild;
+    private int[] skip;
+    private double[] mass;
+    private double[] massCenterX;
+    private double[] massCenterY;
+    private double[] size;
+
+    /**
+     * Rebuilds the tree for the first <code>nodeCount</code> nodes. If
+     * <code>pool</code> is not null, the top levels are split on the calling
+     * thread and the subtrees below are built by <code>threadCount</code>
+     * workers.
+     *
+     * @param mass the mass of each node, or <code>null</code> to count nodes
+     */
+    public void build(float[] nodeX, float[] nodeY, float[] mass, int nodeCount, ExecutorService pool, int threadCount) {
+        this.nodeCount = nodeCount;
+        ensureCapacity(nodeCount);
+
+        for (int i = 0; i < nodeCount; i++) {
+            x[i] = nodeX[i];
+            y[i] = nodeY[i];
+            nodeMass[i] = mass != null ? mass[i] : 1;
+            order[i] = i;
+        }
+        if (nodeCount == 0) {
+            return;
+        }
+
+        if (pool == null || threadCount < 2 || nodeCount < 1024) {
+            buildRegion(0, 0, nodeCount, -1, 0, Integer.MAX_VALUE, null);
+            return;
+        }
+
+        // Split serially until there are enough subtrees to keep the pool busy
+        int parallelDepth = 1;
+        for (int tasks = 4; tasks < 8 * threadCount; tasks *= 4) {
+            parallelDepth++;
+        }
+        final List<int[]> subtrees = new ArrayList<int[]>();
+        buildRegion(0, 0, nodeCount, -1, 0, parallelDepth, subtrees);
+
+        List<Future> futures = new ArrayList<Future>(subtrees.size());
+        for (final int[] subtree : subtrees) {
+            futures.add(pool.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    buildRegion(subtree[0], subtree[1], subtree[2], subtree[3], subtree[4], Integer.MAX_VALUE, null);
+                    return null;
+                }
+            }));
+        }
+        for (Future future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Applies the force of the whole tree on node <code>nodeIndex</code>.
+     * Regions of one node apply a node-node force, which includes the node
+     * itself; other regions apply the force of their mass when they are seen
+     * under <code>theta</code>, or when they are not split.
+     */
+    public void applyForce(int nodeIndex, Force force, double theta) {
+        applyForce(nodeIndex, force, theta, null);
+    }
+
+    /**
+     * Same as {@link #applyForce(int, Force, double)}, and adds to
+     * <code>counters</code>, if not <code>null</code>, the number of nodes
+     * and regions a force was applied from at index 0, and the number of
+     * regions applied as a whole at index 1.
+     */
+    public void applyForce(int nodeIndex, Force force, double theta, long[] counters) {
+        double nx = x[nodeIndex];
+        double ny = y[nodeIndex];
+        int visited = 0;
+        int approximations = 0;
+        int r = nodeCount > 0 ? 0 : -1;
+        while (r != -1) {
+            if (end[r] - start[r] < 2) {
+                force.apply(nodeIndex, order[start[r]]);
+                visited++;
+                r = skip[r];
+            } else {
+                double distance = Math.sqrt((nx - massCenterX[r]) * (nx - massCenterX[r]) + (ny - massCenterY[r]) * (ny - massCenterY[r]));
+                if (distance * theta > size[r] || firstChild[r] == -1) {
+                    force.apply(nodeIndex, mass[r], massCenterX[r], massCenterY[r]);
+                    visited++;
+                    approximations++;
+                    r = skip[r];
+                } else {
+                    r = firstChild[r];
+                }
+            }
+        }
+        if (counters != null) {
+            counters[0] += visited;
+            counters[1] += approximations;
+        }
+    }
+
+    /**
+     * @return the depth under which regions are not split anymore
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param maxDepth the depth under which regions are not split anymore, the
+     * root being at depth 0
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    private void ensureCapacity(int count) {
+        if (order == null || order.length < count) {
+            x = new double[count];
+            y = new double[count];
+            nodeMass = new double[count];
+            order = new int[count];
+            buffer = new int[count];
+            start = new int[2 * count];
+            end = new int[2 * count];
+            firstChild = new int[2 * count];
+            skip = new int[2 * count];
+            mass = new double[2 * count];
+            massCenterX = new double[2 * count];
+            massCenterY = new double[2 * count];
+            size = new double[2 * count];
+        }
+    }
+
+    /**
+     * Builds region <code>r</code>, at depth <code>level</code>, over
+     * <code>order[from, to)</code>. Below <code>depth</code> levels, children
+     * are not built but added to <code>subtrees</code> as
+     * <code>{id, from, to, skip, level}</code>.
+     */
+    private void buildRegion(int r, int from, int to, int next, int level, int depth, List<int[]> subtrees) {
+        start[r] = from;
+        end[r] = to;
+        skip[r] = next;
+        firstChild[r] = -1;
+        if (to - from < 2) {
+            return;
+        }
+
+        // Compute mass
+        double m = 0;
+        double massSumX = 0;
+        double massSumY = 0;
+        for (int i = from; i < to; i++) {
+            int node = order[i];
+            m += nodeMass[node];
+            massSumX += x[node] * nodeMass[node];
+            massSumY += y[node] * nodeMass[node];
+        }
+        double cx = massSumX / m;
+        double cy = massSumY / m;
+
+        // Compute size
+        double s = Double.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            int node = order[i];
+            double distance = Math.sqrt((x[node] - cx) * (x[node] - cx) + (y[node] - cy) * (y[node] - cy));
+            s = Math.max(s, 2 * distance);
+        }
+        mass[r] = m;
+        massCenterX[r] = cx;
+        massCenterY[r] = cy;
+        size[r] = s;
+        if (level >= maxDepth) {
+            return;
+        }
+
+        // Stable partition in quadrants: top left, bottom left, bottom right, top right
+        int topLeft = 0, bottomLeft = 0, bottomRight = 0;
+        for (int i = from; i < to; i++) {
+            int quadrant = quadrant(order[i], cx, cy);
+            if (quadrant == 0) {
+                topLeft++;
+            } else if (quadrant == 1) {
+                bottomLeft++;
+            } else if (quadrant == 2) {
+                bottomRight++;
+            }
+        }
+        int bottomLeftStart = from + topLeft;
+        int bottomRightStart = bottomLeftStart + bottomLeft;
+        int topRightStart = bottomRightStart + bottomRight;
+        int topLeftCursor = from;
+        int bottomLeftCursor = bottomLeftStart;
+        int bottomRightCursor = bottomRightStart;
+        int topRightCursor = topRightStart;
+        for (int i = from; i < to; i++) {
+            int node = order[i];
+            int quadrant = quadrant(node, cx, cy);
+            if (quadrant == 0) {
+                buffer[topLeftCursor++] = node;
+            } else if (quadrant == 1) {
+                buffer[bottomLeftCursor++] = node;
+            } else if (quadrant == 2) {
+                buffer[bottomRightCursor++] = node;
+            } else {
+                buffer[topRightCursor++] = node;
+            }
+        }
+        System.arraycopy(buffer, from, order, from, to - from);
+
+        // Children, in pre-order, each one right after its previous sibling's subtree
+        int previous = addChildren(r, -1, from, bottomLeftStart, to - from);
+        previous = addChildren(r, previous, bottomLeftStart, bottomRightStart, to - from);
+        previous = addChildren(r, previous, bottomRightStart, topRightStart, to - from);
+        addChildren(r, previous, topRightStart, to, to - from);
+
+        // Build children, once their ranges and skip links are known
+        int child = firstChild[r];
+        while (child != -1) {
+            int childNext = skip[child];
+            int a = start[child];
+            int b = end[child];
+            if (b - a >= 2 && depth <= 1) {
+                subtrees.add(new int[]{child, a, b, childNext, level + 1});
+            } else {
+                buildRegion(child, a, b, childNext, level + 1, depth - 1, subtrees);
+            }
+            child = childNext == skip[r] ? -1 : childNext;
+        }
+    }
+
+    private int addChildren(int parent, int previous, int a, int b, int parentCount) {
+        if (a == b) {
+            return previous;
+        }
+        if (b - a < parentCount) {
+            return link(parent, previous, a, b);
+        }
+        // All nodes in the same quadrant, one region per node
+        for (int i = a; i < b; i++) {
+            previous = link(parent, previous, i, i + 1);
+        }
+        return previous;
+    }
+
+    private int link(int parent, int previous, int a, int b) {
+        int child;
+        if (previous == -1) {
+            child = parent + 1;
+            firstChild[parent] = child;
+        } else {
+            child = previous + 2 * (end[previous] - start[previous]) - 1;
+            skip[previous] = child;
+        }
+        start[child] = a;
+        end[child] = b;
+        skip[child] = skip[parent];
+        return child;
+    }
+
+    private int quadrant(int node, double cx, double cy) {
+        if (x[node] < cx) {
+            return y[node] < cy ? 0 : 1;
+        } else {
+            return y[node] < cy ? 3 : 2;
+        }
+    }
+
+    /**
+     * Force applied by {@link BarnesHutTree#applyForce(int, Force, double)}.
+     */
+    public interface Force {
+
+        /**
+         * Force of node <code>n2</code> on node <code>n1</code>.
+         */
+        public void apply(int n1, int n2);
+
+        /**
+         * Force of a region of total <code>mass</code> on node <code>n</code>.
+         */
+        public void apply(int n, double mass, double massCenterX, double massCenterY);
+    }
+}
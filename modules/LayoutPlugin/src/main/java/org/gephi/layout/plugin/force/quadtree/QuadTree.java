@@ -63,6 +63,7 @@ public class QuadTree implements Node {
     private float centerMassX;  // X and Y position of the center of mass
     private float centerMassY;
     private int mass;  // Mass of this tree (the number of nodes it contains)
+    private float weight;  // Sum of the weights of the nodes it contains (1 per node by default)
     private int maxLevel;
     private AddBehaviour add;
     private List<QuadTree> children;
@@ -85,7 +86,34 @@ public class QuadTree implements Node {
         float size = Math.max(maxY - minY, maxX - minX);
         QuadTree tree = new QuadTree(minX, minY, size, maxLevel);
         for (Node node : graph.getNodes()) {
-            tree.addNode(node);
+            tree.add.addNode(node, 1f);
+        }
+
+        return tree;
+    }
+
+    /**
+     * Builds a tree on <code>nodes</code>, where each node counts for
+     * <code>weights[i]</code> in {@link #weight()}. The center of mass is
+     * still the unweighted mean of the positions.
+     */
+    public static QuadTree buildTree(Node[] nodes, float[] weights, int maxLevel) {
+        float minX = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+
+        for (Node node : nodes) {
+            minX = Math.min(minX, node.x());
+            maxX = Math.max(maxX, node.x());
+            minY = Math.min(minY, node.y());
+            maxY = Math.max(maxY, node.y());
+        }
+
+        float size = Math.max(maxY - minY, maxX - minX);
+        QuadTree tree = new QuadTree(minX, minY, size, maxLevel);
+        for (int i = 0; i < nodes.length; i++) {
+            tree.add.addNode(nodes[i], weights[i]);
         }
 
         return tree;
@@ -121,19 +149,27 @@ public class QuadTree implements Node {
         isLeaf = false;
     }
 
-    private boolean addToChildren(NodeProperties node) {
+    private boolean addToChildren(NodeProperties node, float nodeWeight) {
         for (QuadTree q : children) {
-            if (q.addNode(node)) {
+            if (q.addNode(node, nodeWeight)) {
                 return true;
             }
         }
-        return false;
+        /* Rounding errors on the children bounds may leave the node out of
+         * all of them, use the quadrant it is in
+         */
+        float childSize = size / 2;
+        boolean right = node.x() >= posX + childSize;
+        boolean top = node.y() >= posY + childSize;
+        QuadTree q = children.get(right ? (top ? 0 : 3) : (top ? 1 : 2));
+        return q.add.addNode(node, nodeWeight);
     }
 
-    private void assimilateNode(NodeProperties node) {
+    private void assimilateNode(NodeProperties node, float nodeWeight) {
         centerMassX = (mass * centerMassX + node.x()) / (mass + 1);
         centerMassY = (mass * centerMassY + node.y()) / (mass + 1);
         mass++;
+        weight += nodeWeight;
     }
 
     public Iterable<QuadTree> getChildren() {
@@ -154,15 +190,23 @@ public class QuadTree implements Node {
         return mass;
     }
 
+    public float weight() {
+        return weight;
+    }
+
     @Override
     public float z() {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
     public boolean addNode(NodeProperties node) {
+        return addNode(node, 1f);
+    }
+
+    public boolean addNode(NodeProperties node, float nodeWeight) {
         if (posX <= node.x() && node.x() <= posX + size
                 && posY <= node.y() && node.y() <= posY + size) {
-            return add.addNode(node);
+            return add.addNode(node, nodeWeight);
         } else {
             return false;
         }
@@ -373,8 +417,9 @@ public class QuadTree implements Node {
     class FirstAdd implements AddBehaviour {
 
         @Override
-        public boolean addNode(NodeProperties node) {
+        public boolean addNode(NodeProperties node, float nodeWeight) {
             mass = 1;
+            weight = nodeWeight;
             centerMassX = node.x();
             centerMassY = node.y();
 
@@ -391,21 +436,21 @@ public class QuadTree implements Node {
     class SecondAdd implements AddBehaviour {
 
         @Override
-        public boolean addNode(NodeProperties node) {
+        public boolean addNode(NodeProperties node, float nodeWeight) {
             divideTree();
             add = new RootAdd();
             /* This QuadTree represents one node, add it to a child accordingly
              */
-            addToChildren(QuadTree.this);
-            return add.addNode(node);
+            addToChildren(QuadTree.this, weight);
+            return add.addNode(node, nodeWeight);
         }
     }
 
     class LeafAdd implements AddBehaviour {
 
         @Override
-        public boolean addNode(NodeProperties node) {
-            assimilateNode(node);
+        public boolean addNode(NodeProperties node, float nodeWeight) {
+            assimilateNode(node, nodeWeight);
             return true;
         }
     }
@@ -413,14 +458,14 @@ public class QuadTree implements Node {
     class RootAdd implements AddBehaviour {
 
         @Override
-        public boolean addNode(NodeProperties node) {
-            assimilateNode(node);
-            return addToChildren(node);
+        public boolean addNode(NodeProperties node, float nodeWeight) {
+            assimilateNode(node, nodeWeight);
+            return addToChildren(node, nodeWeight);
         }
     }
 }
 
 interface AddBehaviour {
 
-    public boolean addNode(NodeProperties node);
+    public boolean addNode(NodeProperties node, float nodeWeight);
 }
@@ -42,20 +42,18 @@
 package org.gephi.layout.plugin.force.yifanHu;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
-import org.gephi.graph.api.Node;
-import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.api.LayoutProfiler;
+import org.gephi.layout.plugin.AbstractKernelLayout;
 import org.gephi.layout.plugin.ForceVectorUtils;
-import org.gephi.layout.plugin.force.AbstractForce;
 import org.gephi.layout.plugin.force.Displacement;
-import org.gephi.layout.plugin.force.ForceVector;
-import org.gephi.layout.plugin.force.quadtree.BarnesHut;
-import org.gephi.layout.plugin.force.quadtree.QuadTree;
-import org.gephi.layout.spi.Layout;
+import org.gephi.layout.plugin.force.quadtree.BarnesHutTree;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
+import org.gephi.layout.spi.LayoutWorkspace;
 import org.openide.util.NbBundle;
 
 /**
@@ -63,7 +61,7 @@ import org.openide.util.NbBundle;
  *
  * @author Helder Suzuki <heldersuzuki@gephi.org>
  */
-public class YifanHuLayout extends AbstractLayout implements Layout {
+public class YifanHuLayout extends AbstractKernelLayout {
 
     private float optimalDistance;
     private float relativeStrength;
@@ -79,6 +77,7 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
     private double energy0;
     private double energy;
     private Graph graph;
+    private BarnesHutTree tree;
 
     public YifanHuLayout(LayoutBuilder layoutBuilder, Displacement displacement) {
         super(layoutBuilder);
@@ -97,14 +96,6 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         return displacement;
     }
 
-    private AbstractForce getEdgeForce() {
-        return new SpringForce(getOptimalDistance());
-    }
-
-    private AbstractForce getNodeForce() {
-        return new ElectricalForce(getRelativeStrength(), getOptimalDistance());
-    }
-
     private void updateStep() {
         if (isAdaptiveCooling()) {
             if (energy < energy0) {
@@ -161,60 +152,60 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
         try {
             properties.add(LayoutProperty.createProperty(
                     this, Float.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.optimalDistance.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.optimalDistance.name"),
                     YIFANHU_CATEGORY,
                     "YifanHu.optimalDistance.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.optimalDistance.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.optimalDistance.desc"),
                     "getOptimalDistance", "setOptimalDistance"));
             properties.add(LayoutProperty.createProperty(
                     this, Float.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.relativeStrength.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.relativeStrength.name"),
                     YIFANHU_CATEGORY,
                     "YifanHu.relativeStrength.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.relativeStrength.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.relativeStrength.desc"),
                     "getRelativeStrength", "setRelativeStrength"));
 
             properties.add(LayoutProperty.createProperty(
                     this, Float.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.initialStepSize.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.initialStepSize.name"),
                     YIFANHU_CATEGORY,
                     "YifanHu.initialStepSize.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.initialStepSize.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.initialStepSize.desc"),
                     "getInitialStep", "setInitialStep"));
             properties.add(LayoutProperty.createProperty(
                     this, Float.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.stepRatio.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.stepRatio.name"),
                     YIFANHU_CATEGORY,
                     "YifanHu.stepRatio.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.stepRatio.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.stepRatio.desc"),
                     "getStepRatio", "setStepRatio"));
             properties.add(LayoutProperty.createProperty(
                     this, Boolean.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.adaptativeCooling.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.adaptativeCooling.name"),
                     YIFANHU_CATEGORY,
                     "YifanHu.adaptativeCooling.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.adaptativeCooling.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.adaptativeCooling.desc"),
                     "isAdaptiveCooling", "setAdaptiveCooling"));
             properties.add(LayoutProperty.createProperty(
                     this, Float.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.convergenceThreshold.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.convergenceThreshold.name"),
                     YIFANHU_CATEGORY,
                     "YifanHu.convergenceThreshold.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.convergenceThreshold.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.convergenceThreshold.desc"),
                     "getConvergenceThreshold", "setConvergenceThreshold"));
             properties.add(LayoutProperty.createProperty(
                     this, Integer.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.quadTreeMaxLevel.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.quadTreeMaxLevel.name"),
                     BARNESHUT_CATEGORY,
                     "YifanHu.quadTreeMaxLevel.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.quadTreeMaxLevel.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.quadTreeMaxLevel.desc"),
                     "getQuadTreeMaxLevel", "setQuadTreeMaxLevel"));
             properties.add(LayoutProperty.createProperty(
                     this, Float.class,
-                    NbBundle.getMessage(getClass(), "YifanHu.theta.name"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.theta.name"),
                     BARNESHUT_CATEGORY,
                     "YifanHu.theta.name",
-                    NbBundle.getMessage(getClass(), "YifanHu.theta.desc"),
+                    NbBundle.getMessage(YifanHuLayout.class, "YifanHu.theta.desc"),
                     "getBarnesHutTheta", "setBarnesHutTheta"));
         } catch (Exception e) {
             e.printStackTrace();
@@ -225,95 +216,108 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
 
     @Override
     public void initAlgo() {
-        if (graphModel == null) {
-            return;
+        if (graphModel != null) {
+            graph = graphModel.getGraphVisible();
         }
-        graph = graphModel.getGraphVisible();
+        super.initAlgo();
+    }
+
+    @Override
+    public void initKernel(LayoutWorkspace workspace) {
+        Arrays.fill(workspace.getDx(), 0, workspace.getNodeCount(), 0f);
+        Arrays.fill(workspace.getDy(), 0, workspace.getNodeCount(), 0f);
+        resetCooling(initialStep);
+    }
+
+    /* Restarts the cooling schedule from step, with no previous energy */
+    protected void resetCooling(float step) {
         energy = Float.POSITIVE_INFINITY;
-        for (Node n : graph.getNodes()) {
-            n.setLayoutData(new ForceVector());
-        }
         progress = 0;
         setConverged(false);
-        setStep(initialStep);
+        setStep(step);
     }
 
     @Override
-    public void endAlgo() {
-        for (Node n : graph.getNodes()) {
-            n.setLayoutData(null);
-        }
+    public void endKernel(LayoutWorkspace workspace) {
+        tree = null;
     }
 
     @Override
-    public void goAlgo() {
-        graph = graphModel.getGraphVisible();
-        graph.readLock();
-        Node[] nodes = graph.getNodes().toArray();
-        for (Node n : nodes) {
-            if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceVector)) {
-                n.setLayoutData(new ForceVector());
-            }
-        }
+    public void step(LayoutWorkspace workspace) {
+        applyForces(workspace, getOptimalDistance());
+        postAlgo();
+    }
+
+    /* Adds the repulsion and spring forces of workspace to the force of its
+     * nodes, updates the energy and moves the nodes along their normalized
+     * force
+     */
+    protected void applyForces(LayoutWorkspace workspace, float optimalDistance) {
+        int nodeCount = workspace.getNodeCount();
+        float[] x = workspace.getX();
+        float[] y = workspace.getY();
+        float[] dx = workspace.getDx();
+        float[] dy = workspace.getDy();
+        boolean[] fixed = workspace.getFixed();
 
         // Evaluates n^2 inter node forces using BarnesHut.
-        QuadTree tree = QuadTree.buildTree(graph, getQuadTreeMaxLevel());
-
-//        double electricEnergy = 0; ///////////////////////
-//        double springEnergy = 0; ///////////////////////
-        BarnesHut barnes = new BarnesHut(getNodeForce());
-        barnes.setTheta(getBarnesHutTheta());
-        for (Node node : nodes) {
-            ForceVector layoutData = node.getLayoutData();
-
-            ForceVector f = barnes.calculateForce(node, tree);
-            layoutData.add(f);
-//            electricEnergy += f.getEnergy();
+        // Unlike the former graph QuadTree, regions are split around their
+        // mass center, opened by their extent rather than their cell size, and
+        // regions at the max level push with the mass of all their nodes.
+        startPhase(LayoutProfiler.TREE_BUILD);
+        if (tree == null) {
+            tree = new BarnesHutTree();
         }
-
-        // Apply edge forces.
-
-        for (Edge e : graph.getEdges()) {
-            if (!e.getSource().equals(e.getTarget())) {
-                Node n1 = e.getSource();
-                Node n2 = e.getTarget();
-                ForceVector f1 = n1.getLayoutData();
-                ForceVector f2 = n2.getLayoutData();
-
-                ForceVector f = getEdgeForce().calculateForce(n1, n2);
-                f1.add(f);
-                f2.subtract(f);
+        tree.setMaxDepth(getQuadTreeMaxLevel());
+        tree.build(x, y, null, nodeCount, null, 1);
+        startPhase(LayoutProfiler.REPULSION);
+        ElectricalForce nodeForce = new ElectricalForce(workspace, getRelativeStrength(), optimalDistance);
+        long[] counters = new long[2];
+        for (int n = 0; n < nodeCount; n++) {
+            tree.applyForce(n, nodeForce, getBarnesHutTheta(), counters);
+        }
+        addCount(LayoutProfiler.NODES_VISITED, counters[0]);
+        addCount(LayoutProfiler.APPROXIMATIONS, counters[1]);
+
+        // Apply edge forces, Fa = (n2 - n1) * ||n2 - n1|| / K
+        startPhase(LayoutProfiler.ATTRACTION);
+        int[] edgeStart = workspace.getEdgeStart();
+        int[] edgeTargets = workspace.getEdgeTargets();
+        for (int n1 = 0; n1 < nodeCount; n1++) {
+            for (int e = edgeStart[n1]; e < edgeStart[n1 + 1]; e++) {
+                int n2 = edgeTargets[e];
+                float xDist = x[n2] - x[n1];
+                float yDist = y[n2] - y[n1];
+                float scale = (float) Math.hypot(xDist, yDist) / optimalDistance;
+                dx[n1] += xDist * scale;
+                dy[n1] += yDist * scale;
+                dx[n2] -= xDist * scale;
+                dy[n2] -= yDist * scale;
             }
         }
 
         // Calculate energy and max force.
+        startPhase(LayoutProfiler.POSITION_UPDATE);
         energy0 = energy;
         energy = 0;
         double maxForce = 1;
-        for (Node n : nodes) {
-            ForceVector force = n.getLayoutData();
-
-            energy += force.getNorm();
-            maxForce = Math.max(maxForce, force.getNorm());
+        for (int n = 0; n < nodeCount; n++) {
+            float norm = (float) Math.sqrt(dx[n] * dx[n] + dy[n] * dy[n]);
+            energy += norm;
+            maxForce = Math.max(maxForce, norm);
         }
 
         // Apply displacements on nodes.
-        for (Node n : nodes) {
-            if (!n.isFixed()) {
-                ForceVector force = n.getLayoutData();
-
-                force.multiply((float) (1.0 / maxForce));
-                getDisplacement().moveNode(n, force);
+        Displacement nodeDisplacement = getDisplacement();
+        for (int n = 0; n < nodeCount; n++) {
+            if (!fixed[n]) {
+                dx[n] *= (float) (1.0 / maxForce);
+                dy[n] *= (float) (1.0 / maxForce);
+                nodeDisplacement.moveNode(workspace, n);
             }
         }
-        postAlgo();
-//        springEnergy = energy - electricEnergy;
-//        System.out.println("electric: " + electricEnergy + "    spring: " + springEnergy);
-//        System.out.println("energy0 = " + energy0 + "   energy = " + energy);
-        graph.readUnlock();
     }
 
-
     /* Maximum level for Barnes-Hut's quadtree */
     public Integer getQuadTreeMaxLevel() {
         return quadTreeMaxLevel;
@@ -424,63 +428,48 @@ public class YifanHuLayout extends AbstractLayout implements Layout {
     }
 
     /**
-     * Fa = (n2 - n1) * ||n2 - n1|| / K
+     * Fr = -C*K*K*(n2-n1)/||n2-n1||
      *
      * @author Helder Suzuki <heldersuzuki@gephi.org>
      */
-    public class SpringForce extends AbstractForce {
-
-        private float optimalDistance;
-
-        public SpringForce(float optimalDistance) {
+    private static class ElectricalForce implements BarnesHutTree.Force {
+
+        private final float[] x;
+        private final float[] y;
+        private final float[] dx;
+        private final float[] dy;
+        private final float relativeStrength;
+        private final float optimalDistance;
+
+        public ElectricalForce(LayoutWorkspace workspace, float relativeStrength, float optimalDistance) {
+            this.x = workspace.getX();
+            this.y = workspace.getY();
+            this.dx = workspace.getDx();
+            this.dy = workspace.getDy();
+            this.relativeStrength = relativeStrength;
             this.optimalDistance = optimalDistance;
         }
 
         @Override
-        public ForceVector calculateForce(Node node1, Node node2,
-                float distance) {
-            ForceVector f = new ForceVector(node2.x() - node1.x(),
-                    node2.y() - node1.y());
-            f.multiply(distance / optimalDistance);
-            return f;
-        }
-
-        public void setOptimalDistance(Float optimalDistance) {
-            this.optimalDistance = optimalDistance;
-        }
-
-        public Float getOptimalDistance() {
-            return optimalDistance;
-        }
-    }
-
-    /**
-     * Fr = -C*K*K*(n2-n1)/||n2-n1||
-     *
-     * @author Helder Suzuki <heldersuzuki@gephi.org>
-     */
-    public class ElectricalForce extends AbstractForce {
-
-        private float relativeStrength;
-        private float optimalDistance;
-
-        public ElectricalForce(float relativeStrength, float optimalDistance) {
-            this.relativeStrength = relativeStrength;
-            this.optimalDistance = optimalDistance;
+        public void apply(int n1, int n2) {
+            apply(n1, 1, x[n2], y[n2]);
         }
 
         @Override
-        public ForceVector calculateForce(Node node1, Node node2,
-                float distance) {
-            ForceVector f = new ForceVector(node2.x() - node1.x(),
-                    node2.y() - node1.y());
+        public void apply(int n, double mass, double massCenterX, double massCenterY) {
+            float xDist = (float) massCenterX - x[n];
+            float yDist = (float) massCenterY - y[n];
+            float distance = (float) Math.hypot(xDist, yDist);
+            if (distance < 1e-8) {
+                return;
+            }
             float scale = -relativeStrength * optimalDistance * optimalDistance / (distance * distance);
             if (Float.isNaN(scale) || Float.isInfinite(scale)) {
                 scale = -1;
             }
 
-            f.multiply(scale);
-            return f;
+            dx[n] += xDist * scale * (float) mass;
+            dy[n] += yDist * scale * (float) mass;
         }
     }
 }
@@ -43,12 +43,20 @@ package org.gephi.layout.plugin.forceAtlas;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.Node;
 import org.gephi.layout.plugin.AbstractLayout;
 import org.gephi.layout.plugin.ForceVectorNodeLayoutData;
 import org.gephi.layout.plugin.ForceVectorUtils;
+import org.gephi.layout.plugin.ParallelTasks;
+import org.gephi.layout.plugin.force.AbstractForce;
+import org.gephi.layout.plugin.force.ForceVector;
+import org.gephi.layout.plugin.force.quadtree.BarnesHut;
+import org.gephi.layout.plugin.force.quadtree.QuadTree;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -75,9 +83,17 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
     private double cooling;
     private boolean outboundAttractionDistribution;
     private boolean adjustSizes;
+    private boolean barnesHutOptimize;
+    private double barnesHutTheta;
+    private int threadCount;
+    //Threads
+    private int currentThreadCount;
+    private ExecutorService pool;
+    private static final int QUADTREE_MAX_LEVEL = 10;
 
     public ForceAtlasLayout(LayoutBuilder layoutBuilder) {
         super(layoutBuilder);
+        this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     }
 
     @Override
@@ -94,16 +110,29 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
         setAdjustSizes(false);
         setSpeed(1d);
         setCooling(1d);
+        setBarnesHutOptimize(false);
+        setBarnesHutTheta(1.2);
     }
 
     @Override
     public void initAlgo() {
+        pool = Executors.newFixedThreadPool(threadCount);
+        currentThreadCount = threadCount;
     }
 
     @Override
     public void goAlgo() {
         this.graph = graphModel.getGraphVisible();
         graph.readLock();
+        //A failed repulsion task is rethrown, the lock is released anyway
+        try {
+            move();
+        } finally {
+            graph.readUnlock();
+        }
+    }
+
+    private void move() {
         Node[] nodes = graph.getNodes().toArray();
         Edge[] edges = graph.getEdges().toArray();
 
@@ -121,7 +150,9 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
             layoutData.dy *= inertia;
         }
         // repulsion
-        if (isAdjustSizes()) {
+        if (isBarnesHutOptimize()) {
+            barnesHutRepulsion(nodes);
+        } else if (isAdjustSizes()) {
             for (Node n1 : nodes) {
                 for (Node n2 : nodes) {
                     if (n1 != n2) {
@@ -222,7 +253,45 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
                 n.setY(y);
             }
         }
-        graph.readUnlock();
+    }
+
+    /**
+     * Approximates the repulsion with Barnes-Hut: each node counts for
+     * <code>1 + degree</code> in the tree, like in the exact repulsion, but
+     * distances are measured between centers. Multi-threaded, each task only
+     * writes the forces of its own nodes.
+     */
+    private void barnesHutRepulsion(final Node[] nodes) {
+        final float[] weights = new float[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            weights[i] = 1 + graph.getDegree(nodes[i]);
+        }
+        final QuadTree tree = QuadTree.buildTree(nodes, weights, QUADTREE_MAX_LEVEL);
+        final BarnesHut barnes = new BarnesHut(new RepulsionForce(getRepulsionStrength()));
+        barnes.setTheta(getBarnesHutTheta().floatValue());
+        barnes.setWeighted(true);
+
+        int taskCount = 8 * currentThreadCount;
+        List<Future<?>> threads = new ArrayList<Future<?>>();
+        for (int t = 0; t < taskCount; t++) {
+            final int from = (int) ((long) nodes.length * t / taskCount);
+            final int to = (int) ((long) nodes.length * (t + 1) / taskCount);
+            threads.add(pool.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int i = from; i < to; i++) {
+                        ForceVector f = barnes.calculateForce(nodes[i], tree);
+                        if (f != null) {
+                            ForceVectorNodeLayoutData layoutData = nodes[i].getLayoutData();
+                            layoutData.dx += weights[i] * f.x();
+                            layoutData.dy += weights[i] * f.y();
+                        }
+                    }
+                }
+            }));
+        }
+        ParallelTasks.getAll(threads);
     }
 
     @Override
@@ -230,6 +299,7 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
         for (Node n : graph.getNodes()) {
             n.setLayoutData(null);
         }
+        pool.shutdown();
     }
 
     @Override
@@ -320,6 +390,27 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
                     "forceAtlas.speed.name",
                     NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.speed.desc"),
                     "getSpeed", "setSpeed"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.barnesHutOptimization.name"),
+                    FORCE_ATLAS,
+                    "forceAtlas.barnesHutOptimization.name",
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.barnesHutOptimization.desc"),
+                    "isBarnesHutOptimize", "setBarnesHutOptimize"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.barnesHutTheta.name"),
+                    FORCE_ATLAS,
+                    "forceAtlas.barnesHutTheta.name",
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.barnesHutTheta.desc"),
+                    "getBarnesHutTheta", "setBarnesHutTheta"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.threads.name"),
+                    FORCE_ATLAS,
+                    "forceAtlas.threads.name",
+                    NbBundle.getMessage(ForceAtlasLayout.class, "forceAtlas.threads.desc"),
+                    "getThreadsCount", "setThreadsCount"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -489,4 +580,69 @@ public class ForceAtlasLayout extends AbstractLayout implements Layout {
     public void setAdjustSizes(Boolean adjustSizes) {
         this.adjustSizes = adjustSizes;
     }
+
+    /**
+     * @return the barnesHutOptimize
+     */
+    public Boolean isBarnesHutOptimize() {
+        return barnesHutOptimize;
+    }
+
+    /**
+     * @param barnesHutOptimize the barnesHutOptimize to set
+     */
+    public void setBarnesHutOptimize(Boolean barnesHutOptimize) {
+        this.barnesHutOptimize = barnesHutOptimize;
+    }
+
+    /**
+     * @return the barnesHutTheta
+     */
+    public Double getBarnesHutTheta() {
+        return barnesHutTheta;
+    }
+
+    /**
+     * @param barnesHutTheta the barnesHutTheta to set
+     */
+    public void setBarnesHutTheta(Double barnesHutTheta) {
+        this.barnesHutTheta = barnesHutTheta;
+    }
+
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
+
+    public void setThreadsCount(Integer threadCount) {
+        if (threadCount < 1) {
+            setThreadsCount(1);
+        } else {
+            this.threadCount = threadCount;
+        }
+    }
+
+    /**
+     * Repulsion between a node and a unit of weight, counted both ways like
+     * in the exact repulsion. The weight of the node itself is applied by
+     * the caller.
+     */
+    public class RepulsionForce extends AbstractForce {
+
+        private double strength;
+
+        public RepulsionForce(double strength) {
+            this.strength = strength;
+        }
+
+        @Override
+        public ForceVector calculateForce(Node node1, Node node2, float distance) {
+            if (distance <= 0) {
+                return new ForceVector();
+            }
+            float xDist = node1.x() - node2.x();
+            float yDist = node1.y() - node2.y();
+            float f = (float) (2 * 0.001 * strength / distance);
+            return new ForceVector(xDist / distance * f, yDist / distance * f);
+        }
+    }
 }
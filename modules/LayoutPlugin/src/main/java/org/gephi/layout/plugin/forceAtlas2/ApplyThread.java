@@ -0,0 +1,108 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import org.gephi.layout.spi.LayoutWorkspace;
+
+/**
+ * Moves a range of nodes according to their forces and the global speed.
+ */
+public class ApplyThread implements Runnable {
+
+    private LayoutWorkspace workspace;
+    private float[] oldDx;
+    private float[] oldDy;
+    private int from;
+    private int to;
+    private double speed;
+    private boolean adjustSizes;
+
+    public ApplyThread(LayoutWorkspace workspace, float[] oldDx, float[] oldDy, int from, int to, double speed, boolean adjustSizes) {
+        this.workspace = workspace;
+        this.oldDx = oldDx;
+        this.oldDy = oldDy;
+        this.from = from;
+        this.to = to;
+        this.speed = speed;
+        this.adjustSizes = adjustSizes;
+    }
+
+    @Override
+    public void run() {
+        float[] x = workspace.getX();
+        float[] y = workspace.getY();
+        float[] dx = workspace.getDx();
+        float[] dy = workspace.getDy();
+        boolean[] fixed = workspace.getFixed();
+        if (adjustSizes) {
+            // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
+            for (int nIndex = from; nIndex < to; nIndex++) {
+                if (!fixed[nIndex]) {
+
+                    // Adaptive auto-speed: the speed of each node is lowered
+                    // when the node swings.
+                    double swinging = Math.sqrt((oldDx[nIndex] - dx[nIndex]) * (oldDx[nIndex] - dx[nIndex]) + (oldDy[nIndex] - dy[nIndex]) * (oldDy[nIndex] - dy[nIndex]));
+                    double factor = 0.1 * speed / (1f + speed * Math.sqrt(swinging));
+
+                    double df = Math.sqrt(Math.pow(dx[nIndex], 2) + Math.pow(dy[nIndex], 2));
+                    factor = Math.min(factor * df, 10.) / df;
+
+                    x[nIndex] = (float) (x[nIndex] + dx[nIndex] * factor);
+                    y[nIndex] = (float) (y[nIndex] + dy[nIndex] * factor);
+                }
+            }
+        } else {
+            for (int nIndex = from; nIndex < to; nIndex++) {
+                if (!fixed[nIndex]) {
+
+                    // Adaptive auto-speed: the speed of each node is lowered
+                    // when the node swings.
+                    double swinging = Math.sqrt((oldDx[nIndex] - dx[nIndex]) * (oldDx[nIndex] - dx[nIndex]) + (oldDy[nIndex] - dy[nIndex]) * (oldDy[nIndex] - dy[nIndex]));
+                    //double factor = speed / (1f + Math.sqrt(speed * swinging));
+                    double factor = speed / (1f + speed * Math.sqrt(swinging));
+
+                    x[nIndex] = (float) (x[nIndex] + dx[nIndex] * factor);
+                    y[nIndex] = (float) (y[nIndex] + dy[nIndex] * factor);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import org.gephi.layout.plugin.forceAtlas2.ForceFactory.AttractionForce;
+import org.gephi.layout.spi.LayoutWorkspace;
+
+/**
+ * Attraction on the edges of a range of source nodes. When buffers are given,
+ * forces are accumulated in them instead of the workspace, so that several
+ * threads can work at the same time. Buffers are then merged by
+ * {@link SpeedThread}.
+ */
+public class EdgesThread implements Runnable {
+
+    private LayoutWorkspace workspace;
+    private int from;
+    private int to;
+    private AttractionForce Attraction;
+    private double edgeWeightInfluence;
+    private float[] dxBuffer;
+    private float[] dyBuffer;
+
+    public EdgesThread(LayoutWorkspace workspace, int from, int to, AttractionForce Attraction, double edgeWeightInfluence, float[] dxBuffer, float[] dyBuffer) {
+        this.workspace = workspace;
+        this.from = from;
+        this.to = to;
+        this.Attraction = Attraction;
+        this.edgeWeightInfluence = edgeWeightInfluence;
+        this.dxBuffer = dxBuffer;
+        this.dyBuffer = dyBuffer;
+    }
+
+    @Override
+    public void run() {
+        float[] x = workspace.getX();
+        float[] y = workspace.getY();
+        int[] edgeStart = workspace.getEdgeStart();
+        int[] edgeTargets = workspace.getEdgeTargets();
+        float[] edgeWeights = workspace.getEdgeWeights();
+        for (int n1 = from; n1 < to; n1++) {
+            for (int eIndex = edgeStart[n1]; eIndex < edgeStart[n1 + 1]; eIndex++) {
+                int n2 = edgeTargets[eIndex];
+                double weight;
+                if (edgeWeightInfluence == 0) {
+                    weight = 1;
+                } else if (edgeWeightInfluence == 1) {
+                    weight = edgeWeights[eIndex];
+                } else {
+                    weight = Math.pow(edgeWeights[eIndex], edgeWeightInfluence);
+                }
+
+                if (dxBuffer == null) {
+                    Attraction.apply(n1, n2, weight);
+                } else {
+                    double factor = Attraction.factor(n1, n2, weight);
+                    if (factor != 0) {
+                        double xDist = x[n1] - x[n2];
+                        double yDist = y[n1] - y[n2];
+
+                        dxBuffer[n1] += xDist * factor;
+                        dyBuffer[n1] += yDist * factor;
+
+                        dxBuffer[n2] -= xDist * factor;
+                        dyBuffer[n2] -= yDist * factor;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -42,33 +42,32 @@
 package org.gephi.layout.plugin.forceAtlas2;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphModel;
-import org.gephi.graph.api.Node;
+import org.gephi.layout.api.LayoutProfiler;
+import org.gephi.layout.plugin.AbstractKernelLayout;
+import org.gephi.layout.plugin.ParallelTasks;
+import org.gephi.layout.plugin.force.quadtree.BarnesHutTree;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.AttractionForce;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
-import org.gephi.layout.spi.Layout;
-import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
-import org.openide.util.Exceptions;
+import org.gephi.layout.spi.LayoutWorkspace;
 import org.openide.util.NbBundle;
 
 /**
  * ForceAtlas 2 Layout, manages each step of the computations.
+ * <p>
+ * The computations run on the arrays of a {@link LayoutWorkspace}, positions
+ * are written back to the graph at each synchronization.
  *
  * @author Mathieu Jacomy
  */
-public class ForceAtlas2 implements Layout {
+public class ForceAtlas2 extends AbstractKernelLayout {
 
-    private GraphModel graphModel;
-    private Graph graph;
-    private final ForceAtlas2Builder layoutBuilder;
     private double edgeWeightInfluence;
     private double jitterTolerance;
     private double scalingRatio;
@@ -82,133 +81,140 @@ public class ForceAtlas2 implements Layout {
     private boolean strongGravityMode;
     private int threadCount;
     private int currentThreadCount;
-    private Region rootRegion;
+    private BarnesHutTree barnesHutTree;
+    private float[] oldDx;
+    private float[] oldDy;
+    private float[][] dxBuffers;
+    private float[][] dyBuffers;
     double outboundAttCompensation = 1;
     private ExecutorService pool;
 
     public ForceAtlas2(ForceAtlas2Builder layoutBuilder) {
-        this.layoutBuilder = layoutBuilder;
+        super(layoutBuilder);
         this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     }
 
     @Override
-    public void initAlgo() {
+    public void initKernel(LayoutWorkspace workspace) {
         speed = 1.;
 
-        graph = graphModel.getGraphVisible();
-
-        graph.readLock();
-        Node[] nodes = graph.getNodes().toArray();
-
-        // Initialise layout data
-        for (Node n : nodes) {
-            if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
-                ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
-                n.setLayoutData(nLayout);
-            }
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-            nLayout.mass = 1 + graph.getDegree(n);
-            nLayout.old_dx = 0;
-            nLayout.old_dy = 0;
-            nLayout.dx = 0;
-            nLayout.dy = 0;
-        }
+        int nodeCount = workspace.getNodeCount();
+        oldDx = new float[nodeCount];
+        oldDy = new float[nodeCount];
+        Arrays.fill(workspace.getDx(), 0, nodeCount, 0f);
+        Arrays.fill(workspace.getDy(), 0, nodeCount, 0f);
 
         pool = Executors.newFixedThreadPool(threadCount);
         currentThreadCount = threadCount;
     }
 
     @Override
-    public void goAlgo() {
-        // Initialize graph data
-        if (graphModel == null) {
-            return;
-        }
-        graph = graphModel.getGraphVisible();
-
-        graph.readLock();
-        Node[] nodes = graph.getNodes().toArray();
-        Edge[] edges = graph.getEdges().toArray();
+    public void step(LayoutWorkspace workspace) {
+        int nodeCount = workspace.getNodeCount();
+        float[] dx = workspace.getDx();
+        float[] dy = workspace.getDy();
+        float[] mass = workspace.getMass();
 
         // Initialise layout data
-        for (Node n : nodes) {
-            if (n.getLayoutData() == null || !(n.getLayoutData() instanceof ForceAtlas2LayoutData)) {
-                ForceAtlas2LayoutData nLayout = new ForceAtlas2LayoutData();
-                n.setLayoutData(nLayout);
-            }
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-            nLayout.mass = 1 + graph.getDegree(n);
-            nLayout.old_dx = nLayout.dx;
-            nLayout.old_dy = nLayout.dy;
-            nLayout.dx = 0;
-            nLayout.dy = 0;
-        }
+        startPhase(LayoutProfiler.TREE_BUILD);
+        System.arraycopy(dx, 0, oldDx, 0, nodeCount);
+        System.arraycopy(dy, 0, oldDy, 0, nodeCount);
+        Arrays.fill(dx, 0, nodeCount, 0f);
+        Arrays.fill(dy, 0, nodeCount, 0f);
 
-        // If Barnes Hut active, initialize root region
+        // If Barnes Hut active, build the tree
         if (isBarnesHutOptimize()) {
-            rootRegion = new Region(nodes);
-            rootRegion.buildSubRegions();
+            if (barnesHutTree == null) {
+                barnesHutTree = new BarnesHutTree();
+            }
+            barnesHutTree.build(workspace.getX(), workspace.getY(), mass, nodeCount, pool, currentThreadCount);
         }
 
         // If outboundAttractionDistribution active, compensate.
         if (isOutboundAttractionDistribution()) {
             outboundAttCompensation = 0;
-            for (Node n : nodes) {
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                outboundAttCompensation += nLayout.mass;
+            for (int nIndex = 0; nIndex < nodeCount; nIndex++) {
+                outboundAttCompensation += mass[nIndex];
             }
-            outboundAttCompensation /= nodes.length;
+            outboundAttCompensation /= nodeCount;
         }
 
-        // Repulsion (and gravity)
+        // Repulsion
         // NB: Muti-threaded
-        RepulsionForce Repulsion = ForceFactory.builder.buildRepulsion(isAdjustSizes(), getScalingRatio());
+        startPhase(LayoutProfiler.REPULSION);
+        RepulsionForce Repulsion = ForceFactory.builder.buildRepulsion(workspace, isAdjustSizes(), getScalingRatio());
 
         int taskCount = 8 * currentThreadCount;  // The threadPool Executor Service will manage the fetching of tasks and threads.
         // We make more tasks than threads because some tasks may need more time to compute.
-        ArrayList<Future> threads = new ArrayList();
+        List<NodesThread> nodesThreads = new ArrayList<NodesThread>();
         for (int t = taskCount; t > 0; t--) {
-            int from = (int) Math.floor(nodes.length * (t - 1) / taskCount);
-            int to = (int) Math.floor(nodes.length * t / taskCount);
-            Future future = pool.submit(new NodesThread(nodes, from, to, isBarnesHutOptimize(), getBarnesHutTheta(), getGravity(), (isStrongGravityMode()) ? (ForceFactory.builder.getStrongGravity(getScalingRatio())) : (Repulsion), getScalingRatio(), rootRegion, Repulsion));
-            threads.add(future);
+            int from = (int) Math.floor(nodeCount * (t - 1) / taskCount);
+            int to = (int) Math.floor(nodeCount * t / taskCount);
+            nodesThreads.add(new NodesThread(from, to, isBarnesHutOptimize(), getBarnesHutTheta(), barnesHutTree, Repulsion));
         }
-        for (Future future : threads) {
-            try {
-                future.get();
-            } catch (InterruptedException ex) {
-                Exceptions.printStackTrace(ex);
-            } catch (ExecutionException ex) {
-                Exceptions.printStackTrace(ex);
-            }
+        execute(new ArrayList<Runnable>(nodesThreads));
+        long visited = 0;
+        long approximations = 0;
+        for (NodesThread nodesThread : nodesThreads) {
+            visited += nodesThread.getCounters()[0];
+            approximations += nodesThread.getCounters()[1];
+        }
+        addCount(LayoutProfiler.NODES_VISITED, visited);
+        addCount(LayoutProfiler.APPROXIMATIONS, approximations);
+
+        // Gravity
+        // NB: Muti-threaded
+        startPhase(LayoutProfiler.GRAVITY);
+        RepulsionForce GravityForce = (isStrongGravityMode()) ? (ForceFactory.builder.getStrongGravity(workspace, getScalingRatio())) : (Repulsion);
+        List<Runnable> gravityThreads = new ArrayList<Runnable>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) nodeCount * t / taskCount);
+            int to = (int) ((long) nodeCount * (t + 1) / taskCount);
+            gravityThreads.add(new GravityThread(from, to, getGravity(), GravityForce, getScalingRatio()));
         }
+        execute(gravityThreads);
 
         // Attraction
-        AttractionForce Attraction = ForceFactory.builder.buildAttraction(isLinLogMode(), isOutboundAttractionDistribution(), isAdjustSizes(), 1 * ((isOutboundAttractionDistribution()) ? (outboundAttCompensation) : (1)));
-        if (getEdgeWeightInfluence() == 0) {
-            for (Edge e : edges) {
-                Attraction.apply(e.getSource(), e.getTarget(), 1);
+        // NB: Muti-threaded, each thread accumulates its forces in its own buffers
+        // and works on a range of source nodes holding about the same number of edges
+        startPhase(LayoutProfiler.ATTRACTION);
+        AttractionForce Attraction = ForceFactory.builder.buildAttraction(workspace, isLinLogMode(), isOutboundAttractionDistribution(), isAdjustSizes(), 1 * ((isOutboundAttractionDistribution()) ? (outboundAttCompensation) : (1)));
+        if (currentThreadCount > 1) {
+            if (dxBuffers == null || dxBuffers.length != currentThreadCount || dxBuffers[0].length < nodeCount) {
+                dxBuffers = new float[currentThreadCount][nodeCount];
+                dyBuffers = new float[currentThreadCount][nodeCount];
             }
-        } else if (getEdgeWeightInfluence() == 1) {
-            for (Edge e : edges) {
-                Attraction.apply(e.getSource(), e.getTarget(), e.getWeight());
+            int edgeCount = workspace.getEdgeCount();
+            List<Runnable> edgesThreads = new ArrayList<Runnable>();
+            for (int t = 0; t < currentThreadCount; t++) {
+                int from = firstNodeWithEdge(workspace, (int) ((long) edgeCount * t / currentThreadCount));
+                int to = firstNodeWithEdge(workspace, (int) ((long) edgeCount * (t + 1) / currentThreadCount));
+                if (t == currentThreadCount - 1) {
+                    to = nodeCount;
+                }
+                edgesThreads.add(new EdgesThread(workspace, from, to, Attraction, getEdgeWeightInfluence(), dxBuffers[t], dyBuffers[t]));
             }
+            execute(edgesThreads);
         } else {
-            for (Edge e : edges) {
-                Attraction.apply(e.getSource(), e.getTarget(), Math.pow(e.getWeight(), getEdgeWeightInfluence()));
-            }
+            dxBuffers = null;
+            dyBuffers = null;
+            new EdgesThread(workspace, 0, nodeCount, Attraction, getEdgeWeightInfluence(), null, null).run();
         }
 
         // Auto adjust speed
+        // NB: Muti-threaded, the buffers are merged at the same time
+        startPhase(LayoutProfiler.POSITION_UPDATE);
         double totalSwinging = 0d;  // How much irregular movement
         double totalEffectiveTraction = 0d;  // Hom much useful movement
-        for (Node n : nodes) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-            if (!n.isFixed()) {
-                double swinging = Math.sqrt(Math.pow(nLayout.old_dx - nLayout.dx, 2) + Math.pow(nLayout.old_dy - nLayout.dy, 2));
-                totalSwinging += nLayout.mass * swinging;   // If the node has a burst change of direction, then it's not converging.
-                totalEffectiveTraction += nLayout.mass * 0.5 * Math.sqrt(Math.pow(nLayout.old_dx + nLayout.dx, 2) + Math.pow(nLayout.old_dy + nLayout.dy, 2));
-            }
+        ArrayList<Future<double[]>> speedThreads = new ArrayList<Future<double[]>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) nodeCount * t / taskCount);
+            int to = (int) ((long) nodeCount * (t + 1) / taskCount);
+            speedThreads.add(pool.submit(new SpeedThread(workspace, oldDx, oldDy, from, to, dxBuffers, dyBuffers)));
+        }
+        for (double[] totals : ParallelTasks.getAll(speedThreads)) {
+            totalSwinging += totals[0];
+            totalEffectiveTraction += totals[1];
         }
         // We want that swingingMovement < tolerance * convergenceMovement
         double targetSpeed = getJitterTolerance() * getJitterTolerance() * totalEffectiveTraction / totalSwinging;
@@ -218,61 +224,54 @@ public class ForceAtlas2 implements Layout {
         speed = speed + Math.min(targetSpeed - speed, maxRise * speed);
 
         // Apply forces
-        if (isAdjustSizes()) {
-            // If nodes overlap prevention is active, it's not possible to trust the swinging mesure.
-            for (Node n : nodes) {
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                if (!n.isFixed()) {
-
-                    // Adaptive auto-speed: the speed of each node is lowered
-                    // when the node swings.
-                    double swinging = Math.sqrt((nLayout.old_dx - nLayout.dx) * (nLayout.old_dx - nLayout.dx) + (nLayout.old_dy - nLayout.dy) * (nLayout.old_dy - nLayout.dy));
-                    double factor = 0.1 * speed / (1f + speed * Math.sqrt(swinging));
-
-                    double df = Math.sqrt(Math.pow(nLayout.dx, 2) + Math.pow(nLayout.dy, 2));
-                    factor = Math.min(factor * df, 10.) / df;
-
-                    double x = n.x() + nLayout.dx * factor;
-                    double y = n.y() + nLayout.dy * factor;
-
-                    n.setX((float) x);
-                    n.setY((float) y);
-                }
-            }
-        } else {
-            for (Node n : nodes) {
-                ForceAtlas2LayoutData nLayout = n.getLayoutData();
-                if (!n.isFixed()) {
-
-                    // Adaptive auto-speed: the speed of each node is lowered
-                    // when the node swings.
-                    double swinging = Math.sqrt((nLayout.old_dx - nLayout.dx) * (nLayout.old_dx - nLayout.dx) + (nLayout.old_dy - nLayout.dy) * (nLayout.old_dy - nLayout.dy));
-                    //double factor = speed / (1f + Math.sqrt(speed * swinging));
-                    double factor = speed / (1f + speed * Math.sqrt(swinging));
-
-                    double x = n.x() + nLayout.dx * factor;
-                    double y = n.y() + nLayout.dy * factor;
+        // NB: Muti-threaded
+        List<Runnable> applyThreads = new ArrayList<Runnable>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) nodeCount * t / taskCount);
+            int to = (int) ((long) nodeCount * (t + 1) / taskCount);
+            applyThreads.add(new ApplyThread(workspace, oldDx, oldDy, from, to, speed, isAdjustSizes()));
+        }
+        execute(applyThreads);
+    }
 
-                    n.setX((float) x);
-                    n.setY((float) y);
-                }
+    /**
+     * Returns the first node whose edges start at or after
+     * <code>edgeIndex</code>.
+     */
+    private static int firstNodeWithEdge(LayoutWorkspace workspace, int edgeIndex) {
+        int[] edgeStart = workspace.getEdgeStart();
+        int low = 0;
+        int high = workspace.getNodeCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edgeStart[mid] < edgeIndex) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-        graph.readUnlockAll();
+        return low;
     }
 
-    @Override
-    public boolean canAlgo() {
-        return graphModel != null;
+    private void execute(List<Runnable> tasks) {
+        List<Future<?>> threads = new ArrayList<Future<?>>();
+        for (Runnable task : tasks) {
+            threads.add(pool.submit(task));
+        }
+        ParallelTasks.getAll(threads);
     }
 
     @Override
-    public void endAlgo() {
-        for (Node n : graph.getNodes()) {
-            n.setLayoutData(null);
+    public void endKernel(LayoutWorkspace workspace) {
+        barnesHutTree = null;
+        oldDx = null;
+        oldDy = null;
+        dxBuffers = null;
+        dyBuffers = null;
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
         }
-        pool.shutdown();
-        graph.readUnlockAll();
     }
 
     @Override
@@ -419,14 +418,9 @@ public class ForceAtlas2 implements Layout {
         setThreadsCount(2);
     }
 
-    @Override
-    public LayoutBuilder getBuilder() {
-        return layoutBuilder;
-    }
-
     @Override
     public void setGraphModel(GraphModel graphModel) {
-        this.graphModel = graphModel;
+        super.setGraphModel(graphModel);
         // Trick: reset here to take the profile of the graph in account for default values
         resetPropertiesValues();
     }
@@ -41,7 +41,8 @@
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
-import org.gephi.graph.api.Node;
+import org.gephi.layout.plugin.force.quadtree.BarnesHutTree;
+import org.gephi.layout.spi.LayoutWorkspace;
 
 /**
  * Generates the forces on demand, here are all the formulas for attraction and
@@ -58,62 +59,105 @@ public class ForceFactory {
 
     ;
 
-    public RepulsionForce buildRepulsion(boolean adjustBySize, double coefficient) {
+    public RepulsionForce buildRepulsion(LayoutWorkspace workspace, boolean adjustBySize, double coefficient) {
         if (adjustBySize) {
-            return new linRepulsion_antiCollision(coefficient);
+            return new linRepulsion_antiCollision(workspace, coefficient);
         } else {
-            return new linRepulsion(coefficient);
+            return new linRepulsion(workspace, coefficient);
         }
     }
 
-    public RepulsionForce getStrongGravity(double coefficient) {
-        return new strongGravity(coefficient);
+    public RepulsionForce getStrongGravity(LayoutWorkspace workspace, double coefficient) {
+        return new strongGravity(workspace, coefficient);
     }
 
-    public AttractionForce buildAttraction(boolean logAttraction, boolean distributedAttraction, boolean adjustBySize, double coefficient) {
+    public AttractionForce buildAttraction(LayoutWorkspace workspace, boolean logAttraction, boolean distributedAttraction, boolean adjustBySize, double coefficient) {
         if (adjustBySize) {
             if (logAttraction) {
                 if (distributedAttraction) {
-                    return new logAttraction_degreeDistributed_antiCollision(coefficient);
+                    return new logAttraction_degreeDistributed_antiCollision(workspace, coefficient);
                 } else {
-                    return new logAttraction_antiCollision(coefficient);
+                    return new logAttraction_antiCollision(workspace, coefficient);
                 }
             } else {
                 if (distributedAttraction) {
-                    return new linAttraction_degreeDistributed_antiCollision(coefficient);
+                    return new linAttraction_degreeDistributed_antiCollision(workspace, coefficient);
                 } else {
-                    return new linAttraction_antiCollision(coefficient);
+                    return new linAttraction_antiCollision(workspace, coefficient);
                 }
             }
         } else {
             if (logAttraction) {
                 if (distributedAttraction) {
-                    return new logAttraction_degreeDistributed(coefficient);
+                    return new logAttraction_degreeDistributed(workspace, coefficient);
                 } else {
-                    return new logAttraction(coefficient);
+                    return new logAttraction(workspace, coefficient);
                 }
             } else {
                 if (distributedAttraction) {
-                    return new linAttraction_massDistributed(coefficient);
+                    return new linAttraction_massDistributed(workspace, coefficient);
                 } else {
-                    return new linAttraction(coefficient);
+                    return new linAttraction(workspace, coefficient);
                 }
             }
         }
     }
 
-    public abstract class AttractionForce {
+    public abstract class WorkspaceForce {
+
+        protected final float[] x;
+        protected final float[] y;
+        protected final float[] dx;
+        protected final float[] dy;
+        protected final float[] mass;
+        protected final float[] size;
+
+        public WorkspaceForce(LayoutWorkspace workspace) {
+            x = workspace.getX();
+            y = workspace.getY();
+            dx = workspace.getDx();
+            dy = workspace.getDy();
+            mass = workspace.getMass();
+            size = workspace.getSize();
+        }
+    }
+
+    public abstract class AttractionForce extends WorkspaceForce {
+
+        public AttractionForce(LayoutWorkspace workspace) {
+            super(workspace);
+        }
+
+        public void apply(int n1, int n2, double e) {           // Model for node-node attraction (e is for edge weight if needed)
+            double factor = factor(n1, n2, e);
+            if (factor != 0) {
+                double xDist = x[n1] - x[n2];
+                double yDist = y[n1] - y[n2];
+
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-        public abstract void apply(Node n1, Node n2, double e); // Model for node-node attraction (e is for edge weight if needed)
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
+            }
+        }
+
+        public abstract double factor(int n1, int n2, double e); // Force / distance, without applying it (0 if none)
     }
 
-    public abstract class RepulsionForce {
+    public abstract class RepulsionForce extends WorkspaceForce implements BarnesHutTree.Force {
 
-        public abstract void apply(Node n1, Node n2);           // Model for node-node repulsion
+        public RepulsionForce(LayoutWorkspace workspace) {
+            super(workspace);
+        }
 
-        public abstract void apply(Node n, Region r);           // Model for Barnes Hut approximation
+        @Override
+        public abstract void apply(int n1, int n2);             // Model for node-node repulsion
+
+        @Override
+        public abstract void apply(int n, double regionMass, double massCenterX, double massCenterY); // Model for Barnes Hut approximation
 
-        public abstract void apply(Node n, double g);           // Model for gravitation (anti-repulsion)
+        public abstract void apply(int n, double g);            // Model for gravitation (anti-repulsion)
     }
 
     /*
@@ -123,65 +167,59 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linRepulsion(double c) {
+        public linRepulsion(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * n1Layout.mass * n2Layout.mass / distance / distance;
+                double factor = coefficient * mass[n1] * mass[n2] / distance / distance;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, Region r) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-
+        public void apply(int n, double regionMass, double massCenterX, double massCenterY) {
             // Get the distance
-            double xDist = n.x() - r.getMassCenterX();
-            double yDist = n.y() - r.getMassCenterY();
+            double xDist = x[n] - massCenterX;
+            double yDist = y[n] - massCenterY;
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * r.getMass() / distance / distance;
+                double factor = coefficient * mass[n] * regionMass / distance / distance;
 
-                nLayout.dx += xDist * factor;
-                nLayout.dy += yDist * factor;
+                dx[n] += xDist * factor;
+                dy[n] += yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, double g) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-
+        public void apply(int n, double g) {
             // Get the distance
-            double xDist = n.x();
-            double yDist = n.y();
+            double xDist = x[n];
+            double yDist = y[n];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * g / distance;
+                double factor = coefficient * mass[n] * g / distance;
 
-                nLayout.dx -= xDist * factor;
-                nLayout.dy -= yDist * factor;
+                dx[n] -= xDist * factor;
+                dy[n] -= yDist * factor;
             }
         }
     }
@@ -193,79 +231,73 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linRepulsion_antiCollision(double c) {
+        public linRepulsion_antiCollision(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public void apply(int n1, int n2) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - size[n1] - size[n2];
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * n1Layout.mass * n2Layout.mass / distance / distance;
+                double factor = coefficient * mass[n1] * mass[n2] / distance / distance;
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
 
             } else if (distance < 0) {
-                double factor = 100 * coefficient * n1Layout.mass * n2Layout.mass;
+                double factor = 100 * coefficient * mass[n1] * mass[n2];
 
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
+                dx[n1] += xDist * factor;
+                dy[n1] += yDist * factor;
 
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                dx[n2] -= xDist * factor;
+                dy[n2] -= yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, Region r) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-
+        public void apply(int n, double regionMass, double massCenterX, double massCenterY) {
             // Get the distance
-            double xDist = n.x() - r.getMassCenterX();
-            double yDist = n.y() - r.getMassCenterY();
+            double xDist = x[n] - massCenterX;
+            double yDist = y[n] - massCenterY;
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * r.getMass() / distance / distance;
+                double factor = coefficient * mass[n] * regionMass / distance / distance;
 
-                nLayout.dx += xDist * factor;
-                nLayout.dy += yDist * factor;
+                dx[n] += xDist * factor;
+                dy[n] += yDist * factor;
             } else if (distance < 0) {
-                double factor = -coefficient * nLayout.mass * r.getMass() / distance;
+                double factor = -coefficient * mass[n] * regionMass / distance;
 
-                nLayout.dx += xDist * factor;
-                nLayout.dy += yDist * factor;
+                dx[n] += xDist * factor;
+                dy[n] += yDist * factor;
             }
         }
 
         @Override
-        public void apply(Node n, double g) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-
+        public void apply(int n, double g) {
             // Get the distance
-            double xDist = n.x();
-            double yDist = n.y();
+            double xDist = x[n];
+            double yDist = y[n];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * g / distance;
+                double factor = coefficient * mass[n] * g / distance;
 
-                nLayout.dx -= xDist * factor;
-                nLayout.dy -= yDist * factor;
+                dx[n] -= xDist * factor;
+                dy[n] -= yDist * factor;
             }
         }
     }
@@ -274,35 +306,34 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public strongGravity(double c) {
+        public strongGravity(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2) {
+        public void apply(int n1, int n2) {
             // Not Relevant
         }
 
         @Override
-        public void apply(Node n, Region r) {
+        public void apply(int n, double regionMass, double massCenterX, double massCenterY) {
             // Not Relevant
         }
 
         @Override
-        public void apply(Node n, double g) {
-            ForceAtlas2LayoutData nLayout = n.getLayoutData();
-
+        public void apply(int n, double g) {
             // Get the distance
-            double xDist = n.x();
-            double yDist = n.y();
+            double xDist = x[n];
+            double yDist = y[n];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = coefficient * nLayout.mass * g;
+                double factor = coefficient * mass[n] * g;
 
-                nLayout.dx -= xDist * factor;
-                nLayout.dy -= yDist * factor;
+                dx[n] -= xDist * factor;
+                dy[n] -= yDist * factor;
             }
         }
     }
@@ -314,27 +345,15 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction(double c) {
+        public linAttraction(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
-            // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-
+        public double factor(int n1, int n2, double e) {
             // NB: factor = force / distance
-            double factor = -coefficient * e;
-
-            n1Layout.dx += xDist * factor;
-            n1Layout.dy += yDist * factor;
-
-            n2Layout.dx -= xDist * factor;
-            n2Layout.dy -= yDist * factor;
+            return -coefficient * e;
         }
     }
 
@@ -345,27 +364,15 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction_massDistributed(double c) {
+        public linAttraction_massDistributed(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
-            // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-
+        public double factor(int n1, int n2, double e) {
             // NB: factor = force / distance
-            double factor = -coefficient * e / n1Layout.mass;
-
-            n1Layout.dx += xDist * factor;
-            n1Layout.dy += yDist * factor;
-
-            n2Layout.dx -= xDist * factor;
-            n2Layout.dy -= yDist * factor;
+            return -coefficient * e / mass[n1];
         }
     }
 
@@ -376,31 +383,23 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction(double c) {
+        public logAttraction(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public double factor(int n1, int n2, double e) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
-
                 // NB: factor = force / distance
-                double factor = -coefficient * e * Math.log(1 + distance) / distance;
-
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
-
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                return -coefficient * e * Math.log(1 + distance) / distance;
             }
+            return 0;
         }
     }
 
@@ -411,31 +410,23 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction_degreeDistributed(double c) {
+        public logAttraction_degreeDistributed(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public double factor(int n1, int n2, double e) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
             double distance = (float) Math.sqrt(xDist * xDist + yDist * yDist);
 
             if (distance > 0) {
-
                 // NB: factor = force / distance
-                double factor = -coefficient * e * Math.log(1 + distance) / distance / n1Layout.mass;
-
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
-
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                return -coefficient * e * Math.log(1 + distance) / distance / mass[n1];
             }
+            return 0;
         }
     }
 
@@ -446,30 +437,23 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction_antiCollision(double c) {
+        public linAttraction_antiCollision(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public double factor(int n1, int n2, double e) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - size[n1] - size[n2];
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = -coefficient * e;
-
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
-
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                return -coefficient * e;
             }
+            return 0;
         }
     }
 
@@ -480,30 +464,23 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public linAttraction_degreeDistributed_antiCollision(double c) {
+        public linAttraction_degreeDistributed_antiCollision(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public double factor(int n1, int n2, double e) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - size[n1] - size[n2];
 
             if (distance > 0) {
                 // NB: factor = force / distance
-                double factor = -coefficient * e / n1Layout.mass;
-
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
-
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                return -coefficient * e / mass[n1];
             }
+            return 0;
         }
     }
 
@@ -514,31 +491,23 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction_antiCollision(double c) {
+        public logAttraction_antiCollision(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public double factor(int n1, int n2, double e) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - size[n1] - size[n2];
 
             if (distance > 0) {
-
                 // NB: factor = force / distance
-                double factor = -coefficient * e * Math.log(1 + distance) / distance;
-
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
-
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                return -coefficient * e * Math.log(1 + distance) / distance;
             }
+            return 0;
         }
     }
 
@@ -549,31 +518,23 @@ public class ForceFactory {
 
         private double coefficient;
 
-        public logAttraction_degreeDistributed_antiCollision(double c) {
+        public logAttraction_degreeDistributed_antiCollision(LayoutWorkspace workspace, double c) {
+            super(workspace);
             coefficient = c;
         }
 
         @Override
-        public void apply(Node n1, Node n2, double e) {
-            ForceAtlas2LayoutData n1Layout = n1.getLayoutData();
-            ForceAtlas2LayoutData n2Layout = n2.getLayoutData();
-
+        public double factor(int n1, int n2, double e) {
             // Get the distance
-            double xDist = n1.x() - n2.x();
-            double yDist = n1.y() - n2.y();
-            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - n1.size() - n2.size();
+            double xDist = x[n1] - x[n2];
+            double yDist = y[n1] - y[n2];
+            double distance = Math.sqrt(xDist * xDist + yDist * yDist) - size[n1] - size[n2];
 
             if (distance > 0) {
-
                 // NB: factor = force / distance
-                double factor = -coefficient * e * Math.log(1 + distance) / distance / n1Layout.mass;
-
-                n1Layout.dx += xDist * factor;
-                n1Layout.dy += yDist * factor;
-
-                n2Layout.dx -= xDist * factor;
-                n2Layout.dy -= yDist * factor;
+                return -coefficient * e * Math.log(1 + distance) / distance / mass[n1];
             }
+            return 0;
         }
     }
 }
@@ -41,37 +41,33 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
-import org.gephi.graph.api.Node;
+import org.gephi.layout.plugin.force.quadtree.BarnesHutTree;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
 
 /**
+ * Repulsion on a range of nodes. The number of nodes and regions visited, and
+ * of regions approximated, can be read from {@link #getCounters()} once the
+ * thread is done.
  *
  * @author Mathieu Jacomy
  */
 public class NodesThread implements Runnable {
 
-    private Node[] nodes;
     private int from;
     private int to;
-    private Region rootRegion;
+    private BarnesHutTree barnesHutTree;
     private boolean barnesHutOptimize;
     private RepulsionForce Repulsion;
     private double barnesHutTheta;
-    private double gravity;
-    private RepulsionForce GravityForce;
-    private double scaling;
+    private final long[] counters = new long[2];
 
-    public NodesThread(Node[] nodes, int from, int to, boolean barnesHutOptimize, double barnesHutTheta, double gravity, RepulsionForce GravityForce, double scaling, Region rootRegion, RepulsionForce Repulsion) {
-        this.nodes = nodes;
+    public NodesThread(int from, int to, boolean barnesHutOptimize, double barnesHutTheta, BarnesHutTree barnesHutTree, RepulsionForce Repulsion) {
         this.from = from;
         this.to = to;
-        this.rootRegion = rootRegion;
+        this.barnesHutTree = barnesHutTree;
         this.barnesHutOptimize = barnesHutOptimize;
         this.Repulsion = Repulsion;
         this.barnesHutTheta = barnesHutTheta;
-        this.gravity = gravity;
-        this.GravityForce = GravityForce;
-        this.scaling = scaling;
     }
 
     @Override
@@ -79,23 +75,23 @@ public class NodesThread implements Runnable {
         // Repulsion
         if (barnesHutOptimize) {
             for (int nIndex = from; nIndex < to; nIndex++) {
-                Node n = nodes[nIndex];
-                rootRegion.applyForce(n, Repulsion, barnesHutTheta);
+                barnesHutTree.applyForce(nIndex, Repulsion, barnesHutTheta, counters);
             }
         } else {
             for (int n1Index = from; n1Index < to; n1Index++) {
-                Node n1 = nodes[n1Index];
                 for (int n2Index = 0; n2Index < n1Index; n2Index++) {
-                    Node n2 = nodes[n2Index];
-                    Repulsion.apply(n1, n2);
+                    Repulsion.apply(n1Index, n2Index);
                 }
+                counters[0] += n1Index;
             }
         }
+    }
 
-        // Gravity
-        for (int nIndex = from; nIndex < to; nIndex++) {
-            Node n = nodes[nIndex];
-            GravityForce.apply(n, gravity / scaling);
-        }
+    /**
+     * @return the number of nodes and regions visited at index 0, and of
+     * regions approximated at index 1
+     */
+    public long[] getCounters() {
+        return counters;
     }
 }
@@ -41,7 +41,6 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
-import org.gephi.graph.api.Node;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.AttractionForce;
 
 /**
@@ -50,12 +49,12 @@ import org.gephi.layout.plugin.forceAtlas2.ForceFactory.AttractionForce;
  */
 public class OperationNodeNodeAttract extends Operation {
 
-    private final Node n1;
-    private final Node n2;
+    private final int n1;
+    private final int n2;
     private final AttractionForce f;
     private final double coefficient;
 
-    public OperationNodeNodeAttract(Node n1, Node n2, AttractionForce f, double coefficient) {
+    public OperationNodeNodeAttract(int n1, int n2, AttractionForce f, double coefficient) {
         this.n1 = n1;
         this.n2 = n2;
         this.f = f;
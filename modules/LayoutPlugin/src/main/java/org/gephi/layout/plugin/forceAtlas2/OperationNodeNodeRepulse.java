@@ -41,7 +41,6 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
-import org.gephi.graph.api.Node;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
 
 /**
@@ -50,11 +49,11 @@ import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
  */
 public class OperationNodeNodeRepulse extends Operation {
 
-    private final Node n1;
-    private final Node n2;
+    private final int n1;
+    private final int n2;
     private final RepulsionForce f;
 
-    public OperationNodeNodeRepulse(Node n1, Node n2, RepulsionForce f) {
+    public OperationNodeNodeRepulse(int n1, int n2, RepulsionForce f) {
         this.n1 = n1;
         this.n2 = n2;
         this.f = f;
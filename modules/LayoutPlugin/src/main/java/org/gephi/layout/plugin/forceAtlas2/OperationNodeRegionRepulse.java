@@ -41,7 +41,7 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
-import org.gephi.graph.api.Node;
+import org.gephi.layout.plugin.force.quadtree.BarnesHutTree;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
 
 /**
@@ -50,12 +50,12 @@ import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
  */
 public class OperationNodeRegionRepulse extends Operation {
 
-    private final Node n;
-    private final Region r;
+    private final int n;
+    private final BarnesHutTree r;
     private final RepulsionForce f;
     private final double theta;
 
-    public OperationNodeRegionRepulse(Node n, Region r, RepulsionForce f, double theta) {
+    public OperationNodeRegionRepulse(int n, BarnesHutTree r, RepulsionForce f, double theta) {
         this.n = n;
         this.f = f;
         this.r = r;
@@ -41,7 +41,6 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.layout.plugin.forceAtlas2;
 
-import org.gephi.graph.api.Node;
 import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
 
 /**
@@ -50,11 +49,11 @@ import org.gephi.layout.plugin.forceAtlas2.ForceFactory.RepulsionForce;
  */
 public class OperationNodeRepulse extends Operation {
 
-    private Node n;
+    private int n;
     private RepulsionForce f;
     private double coefficient;
 
-    public OperationNodeRepulse(Node n, RepulsionForce f, double coefficient) {
+    public OperationNodeRepulse(int n, RepulsionForce f, double coefficient) {
         this.n = n;
         this.f = f;
         this.coefficient = coefficient;
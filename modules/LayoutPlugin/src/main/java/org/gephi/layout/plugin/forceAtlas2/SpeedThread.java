@@ -0,0 +1,96 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.forceAtlas2;
+
+import java.util.concurrent.Callable;
+import org.gephi.layout.spi.LayoutWorkspace;
+
+/**
+ * Merges the attraction buffers of {@link EdgesThread} on a range of nodes and
+ * returns the partial sums used to adjust the speed:
+ * <code>{totalSwinging, totalEffectiveTraction}</code>.
+ */
+public class SpeedThread implements Callable<double[]> {
+
+    private LayoutWorkspace workspace;
+    private float[] oldDx;
+    private float[] oldDy;
+    private int from;
+    private int to;
+    private float[][] dxBuffers;
+    private float[][] dyBuffers;
+
+    public SpeedThread(LayoutWorkspace workspace, float[] oldDx, float[] oldDy, int from, int to, float[][] dxBuffers, float[][] dyBuffers) {
+        this.workspace = workspace;
+        this.oldDx = oldDx;
+        this.oldDy = oldDy;
+        this.from = from;
+        this.to = to;
+        this.dxBuffers = dxBuffers;
+        this.dyBuffers = dyBuffers;
+    }
+
+    @Override
+    public double[] call() {
+        float[] dx = workspace.getDx();
+        float[] dy = workspace.getDy();
+        float[] mass = workspace.getMass();
+        boolean[] fixed = workspace.getFixed();
+        double totalSwinging = 0d;  // How much irregular movement
+        double totalEffectiveTraction = 0d;  // Hom much useful movement
+        for (int nIndex = from; nIndex < to; nIndex++) {
+            if (dxBuffers != null) {
+                for (int b = 0; b < dxBuffers.length; b++) {
+                    dx[nIndex] += dxBuffers[b][nIndex];
+                    dy[nIndex] += dyBuffers[b][nIndex];
+                    dxBuffers[b][nIndex] = 0;
+                    dyBuffers[b][nIndex] = 0;
+                }
+            }
+            if (!fixed[nIndex]) {
+                double swinging = Math.sqrt(Math.pow(oldDx[nIndex] - dx[nIndex], 2) + Math.pow(oldDy[nIndex] - dy[nIndex], 2));
+                totalSwinging += mass[nIndex] * swinging;   // If the node has a burst change of direction, then it's not converging.
+                totalEffectiveTraction += mass[nIndex] * 0.5 * Math.sqrt(Math.pow(oldDx[nIndex] + dx[nIndex], 2) + Math.pow(oldDy[nIndex] + dy[nIndex], 2));
+            }
+        }
+        return new double[]{totalSwinging, totalEffectiveTraction};
+    }
+}
@@ -42,12 +42,18 @@
 package org.gephi.layout.plugin.fruchterman;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.Node;
+import org.gephi.layout.api.LayoutProfiler;
 import org.gephi.layout.plugin.AbstractLayout;
 import org.gephi.layout.plugin.ForceVectorNodeLayoutData;
+import org.gephi.layout.plugin.ParallelTasks;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
@@ -67,9 +73,23 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
     private float area;
     private double gravity;
     private double speed;
+    private boolean gridRepulsion;
+    private int threadCount;
+    //Threads
+    private int currentThreadCount;
+    private ExecutorService pool;
+    //Grid
+    private float gridMinX;
+    private float gridMinY;
+    private float cellSize;
+    private int gridWidth;
+    private int gridHeight;
+    private int[] cellStart;
+    private int[] cellNodes;
 
     public FruchtermanReingold(LayoutBuilder layoutBuilder) {
         super(layoutBuilder);
+        this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     }
 
     @Override
@@ -77,16 +97,28 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
         speed = 1;
         area = 10000;
         gravity = 10;
+        gridRepulsion = false;
     }
 
     @Override
     public void initAlgo() {
+        pool = Executors.newFixedThreadPool(threadCount);
+        currentThreadCount = threadCount;
     }
 
     @Override
     public void goAlgo() {
         this.graph = graphModel.getGraphVisible();
         graph.readLock();
+        //A failed repulsion task is rethrown, the lock is released anyway
+        try {
+            move();
+        } finally {
+            graph.readUnlock();
+        }
+    }
+
+    private void move() {
         Node[] nodes = graph.getNodes().toArray();
         Edge[] edges = graph.getEdges().toArray();
 
@@ -102,22 +134,32 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
         float maxDisplace = (float) (Math.sqrt(AREA_MULTIPLICATOR * area) / 10f);					// Déplacement limite : on peut le calibrer...
         float k = (float) Math.sqrt((AREA_MULTIPLICATOR * area) / (1f + nodes.length));		// La variable k, l'idée principale du layout.
 
-        for (Node N1 : nodes) {
-            for (Node N2 : nodes) {	// On fait toutes les paires de noeuds
-                if (N1 != N2) {
-                    float xDist = N1.x() - N2.x();	// distance en x entre les deux noeuds
-                    float yDist = N1.y() - N2.y();
-                    float dist = (float) Math.sqrt(xDist * xDist + yDist * yDist);	// distance tout court
-
-                    if (dist > 0) {
-                        float repulsiveF = k * k / dist;			// Force de répulsion
-                        ForceVectorNodeLayoutData layoutData = N1.getLayoutData();
-                        layoutData.dx += xDist / dist * repulsiveF;		// on l'applique...
-                        layoutData.dy += yDist / dist * repulsiveF;
-                    }
-                }
-            }
+        // Repulsion
+        // NB: Multi-threaded, each task only writes the forces of its own nodes
+        if (gridRepulsion) {
+            startPhase(LayoutProfiler.TREE_BUILD);
+            buildGrid(nodes, 2 * k);
+        }
+        startPhase(LayoutProfiler.REPULSION);
+        int taskCount = 8 * currentThreadCount;
+        List<RepulsionTask> tasks = new ArrayList<RepulsionTask>();
+        List<Future<?>> threads = new ArrayList<Future<?>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) nodes.length * t / taskCount);
+            int to = (int) ((long) nodes.length * (t + 1) / taskCount);
+            RepulsionTask task = new RepulsionTask(nodes, from, to, k);
+            tasks.add(task);
+            threads.add(pool.submit(task));
         }
+        ParallelTasks.getAll(threads);
+        long visited = 0;
+        for (RepulsionTask task : tasks) {
+            visited += task.visited;
+        }
+        addCount(LayoutProfiler.NODES_VISITED, visited);
+        addCount(LayoutProfiler.APPROXIMATIONS, (long) nodes.length * Math.max(0, nodes.length - 1) - visited);
+
+        startPhase(LayoutProfiler.ATTRACTION);
         for (Edge E : edges) {
             // Idem, pour tous les noeuds on applique la force d'attraction
 
@@ -140,6 +182,7 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
             }
         }
         // gravity
+        startPhase(LayoutProfiler.GRAVITY);
         for (Node n : nodes) {
             ForceVectorNodeLayoutData layoutData = n.getLayoutData();
             float d = (float) Math.sqrt(n.x() * n.x() + n.y() * n.y());
@@ -148,6 +191,7 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
             layoutData.dy -= gf * n.y() / d;
         }
         // speed
+        startPhase(LayoutProfiler.POSITION_UPDATE);
         for (Node n : nodes) {
             ForceVectorNodeLayoutData layoutData = n.getLayoutData();
             layoutData.dx *= speed / SPEED_DIVISOR;
@@ -166,7 +210,135 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
                 n.setY(n.y() + yDist / dist * limitedDist);
             }
         }
-        graph.readUnlock();
+    }
+
+    /**
+     * Sorts the nodes in a uniform grid whose cells are at least
+     * <code>radius</code> wide, so that all the nodes closer than
+     * <code>radius</code> from a node are in its cell or the 8 around. Cells are
+     * widened if needed to keep the grid size proportional to the node count.
+     */
+    private void buildGrid(Node[] nodes, float radius) {
+        gridMinX = Float.POSITIVE_INFINITY;
+        gridMinY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        for (Node n : nodes) {
+            gridMinX = Math.min(gridMinX, n.x());
+            gridMinY = Math.min(gridMinY, n.y());
+            maxX = Math.max(maxX, n.x());
+            maxY = Math.max(maxY, n.y());
+        }
+        cellSize = radius > 0 ? radius : 1f;
+        while (true) {
+            gridWidth = (int) Math.min(Integer.MAX_VALUE, (long) ((maxX - gridMinX) / cellSize) + 1);
+            gridHeight = (int) Math.min(Integer.MAX_VALUE, (long) ((maxY - gridMinY) / cellSize) + 1);
+            if ((long) gridWidth * gridHeight <= 4L * nodes.length + 16) {
+                break;
+            }
+            cellSize *= 2;
+        }
+
+        int cellCount = gridWidth * gridHeight;
+        if (cellStart == null || cellStart.length < cellCount + 1) {
+            cellStart = new int[cellCount + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cellCount + 1, 0);
+        }
+        if (cellNodes == null || cellNodes.length < nodes.length) {
+            cellNodes = new int[nodes.length];
+        }
+        int[] cells = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            cells[i] = cell(column(nodes[i].x()), row(nodes[i].y()));
+            cellStart[cells[i] + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] cursors = new int[cellCount];
+        System.arraycopy(cellStart, 0, cursors, 0, cellCount);
+        for (int i = 0; i < nodes.length; i++) {
+            cellNodes[cursors[cells[i]]++] = i;
+        }
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(gridWidth - 1, (int) ((x - gridMinX) / cellSize)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(gridHeight - 1, (int) ((y - gridMinY) / cellSize)));
+    }
+
+    private int cell(int column, int row) {
+        return row * gridWidth + column;
+    }
+
+    /**
+     * Repulsion on a range of nodes: against all the other nodes, or only the
+     * ones closer than <code>2k</code> with the grid.
+     */
+    private class RepulsionTask implements Runnable {
+
+        private final Node[] nodes;
+        private final int from;
+        private final int to;
+        private final float k;
+        private long visited;
+
+        public RepulsionTask(Node[] nodes, int from, int to, float k) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+        }
+
+        @Override
+        public void run() {
+            for (int i = from; i < to; i++) {
+                Node N1 = nodes[i];
+                if (gridRepulsion) {
+                    float radius = 2 * k;
+                    int minColumn = column(N1.x() - radius);
+                    int maxColumn = column(N1.x() + radius);
+                    int minRow = row(N1.y() - radius);
+                    int maxRow = row(N1.y() + radius);
+                    for (int r = minRow; r <= maxRow; r++) {
+                        for (int c = minColumn; c <= maxColumn; c++) {
+                            int cell = cell(c, r);
+                            for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+                                Node N2 = nodes[cellNodes[j]];
+                                if (N1 != N2) {
+                                    repulse(N1, N2, radius);
+                                    visited++;
+                                }
+                            }
+                        }
+                    }
+                } else {
+                    for (Node N2 : nodes) {	// On fait toutes les paires de noeuds
+                        if (N1 != N2) {
+                            repulse(N1, N2, Float.POSITIVE_INFINITY);
+                            visited++;
+                        }
+                    }
+                }
+            }
+        }
+
+        private void repulse(Node N1, Node N2, float radius) {
+            float xDist = N1.x() - N2.x();	// distance en x entre les deux noeuds
+            float yDist = N1.y() - N2.y();
+            float dist = (float) Math.sqrt(xDist * xDist + yDist * yDist);	// distance tout court
+
+            if (dist > 0 && dist < radius) {
+                float repulsiveF = k * k / dist;			// Force de répulsion
+                ForceVectorNodeLayoutData layoutData = N1.getLayoutData();
+                layoutData.dx += xDist / dist * repulsiveF;		// on l'applique...
+                layoutData.dy += yDist / dist * repulsiveF;
+            }
+        }
     }
 
     @Override
@@ -174,6 +346,9 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
         for (Node n : graph.getNodes()) {
             n.setLayoutData(null);
         }
+        cellStart = null;
+        cellNodes = null;
+        pool.shutdown();
     }
 
     @Override
@@ -208,6 +383,20 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
                     "fruchtermanReingold.speed.name",
                     NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.speed.desc"),
                     "getSpeed", "setSpeed"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Boolean.class,
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.gridRepulsion.name"),
+                    FRUCHTERMAN_REINGOLD,
+                    "fruchtermanReingold.gridRepulsion.name",
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.gridRepulsion.desc"),
+                    "isGridRepulsion", "setGridRepulsion"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.threads.name"),
+                    FRUCHTERMAN_REINGOLD,
+                    "fruchtermanReingold.threads.name",
+                    NbBundle.getMessage(FruchtermanReingold.class, "fruchtermanReingold.threads.desc"),
+                    "getThreadsCount", "setThreadsCount"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -250,4 +439,24 @@ public class FruchtermanReingold extends AbstractLayout implements Layout {
     public void setSpeed(Double speed) {
         this.speed = speed;
     }
+
+    public Boolean isGridRepulsion() {
+        return gridRepulsion;
+    }
+
+    public void setGridRepulsion(Boolean gridRepulsion) {
+        this.gridRepulsion = gridRepulsion;
+    }
+
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
+
+    public void setThreadsCount(Integer threadCount) {
+        if (threadCount < 1) {
+            setThreadsCount(1);
+        } else {
+            this.threadCount = threadCount;
+        }
+    }
 }
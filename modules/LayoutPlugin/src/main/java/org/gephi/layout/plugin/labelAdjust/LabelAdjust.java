@@ -43,15 +43,30 @@ package org.gephi.layout.plugin.labelAdjust;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.Node;
 import org.gephi.layout.plugin.AbstractLayout;
+import org.gephi.layout.plugin.ParallelTasks;
+import org.gephi.layout.plugin.SpatialHash;
 import org.gephi.layout.spi.Layout;
 import org.gephi.layout.spi.LayoutBuilder;
 import org.gephi.layout.spi.LayoutProperty;
 import org.openide.util.NbBundle;
 
 /**
+ * Pushes nodes apart until their labels, and optionally their disks, don't
+ * overlap anymore.
+ * <p>
+ * The rectangles of the labels are kept in a {@link SpatialHash}, which is
+ * only updated for the nodes that moved to other cells. Each iteration sums on
+ * every node the pushes of the nodes it overlaps with, in parallel: a task
+ * only writes the displacement of its own nodes. The layout converges when no
+ * pair overlaps, see {@link #getOverlapCount()}.
  *
  * @author Mathieu Jacomy
  */
@@ -63,14 +78,25 @@ public class LabelAdjust extends AbstractLayout implements Layout {
     private double speed = 1;
     private boolean adjustBySize = true;
     private float radiusScale = 1.1f;
-    //Graph size
-    private float xmin;
-    private float xmax;
-    private float ymin;
-    private float ymax;
+    private int threadCount;
+    //Nodes, indexed as in the spatial hash
+    private Node[] nodes;
+    private float[] x;
+    private float[] y;
+    private float[] width;
+    private float[] height;
+    private float[] radius;
+    private float[] dx;
+    private float[] dy;
+    private int[] labels;
+    private int labelCount;
+    private SpatialHash spatialHash;
+    private int overlapCount;
+    private ExecutorService pool;
 
     public LabelAdjust(LayoutBuilder layoutBuilder) {
         super(layoutBuilder);
+        this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
     }
 
     @Override
@@ -83,121 +109,149 @@ public class LabelAdjust extends AbstractLayout implements Layout {
     @Override
     public void initAlgo() {
         setConverged(false);
+        nodes = null;
+        spatialHash = null;
+        pool = Executors.newFixedThreadPool(threadCount);
     }
 
     @Override
     public void goAlgo() {
         this.graph = graphModel.getGraphVisible();
         graph.readLock();
-        Node[] nodes = graph.getNodes().toArray();
-
-        //Reset Layout Data
-        for (Node n : nodes) {
-            if (n.getLayoutData() == null || !(n.getLayoutData() instanceof LabelAdjustLayoutData)) {
-                n.setLayoutData(new LabelAdjustLayoutData());
-            }
-            LabelAdjustLayoutData layoutData = n.getLayoutData();
-            layoutData.freeze = 0;
-            layoutData.dx = 0;
-            layoutData.dy = 0;
+        //Released even if a repulsion task failed
+        try {
+            move();
+        } finally {
+            graph.readUnlock();
         }
+    }
+
+    private void move() {
+        Node[] graphNodes = graph.getNodes().toArray();
 
-        // Get xmin, xmax, ymin, ymax
-        xmin = Float.MAX_VALUE;
-        xmax = Float.MIN_VALUE;
-        ymin = Float.MAX_VALUE;
-        ymax = Float.MIN_VALUE;
-
-        List<Node> correctNodes = new ArrayList<Node>();
-        for (Node n : nodes) {
-            float x = n.x();
-            float y = n.y();
-//            float w = n.getTextData().getWidth();
-//            float h = n.getTextData().getHeight();
-            float w = 0f, h = 0f;
-            float radius = n.size() / 2f;
-
-            if (w > 0 && h > 0) {
+        //Read positions and update the index
+        if (!isSameNodes(graphNodes)) {
+            loadNodes(graphNodes);
+        }
+        labelCount = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            Node n = nodes[i];
+            x[i] = n.x();
+            y[i] = n.y();
+            radius[i] = n.size() / 2f;
+//            width[i] = n.getTextData().getWidth();
+//            height[i] = n.getTextData().getHeight();
+            width[i] = getLabelWidth(n);
+            height[i] = getLabelHeight(n);
+            dx[i] = 0;
+            dy[i] = 0;
+
+            if (width[i] > 0 && height[i] > 0) {
+                labels[labelCount++] = i;
                 // Get the rectangle occupied by the node (size + label)
-                float nxmin = Math.min(x - w / 2, x - radius);
-                float nxmax = Math.max(x + w / 2, x + radius);
-                float nymin = Math.min(y - h / 2, y - radius);
-                float nymax = Math.max(y + h / 2, y + radius);
-
-                // Update global boundaries
-                xmin = Math.min(this.xmin, nxmin);
-                xmax = Math.max(this.xmax, nxmax);
-                ymin = Math.min(this.ymin, nymin);
-                ymax = Math.max(this.ymax, nymax);
-
-                correctNodes.add(n);
+                float r = adjustBySize ? radiusScale * radius[i] : radius[i];
+                float nxmin = Math.min(x[i] - width[i] / 2, x[i] - r);
+                float nxmax = Math.max(x[i] + width[i] / 2, x[i] + r);
+                float nymin = Math.min(y[i] - height[i] / 2, y[i] - r);
+                float nymax = Math.max(y[i] + height[i] / 2, y[i] + r);
+                if (spatialHash == null) {
+                    spatialHash = new SpatialHash(Math.max(nxmax - nxmin, nymax - nymin));
+                }
+                spatialHash.put(i, nxmin, nymin, nxmax, nymax);
+            } else if (spatialHash != null) {
+                spatialHash.remove(i);
             }
         }
 
-        if (correctNodes.isEmpty() || xmin == xmax || ymin == ymax) {
-            graph.readUnlock();
+        if (labelCount == 0) {
+            overlapCount = 0;
+            setConverged(true);
             return;
         }
 
-        long timeStamp = 1;
-        boolean someCollision = false;
-
-        //Add all nodes in the quadtree
-        QuadTree quadTree = new QuadTree(correctNodes.size(), (xmax - xmin) / (ymax - ymin));
-        for (Node n : correctNodes) {
-            quadTree.add(n);
+        //Compute repulsion - with the neighbours in the spatial hash
+        //NB: Muti-threaded, each task sums the pushes on its own nodes
+        int taskCount = 8 * threadCount;
+        List<Future<Integer>> tasks = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) labelCount * t / taskCount);
+            int to = (int) ((long) labelCount * (t + 1) / taskCount);
+            tasks.add(pool.submit(new RepulsionTask(from, to)));
         }
-
-        //Compute repulsion - with neighbours in the 8 quadnodes around the node
-        for (Node n : correctNodes) {
-            timeStamp++;
-            LabelAdjustLayoutData layoutData = n.getLayoutData();
-            QuadNode quad = quadTree.getQuadNode(layoutData.labelAdjustQuadNode);
-
-            //Repulse with adjacent quad - but only one per pair of nodes, timestamp is guaranteeing that
-            for (Node neighbour : quadTree.getAdjacentNodes(quad.row, quad.col)) {
-                LabelAdjustLayoutData neighborLayoutData = neighbour.getLayoutData();
-                if (neighbour != n && neighborLayoutData.freeze < timeStamp) {
-                    boolean collision = repulse(n, neighbour);
-                    someCollision = someCollision || collision;
-                }
-                neighborLayoutData.freeze = timeStamp; //Use the existing freeze float variable to set timestamp
-            }
+        //Only a complete count may report convergence, a failed task is rethrown
+        int overlaps = 0;
+        for (int count : ParallelTasks.getAll(tasks)) {
+            overlaps += count;
         }
+        overlapCount = overlaps;
 
-        if (!someCollision) {
+        if (overlapCount == 0) {
             setConverged(true);
         } else {
             // apply forces
-            for (Node n : correctNodes) {
-                LabelAdjustLayoutData layoutData = n.getLayoutData();
+            for (int l = 0; l < labelCount; l++) {
+                int i = labels[l];
+                Node n = nodes[i];
                 if (!n.isFixed()) {
-                    layoutData.dx *= speed;
-                    layoutData.dy *= speed;
-                    float x = n.x() + layoutData.dx;
-                    float y = n.y() + layoutData.dy;
-
-                    n.setX(x);
-                    n.setY(y);
+                    n.setX((float) (x[i] + dx[i] * speed));
+                    n.setY((float) (y[i] + dy[i] * speed));
                 }
             }
         }
+    }
+
+    /**
+     * Returns the width of the label of <code>node</code>. Nodes without a
+     * label, or with an empty one, are ignored.
+     */
+    protected float getLabelWidth(Node node) {
+        return 0f;
+    }
+
+    /**
+     * Returns the height of the label of <code>node</code>.
+     */
+    protected float getLabelHeight(Node node) {
+        return 0f;
+    }
+
+    private boolean isSameNodes(Node[] graphNodes) {
+        if (nodes == null || nodes.length != graphNodes.length) {
+            return false;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] != graphNodes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        graph.readUnlock();
+    private void loadNodes(Node[] graphNodes) {
+        int count = graphNodes.length;
+        nodes = graphNodes;
+        x = new float[count];
+        y = new float[count];
+        width = new float[count];
+        height = new float[count];
+        radius = new float[count];
+        dx = new float[count];
+        dy = new float[count];
+        labels = new int[count];
+        spatialHash = null;
     }
 
-    private boolean repulse(Node n1, Node n2) {
+    /* Adds the push of n1 on n2 to the displacement of n2 */
+    private boolean repulse(int n1, int n2, Random random) {
         boolean collision = false;
-        float n1x = n1.x();
-        float n1y = n1.y();
-        float n2x = n2.x();
-        float n2y = n2.y();
-//        float n1w = n1.getTextData().getWidth();
-//        float n2w = n2.getTextData().getWidth();
-//        float n1h = n1.getTextData().getHeight();
-//        float n2h = n2.getTextData().getHeight();
-        float n1w = 0f, n2w = 0f, n1h = 0f, n2h = 0;
-        LabelAdjustLayoutData n2Data = n2.getLayoutData();
+        float n1x = x[n1];
+        float n1y = y[n1];
+        float n2x = x[n2];
+        float n2y = y[n2];
+        float n1w = width[n1];
+        float n2w = width[n2];
+        float n1h = height[n1];
+        float n2h = height[n2];
 
         double n1xmin = n1x - 0.5 * n1w;
         double n2xmin = n2x - 0.5 * n2w;
@@ -213,15 +267,15 @@ public class LabelAdjust extends AbstractLayout implements Layout {
             double xDist = n2x - n1x;
             double yDist = n2y - n1y;
             double dist = Math.sqrt(xDist * xDist + yDist * yDist);
-            boolean sphereCollision = dist < radiusScale * ((n1.size() / 2f) + (n2.size() / 2f));
+            boolean sphereCollision = dist < radiusScale * (radius[n1] + radius[n2]);
             if (sphereCollision) {
-                double f = 0.1 * (n1.size() / 2f) / dist;
+                double f = 0.1 * radius[n1] / dist;
                 if (dist > 0) {
-                    n2Data.dx = (float) (n2Data.dx + xDist / dist * f);
-                    n2Data.dy = (float) (n2Data.dy + yDist / dist * f);
+                    dx[n2] = (float) (dx[n2] + xDist / dist * f);
+                    dy[n2] = (float) (dy[n2] + yDist / dist * f);
                 } else {
-                    n2Data.dx = (float) (n2Data.dx + 0.01 * (0.5 - Math.random()));
-                    n2Data.dy = (float) (n2Data.dy + 0.01 * (0.5 - Math.random()));
+                    dx[n2] = (float) (dx[n2] + 0.01 * (0.5 - random.nextDouble()));
+                    dy[n2] = (float) (dy[n2] + 0.01 * (0.5 - random.nextDouble()));
                 }
                 collision = true;
             }
@@ -236,20 +290,20 @@ public class LabelAdjust extends AbstractLayout implements Layout {
             if (labelCollisionXleft > 0 && labelCollisionXright > 0) {// Collision
                 if (upDifferential > downDifferential) {
                     // N1 pushes N2 up
-                    n2Data.dy = (float) (n2Data.dy - 0.02 * n1h * (0.8 + 0.4 * Math.random()));
+                    dy[n2] = (float) (dy[n2] - 0.02 * n1h * (0.8 + 0.4 * random.nextDouble()));
                     collision = true;
                 } else {
                     // N1 pushes N2 down
-                    n2Data.dy = (float) (n2Data.dy + 0.02 * n1h * (0.8 + 0.4 * Math.random()));
+                    dy[n2] = (float) (dy[n2] + 0.02 * n1h * (0.8 + 0.4 * random.nextDouble()));
                     collision = true;
                 }
                 if (labelCollisionXleft > labelCollisionXright) {
                     // N1 pushes N2 right
-                    n2Data.dx = (float) (n2Data.dx + 0.01 * (n1h * 2) * (0.8 + 0.4 * Math.random()));
+                    dx[n2] = (float) (dx[n2] + 0.01 * (n1h * 2) * (0.8 + 0.4 * random.nextDouble()));
                     collision = true;
                 } else {
                     // N1 pushes N2 left
-                    n2Data.dx = (float) (n2Data.dx - 0.01 * (n1h * 2) * (0.8 + 0.4 * Math.random()));
+                    dx[n2] = (float) (dx[n2] - 0.01 * (n1h * 2) * (0.8 + 0.4 * random.nextDouble()));
                     collision = true;
                 }
             }
@@ -260,8 +314,11 @@ public class LabelAdjust extends AbstractLayout implements Layout {
 
     @Override
     public void endAlgo() {
-        for (Node n : graph.getNodes()) {
-            n.setLayoutData(null);
+        nodes = null;
+        spatialHash = null;
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
         }
     }
 
@@ -284,6 +341,13 @@ public class LabelAdjust extends AbstractLayout implements Layout {
                     "LabelAdjust.adjustBySize.name",
                     NbBundle.getMessage(getClass(), "LabelAdjust.adjustBySize.desc"),
                     "isAdjustBySize", "setAdjustBySize"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(getClass(), "LabelAdjust.threads.name"),
+                    LABELADJUST_CATEGORY,
+                    "LabelAdjust.threads.name",
+                    NbBundle.getMessage(getClass(), "LabelAdjust.threads.desc"),
+                    "getThreadsCount", "setThreadsCount"));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -306,107 +370,51 @@ public class LabelAdjust extends AbstractLayout implements Layout {
         this.adjustBySize = adjustBySize;
     }
 
-    private static class QuadNode {
-
-        private final int index;
-        private final int row;
-        private final int col;
-        private final List<Node> nodes;
-
-        public QuadNode(int index, int row, int col) {
-            this.index = index;
-            this.row = row;
-            this.col = col;
-            this.nodes = new ArrayList<Node>();
-        }
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
 
-        public List<Node> getNodes() {
-            return nodes;
-        }
+    public void setThreadsCount(Integer threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
 
-        public void add(Node n) {
-            nodes.add(n);
-        }
+    /**
+     * Returns the number of overlapping pairs found by the last iteration. The
+     * layout converges when it reaches zero.
+     */
+    public int getOverlapCount() {
+        return overlapCount;
     }
 
-    private class QuadTree {
+    /* Sums the pushes of their neighbours on a range of labelled nodes, and
+     * returns the number of overlapping pairs among them, each pair being
+     * counted by its node of highest index
+     */
+    private class RepulsionTask implements Callable<Integer>, SpatialHash.Visitor {
 
-        private final QuadNode[] quads;
-        private final int COLUMNS;
-        private final int ROWS;
+        private final int from;
+        private final int to;
+        private final Random random = new Random();
+        private int overlaps;
 
-        public QuadTree(int numberNodes, float aspectRatio) {
-            if (aspectRatio > 0) {
-                COLUMNS = (int) Math.ceil(numberNodes / 50f);
-                ROWS = (int) Math.ceil(COLUMNS / aspectRatio);
-            } else {
-                ROWS = (int) Math.ceil(numberNodes / 50f);
-                COLUMNS = (int) Math.ceil(ROWS / aspectRatio);
-            }
-            quads = new QuadNode[COLUMNS * ROWS];
-            for (int row = 0; row < ROWS; row++) {
-                for (int col = 0; col < COLUMNS; col++) {
-                    quads[row * COLUMNS + col] = new QuadNode(row * COLUMNS + col, row, col);
-                }
-            }
+        public RepulsionTask(int from, int to) {
+            this.from = from;
+            this.to = to;
         }
 
-        public void add(Node node) {
-            float x = node.x();
-            float y = node.y();
-//            float w = node.getTextData().getWidth();
-//            float h = node.getTextData().getHeight();
-            float w = 0f, h = 0f;
-            float radius = node.size() / 2f;
-
-            // Get the rectangle occupied by the node (size + label)
-            float nxmin = Math.min(x - w / 2, x - radius);
-            float nxmax = Math.max(x + w / 2, x + radius);
-            float nymin = Math.min(y - h / 2, y - radius);
-            float nymax = Math.max(y + h / 2, y + radius);
-
-            // Get the rectangle as boxes
-            int minXbox = (int) Math.floor((COLUMNS - 1) * (nxmin - xmin) / (xmax - xmin));
-            int maxXbox = (int) Math.floor((COLUMNS - 1) * (nxmax - xmin) / (xmax - xmin));
-            int minYbox = (int) Math.floor((ROWS - 1) * (((ymax - ymin) - (nymax - ymin)) / (ymax - ymin)));
-            int maxYbox = (int) Math.floor((ROWS - 1) * (((ymax - ymin) - (nymin - ymin)) / (ymax - ymin)));
-            for (int col = minXbox; col <= maxXbox && col < COLUMNS && col >= 0; col++) {
-                for (int row = minYbox; row <= maxYbox && row < ROWS && row >= 0; row++) {
-                    quads[row * COLUMNS + col].add(node);
-                }
+        @Override
+        public Integer call() {
+            for (int l = from; l < to; l++) {
+                spatialHash.visitNeighbors(labels[l], this);
             }
-
-            //Get the node center
-            int centerX = (int) Math.floor((COLUMNS - 1) * (x - xmin) / (xmax - xmin));
-            int centerY = (int) Math.floor((ROWS - 1) * (((ymax - ymin) - (y - ymin)) / (ymax - ymin)));
-            LabelAdjustLayoutData layoutData = node.getLayoutData();
-            layoutData.labelAdjustQuadNode = quads[centerY * COLUMNS + centerX].index;
-        }
-
-        public List<Node> get(int row, int col) {
-            return quads[row * ROWS + col].getNodes();
+            return overlaps;
         }
 
-        public List<Node> getAdjacentNodes(int row, int col) {
-            if (quads.length == 1) {
-                return quads[0].getNodes();
+        @Override
+        public void visit(int id, int other) {
+            if (repulse(other, id, random) && other < id) {
+                overlaps++;
             }
-
-            List<Node> adjNodes = new ArrayList<Node>();
-            int left = Math.max(0, col - 1);
-            int top = Math.max(0, row - 1);
-            int right = Math.min(COLUMNS - 1, col + 1);
-            int bottom = Math.min(ROWS - 1, row + 1);
-            for (int i = left; i <= right; i++) {
-                for (int j = top; j <= bottom; j++) {
-                    adjNodes.addAll(quads[j * COLUMNS + i].getNodes());
-                }
-            }
-            return adjNodes;
-        }
-
-        public QuadNode getQuadNode(int index) {
-            return quads[index];
         }
     }
 }
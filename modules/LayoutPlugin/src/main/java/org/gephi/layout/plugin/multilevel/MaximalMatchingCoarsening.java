@@ -0,0 +1,204 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.multilevel;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.gephi.layout.spi.LayoutWorkspace;
+
+/**
+ * Edge collapsing coarsening from Hu's multilevel scheme.
+ * <p>
+ * A maximal matching is built by visiting the nodes in random order and
+ * matching each unmatched node with its lightest unmatched neighbor; every
+ * matched pair becomes one coarse node. A plain matching stalls on hubs, as a
+ * star only loses one leaf per level, so each node left unmatched but with
+ * neighbors then joins the lightest group among them. Isolated nodes are kept
+ * as they are.
+ * <p>
+ * Coarse nodes are placed at the center of their group, and parallel coarse
+ * edges are merged.
+ */
+public class MaximalMatchingCoarsening {
+
+    private final Random random;
+
+    public MaximalMatchingCoarsening() {
+        this(new Random());
+    }
+
+    public MaximalMatchingCoarsening(Random random) {
+        this.random = random;
+    }
+
+    public CoarseGraph coarsen(CoarseGraph graph) {
+        LayoutWorkspace workspace = graph.getWorkspace();
+        int[] weights = graph.getWeights();
+        float[] x = workspace.getX();
+        float[] y = workspace.getY();
+        int[] edgeStart = workspace.getEdgeStart();
+        int[] edgeTargets = workspace.getEdgeTargets();
+        int nodeCount = workspace.getNodeCount();
+        int edgeCount = workspace.getEdgeCount();
+
+        // Adjacency in compressed rows, in both directions
+        int[] adjacencyStart = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                adjacencyStart[i + 1]++;
+                adjacencyStart[edgeTargets[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            adjacencyStart[i + 1] += adjacencyStart[i];
+        }
+        int[] adjacency = new int[adjacencyStart[nodeCount]];
+        int[] cursor = Arrays.copyOf(adjacencyStart, nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                adjacency[cursor[i]++] = edgeTargets[e];
+                adjacency[cursor[edgeTargets[e]]++] = i;
+            }
+        }
+
+        // Matching
+        int[] order = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        for (int i = nodeCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        int[] parents = new int[nodeCount];
+        Arrays.fill(parents, -1);
+        int[] coarseWeights = new int[nodeCount];
+        int coarseCount = 0;
+        for (int u : order) {
+            if (parents[u] != -1) {
+                continue;
+            }
+            int match = -1;
+            for (int a = adjacencyStart[u]; a < adjacencyStart[u + 1]; a++) {
+                int v = adjacency[a];
+                if (parents[v] == -1 && (match == -1 || weights[v] < weights[match])) {
+                    match = v;
+                }
+            }
+            if (match != -1) {
+                parents[u] = coarseCount;
+                parents[match] = coarseCount;
+                coarseWeights[coarseCount] = weights[u] + weights[match];
+                coarseCount++;
+            }
+        }
+
+        // Unmatched nodes only have matched neighbors, join the lightest group
+        for (int u = 0; u < nodeCount; u++) {
+            if (parents[u] != -1) {
+                continue;
+            }
+            int group = -1;
+            for (int a = adjacencyStart[u]; a < adjacencyStart[u + 1]; a++) {
+                int g = parents[adjacency[a]];
+                if (g != -1 && (group == -1 || coarseWeights[g] < coarseWeights[group])) {
+                    group = g;
+                }
+            }
+            if (group == -1) {
+                group = coarseCount++;
+            }
+            parents[u] = group;
+            coarseWeights[group] += weights[u];
+        }
+
+        // Coarse nodes at the center of their group
+        float[] sumX = new float[coarseCount];
+        float[] sumY = new float[coarseCount];
+        int[] groupSizes = new int[coarseCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int p = parents[i];
+            sumX[p] += x[i];
+            sumY[p] += y[i];
+            groupSizes[p]++;
+        }
+
+        // Coarse edges, without self-loops and duplicates
+        long[] keys = new long[edgeCount];
+        int keyCount = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                int s = parents[i];
+                int t = parents[edgeTargets[e]];
+                if (s != t) {
+                    keys[keyCount++] = ((long) Math.min(s, t) << 32) | Math.max(s, t);
+                }
+            }
+        }
+        Arrays.sort(keys, 0, keyCount);
+        int coarseEdgeCount = 0;
+        for (int k = 0; k < keyCount; k++) {
+            if (k == 0 || keys[k] != keys[k - 1]) {
+                keys[coarseEdgeCount++] = keys[k];
+            }
+        }
+        int[] coarseSources = new int[coarseEdgeCount];
+        int[] coarseTargets = new int[coarseEdgeCount];
+        for (int e = 0; e < coarseEdgeCount; e++) {
+            coarseSources[e] = (int) (keys[e] >>> 32);
+            coarseTargets[e] = (int) keys[e];
+        }
+
+        LayoutWorkspace coarseWorkspace = new LayoutWorkspace();
+        coarseWorkspace.load(coarseCount, coarseEdgeCount, coarseSources, coarseTargets, null);
+        float[] coarseX = coarseWorkspace.getX();
+        float[] coarseY = coarseWorkspace.getY();
+        for (int c = 0; c < coarseCount; c++) {
+            coarseX[c] = sumX[c] / groupSizes[c];
+            coarseY[c] = sumY[c] / groupSizes[c];
+        }
+
+        return new CoarseGraph(coarseWorkspace, Arrays.copyOf(coarseWeights, coarseCount), parents);
+    }
+}
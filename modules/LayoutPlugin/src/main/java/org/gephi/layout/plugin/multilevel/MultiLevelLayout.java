@@ -0,0 +1,240 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.multilevel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.gephi.layout.plugin.force.Displacement;
+import org.gephi.layout.plugin.force.yifanHu.YifanHuLayout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutProperty;
+import org.gephi.layout.spi.LayoutWorkspace;
+import org.openide.util.NbBundle;
+
+/**
+ * Hu's multilevel algorithm.
+ * <p>
+ * The graph is coarsened into a hierarchy of smaller graphs with
+ * {@link MaximalMatchingCoarsening}, until a level is small enough or stops
+ * shrinking. Levels are laid out from the coarsest to the finest with the
+ * force model of {@link YifanHuLayout}, each one starting from the positions
+ * of the coarser level. The optimal distance of a level grows with the number
+ * of nodes it collapses, so that all the levels cover the same area. The
+ * finest level is the graph itself and goes on like the single level layout.
+ */
+public class MultiLevelLayout extends YifanHuLayout {
+
+    private static final int LEVEL_MAX_ITERATIONS = 500;
+    private int minLevelSize;
+    private double minCoarseningRate;
+    private List<CoarseGraph> levels;
+    private int level;
+    private int levelIterations;
+    private Random random;
+
+    public MultiLevelLayout(LayoutBuilder layoutBuilder, Displacement displacement) {
+        super(layoutBuilder, displacement);
+    }
+
+    @Override
+    public void resetPropertiesValues() {
+        super.resetPropertiesValues();
+        setMinLevelSize(3);
+        setMinCoarseningRate(0.75);
+    }
+
+    @Override
+    public LayoutProperty[] getProperties() {
+        List<LayoutProperty> properties = new ArrayList<LayoutProperty>();
+        for (LayoutProperty property : super.getProperties()) {
+            properties.add(property);
+        }
+        final String MULTILEVEL_CATEGORY = "Multilevel's properties";
+
+        try {
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(MultiLevelLayout.class, "YifanHuMultiLevel.minLevelSize.name"),
+                    MULTILEVEL_CATEGORY,
+                    "YifanHuMultiLevel.minLevelSize.name",
+                    NbBundle.getMessage(MultiLevelLayout.class, "YifanHuMultiLevel.minLevelSize.desc"),
+                    "getMinLevelSize", "setMinLevelSize"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Double.class,
+                    NbBundle.getMessage(MultiLevelLayout.class, "YifanHuMultiLevel.minCoarseningRate.name"),
+                    MULTILEVEL_CATEGORY,
+                    "YifanHuMultiLevel.minCoarseningRate.name",
+                    NbBundle.getMessage(MultiLevelLayout.class, "YifanHuMultiLevel.minCoarseningRate.desc"),
+                    "getMinCoarseningRate", "setMinCoarseningRate"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return properties.toArray(new LayoutProperty[0]);
+    }
+
+    @Override
+    public void initKernel(LayoutWorkspace workspace) {
+        super.initKernel(workspace);
+        random = new Random();
+        levels = new ArrayList<CoarseGraph>();
+
+        int[] weights = new int[workspace.getNodeCount()];
+        Arrays.fill(weights, 1);
+        CoarseGraph coarseGraph = new CoarseGraph(workspace, weights, null);
+        levels.add(coarseGraph);
+
+        MaximalMatchingCoarsening coarsening = new MaximalMatchingCoarsening(random);
+        while (coarseGraph.getNodeCount() > getMinLevelSize()) {
+            CoarseGraph coarserGraph = coarsening.coarsen(coarseGraph);
+            if (coarserGraph.getNodeCount() > getMinCoarseningRate() * coarseGraph.getNodeCount()) {
+                break;
+            }
+            levels.add(coarserGraph);
+            coarseGraph = coarserGraph;
+        }
+
+        startLevel(levels.size() - 1);
+    }
+
+    @Override
+    public void endKernel(LayoutWorkspace workspace) {
+        super.endKernel(workspace);
+        levels = null;
+    }
+
+    @Override
+    public void step(LayoutWorkspace workspace) {
+        if (level == 0) {
+            super.step(workspace);
+            return;
+        }
+
+        applyForces(levels.get(level).getWorkspace(), getLevelOptimalDistance(level));
+        postAlgo();
+
+        levelIterations++;
+        if (isConverged() || levelIterations >= LEVEL_MAX_ITERATIONS) {
+            prolong(level);
+            startLevel(level - 1);
+        }
+    }
+
+    @Override
+    public LayoutWorkspace getActiveWorkspace() {
+        if (levels == null) {
+            return super.getActiveWorkspace();
+        }
+        return levels.get(level).getWorkspace();
+    }
+
+    private void startLevel(int level) {
+        this.level = level;
+        levelIterations = 0;
+        resetCooling(getInitialStep() * getLevelOptimalDistance(level) / getOptimalDistance());
+    }
+
+    /* Places each node of the finer level on its parent, with some jitter so
+     * that nodes of a same group don't overlap.
+     */
+    private void prolong(int level) {
+        LayoutWorkspace coarseWorkspace = levels.get(level).getWorkspace();
+        LayoutWorkspace fineWorkspace = levels.get(level - 1).getWorkspace();
+        int[] parents = levels.get(level).getParents();
+        float jitter = 0.1f * getLevelOptimalDistance(level - 1);
+
+        float[] coarseX = coarseWorkspace.getX();
+        float[] coarseY = coarseWorkspace.getY();
+        float[] fineX = fineWorkspace.getX();
+        float[] fineY = fineWorkspace.getY();
+        boolean[] fixed = fineWorkspace.getFixed();
+        for (int i = 0; i < fineWorkspace.getNodeCount(); i++) {
+            if (fixed[i]) {
+                continue;
+            }
+            fineX[i] = coarseX[parents[i]] + jitter * (random.nextFloat() - 0.5f);
+            fineY[i] = coarseY[parents[i]] + jitter * (random.nextFloat() - 0.5f);
+        }
+    }
+
+    /* The area per node is kept constant across levels, so the optimal
+     * distance scales with the square root of the collapsing rate.
+     */
+    private float getLevelOptimalDistance(int level) {
+        if (level == 0) {
+            return getOptimalDistance();
+        }
+        double rate = (double) levels.get(0).getNodeCount() / levels.get(level).getNodeCount();
+        return (float) (getOptimalDistance() * Math.sqrt(rate));
+    }
+
+    /**
+     * @return the number of nodes under which the graph is not coarsened
+     * anymore
+     */
+    public Integer getMinLevelSize() {
+        return minLevelSize;
+    }
+
+    /**
+     * @param minLevelSize the minLevelSize to set
+     */
+    public void setMinLevelSize(Integer minLevelSize) {
+        this.minLevelSize = minLevelSize;
+    }
+
+    /**
+     * @return the ratio of nodes a coarser level must stay under, coarsening
+     * stops at the first level that doesn't
+     */
+    public Double getMinCoarseningRate() {
+        return minCoarseningRate;
+    }
+
+    /**
+     * @param minCoarseningRate the minCoarseningRate to set
+     */
+    public void setMinCoarseningRate(Double minCoarseningRate) {
+        this.minCoarseningRate = minCoarseningRate;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin.multilevel;
+
+import javax.swing.Icon;
+import javax.swing.JPanel;
+import org.gephi.layout.plugin.force.StepDisplacement;
+import org.gephi.layout.spi.Layout;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutUI;
+import org.openide.util.NbBundle;
+import org.openide.util.lookup.ServiceProvider;
+
+@ServiceProvider(service = LayoutBuilder.class)
+public class YifanHuMultiLevel implements LayoutBuilder {
+
+    private YifanHuMultiLevelLayoutUI ui = new YifanHuMultiLevelLayoutUI();
+
+    @Override
+    public MultiLevelLayout buildLayout() {
+        MultiLevelLayout layout = new MultiLevelLayout(this, new StepDisplacement(1f));
+        return layout;
+    }
+
+    @Override
+    public String getName() {
+        return NbBundle.getMessage(YifanHuMultiLevel.class, "YifanHuMultiLevel.name");
+    }
+
+    @Override
+    public LayoutUI getUI() {
+        return ui;
+    }
+
+    private static class YifanHuMultiLevelLayoutUI implements LayoutUI {
+
+        @Override
+        public String getDescription() {
+            return NbBundle.getMessage(YifanHuMultiLevel.class, "YifanHuMultiLevel.description");
+        }
+
+        @Override
+        public Icon getIcon() {
+            return null;
+        }
+
+        @Override
+        public JPanel getSimplePanel(Layout layout) {
+            return null;
+        }
+
+        @Override
+        public int getQualityRank() {
+            return 3;
+        }
+
+        @Override
+        public int getSpeedRank() {
+            return 5;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.openord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.gephi.layout.plugin.ParallelTasks;
+
+/**
+ * Density grid of the DrL/OpenOrd algorithm, which stands for the repulsion
+ * between nodes.
+ * <p>
+ * The drawing is confined to a square of side {@link #VIEW_SIZE} centered on
+ * the origin, cut in <code>GRID_SIZE x GRID_SIZE</code> cells. Each node adds
+ * a bilinear fall-off of radius {@link #RADIUS} cells around its own cell, and
+ * the repulsion energy at a position is the square of the density of its
+ * cell. Nodes too close to the border aren't counted, and positions there have
+ * a prohibitive energy so that nodes stay inside.
+ * <p>
+ * The grid is rebuilt in parallel, each task adding the contributions of all
+ * the nodes to its own band of rows.
+ */
+public class DensityGrid {
+
+    public static final int GRID_SIZE = 1000;
+    public static final float VIEW_SIZE = 4000f;
+    public static final int RADIUS = 10;
+    private static final float HALF_VIEW = VIEW_SIZE / 2;
+    private static final float VIEW_TO_GRID = GRID_SIZE / VIEW_SIZE;
+    private static final float OUTSIDE_DENSITY = 10000f;
+    private static final int FALL_OFF_SIZE = 2 * RADIUS + 1;
+    private static final float[] FALL_OFF = new float[FALL_OFF_SIZE * FALL_OFF_SIZE];
+
+    static {
+        for (int i = -RADIUS; i <= RADIUS; i++) {
+            for (int j = -RADIUS; j <= RADIUS; j++) {
+                FALL_OFF[(i + RADIUS) * FALL_OFF_SIZE + j + RADIUS] =
+                        ((RADIUS - Math.abs((float) i)) / RADIUS) * ((RADIUS - Math.abs((float) j)) / RADIUS);
+            }
+        }
+    }
+    private final float[] density = new float[GRID_SIZE * GRID_SIZE];
+    //Nodes sorted by row
+    private final int[] rowStart = new int[GRID_SIZE + 1];
+    private int[] rowNodes;
+    private int[] nodeColumns;
+
+    /**
+     * Computes the density of the grid from the positions of the nodes.
+     * @param x             the x coordinate of each node
+     * @param y             the y coordinate of each node
+     * @param nodeCount     the number of nodes
+     * @param pool          the pool the bands of rows are computed in
+     * @param taskCount     the number of bands
+     */
+    public void build(float[] x, float[] y, int nodeCount, ExecutorService pool, int taskCount) {
+        if (rowNodes == null || rowNodes.length < nodeCount) {
+            rowNodes = new int[nodeCount];
+            nodeColumns = new int[nodeCount];
+        }
+
+        // Counting sort of the nodes by row, without the ones off the grid
+        for (int r = 0; r <= GRID_SIZE; r++) {
+            rowStart[r] = 0;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            int row = getCell(y[i]);
+            int column = getCell(x[i]);
+            nodeColumns[i] = isInside(column, row) ? column : -1;
+            if (nodeColumns[i] != -1) {
+                rowStart[row + 1]++;
+            }
+        }
+        for (int r = 0; r < GRID_SIZE; r++) {
+            rowStart[r + 1] += rowStart[r];
+        }
+        int[] cursor = new int[GRID_SIZE];
+        System.arraycopy(rowStart, 0, cursor, 0, GRID_SIZE);
+        for (int i = 0; i < nodeCount; i++) {
+            if (nodeColumns[i] != -1) {
+                rowNodes[cursor[getCell(y[i])]++] = i;
+            }
+        }
+
+        List<Future<?>> threads = new ArrayList<Future<?>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) GRID_SIZE * t / taskCount);
+            int to = (int) ((long) GRID_SIZE * (t + 1) / taskCount);
+            threads.add(pool.submit(new BandTask(from, to)));
+        }
+        ParallelTasks.getAll(threads);
+    }
+
+    /**
+     * Returns the repulsion energy of a node at <code>(x, y)</code>, without
+     * its own contribution to the grid, made at <code>(nodeX, nodeY)</code>
+     * when the grid was built.
+     * @param x             the x coordinate to evaluate
+     * @param y             the y coordinate to evaluate
+     * @param nodeX         the x coordinate of the node when the grid was built
+     * @param nodeY         the y coordinate of the node when the grid was built
+     * @return              the square of the density
+     */
+    public float getEnergy(float x, float y, float nodeX, float nodeY) {
+        int column = getCell(x);
+        int row = getCell(y);
+        if (!isInside(column, row)) {
+            return OUTSIDE_DENSITY;
+        }
+        float d = density[row * GRID_SIZE + column];
+        int nodeColumn = getCell(nodeX);
+        int nodeRow = getCell(nodeY);
+        if (isInside(nodeColumn, nodeRow)
+                && Math.abs(row - nodeRow) <= RADIUS && Math.abs(column - nodeColumn) <= RADIUS) {
+            d -= FALL_OFF[(row - nodeRow + RADIUS) * FALL_OFF_SIZE + column - nodeColumn + RADIUS];
+        }
+        return d * d;
+    }
+
+    private static int getCell(float coordinate) {
+        float cell = (coordinate + HALF_VIEW) * VIEW_TO_GRID;
+        return cell >= 0 && cell < GRID_SIZE ? (int) cell : -1;
+    }
+
+    private static boolean isInside(int column, int row) {
+        return column >= RADIUS && column < GRID_SIZE - RADIUS
+                && row >= RADIUS && row < GRID_SIZE - RADIUS;
+    }
+
+    /*
+     * Density of the rows [from, to), from the nodes at most RADIUS rows away
+     */
+    private class BandTask implements Runnable {
+
+        private final int from;
+        private final int to;
+
+        public BandTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void run() {
+            for (int i = from * GRID_SIZE; i < to * GRID_SIZE; i++) {
+                density[i] = 0;
+            }
+            int firstRow = Math.max(0, from - RADIUS);
+            int lastRow = Math.min(GRID_SIZE, to + RADIUS);
+            for (int nodeRow = firstRow; nodeRow < lastRow; nodeRow++) {
+                int rowMin = Math.max(from, nodeRow - RADIUS);
+                int rowMax = Math.min(to - 1, nodeRow + RADIUS);
+                for (int k = rowStart[nodeRow]; k < rowStart[nodeRow + 1]; k++) {
+                    int column = nodeColumns[rowNodes[k]];
+                    for (int r = rowMin; r <= rowMax; r++) {
+                        int cell = r * GRID_SIZE + column - RADIUS;
+                        int fallOff = (r - nodeRow + RADIUS) * FALL_OFF_SIZE;
+                        for (int c = 0; c < FALL_OFF_SIZE; c++) {
+                            density[cell + c] += FALL_OFF[fallOff + c];
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
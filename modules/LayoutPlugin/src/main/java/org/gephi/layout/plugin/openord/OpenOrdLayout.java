@@ -0,0 +1,582 @@
+/*
+Copyright 2008-2010 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.layout.plugin.openord;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gephi.layout.plugin.AbstractKernelLayout;
+import org.gephi.layout.plugin.ParallelTasks;
+import org.gephi.layout.plugin.multilevel.CoarseGraph;
+import org.gephi.layout.plugin.multilevel.MaximalMatchingCoarsening;
+import org.gephi.layout.spi.LayoutBuilder;
+import org.gephi.layout.spi.LayoutProperty;
+import org.gephi.layout.spi.LayoutWorkspace;
+import org.openide.util.NbBundle;
+
+/**
+ * Layout for large graphs, after the DrL/OpenOrd algorithm of Martin, Brown,
+ * Klavans and Boyack.
+ * <p>
+ * Repulsion comes from a {@link DensityGrid} and attraction from the edges.
+ * At each iteration every node goes to the lowest energy position among two
+ * candidates: the weighted centroid of its neighbors, damped by its current
+ * position, and a random jump around it whose length depends on the
+ * temperature. The iterations follow a simulated annealing schedule in five
+ * stages - liquid, expansion, cooldown, crunch and simmer - which changes the
+ * temperature, attraction and damping. In the first three stages the longest
+ * edge of a node with many edges is cut when it's longer than a threshold
+ * given by the edge cut, which lets clusters separate.
+ * <p>
+ * Nodes are updated in parallel from the positions and the grid of the
+ * previous iteration, then the grid is rebuilt.
+ * <p>
+ * With coarsening levels, the graph is first collapsed with
+ * {@link MaximalMatchingCoarsening}. The coarsest level goes through the whole
+ * schedule and each finer level starts from the positions of its parents with
+ * all the stages but the liquid one.
+ */
+public class OpenOrdLayout extends AbstractKernelLayout {
+
+    private static final float[] STAGE_RATIOS = {0.25f, 0.25f, 0.25f, 0.10f, 0.15f};
+    private static final int LIQUID = 0;
+    private static final int EXPANSION = 1;
+    private static final int COOLDOWN = 2;
+    private static final int CRUNCH = 3;
+    private static final int SIMMER = 4;
+    private static final float NO_CUT = 99f;
+    private static final int MIN_LEVEL_SIZE = 100;
+    private static final double MIN_COARSENING_RATE = 0.75;
+    //Properties
+    private float edgeCut;
+    private int numIterations;
+    private int coarseningLevels;
+    private int threadCount;
+    //Levels
+    private List<CoarseGraph> levels;
+    private int level;
+    private final DensityGrid densityGrid = new DensityGrid();
+    private ExecutorService pool;
+    private int currentThreadCount;
+    private Random random;
+    //Edges of the current level, in both directions
+    private int[] adjacencyStart;
+    private int[] adjacencyEnd;
+    private int[] adjacency;
+    private float[] adjacencyWeights;
+    private float[] newX;
+    private float[] newY;
+    //Schedule
+    private int[] stageIterations;
+    private int stage;
+    private int stageIteration;
+    private float temperature;
+    private float attraction;
+    private float dampingMult;
+    private float minEdges;
+    private float cutOffLength;
+    private float cutLengthEnd;
+    private float cutRate;
+
+    public OpenOrdLayout(LayoutBuilder layoutBuilder) {
+        super(layoutBuilder);
+        this.threadCount = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    @Override
+    public void resetPropertiesValues() {
+        setEdgeCut(0.8f);
+        setNumIterations(750);
+        setCoarseningLevels(0);
+    }
+
+    @Override
+    public void initKernel(LayoutWorkspace workspace) {
+        setConverged(false);
+        pool = Executors.newFixedThreadPool(threadCount);
+        currentThreadCount = threadCount;
+        random = new Random();
+        levels = new ArrayList<CoarseGraph>();
+
+        int[] weights = new int[workspace.getNodeCount()];
+        Arrays.fill(weights, 1);
+        CoarseGraph coarseGraph = new CoarseGraph(workspace, weights, null);
+        levels.add(coarseGraph);
+
+        MaximalMatchingCoarsening coarsening = new MaximalMatchingCoarsening(random);
+        while (levels.size() <= coarseningLevels && coarseGraph.getNodeCount() > MIN_LEVEL_SIZE) {
+            CoarseGraph coarserGraph = coarsening.coarsen(coarseGraph);
+            if (coarserGraph.getNodeCount() > MIN_COARSENING_RATE * coarseGraph.getNodeCount()) {
+                break;
+            }
+            levels.add(coarserGraph);
+            coarseGraph = coarserGraph;
+        }
+
+        // The coarsest level starts from random positions
+        LayoutWorkspace coarsest = coarseGraph.getWorkspace();
+        float[] x = coarsest.getX();
+        float[] y = coarsest.getY();
+        boolean[] fixed = coarsest.getFixed();
+        float side = DensityGrid.VIEW_SIZE / 10;
+        for (int i = 0; i < coarsest.getNodeCount(); i++) {
+            if (!fixed[i]) {
+                x[i] = side * (random.nextFloat() - 0.5f);
+                y[i] = side * (random.nextFloat() - 0.5f);
+            }
+        }
+
+        cutLengthEnd = Math.max(1f, 40000f * (1f - edgeCut));
+        startLevel(levels.size() - 1);
+    }
+
+    @Override
+    public void endKernel(LayoutWorkspace workspace) {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        levels = null;
+        adjacency = null;
+        adjacencyWeights = null;
+        newX = null;
+        newY = null;
+    }
+
+    @Override
+    public void step(LayoutWorkspace workspace) {
+        if (levels == null || isConverged()) {
+            return;
+        }
+        LayoutWorkspace levelWorkspace = levels.get(level).getWorkspace();
+        int nodeCount = levelWorkspace.getNodeCount();
+
+        // Move nodes
+        // NB: Multi-threaded, each task only writes the positions and edges of its own nodes
+        int taskCount = 8 * currentThreadCount;
+        List<Future<?>> threads = new ArrayList<Future<?>>();
+        for (int t = 0; t < taskCount; t++) {
+            int from = (int) ((long) nodeCount * t / taskCount);
+            int to = (int) ((long) nodeCount * (t + 1) / taskCount);
+            threads.add(pool.submit(new UpdateTask(levelWorkspace, from, to, new Random(random.nextLong()))));
+        }
+        ParallelTasks.getAll(threads);
+        System.arraycopy(newX, 0, levelWorkspace.getX(), 0, nodeCount);
+        System.arraycopy(newY, 0, levelWorkspace.getY(), 0, nodeCount);
+        densityGrid.build(levelWorkspace.getX(), levelWorkspace.getY(), nodeCount, pool, taskCount);
+
+        nextIteration();
+    }
+
+    @Override
+    public LayoutWorkspace getActiveWorkspace() {
+        if (levels == null) {
+            return super.getActiveWorkspace();
+        }
+        return levels.get(level).getWorkspace();
+    }
+
+    private void startLevel(int level) {
+        this.level = level;
+        LayoutWorkspace levelWorkspace = levels.get(level).getWorkspace();
+        int nodeCount = levelWorkspace.getNodeCount();
+        int[] edgeStart = levelWorkspace.getEdgeStart();
+        int[] edgeTargets = levelWorkspace.getEdgeTargets();
+        float[] edgeWeights = levelWorkspace.getEdgeWeights();
+
+        // Adjacency in compressed rows, in both directions. Cut edges are
+        // moved after adjacencyEnd[i] in the row of i.
+        adjacencyStart = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                adjacencyStart[i + 1]++;
+                adjacencyStart[edgeTargets[e] + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            adjacencyStart[i + 1] += adjacencyStart[i];
+        }
+        adjacency = new int[adjacencyStart[nodeCount]];
+        adjacencyWeights = new float[adjacencyStart[nodeCount]];
+        adjacencyEnd = Arrays.copyOf(adjacencyStart, nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = edgeStart[i]; e < edgeStart[i + 1]; e++) {
+                int t = edgeTargets[e];
+                adjacency[adjacencyEnd[i]] = t;
+                adjacencyWeights[adjacencyEnd[i]++] = edgeWeights[e];
+                adjacency[adjacencyEnd[t]] = i;
+                adjacencyWeights[adjacencyEnd[t]++] = edgeWeights[e];
+            }
+        }
+        newX = new float[nodeCount];
+        newY = new float[nodeCount];
+
+        // The coarsest level goes through all the stages, finer ones are refined
+        stageIterations = new int[STAGE_RATIOS.length];
+        for (int s = 0; s < STAGE_RATIOS.length; s++) {
+            if (level == levels.size() - 1 || s >= EXPANSION) {
+                stageIterations[s] = Math.round(STAGE_RATIOS[s] * numIterations);
+            }
+        }
+        cutOffLength = 4 * cutLengthEnd;
+        cutRate = 3 * cutLengthEnd / 400;
+        densityGrid.build(levelWorkspace.getX(), levelWorkspace.getY(), nodeCount, pool, 8 * currentThreadCount);
+        startStage(-1);
+    }
+
+    /* Starts the next stage that has iterations, or the next level */
+    private void startStage(int previous) {
+        stage = previous + 1;
+        while (stage < stageIterations.length && stageIterations[stage] == 0) {
+            stage++;
+        }
+        stageIteration = 0;
+        switch (stage) {
+            case LIQUID:
+                temperature = 2000f;
+                attraction = 10f;
+                dampingMult = 1f;
+                minEdges = 20f;
+                break;
+            case EXPANSION:
+                temperature = 2000f;
+                attraction = 2f;
+                dampingMult = 1f;
+                minEdges = 20f;
+                break;
+            case COOLDOWN:
+                temperature = 2000f;
+                attraction = 1f;
+                dampingMult = 0.1f;
+                minEdges = 12f;
+                break;
+            case CRUNCH:
+                temperature = 250f;
+                attraction = 1f;
+                dampingMult = 0.25f;
+                minEdges = NO_CUT;
+                break;
+            case SIMMER:
+                temperature = 250f;
+                attraction = 0.5f;
+                dampingMult = 0f;
+                minEdges = NO_CUT;
+                break;
+            default:
+                if (level > 0) {
+                    prolong(level);
+                    startLevel(level - 1);
+                } else {
+                    setConverged(true);
+                }
+        }
+    }
+
+    private void nextIteration() {
+        switch (stage) {
+            case EXPANSION:
+                if (attraction > 1f) {
+                    attraction -= 0.05f;
+                }
+                if (minEdges > 12f) {
+                    minEdges -= 0.05f;
+                }
+                cutOffLength -= cutRate;
+                if (dampingMult > 0.1f) {
+                    dampingMult -= 0.005f;
+                }
+                break;
+            case COOLDOWN:
+                if (temperature > 50f) {
+                    temperature -= 10f;
+                }
+                if (cutOffLength > cutLengthEnd) {
+                    cutOffLength -= 2 * cutRate;
+                }
+                if (minEdges > 1f) {
+                    minEdges -= 0.2f;
+                }
+                break;
+        }
+        stageIteration++;
+        if (stageIteration >= stageIterations[stage]) {
+            startStage(stage);
+        }
+    }
+
+    /* Places each node of the finer level on its parent, with a jitter of the
+     * size of a grid cell so that nodes of a same group don't overlap.
+     */
+    private void prolong(int level) {
+        LayoutWorkspace coarseWorkspace = levels.get(level).getWorkspace();
+        LayoutWorkspace fineWorkspace = levels.get(level - 1).getWorkspace();
+        int[] parents = levels.get(level).getParents();
+        float jitter = DensityGrid.VIEW_SIZE / DensityGrid.GRID_SIZE;
+
+        float[] coarseX = coarseWorkspace.getX();
+        float[] coarseY = coarseWorkspace.getY();
+        float[] fineX = fineWorkspace.getX();
+        float[] fineY = fineWorkspace.getY();
+        boolean[] fixed = fineWorkspace.getFixed();
+        for (int i = 0; i < fineWorkspace.getNodeCount(); i++) {
+            if (fixed[i]) {
+                continue;
+            }
+            fineX[i] = coarseX[parents[i]] + jitter * (random.nextFloat() - 0.5f);
+            fineY[i] = coarseY[parents[i]] + jitter * (random.nextFloat() - 0.5f);
+        }
+    }
+
+    /*
+     * Moves a range of nodes to their lowest energy position, in newX/newY
+     */
+    private class UpdateTask implements Runnable {
+
+        private final float[] x;
+        private final float[] y;
+        private final boolean[] fixed;
+        private final int from;
+        private final int to;
+        private final Random random;
+        private final double attractionFactor;
+        private final float jumpLength;
+
+        public UpdateTask(LayoutWorkspace workspace, int from, int to, Random random) {
+            this.x = workspace.getX();
+            this.y = workspace.getY();
+            this.fixed = workspace.getFixed();
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.attractionFactor = attraction * attraction * attraction * attraction * 2e-2;
+            this.jumpLength = 0.01f * temperature;
+        }
+
+        @Override
+        public void run() {
+            for (int i = from; i < to; i++) {
+                newX[i] = x[i];
+                newY[i] = y[i];
+                if (fixed[i]) {
+                    continue;
+                }
+
+                // Weighted centroid of the neighbors
+                float totalWeight = 0;
+                float centroidX = 0;
+                float centroidY = 0;
+                for (int a = adjacencyStart[i]; a < adjacencyEnd[i]; a++) {
+                    float w = adjacencyWeights[a];
+                    totalWeight += w;
+                    centroidX += w * x[adjacency[a]];
+                    centroidY += w * y[adjacency[a]];
+                }
+                float analyticX = x[i];
+                float analyticY = y[i];
+                if (totalWeight > 0) {
+                    centroidX /= totalWeight;
+                    centroidY /= totalWeight;
+                    float damping = 1f - dampingMult;
+                    analyticX = damping * x[i] + (1f - damping) * centroidX;
+                    analyticY = damping * y[i] + (1f - damping) * centroidY;
+                    cutLongestEdge(i, centroidX, centroidY);
+                }
+
+                // Random jump
+                float jumpX = analyticX + (0.5f - random.nextFloat()) * jumpLength;
+                float jumpY = analyticY + (0.5f - random.nextFloat()) * jumpLength;
+
+                if (getEnergy(i, analyticX, analyticY) < getEnergy(i, jumpX, jumpY)) {
+                    newX[i] = analyticX;
+                    newY[i] = analyticY;
+                } else {
+                    newX[i] = jumpX;
+                    newY[i] = jumpY;
+                }
+            }
+        }
+
+        private double getEnergy(int i, float px, float py) {
+            double energy = 0;
+            for (int a = adjacencyStart[i]; a < adjacencyEnd[i]; a++) {
+                int n = adjacency[a];
+                double xDist = px - x[n];
+                double yDist = py - y[n];
+                double energyDistance = xDist * xDist + yDist * yDist;
+                if (stage < COOLDOWN) {
+                    energyDistance *= energyDistance;
+                }
+                if (stage == LIQUID) {
+                    energyDistance *= energyDistance;
+                }
+                energy += adjacencyWeights[a] * attractionFactor * energyDistance;
+            }
+            return energy + densityGrid.getEnergy(px, py, x[i], y[i]);
+        }
+
+        /* Cuts the edge of i the farthest from the centroid of its neighbors
+         * if i has enough edges left and that edge is too long
+         */
+        private void cutLongestEdge(int i, float centroidX, float centroidY) {
+            int edgeCount = adjacencyEnd[i] - adjacencyStart[i];
+            if (minEdges == NO_CUT || edgeCut <= 0f || edgeCount <= minEdges) {
+                return;
+            }
+            int longest = -1;
+            float maxLength = 0;
+            for (int a = adjacencyStart[i]; a < adjacencyEnd[i]; a++) {
+                float xDist = centroidX - x[adjacency[a]];
+                float yDist = centroidY - y[adjacency[a]];
+                float length = xDist * xDist + yDist * yDist;
+                if (length > maxLength) {
+                    maxLength = length;
+                    longest = a;
+                }
+            }
+            if (longest != -1 && maxLength > cutOffLength) {
+                int last = --adjacencyEnd[i];
+                int target = adjacency[longest];
+                float weight = adjacencyWeights[longest];
+                adjacency[longest] = adjacency[last];
+                adjacencyWeights[longest] = adjacencyWeights[last];
+                adjacency[last] = target;
+                adjacencyWeights[last] = weight;
+            }
+        }
+    }
+
+    @Override
+    public LayoutProperty[] getProperties() {
+        List<LayoutProperty> properties = new ArrayList<LayoutProperty>();
+        final String OPENORD = "OpenOrd";
+
+        try {
+            properties.add(LayoutProperty.createProperty(
+                    this, Float.class,
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.edgeCut.name"),
+                    OPENORD,
+                    "OpenOrd.edgeCut.name",
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.edgeCut.desc"),
+                    "getEdgeCut", "setEdgeCut"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.numIterations.name"),
+                    OPENORD,
+                    "OpenOrd.numIterations.name",
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.numIterations.desc"),
+                    "getNumIterations", "setNumIterations"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.coarseningLevels.name"),
+                    OPENORD,
+                    "OpenOrd.coarseningLevels.name",
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.coarseningLevels.desc"),
+                    "getCoarseningLevels", "setCoarseningLevels"));
+            properties.add(LayoutProperty.createProperty(
+                    this, Integer.class,
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.threads.name"),
+                    OPENORD,
+                    "OpenOrd.threads.name",
+                    NbBundle.getMessage(OpenOrdLayout.class, "OpenOrd.threads.desc"),
+                    "getThreadsCount", "setThreadsCount"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return properties.toArray(new LayoutProperty[0]);
+    }
+
+    /**
+     * @return the edge cut, from 0 (no cut) to 1 (aggressive cutting)
+     */
+    public Float getEdgeCut() {
+        return edgeCut;
+    }
+
+    /**
+     * @param edgeCut the edge cut, from 0 (no cut) to 1 (aggressive cutting)
+     */
+    public void setEdgeCut(Float edgeCut) {
+        this.edgeCut = Math.max(0f, Math.min(1f, edgeCut));
+    }
+
+    /**
+     * @return the number of iterations of the schedule
+     */
+    public Integer getNumIterations() {
+        return numIterations;
+    }
+
+    /**
+     * @param numIterations the number of iterations of the schedule, shared
+     * among the stages
+     */
+    public void setNumIterations(Integer numIterations) {
+        this.numIterations = Math.max(1, numIterations);
+    }
+
+    /**
+     * @return the maximum number of coarsening levels
+     */
+    public Integer getCoarseningLevels() {
+        return coarseningLevels;
+    }
+
+    /**
+     * @param coarseningLevels the maximum number of coarsening levels, zero
+     * lays out the graph directly
+     */
+    public void setCoarseningLevels(Integer coarseningLevels) {
+        this.coarseningLevels = Math.max(0, coarseningLevels);
+    }
+
+    public Integer getThreadsCount() {
+        return threadCount;
+    }
+
+    public void setThreadsCount(Integer threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.layout.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.store.GraphModelImpl;
+import org.gephi.layout.plugin.multilevel.MultiLevelLayout;
+import org.gephi.layout.plugin.multilevel.YifanHuMultiLevel;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Runs a multilevel layout, whose coarse levels never reach the graph,
+ * through {@link BatchLayout}.
+ */
+public class BatchLayoutTest {
+
+    private static final int SIDE = 12;
+
+    @Test
+    public void testCoarseLevelsAreMeasured() {
+        GraphModel graphModel = newGrid();
+        MultiLevelLayout layout = newLayout(graphModel);
+        BatchLayout batchLayout = new BatchLayout();
+        batchLayout.setMaxIterations(60);
+        LevelRecorder recorder = new LevelRecorder(layout);
+        batchLayout.addListener(recorder);
+
+        batchLayout.execute("grid", layout, graphModel);
+
+        int coarseIterations = 0;
+        for (int i = 0; i < recorder.metrics.size(); i++) {
+            double displacement = recorder.metrics.get(i).getDisplacement();
+            if (recorder.coarse.get(i)) {
+                coarseIterations++;
+            }
+            //NaN on level changes only, nodes always move otherwise
+            assertTrue(Double.isNaN(displacement) || displacement > 0);
+        }
+        assertTrue(coarseIterations > 0);
+    }
+
+    @Test
+    public void testConvergesOnGraphLevel() {
+        GraphModel graphModel = newGrid();
+        MultiLevelLayout layout = newLayout(graphModel);
+        BatchLayout batchLayout = new BatchLayout();
+        batchLayout.setMaxIterations(5000);
+        //Any measured iteration is under the threshold
+        batchLayout.setConvergence(BatchLayout.Criterion.DISPLACEMENT, Double.MAX_VALUE, 3);
+        LevelRecorder recorder = new LevelRecorder(layout);
+        batchLayout.addListener(recorder);
+
+        BatchLayout.Result result = batchLayout.execute("grid", layout, graphModel);
+
+        assertEquals(BatchLayout.StopCondition.CONVERGED, result.getStopCondition());
+        int count = recorder.coarse.size();
+        assertTrue(recorder.coarse.get(0));
+        for (int i = count - 3; i < count; i++) {
+            assertFalse(recorder.coarse.get(i));
+        }
+    }
+
+    /* SIDE x SIDE lattice with random positions */
+    private static GraphModel newGrid() {
+        GraphModel graphModel = new GraphModelImpl();
+        Graph graph = graphModel.getUndirectedGraph();
+        Random random = new Random(42);
+        Node[] nodes = new Node[SIDE * SIDE];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graphModel.factory().newNode(String.valueOf(i));
+            nodes[i].setX((random.nextFloat() - 0.5f) * 1000f);
+            nodes[i].setY((random.nextFloat() - 0.5f) * 1000f);
+            graph.addNode(nodes[i]);
+        }
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                int i = row * SIDE + col;
+                if (col + 1 < SIDE) {
+                    graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[i + 1], 1f, false));
+                }
+                if (row + 1 < SIDE) {
+                    graph.addEdge(graphModel.factory().newEdge(nodes[i], nodes[i + SIDE], 1f, false));
+                }
+            }
+        }
+        return graphModel;
+    }
+
+    private static MultiLevelLayout newLayout(GraphModel graphModel) {
+        MultiLevelLayout layout = new YifanHuMultiLevel().buildLayout();
+        layout.setGraphModel(graphModel);
+        layout.resetPropertiesValues();
+        //Sync with the graph rarely, like batch runs do
+        layout.setSyncInterval(50);
+        return layout;
+    }
+
+    /* Records the metrics and whether each iteration ran on a coarse level */
+    private static class LevelRecorder implements BatchLayout.Listener {
+
+        private final MultiLevelLayout layout;
+        private final List<BatchLayout.Metrics> metrics = new ArrayList<BatchLayout.Metrics>();
+        private final List<Boolean> coarse = new ArrayList<Boolean>();
+
+        public LevelRecorder(MultiLevelLayout layout) {
+            this.layout = layout;
+        }
+
+        @Override
+        public void iterationPerformed(BatchLayout.Metrics iterationMetrics) {
+            metrics.add(iterationMetrics);
+            coarse.add(layout.getActiveWorkspace() != layout.workspace);
+        }
+
+        @Override
+        public void layoutFinished(BatchLayout.Result result) {
+        }
+    }
+}
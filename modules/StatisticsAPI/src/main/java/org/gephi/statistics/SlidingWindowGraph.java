@@ -0,0 +1,406 @@
+/*
+ * Copyright 2008-2010 Gephi
+ * Website : http://www.gephi.org
+ * 
+ * This file is part of Gephi.
+ *
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.statistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gephi.data.attributes.api.AttributeModel;
+import org.gephi.data.attributes.type.Interval;
+import org.gephi.data.attributes.type.TimeInterval;
+import org.gephi.dynamic.api.DynamicModel;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.Node;
+import org.gephi.statistics.spi.WindowDelta;
+
+/**
+ * Snapshot graph of a window sliding from left to right over a dynamic graph.
+ * <p>
+ * The time intervals of all nodes and edges are read once and sorted by the
+ * time they enter and leave the window. Moving the window then only visits
+ * the elements whose state changes, and the snapshot view is updated with
+ * that delta instead of being rebuilt from the whole graph. Running
+ * <code>n</code> windows thus costs <code>O((N + M) log(N + M))</code> plus
+ * the size of the deltas, instead of <code>n * (N + M)</code>.
+ * <p>
+ * Windows must be given with increasing bounds. A node is in the window when
+ * it has no time interval or when one of its intervals overlaps the window.
+ * An edge is in the window when it is itself in range and both its
+ * extremities are in the window.
+ */
+final class SlidingWindowGraph {
+
+    private static final Node[] EMPTY_NODES = new Node[0];
+    private static final Edge[] EMPTY_EDGES = new Edge[0];
+    //Interval states
+    private static final byte PENDING = 0;
+    private static final byte ACTIVE = 1;
+    private static final byte DONE = 2;
+    //Graph
+    private final Graph sourceGraph;
+    private final Graph windowGraph;
+    private final Node[] nodes;
+    private final Edge[] edges;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    //Incident edges of each node, as offsets in incidentEdges
+    private final int[] incidentOffsets;
+    private final int[] incidentEdges;
+    //Elements are numbered nodes first, then edges
+    private final int[] activeCounts;
+    private final boolean[] present;
+    //Intervals
+    private final int[] intervalOwners;
+    private final double[] intervalLows;
+    private final double[] intervalHighs;
+    private final boolean[] intervalLowOpen;
+    private final boolean[] intervalHighOpen;
+    private final byte[] intervalStates;
+    private final int[] byLow;
+    private final int[] byHigh;
+    private int lowCursor;
+    private int highCursor;
+    //Work
+    private final int[] touched;
+    private int touchedCount;
+    private final int[] visited;
+    private int stamp;
+    private boolean started;
+
+    SlidingWindowGraph(Graph graph, AttributeModel attributeModel) {
+        GraphModel graphModel = graph.getGraphModel();
+        sourceGraph = graph;
+        GraphView windowView = graphModel.copyView(graph.getView());
+        windowGraph = graphModel.getGraph(windowView);
+
+        graph.readLock();
+        nodes = graph.getNodes().toArray();
+        edges = graph.getEdges().toArray();
+        graph.readUnlock();
+
+        int nodeCount = nodes.length;
+        int edgeCount = edges.length;
+        Map<Node, Integer> indices = new HashMap<Node, Integer>();
+        for (int i = 0; i < nodeCount; i++) {
+            indices.put(nodes[i], i);
+        }
+        edgeSources = new int[edgeCount];
+        edgeTargets = new int[edgeCount];
+        incidentOffsets = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            edgeSources[i] = indices.get(edges[i].getSource());
+            edgeTargets[i] = indices.get(edges[i].getTarget());
+            incidentOffsets[edgeSources[i] + 1]++;
+            if (edgeTargets[i] != edgeSources[i]) {
+                incidentOffsets[edgeTargets[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            incidentOffsets[i + 1] += incidentOffsets[i];
+        }
+        incidentEdges = new int[incidentOffsets[nodeCount]];
+        int[] fill = Arrays.copyOf(incidentOffsets, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            incidentEdges[fill[edgeSources[i]]++] = i;
+            if (edgeTargets[i] != edgeSources[i]) {
+                incidentEdges[fill[edgeTargets[i]]++] = i;
+            }
+        }
+
+        //Read time intervals, elements without any are always in range
+        activeCounts = new int[nodeCount + edgeCount];
+        present = new boolean[nodeCount + edgeCount];
+        List<Interval> intervals = new ArrayList<Interval>();
+        List<Integer> owners = new ArrayList<Integer>();
+        boolean nodeIntervals = attributeModel.getNodeTable().hasColumn(DynamicModel.TIMEINTERVAL_COLUMN);
+        boolean edgeIntervals = attributeModel.getEdgeTable().hasColumn(DynamicModel.TIMEINTERVAL_COLUMN);
+        for (int i = 0; i < nodeCount; i++) {
+            TimeInterval ti = nodeIntervals ? (TimeInterval) nodes[i].getNodeData().getAttributes().getValue(DynamicModel.TIMEINTERVAL_COLUMN) : null;
+            readIntervals(ti, i, intervals, owners);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            TimeInterval ti = edgeIntervals ? (TimeInterval) edges[i].getEdgeData().getAttributes().getValue(DynamicModel.TIMEINTERVAL_COLUMN) : null;
+            readIntervals(ti, nodeCount + i, intervals, owners);
+        }
+
+        int intervalCount = intervals.size();
+        intervalOwners = new int[intervalCount];
+        intervalLows = new double[intervalCount];
+        intervalHighs = new double[intervalCount];
+        intervalLowOpen = new boolean[intervalCount];
+        intervalHighOpen = new boolean[intervalCount];
+        intervalStates = new byte[intervalCount];
+        for (int i = 0; i < intervalCount; i++) {
+            Interval interval = intervals.get(i);
+            intervalOwners[i] = owners.get(i);
+            intervalLows[i] = interval.getLow();
+            intervalHighs[i] = interval.getHigh();
+            intervalLowOpen[i] = interval.isLowExcluded();
+            intervalHighOpen[i] = interval.isHighExcluded();
+        }
+
+        //Enter order: by low, closed bounds first. Leave order: by high, open bounds first.
+        Integer[] order = new Integer[intervalCount];
+        for (int i = 0; i < intervalCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(intervalLows[a], intervalLows[b]);
+                if (c == 0 && intervalLowOpen[a] != intervalLowOpen[b]) {
+                    c = intervalLowOpen[a] ? 1 : -1;
+                }
+                return c;
+            }
+        });
+        byLow = toIntArray(order);
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            public int compare(Integer a, Integer b) {
+                int c = Double.compare(intervalHighs[a], intervalHighs[b]);
+                if (c == 0 && intervalHighOpen[a] != intervalHighOpen[b]) {
+                    c = intervalHighOpen[a] ? -1 : 1;
+                }
+                return c;
+            }
+        });
+        byHigh = toIntArray(order);
+
+        touched = new int[nodeCount + edgeCount];
+        visited = new int[nodeCount + edgeCount];
+        Arrays.fill(present, true);
+    }
+
+    private void readIntervals(TimeInterval ti, int owner, List<Interval> intervals, List<Integer> owners) {
+        if (ti == null) {
+            activeCounts[owner] = 1;
+        } else {
+            for (Interval interval : ti.getIntervals()) {
+                intervals.add(interval);
+                owners.add(owner);
+            }
+        }
+    }
+
+    private static int[] toIntArray(Integer[] array) {
+        int[] res = new int[array.length];
+        for (int i = 0; i < array.length; i++) {
+            res[i] = array[i];
+        }
+        return res;
+    }
+
+    /**
+     * Moves the window to <code>[low, high]</code> and updates the snapshot
+     * graph. The first call returns a delta relative to an empty graph.
+     * @param low the left bound of the window
+     * @param high the right bound of the window
+     * @return the nodes and edges that entered and left the window
+     */
+    Delta moveTo(double low, double high) {
+        int nodeCount = nodes.length;
+        touchedCount = 0;
+        stamp++;
+
+        //Intervals entering the window
+        while (lowCursor < byLow.length) {
+            int i = byLow[lowCursor];
+            double l = intervalLows[i];
+            if (l > high || (l == high && intervalLowOpen[i])) {
+                break;
+            }
+            if (intervalStates[i] == PENDING) {
+                intervalStates[i] = ACTIVE;
+                touch(intervalOwners[i]);
+                activeCounts[intervalOwners[i]]++;
+            }
+            lowCursor++;
+        }
+        //Intervals leaving the window
+        while (highCursor < byHigh.length) {
+            int i = byHigh[highCursor];
+            double h = intervalHighs[i];
+            if (h > low || (h == low && !intervalHighOpen[i])) {
+                break;
+            }
+            if (intervalStates[i] == ACTIVE) {
+                touch(intervalOwners[i]);
+                activeCounts[intervalOwners[i]]--;
+            }
+            intervalStates[i] = DONE;
+            highCursor++;
+        }
+
+        if (!started) {
+            //Everything may have changed compared to the source view
+            for (int i = 0; i < present.length; i++) {
+                touch(i);
+            }
+        }
+
+        //Nodes first, their incident edges are candidates as well
+        List<Node> addedNodes = new ArrayList<Node>();
+        List<Node> removedNodes = new ArrayList<Node>();
+        int touchedNodes = touchedCount;
+        for (int k = 0; k < touchedNodes; k++) {
+            int element = touched[k];
+            if (element < nodeCount) {
+                boolean isPresent = activeCounts[element] > 0;
+                if (isPresent != present[element]) {
+                    present[element] = isPresent;
+                    if (isPresent) {
+                        addedNodes.add(nodes[element]);
+                    } else {
+                        removedNodes.add(nodes[element]);
+                    }
+                    for (int j = incidentOffsets[element]; j < incidentOffsets[element + 1]; j++) {
+                        touch(nodeCount + incidentEdges[j]);
+                    }
+                }
+            }
+        }
+        List<Edge> addedEdges = new ArrayList<Edge>();
+        List<Edge> removedEdges = new ArrayList<Edge>();
+        for (int k = 0; k < touchedCount; k++) {
+            int element = touched[k];
+            if (element >= nodeCount) {
+                int e = element - nodeCount;
+                boolean isPresent = activeCounts[element] > 0 && present[edgeSources[e]] && present[edgeTargets[e]];
+                if (isPresent != present[element]) {
+                    present[element] = isPresent;
+                    if (isPresent) {
+                        addedEdges.add(edges[e]);
+                    } else {
+                        removedEdges.add(edges[e]);
+                    }
+                }
+            }
+        }
+
+        //Update the snapshot
+        sourceGraph.writeLock();
+        for (Edge e : removedEdges) {
+            windowGraph.removeEdge(e);
+        }
+        for (Node n : removedNodes) {
+            windowGraph.removeNode(n);
+        }
+        for (Node n : addedNodes) {
+            windowGraph.addNode(n);
+        }
+        for (Edge e : addedEdges) {
+            windowGraph.addEdge(e);
+        }
+        sourceGraph.writeUnlock();
+
+        if (!started) {
+            started = true;
+            List<Node> windowNodes = new ArrayList<Node>();
+            List<Edge> windowEdges = new ArrayList<Edge>();
+            for (int i = 0; i < nodeCount; i++) {
+                if (present[i]) {
+                    windowNodes.add(nodes[i]);
+                }
+            }
+            for (int i = 0; i < edges.length; i++) {
+                if (present[nodeCount + i]) {
+                    windowEdges.add(edges[i]);
+                }
+            }
+            return new Delta(windowNodes.toArray(EMPTY_NODES), EMPTY_NODES, windowEdges.toArray(EMPTY_EDGES), EMPTY_EDGES);
+        }
+        return new Delta(addedNodes.toArray(EMPTY_NODES), removedNodes.toArray(EMPTY_NODES),
+                addedEdges.toArray(EMPTY_EDGES), removedEdges.toArray(EMPTY_EDGES));
+    }
+
+    private void touch(int element) {
+        if (visited[element] != stamp) {
+            visited[element] = stamp;
+            touched[touchedCount++] = element;
+        }
+    }
+
+    Graph getGraph() {
+        return windowGraph;
+    }
+
+    void destroy() {
+        windowGraph.getGraphModel().destroyView(windowGraph.getView());
+    }
+
+    static final class Delta implements WindowDelta {
+
+        private final Node[] addedNodes;
+        private final Node[] removedNodes;
+        private final Edge[] addedEdges;
+        private final Edge[] removedEdges;
+
+        Delta(Node[] addedNodes, Node[] removedNodes, Edge[] addedEdges, Edge[] removedEdges) {
+            this.addedNodes = addedNodes;
+            this.removedNodes = removedNodes;
+            this.addedEdges = addedEdges;
+            this.removedEdges = removedEdges;
+        }
+
+        public Node[] getAddedNodes() {
+            return addedNodes;
+        }
+
+        public Node[] getRemovedNodes() {
+            return removedNodes;
+        }
+
+        public Edge[] getAddedEdges() {
+            return addedEdges;
+        }
+
+        public Edge[] getRemovedEdges() {
+            return removedEdges;
+        }
+    }
+}
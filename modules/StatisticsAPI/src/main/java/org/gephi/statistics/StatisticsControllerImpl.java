@@ -51,7 +51,6 @@ import org.gephi.data.attributes.type.Interval;
 import org.gephi.dynamic.api.DynamicController;
 //import org.gephi.data.attributes.type.TimeInterval;
 //import org.gephi.dynamic.api.DynamicController;
-import org.gephi.dynamic.api.DynamicGraph;
 import org.gephi.dynamic.api.DynamicModel;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphController;
@@ -63,6 +62,8 @@ import org.gephi.utils.longtask.api.LongTaskListener;
 import org.gephi.project.api.Workspace;
 import org.gephi.project.api.WorkspaceListener;
 import org.gephi.statistics.spi.DynamicStatistics;
+import org.gephi.statistics.spi.IncrementalDynamicStatistics;
+import org.gephi.statistics.spi.WindowDelta;
 import org.gephi.utils.progress.Progress;
 import org.gephi.utils.progress.ProgressTicket;
 import org.openide.util.Lookup;
@@ -192,26 +193,35 @@ public class StatisticsControllerImpl implements StatisticsController {
         }
 
         Graph graph = graphModel.getGraph(graphModel.getVisibleView());
-        DynamicGraph dynamicGraph;
-        dynamicGraph = dynamicModel.createDynamicGraph(graph, bounds);
+        SlidingWindowGraph windowGraph = new SlidingWindowGraph(graph, attributeModel);
+        IncrementalDynamicStatistics incremental = statistics instanceof IncrementalDynamicStatistics ? (IncrementalDynamicStatistics) statistics : null;
 
         //Init
         statistics.execute(graphModel, attributeModel);
 
         //Loop
-        for (double low = bounds.getLow(); low <= bounds.getHigh() - window; low += tick) {
-            double high = low + window;
+        try {
+            for (double low = bounds.getLow(); low <= bounds.getHigh() - window; low += tick) {
+                double high = low + window;
 
-            Graph g = dynamicGraph.getSnapshotGraph(low, high);
+                WindowDelta delta = windowGraph.moveTo(low, high);
+                Graph g = windowGraph.getGraph();
 
-            statistics.loop(g.getView(), new Interval(low, high));
+                if (incremental != null) {
+                    incremental.loop(g.getView(), new Interval(low, high), delta);
+                } else {
+                    statistics.loop(g.getView(), new Interval(low, high));
+                }
 
-            //Cancelled?
-            if (dynamicLongTask != null && dynamicLongTask.isCancelled()) {
-                return;
-            } else if (dynamicLongTask != null) {
-                dynamicLongTask.progress();
+                //Cancelled?
+                if (dynamicLongTask != null && dynamicLongTask.isCancelled()) {
+                    return;
+                } else if (dynamicLongTask != null) {
+                    dynamicLongTask.progress();
+                }
             }
+        } finally {
+            windowGraph.destroy();
         }
         statistics.end();
         model.addReport(statistics);
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2008-2010 Gephi
+ * Website : http://www.gephi.org
+ * 
+ * This file is part of Gephi.
+ *
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.statistics.spi;
+
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.Node;
+
+/**
+ * Difference between two consecutive windows of a dynamic statistics
+ * execution. Nodes and edges that entered the window since the previous
+ * iteration are returned by <code>getAddedNodes()</code> and
+ * <code>getAddedEdges()</code>, the ones that left it by
+ * <code>getRemovedNodes()</code> and <code>getRemovedEdges()</code>.
+ * <p>
+ * The delta given with the first window is relative to an empty graph, so
+ * it contains every node and edge present in the first window as added.
+ * Edges that disappear because one of their extremities left the window are
+ * reported as removed as well.
+ *
+ * @see IncrementalDynamicStatistics
+ */
+public interface WindowDelta {
+
+    /**
+     * Returns the nodes that entered the window.
+     * @return the added nodes, never <code>null</code>
+     */
+    public Node[] getAddedNodes();
+
+    /**
+     * Returns the nodes that left the window.
+     * @return the removed nodes, never <code>null</code>
+     */
+    public Node[] getRemovedNodes();
+
+    /**
+     * Returns the edges that entered the window.
+     * @return the added edges, never <code>null</code>
+     */
+    public Edge[] getAddedEdges();
+
+    /**
+     * Returns the edges that left the window.
+     * @return the removed edges, never <code>null</code>
+     */
+    public Edge[] getRemovedEdges();
+}
@@ -44,9 +44,10 @@ package org.gephi.statistics.plugin;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.gephi.attribute.api.Column;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.graph.api.Node;
@@ -56,7 +57,6 @@ import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.graph.api.Graph;
@@ -74,131 +74,8 @@ import org.jfree.data.xy.XYSeriesCollection;
 import org.openide.util.Lookup;
 import org.gephi.graph.api.NodeIterable;
 /**
- * Ref: Matthieu Latapy, Main-memory Triangle Computations for Very Large (Sparse (Power-Law)) Graphs,
- * in Theoretical Computer Science (TCS) 407 (1-3), pages 458-473, 2008
- *
- * @author pjmcswee
- */
-class Renumbering implements Comparator<EdgeWrapper> {
-
-    public int compare(EdgeWrapper o1, EdgeWrapper o2) {
-        if (o1.wrapper.getID() < o2.wrapper.getID()) {
-            return -1;
-        } else if (o1.wrapper.getID() > o2.wrapper.getID()) {
-            return 1;
-        } else {
-            return 0;
-        }
-    }
-}
-
-/**
- *
- * @author pjmcswee
- */
-class EdgeWrapper {
-
-    public int count;
-    public ArrayWrapper wrapper;
-
-    public EdgeWrapper(int count, ArrayWrapper wrapper) {
-        this.count = count;
-        this.wrapper = wrapper;
-    }
-}
-
-/**
- *
- * @author pjmcswee
- */
-class ArrayWrapper implements Comparable {
-
-    private EdgeWrapper[] array;
-    private int ID;
-    public Node node;
-
-    /** Empty Constructor/ */
-    ArrayWrapper() {
-    }
-
-    /**
-     *
-     * @return The ID of this array wrapper
-     */
-    public int getID() {
-        return ID;
-    }
-
-    /**
-     *
-     * @return The adjacency array
-     */
-    public EdgeWrapper[] getArray() {
-        return array;
-    }
-
-    public void setArray(EdgeWrapper[] array) {
-        this.array = array;
-    }
-
-    /**
-     *
-     * @param pArray
-     */
-    ArrayWrapper(int ID, EdgeWrapper[] array) {
-        this.array = array;
-        this.ID = ID;
-    }
-
-    public void setID(int ID) {
-        this.ID = ID;
-    }
-
-    /**
-     *
-     * @param pIndex
-     * @return
-     */
-    public int get(int index) {
-        if (index >= array.length) {
-            return -1;
-        }
-        return array[index].wrapper.ID;
-    }
-
-    public int getCount(int index) {
-        if (index >= array.length) {
-            return -1;
-        }
-        return array[index].count;
-    }
-
-    /**
-     *
-     * @return
-     */
-    public int length() {
-        return array.length;
-    }
-
-    /**
-     *
-     * @param o
-     * @return
-     */
-    public int compareTo(Object o) {
-        ArrayWrapper aw = (ArrayWrapper) o;
-        if (aw.length() < length()) {
-            return -1;
-        }
-        if (aw.length() > length()) {
-            return 1;
-        }
-        return 0;
-    }
-}
-
-/**
+ * Ref: Thomas Schank, Dorothea Wagner, Finding, Counting and Listing all Triangles in Large Graphs,
+ * an Experimental Study, in Experimental and Efficient Algorithms (WEA 2005), LNCS 3503, pages 606-609
  *
  * @author Patrick J. McSweeney
  */
@@ -210,15 +87,22 @@ public class ClusteringCoefficient implements Statistics, LongTask {
     /**Indicates should treat graph as undirected.*/
     private boolean isDirected;
     /** Indicates statistics should stop processing/*/
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     /** Keeps track of Progress made. */
     private ProgressTicket progress;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    /** Triangles, coefficient and number of distinct neighbors of every node, in graph order */
     private int[] triangles;
-    private ArrayWrapper[] network;
-    private int K;
-    private int N;
     private double[] nodeClustering;
+    private int[] degrees;
+    private Node[] nodes;
+    private int N;
     private int totalTriangles;
+    /** Edges towards higher ranked nodes, by rank and sorted */
+    private int[] forwardOffsets;
+    private int[] forwardTargets;
+    /** Nodes with at least this many higher ranked neighbors are intersected with a bitset */
+    private static final int HUB_DEGREE = 64;
 
     public ClusteringCoefficient() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -250,6 +134,10 @@ public class ClusteringCoefficient implements Statistics, LongTask {
         else
             triangles(hgraph);
         
+        //A canceled run leaves no results to save
+        if (isCanceled) {
+            return;
+        }
 
         //Set results in columns
         AttributeTable nodeTable = attributeModel.getNodeTable();
@@ -266,228 +154,244 @@ public class ClusteringCoefficient implements Statistics, LongTask {
             }
         }
 
-        for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
-                AttributeRow row;
-               // row = (AttributeRow)network[v].node.getAttributes();
-                network[v].node.setAttribute((Column) clusteringCol, nodeClustering[v]);
-                if(!isDirected)
-                   network[v].node.setAttribute((Column)triCount, triangles[v]);
+        for (int v = 0; v < N && !isDirected; v++) {
+            if (degrees[v] > 1) {
+                nodes[v].setAttribute((Column) clusteringCol, nodeClustering[v]);
+                nodes[v].setAttribute((Column) triCount, triangles[v]);
             }
         }
     }
 
-    private int closest_in_array(int v) {
-        int right = network[v].length() - 1;
+    public void triangles(Graph hgraph) {
+        hgraph.readLock();
 
-        /* optimization for extreme cases */
-        if (right < 0) {
-            return (-1);
-        }
-        if (network[v].get(0) >= v) {
-            return (-1);
-        }
-        if (network[v].get(right) < v) {
-            return (right);
-        }
-        if (network[v].get(right) == v) {
-            return (right - 1);
+        CompactGraph compact = CompactGraph.get(hgraph, false);
+        N = compact.getNodeCount();
+        Progress.start(progress, 3 * N);
+        nodes = new Node[N];
+        for (int v = 0; v < N; v++) {
+            nodes[v] = compact.getNode(v);
         }
 
-        int left = 0, mid;
-        while (right > left) {
-            mid = (left + right) / 2;
-            if (v < network[v].get(mid)) {
-                right = mid - 1;
-            } else if (v > network[v].get(mid)) {
-                left = mid + 1;
-            } else {
-                return (mid - 1);
+        //Distinct neighbors, a self-loop counts in the degree but never closes a triangle
+        int[] offsets = compact.getOutOffsets();
+        int[] targets = compact.getOutTargets();
+        degrees = new int[N];
+        int[] distinct = new int[targets.length];
+        int[] distinctOffsets = new int[N + 1];
+        int[] lastSeen = new int[N];
+        Arrays.fill(lastSeen, -1);
+        int k = 0;
+        for (int v = 0; v < N; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int u = targets[e];
+                if (lastSeen[u] != v) {
+                    lastSeen[u] = v;
+                    degrees[v]++;
+                    if (u != v) {
+                        distinct[k++] = u;
+                    }
+                }
             }
+            distinctOffsets[v + 1] = k;
         }
+        Progress.progress(progress, N);
 
-
-        if (v > network[v].get(right)) {
-            return (right);
-        } else {
-
-            return right - 1;
+        //Rank the nodes by degree, and orient every edge towards the higher rank
+        int[] rankOf = new int[N];
+        int[] byRank = rankByDegree(distinctOffsets);
+        for (int r = 0; r < N; r++) {
+            rankOf[byRank[r]] = r;
         }
-    }
-
-    /**
-     *
-     * @param v - The specific node to count the triangles on.
-     */
-    private void newVertex(int v) {
-        int[] A = new int[N];
-
-        for (int i = network[v].length() - 1; (i >= 0) && (network[v].get(i) > v); i--) {
-            int neighbor = network[v].get(i);
-            A[neighbor] = network[v].getCount(i);
-        }
-        for (int i = network[v].length() - 1; i >= 0; i--) {
-            int neighbor = network[v].get(i);
-            for (int j = closest_in_array(neighbor); j >= 0; j--) {
-                int next = network[neighbor].get(j);
-                if (A[next] > 0) {
-                    triangles[next] += network[v].getCount(i);
-                    triangles[v] += network[v].getCount(i);
-                    triangles[neighbor] += A[next];
+        forwardOffsets = new int[N + 1];
+        for (int v = 0; v < N; v++) {
+            for (int e = distinctOffsets[v]; e < distinctOffsets[v + 1]; e++) {
+                if (rankOf[distinct[e]] > rankOf[v]) {
+                    forwardOffsets[rankOf[v] + 1]++;
                 }
             }
         }
-    }
-
-    private void tr_link_nohigh(int u, int v, int count) {
-        int iu = 0, iv = 0, w;
-        while ((iu < network[u].length()) && (iv < network[v].length())) {
-            if (network[u].get(iu) < network[v].get(iv)) {
-                iu++;
-            } else if (network[u].get(iu) > network[v].get(iv)) {
-                iv++;
-            } else { /* neighbor in common */
-                w = network[u].get(iu);
-                if (w >= K) {
-                    triangles[w] += count;
+        for (int r = 0; r < N; r++) {
+            forwardOffsets[r + 1] += forwardOffsets[r];
+        }
+        forwardTargets = new int[forwardOffsets[N]];
+        int[] fill = new int[N];
+        for (int v = 0; v < N; v++) {
+            int r = rankOf[v];
+            for (int e = distinctOffsets[v]; e < distinctOffsets[v + 1]; e++) {
+                int w = rankOf[distinct[e]];
+                if (w > r) {
+                    forwardTargets[forwardOffsets[r] + fill[r]++] = w;
                 }
-                iu++;
-                iv++;
             }
+            Arrays.sort(forwardTargets, forwardOffsets[r], forwardOffsets[r + 1]);
         }
-    }
-
-    public void triangles(Graph hgraph) {
-
-        int ProgressCount = 0;
-        Progress.start(progress, 7 * hgraph.getNodeCount());
-
-        hgraph.readLock();
-
-        N = hgraph.getNodeCount();
-        nodeClustering = new double[N];
-
-        /** Create network for processing */
-        network = new ArrayWrapper[N];
-
-        /**  */
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            network[index] = new ArrayWrapper();
-            index++;
-            Progress.progress(progress, ++ProgressCount);
+        distinct = null;
+        Progress.progress(progress, 2 * N);
+
+        //Count, each task accumulates in its own array
+        int taskCount = Math.max(1, Math.min(threadCount, N));
+        TriangleTask[] tasks = new TriangleTask[taskCount];
+        for (int t = 0; t < taskCount; t++) {
+            tasks[t] = new TriangleTask(t, taskCount);
         }
-
-        index = 0;
-        for (Node node : hgraph.getNodes()) {
-            HashMap<Node, EdgeWrapper> neighborTable = new HashMap<Node, EdgeWrapper>();
-
-            if (!isDirected) {
-                for (Edge edge : hgraph.getEdges(node)) {
-                    Node neighbor = hgraph.getOpposite(node, edge);
-                    neighborTable.put(neighbor, new EdgeWrapper(1, network[indicies.get(neighbor)]));
-                }
+        try {
+            if (taskCount == 1) {
+                tasks[0].run();
             } else {
-                for (Edge in : ((DirectedGraph) hgraph).getInEdges(node)) {
-                    Node neighbor = in.getSource().getNodeData().getNode(hgraph.getView().getViewId());
-                    neighborTable.put(neighbor, new EdgeWrapper(1, network[indicies.get(neighbor)]));
-                }
-
-                for (Edge out : ((DirectedGraph) hgraph).getOutEdges(node)) {
-                    Node neighbor = out.getTarget().getNodeData().getNode(hgraph.getView().getViewId());
-                    EdgeWrapper ew = neighborTable.get(neighbor);
-                    if (ew == null) {
-                        neighborTable.put(neighbor, new EdgeWrapper(1, network[indicies.get(neighbor)]));
-                    } else {
-                        ew.count++;
-                    }
+                ExecutorService pool = Executors.newFixedThreadPool(taskCount);
+                try {
+                    ParallelTasks.invokeAll(pool, tasks);
+                } finally {
+                    pool.shutdown();
                 }
             }
-
-            EdgeWrapper[] edges = new EdgeWrapper[neighborTable.size()];
-            int i = 0;
-            for (EdgeWrapper e : neighborTable.values()) {
-                edges[i] = e;
-                i++;
-            }
-            network[index].node = node;
-            network[index].setArray(edges);
-            index++;
-            Progress.progress(progress, ++ProgressCount);
-
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
-            }
+        } catch (RuntimeException ex) {
+            forwardOffsets = forwardTargets = null;
+            hgraph.readUnlockAll();
+            throw ex;
         }
-
-        Arrays.sort(network);
-        for (int j = 0; j < N; j++) {
-            network[j].setID(j);
-            Progress.progress(progress, ++ProgressCount);
-        }
-
-        for (int j = 0; j < N; j++) {
-            Arrays.sort(network[j].getArray(), new Renumbering());
-            Progress.progress(progress, ++ProgressCount);
+        forwardOffsets = forwardTargets = null;
+        if (isCanceled) {
+            hgraph.readUnlockAll();
+            return;
         }
-
         triangles = new int[N];
-        K = (int) Math.sqrt(N);
-
-
-        for (int v = 0; v < K && v < N; v++) {
-            newVertex(v);
-            Progress.progress(progress, ++ProgressCount);
-        }
-
-        /* remaining links */
-        for (int v = N - 1; (v >= 0) && (v >= K); v--) {
-            for (int i = closest_in_array(v); i >= 0; i--) {
-                int u = network[v].get(i);
-                if (u >= K) {
-                    tr_link_nohigh(u, v, network[v].getCount(i));
-                }
-            }
-            Progress.progress(progress, ++ProgressCount);
-
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
+        for (TriangleTask task : tasks) {
+            for (int r = 0; r < N; r++) {
+                triangles[byRank[r]] += task.triangles[r];
             }
         }
 
-        //Results and average
+        //Results and average, summed by decreasing degree as before
+        nodeClustering = new double[N];
         avgClusteringCoeff = 0;
         totalTriangles = 0;
         int numNodesDegreeGreaterThanOne = 0;
-        for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
+        for (int r = N - 1; r >= 0; r--) {
+            int v = byRank[r];
+            if (degrees[v] > 1) {
                 numNodesDegreeGreaterThanOne++;
                 double cc = triangles[v];
                 totalTriangles += triangles[v];
-                cc /= (network[v].length() * (network[v].length() - 1));
-                if (!isDirected) {
-                    cc *= 2.0f;
-                }
+                cc /= (degrees[v] * (degrees[v] - 1));
+                cc *= 2.0f;
                 nodeClustering[v] = cc;
                 avgClusteringCoeff += cc;
             }
-            Progress.progress(progress, ++ProgressCount);
-
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
-            }
         }
         totalTriangles /= 3;
         avgClusteringCoeff /= numNodesDegreeGreaterThanOne;
+        Progress.progress(progress, 3 * N);
 
         hgraph.readUnlock();
     }
 
+    /**
+     * Returns the nodes ordered by increasing number of distinct neighbors,
+     * ties broken by decreasing graph order. Reversed, this is the order of a
+     * stable sort by decreasing degree.
+     */
+    private int[] rankByDegree(int[] distinctOffsets) {
+        int maxDegree = 0;
+        for (int v = 0; v < N; v++) {
+            maxDegree = Math.max(maxDegree, degrees[v]);
+        }
+        int[] start = new int[maxDegree + 2];
+        for (int v = 0; v < N; v++) {
+            start[degrees[v] + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] byRank = new int[N];
+        for (int v = N - 1; v >= 0; v--) {
+            byRank[start[degrees[v]]++] = v;
+        }
+        return byRank;
+    }
+
+    /**
+     * Counts the triangles closed by the forward edges of every
+     * <code>taskCount</code>-th node rank, starting at <code>taskIndex</code>.
+     * Each triangle <code>u &lt; v &lt; w</code> is found once, from the edge
+     * <code>(u, v)</code>.
+     */
+    private class TriangleTask implements Runnable {
+
+        private final int taskIndex;
+        private final int taskCount;
+        private final int[] triangles;
+        private long[] bits;
+
+        TriangleTask(int taskIndex, int taskCount) {
+            this.taskIndex = taskIndex;
+            this.taskCount = taskCount;
+            this.triangles = new int[N];
+        }
+
+        public void run() {
+            int[] offsets = forwardOffsets;
+            int[] targets = forwardTargets;
+            for (int u = taskIndex; u < N; u += taskCount) {
+                int uStart = offsets[u];
+                int uEnd = offsets[u + 1];
+                if (uEnd - uStart < 2) {
+                    continue;
+                }
+                boolean hub = uEnd - uStart >= HUB_DEGREE;
+                if (hub) {
+                    if (bits == null) {
+                        bits = new long[(N + 63) >> 6];
+                    }
+                    for (int i = uStart; i < uEnd; i++) {
+                        bits[targets[i] >> 6] |= 1L << targets[i];
+                    }
+                }
+                for (int i = uStart; i < uEnd; i++) {
+                    int v = targets[i];
+                    if (hub) {
+                        for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                            int w = targets[j];
+                            if ((bits[w >> 6] & (1L << w)) != 0) {
+                                triangles[u]++;
+                                triangles[v]++;
+                                triangles[w]++;
+                            }
+                        }
+                    } else {
+                        //Both lists are sorted and the ones of u after v are all greater than v
+                        int a = i + 1;
+                        int b = offsets[v];
+                        int bEnd = offsets[v + 1];
+                        while (a < uEnd && b < bEnd) {
+                            if (targets[a] < targets[b]) {
+                                a++;
+                            } else if (targets[a] > targets[b]) {
+                                b++;
+                            } else {
+                                int w = targets[a];
+                                triangles[u]++;
+                                triangles[v]++;
+                                triangles[w]++;
+                                a++;
+                                b++;
+                            }
+                        }
+                    }
+                }
+                if (hub) {
+                    for (int i = uStart; i < uEnd; i++) {
+                        bits[targets[i] >> 6] = 0;
+                    }
+                }
+                if (isCanceled) {
+                    return;
+                }
+            }
+        }
+    }
+
     private void bruteForce(Graph hgraph, AttributeModel attributeModel) {
     //The atrributes computed by the statistics
     AttributeTable nodeTable = attributeModel.getNodeTable();
@@ -612,7 +516,7 @@ public class ClusteringCoefficient implements Statistics, LongTask {
                     + "The Average Clustering Coefficient is the mean value of individual coefficients.<br /><br />"
                     + imageFile
                     + "<br /><br />" + "<h2> Algorithm: </h2>"
-                    + "Matthieu Latapy, <i>Main-memory Triangle Computations for Very Large (Sparse (Power-Law)) Graphs</i>, in Theoretical Computer Science (TCS) 407 (1-3), pages 458-473, 2008<br />"
+                    + "Thomas Schank, Dorothea Wagner, <i>Finding, Counting and Listing all Triangles in Large Graphs, an Experimental Study</i>, in Experimental and Efficient Algorithms (WEA 2005), LNCS 3503, pages 606-609<br />"
                     + "</BODY> </HTML>";
        }
     }
@@ -634,20 +538,40 @@ public class ClusteringCoefficient implements Statistics, LongTask {
         this.progress = ProgressTicket;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Returns the clustering coefficient of every node of the last undirected
+     * run, in graph order, <code>0</code> for nodes with less than two
+     * neighbors.
+     */
     public double[] getCoefficientReuslts() {
         double[] res = new double[N];
         for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
+            if (degrees[v] > 1) {
                 res[v] = nodeClustering[v];
             }
         }
         return res;
     }
 
+    /**
+     * Returns the number of triangles of every node of the last undirected
+     * run, in graph order.
+     */
     public double[] getTriangesReuslts() {
         double[] res = new double[N];
         for (int v = 0; v < N; v++) {
-            if (network[v].length() > 1) {
+            if (degrees[v] > 1) {
                 res[v] = triangles[v];
             }
         }
@@ -0,0 +1,291 @@
+/*
+Copyright 2008-2011 Gephi
+Website : http://www.gephi.org
+
+This file is part of Gephi.
+
+DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+Copyright 2011 Gephi Consortium. All rights reserved.
+
+The contents of this file are subject to the terms of either the GNU
+General Public License Version 3 only ("GPL") or the Common
+Development and Distribution License("CDDL") (collectively, the
+"License"). You may not use this file except in compliance with the
+License. You can obtain a copy of the License at
+http://gephi.org/about/legal/license-notice/
+or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+specific language governing permissions and limitations under the
+License.  When distributing the software, include this License Header
+Notice in each file and include the License files at
+/cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+License Header, with the fields enclosed by brackets [] replaced by
+your own identifying information:
+"Portions Copyrighted [year] [name of copyright owner]"
+
+If you wish your version of this file to be governed by only the CDDL
+or only the GPL Version 3, indicate your decision by adding
+"[Contributor] elects to include this software in this distribution
+under the [CDDL or GPL Version 3] license." If you do not indicate a
+single choice of license, a recipient has the option to distribute
+your version of this file under either the CDDL, the GPL Version 3 or
+to extend the choice of license to its licensees as provided above.
+However, if you add GPL Version 3 code and therefore, elected the GPL
+Version 3 license, then the option applies only if the new code is
+made subject to such option by the copyright holder.
+
+Contributor(s):
+
+Portions Copyrighted 2011 Gephi Consortium.
+*/
+package org.gephi.statistics.plugin;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
+import org.gephi.graph.api.EdgeIterable;
+import org.gephi.graph.api.Graph;
+import org.gephi.graph.api.GraphView;
+import org.gephi.graph.api.Node;
+
+/**
+ * Read-only compressed sparse row copy of a graph, for statistics that walk
+ * the adjacency many times.
+ * <p>
+ * Nodes are numbered from <code>0</code> to <code>getNodeCount() - 1</code> in
+ * the order of <code>graph.getNodes()</code>. The out-neighbours of node
+ * <code>i</code> are <code>getOutTargets()[k]</code> for <code>k</code> in
+ * <code>[getOutOffsets()[i], getOutOffsets()[i + 1])</code>, and likewise for
+ * the in-neighbours. For undirected graphs both lists are the incident edges
+ * and share the same arrays. Parallel edges are kept.
+ * <p>
+ * Snapshots are cached per graph view and per interpretation (graph class,
+ * directed or undirected) and rebuilt when the node or edge version of the graph changes,
+ * so that statistics run back to back pay for the conversion once. Edge
+ * weights are not part of the cached structure, use
+ * <code>getOutWeights()</code> and <code>getInWeights()</code> to read the
+ * current values.
+ * <p>
+ * A snapshot holds the graph nodes, which reach their view. The cache keeps
+ * soft references to the snapshots so that it never pins a view: the snapshot
+ * of a discarded view is reclaimed by the garbage collector, then its entry.
+ * <p>
+ * The arrays returned by the getters are the internal ones and must not be
+ * modified.
+ */
+public final class CompactGraph {
+
+    private static final Map<GraphView, SoftReference<CompactGraph>> undirectedCache = new WeakHashMap<GraphView, SoftReference<CompactGraph>>();
+    private static final Map<GraphView, SoftReference<CompactGraph>> directedCache = new WeakHashMap<GraphView, SoftReference<CompactGraph>>();
+    private final boolean directed;
+    private final Class graphClass;
+    private final int nodeVersion;
+    private final int edgeVersion;
+    private final Node[] nodes;
+    private final Map<Node, Integer> indices;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final Edge[] outEdges;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final Edge[] inEdges;
+
+    /**
+     * Returns the snapshot of <code>graph</code>, building it if the cached
+     * one is missing or out of date. The graph is read-locked while building.
+     *
+     * @param graph the graph to copy
+     * @param directed <code>true</code> to follow edge directions,
+     * <code>graph</code> must then be a <code>DirectedGraph</code>
+     * @return the up to date snapshot of <code>graph</code>
+     */
+    public static CompactGraph get(Graph graph, boolean directed) {
+        GraphView view = graph.getView();
+        Map<GraphView, SoftReference<CompactGraph>> cache = directed ? directedCache : undirectedCache;
+        graph.readLock();
+        try {
+            synchronized (cache) {
+                SoftReference<CompactGraph> reference = view != null ? cache.get(view) : null;
+                CompactGraph snapshot = reference != null ? reference.get() : null;
+                if (snapshot != null
+                        && snapshot.graphClass == graph.getClass()
+                        && snapshot.nodeVersion == graph.getNodeVersion()
+                        && snapshot.edgeVersion == graph.getEdgeVersion()) {
+                    return snapshot;
+                }
+            }
+            CompactGraph snapshot = new CompactGraph(graph, directed);
+            if (view != null) {
+                synchronized (cache) {
+                    cache.put(view, new SoftReference<CompactGraph>(snapshot));
+                }
+            }
+            return snapshot;
+        } finally {
+            graph.readUnlock();
+        }
+    }
+
+    /**
+     * Drops all cached snapshots.
+     */
+    public static void clearCache() {
+        synchronized (undirectedCache) {
+            undirectedCache.clear();
+        }
+        synchronized (directedCache) {
+            directedCache.clear();
+        }
+    }
+
+    private CompactGraph(Graph graph, boolean directed) {
+        this.directed = directed;
+        this.graphClass = graph.getClass();
+        this.nodeVersion = graph.getNodeVersion();
+        this.edgeVersion = graph.getEdgeVersion();
+        this.nodes = graph.getNodes().toArray();
+        int n = nodes.length;
+        this.indices = new HashMap<Node, Integer>(n * 4 / 3 + 1);
+        for (int i = 0; i < n; i++) {
+            indices.put(nodes[i], i);
+        }
+
+        outOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            outOffsets[i + 1] = outOffsets[i] + count(outEdges(graph, nodes[i]));
+        }
+        outTargets = new int[outOffsets[n]];
+        outEdges = new Edge[outOffsets[n]];
+        fill(graph, true, outOffsets, outTargets, outEdges);
+
+        if (directed) {
+            inOffsets = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                inOffsets[i + 1] = inOffsets[i] + count(((DirectedGraph) graph).getInEdges(nodes[i]));
+            }
+            inSources = new int[inOffsets[n]];
+            inEdges = new Edge[inOffsets[n]];
+            fill(graph, false, inOffsets, inSources, inEdges);
+        } else {
+            inOffsets = outOffsets;
+            inSources = outTargets;
+            inEdges = outEdges;
+        }
+    }
+
+    private EdgeIterable outEdges(Graph graph, Node node) {
+        if (directed) {
+            return ((DirectedGraph) graph).getOutEdges(node);
+        }
+        return graph.getEdges(node);
+    }
+
+    private static int count(EdgeIterable iterable) {
+        int count = 0;
+        for (Edge edge : iterable) {
+            count++;
+        }
+        return count;
+    }
+
+    private void fill(Graph graph, boolean out, int[] offsets, int[] neighbours, Edge[] edges) {
+        for (int i = 0; i < nodes.length; i++) {
+            Node node = nodes[i];
+            int k = offsets[i];
+            EdgeIterable iterable = out ? outEdges(graph, node) : ((DirectedGraph) graph).getInEdges(node);
+            for (Edge edge : iterable) {
+                neighbours[k] = indices.get(graph.getOpposite(node, edge));
+                edges[k] = edge;
+                k++;
+            }
+        }
+    }
+
+    public boolean isDirected() {
+        return directed;
+    }
+
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    /**
+     * Returns the number of out-adjacency entries, which for undirected graphs
+     * counts every edge once from each end.
+     */
+    public int getAdjacencyCount() {
+        return outTargets.length;
+    }
+
+    public Node getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Returns the index of <code>node</code>, or <code>-1</code> if it is not
+     * in this snapshot.
+     */
+    public int getIndex(Node node) {
+        Integer index = indices.get(node);
+        return index != null ? index : -1;
+    }
+
+    public int getOutDegree(int index) {
+        return outOffsets[index + 1] - outOffsets[index];
+    }
+
+    public int getInDegree(int index) {
+        return inOffsets[index + 1] - inOffsets[index];
+    }
+
+    public int[] getOutOffsets() {
+        return outOffsets;
+    }
+
+    public int[] getOutTargets() {
+        return outTargets;
+    }
+
+    public int[] getInOffsets() {
+        return inOffsets;
+    }
+
+    public int[] getInSources() {
+        return inSources;
+    }
+
+    public Edge getOutEdge(int k) {
+        return outEdges[k];
+    }
+
+    public Edge getInEdge(int k) {
+        return inEdges[k];
+    }
+
+    /**
+     * Returns a new array with the current weight of every out-adjacency
+     * entry, aligned with <code>getOutTargets()</code>.
+     */
+    public double[] getOutWeights() {
+        return weights(outEdges);
+    }
+
+    /**
+     * Returns a new array with the current weight of every in-adjacency
+     * entry, aligned with <code>getInSources()</code>.
+     */
+    public double[] getInWeights() {
+        return directed ? weights(inEdges) : weights(outEdges);
+    }
+
+    private static double[] weights(Edge[] edges) {
+        double[] weights = new double[edges.length];
+        for (int k = 0; k < edges.length; k++) {
+            weights[k] = edges[k].getWeight();
+        }
+        return weights;
+    }
+}
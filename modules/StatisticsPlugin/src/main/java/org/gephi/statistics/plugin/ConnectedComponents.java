@@ -44,10 +44,13 @@ package org.gephi.statistics.plugin;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import org.gephi.attribute.api.Column;
 import org.gephi.data.attributes.api.AttributeColumn;
 import org.gephi.data.attributes.api.AttributeModel;
@@ -55,14 +58,10 @@ import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
 //import org.gephi.graph.api.HierarchicalDirectedGraph;
 //import org.gephi.graph.api.HierarchicalUndirectedGraph;
-import org.gephi.graph.api.Node;
-import org.gephi.graph.api.NodeIterable;
 import org.gephi.graph.api.UndirectedGraph;
 import org.gephi.graph.api.DirectedGraph;
 import org.gephi.graph.api.Graph;
@@ -87,11 +86,12 @@ public class ConnectedComponents implements Statistics, LongTask {
     public static final String STRONG = "strongcompnum";
     private boolean isDirected;
     private ProgressTicket progress;
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     private int componentCount;
     private int stronglyCount;
     private int[] componentsSize;
     int count;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
 
     public ConnectedComponents() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -113,168 +113,239 @@ public class ConnectedComponents implements Statistics, LongTask {
     public void weaklyConnected(UndirectedGraph hgraph, AttributeModel attributeModel) {
         isCanceled = false;
         componentCount = 0;
-        AttributeTable nodeTable = attributeModel.getNodeTable();
-        AttributeColumn componentCol = nodeTable.getColumn(WEAKLY);
-        if (componentCol == null) {
-            componentCol = nodeTable.addColumn(WEAKLY, "Component ID", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+        //Without attribute model the component ids are not saved
+        AttributeColumn componentCol = null;
+        if (attributeModel != null) {
+            AttributeTable nodeTable = attributeModel.getNodeTable();
+            componentCol = nodeTable.getColumn(WEAKLY);
+            if (componentCol == null) {
+                componentCol = nodeTable.addColumn(WEAKLY, "Component ID", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+            }
         }
 
-        List<Integer> sizeList = new ArrayList<Integer>();
-
         hgraph.readLock();
 
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            index++;
+        CompactGraph compact = CompactGraph.get(hgraph, false);
+        int N = compact.getNodeCount();
+        Progress.start(progress, N);
+
+        //Union every edge, the chunks of nodes are processed concurrently
+        AtomicIntegerArray parent = new AtomicIntegerArray(N);
+        for (int i = 0; i < N; i++) {
+            parent.set(i, i);
+        }
+        int chunkCount = Math.max(1, Math.min(threadCount * 4, (N + 1023) / 1024));
+        UnionTask[] tasks = new UnionTask[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            tasks[c] = new UnionTask(compact, parent, (int) ((long) N * c / chunkCount), (int) ((long) N * (c + 1) / chunkCount));
+        }
+        int poolSize = Math.min(threadCount, chunkCount);
+        try {
+            if (poolSize == 1) {
+                for (UnionTask task : tasks) {
+                    task.run();
+                }
+            } else {
+                ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+                try {
+                    ParallelTasks.invokeAll(pool, tasks);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        } catch (RuntimeException ex) {
+            hgraph.readUnlock();
+            throw ex;
+        }
+        if (isCanceled) {
+            hgraph.readUnlock();
+            return;
         }
 
+        //Number the components in the order of their first node, as a search from each unseen node would
+        int[] componentOf = new int[N];
+        Arrays.fill(componentOf, -1);
+        int[] sizes = new int[N];
+        for (int i = 0; i < N; i++) {
+            int root = find(parent, i);
+            if (componentOf[root] == -1) {
+                componentOf[root] = componentCount++;
+            }
+            int component = componentOf[root];
+            sizes[component]++;
+            if (componentCol != null) {
+                compact.getNode(i).setAttribute((Column) componentCol, component);
+            }
+            Progress.progress(progress, i + 1);
+        }
+        hgraph.readUnlock();
 
-        int N = hgraph.getNodeCount();
+        componentsSize = Arrays.copyOf(sizes, componentCount);
+    }
 
-        //Keep track of which nodes have been seen
-        int[] color = new int[N];
+    /**
+     * Returns the root of the set of <code>node</code>, halving the path on
+     * the way. Roots are always the smallest node of their set.
+     */
+    private static int find(AtomicIntegerArray parent, int node) {
+        while (true) {
+            int p = parent.get(node);
+            if (p == node) {
+                return node;
+            }
+            int grandParent = parent.get(p);
+            if (grandParent != p) {
+                parent.compareAndSet(node, p, grandParent);
+            }
+            node = grandParent;
+        }
+    }
 
-        Progress.start(progress, hgraph.getNodeCount());
-        int seenCount = 0;
-        while (seenCount < N) {
-            //The search Q
-            LinkedList<Node> Q = new LinkedList<Node>();
-            //The component-list
-            LinkedList<Node> component = new LinkedList<Node>();
+    /**
+     * Lock-free union of the edges of the nodes in <code>[from, to)</code>.
+     * The root with the greater index is linked under the other one with a
+     * CAS, retried from the current roots when another task got there first.
+     */
+    private class UnionTask implements Runnable {
+
+        private final CompactGraph compact;
+        private final AtomicIntegerArray parent;
+        private final int from;
+        private final int to;
+
+        UnionTask(CompactGraph compact, AtomicIntegerArray parent, int from, int to) {
+            this.compact = compact;
+            this.parent = parent;
+            this.from = from;
+            this.to = to;
+        }
 
-            //Seed the seach Q
-            NodeIterable iter = hgraph.getNodes();
-            for (Node first : iter) {
-                if (color[indicies.get(first)] == 0) {
-                    Q.add(first);
-                    iter.doBreak();
-                    break;
+        public void run() {
+            int[] offsets = compact.getOutOffsets();
+            int[] targets = compact.getOutTargets();
+            for (int u = from; u < to; u++) {
+                for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                    int v = targets[k];
+                    //Undirected edges are seen from both ends
+                    if (v > u) {
+                        union(u, v);
+                    }
                 }
-            }
-
-            //While there are more nodes to search
-            while (!Q.isEmpty()) {
                 if (isCanceled) {
-                    hgraph.readUnlock();
                     return;
                 }
-                //Get the next Node and add it to the component list
-                Node u = Q.removeFirst();
-                component.add(u);
-
-                //Iterate over all of u's neighbors
-                EdgeIterable edgeIter = hgraph.getEdges(u);
-
-                //For each neighbor
-                for (Edge edge : edgeIter) {
-                    Node reachable = hgraph.getOpposite(u, edge);
-                    int id = indicies.get(reachable);
-                    //If this neighbor is unvisited
-                    if (color[id] == 0) {
-                        color[id] = 1;
-                        //Add it to the search Q
-                        Q.addLast(reachable);
-                        //Mark it as used 
-
-                        Progress.progress(progress, seenCount);
-                    }
-                }
-                color[indicies.get(u)] = 2;
-                seenCount++;
-            }
-            for (Node s : component) {
-               // AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-                s.setAttribute((Column) componentCol, componentCount);
             }
-            sizeList.add(component.size());
-            componentCount++;
         }
-        hgraph.readUnlock();
 
-        componentsSize = new int[sizeList.size()];
-        for (int i = 0; i < sizeList.size(); i++) {
-            componentsSize[i] = sizeList.get(i);
+        private void union(int u, int v) {
+            while (true) {
+                int ru = find(parent, u);
+                int rv = find(parent, v);
+                if (ru == rv) {
+                    return;
+                }
+                if (ru < rv) {
+                    int swap = ru;
+                    ru = rv;
+                    rv = swap;
+                }
+                if (parent.compareAndSet(ru, ru, rv)) {
+                    return;
+                }
+            }
         }
     }
 
     public void top_tarjans(DirectedGraph hgraph, AttributeModel attributeModel) {
         count = 1;
         stronglyCount = 0;
-        AttributeTable nodeTable = attributeModel.getNodeTable();
-        AttributeColumn componentCol = nodeTable.getColumn(STRONG);
-        if (componentCol == null) {
-            componentCol = nodeTable.addColumn(STRONG, "Strongly-Connected ID", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+        AttributeColumn componentCol = null;
+        if (attributeModel != null) {
+            AttributeTable nodeTable = attributeModel.getNodeTable();
+            componentCol = nodeTable.getColumn(STRONG);
+            if (componentCol == null) {
+                componentCol = nodeTable.addColumn(STRONG, "Strongly-Connected ID", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+            }
         }
 
         hgraph.readLock();
 
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int v = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, v);
-            v++;
-        }
-        int N = hgraph.getNodeCount();
+        CompactGraph compact = CompactGraph.get(hgraph, true);
+        int N = compact.getNodeCount();
+        int[] offsets = compact.getOutOffsets();
+        int[] targets = compact.getOutTargets();
         int[] index = new int[N];
         int[] low_index = new int[N];
-
-        while (true) {
-            //The search Q
-            LinkedList<Node> S = new LinkedList<Node>();
-            //The component-list
-            //LinkedList<Node> component = new LinkedList<Node>();
-            //Seed the seach Q
-            Node first = null;
-            NodeIterable iter = hgraph.getNodes();
-            for (Node u : iter) {
-                if (index[indicies.get(u)] == 0) {
-                    first = u;
-                    iter.doBreak();
-                    break;
-                }
+        //The nodes of the components not yet complete
+        int[] stack = new int[N];
+        int stackSize = 0;
+        boolean[] onStack = new boolean[N];
+        //The depth-first search path, with the next out-edge to follow of each node
+        int[] path = new int[N];
+        int[] nextEdge = new int[N];
+        int depth = -1;
+
+        for (int first = 0; first < N; first++) {
+            if (index[first] != 0) {
+                continue;
             }
-            if (first == null) {
-                hgraph.readUnlockAll();
-                return;
-            }
-            tarjans(componentCol, S, hgraph, first, index, low_index, indicies);
-        }
-    }
+            depth++;
+            path[depth] = first;
+            nextEdge[depth] = offsets[first];
+            index[first] = low_index[first] = count++;
+            stack[stackSize++] = first;
+            onStack[first] = true;
+
+            while (depth >= 0) {
+                int id = path[depth];
+                if (nextEdge[depth] < offsets[id + 1]) {
+                    int x = targets[nextEdge[depth]++];
+                    if (index[x] == 0) {
+                        depth++;
+                        path[depth] = x;
+                        nextEdge[depth] = offsets[x];
+                        index[x] = low_index[x] = count++;
+                        stack[stackSize++] = x;
+                        onStack[x] = true;
+                    } else if (onStack[x]) {
+                        low_index[id] = Math.min(low_index[id], index[x]);
+                    }
+                    continue;
+                }
 
-    private void tarjans(AttributeColumn col, LinkedList<Node> S, DirectedGraph hgraph, Node f, int[] index, int[] low_index, HashMap<Node, Integer> indicies) {
-        int id = indicies.get(f);
-        index[id] = count;
-        low_index[id] = count;
-        count++;
-        S.addFirst(f);
-        EdgeIterable edgeIter = hgraph.getOutEdges(f);
-        for (Edge e : edgeIter) {
-            Node u = hgraph.getOpposite(f, e);
-            int x = indicies.get(u);
-            if (index[x] == 0) {
-                tarjans(col, S, hgraph, u, index, low_index, indicies);
-                low_index[id] = Math.min(low_index[x], low_index[id]);
-            } else if (S.contains(u)) {
-                low_index[id] = Math.min(low_index[id], index[x]);
+                //All successors done, close the component if id is its root
+                if (low_index[id] == index[id]) {
+                    int v = -1;
+                    while (v != id) {
+                        v = stack[--stackSize];
+                        onStack[v] = false;
+                        if (componentCol != null) {
+                            compact.getNode(v).setAttribute((Column) componentCol, stronglyCount);
+                        }
+                    }
+                    stronglyCount++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int caller = path[depth];
+                    low_index[caller] = Math.min(low_index[id], low_index[caller]);
+                }
             }
-        }
-        if (low_index[id] == index[id]) {
-            Node v = null;
-            while (v != f) {
-                v = S.removeFirst();
-               
-                v.setAttribute((Column) col, stronglyCount);
+            if (isCanceled) {
+                break;
             }
-            stronglyCount++;
         }
+        hgraph.readUnlockAll();
     }
 
     public int getConnectedComponentsCount() {
         return componentCount;
     }
 
+    public int getStronglyConnectedComponentsCount() {
+        return stronglyCount;
+    }
+
     public void setDirected(boolean isDirected) {
         this.isDirected = isDirected;
     }
@@ -283,6 +354,17 @@ public class ConnectedComponents implements Statistics, LongTask {
         return isDirected;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
     public int[] getComponentsSize() {
         return componentsSize;
     }
@@ -50,9 +50,6 @@ import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.DirectedGraph;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
@@ -60,7 +57,6 @@ import org.gephi.graph.api.GraphModel;
 //import org.gephi.graph.api.HierarchicalGraph;
 //import org.gephi.graph.api.HierarchicalUndirectedGraph;
 import org.gephi.graph.api.Node;
-import org.gephi.graph.api.UndirectedGraph;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -145,43 +141,30 @@ public class EigenvectorCentrality implements Statistics, LongTask {
             eigenCol = nodeTable.addColumn(EIGENVECTOR, "Eigenvector Centrality", AttributeType.DOUBLE, AttributeOrigin.COMPUTED, new Double(0));
         }
 
-        int N = hgraph.getNodeCount();
         hgraph.readLock();
+        CompactGraph compact = CompactGraph.get(hgraph, isDirected);
+        int N = compact.getNodeCount();
+        int[] inOffsets = compact.getInOffsets();
+        int[] inSources = compact.getInSources();
 
         double[] tmp = new double[N];
         centralities = new double[N];
 
         Progress.start(progress, numRuns);
 
-        HashMap<Integer, Node> indicies = new HashMap<Integer, Node>();
-        HashMap<Node, Integer> invIndicies = new HashMap<Node, Integer>();
-        int count = 0;
-        for (Node u : hgraph.getNodes()) {
-            indicies.put(count, u);
-            invIndicies.put(u, count);
-            centralities[count] = 1;
-            count++;
+        for (int i = 0; i < N; i++) {
+            centralities[i] = 1;
         }
         for (int s = 0; s < numRuns; s++) {
             double max = 0;
             for (int i = 0; i < N; i++) {
-                Node u = indicies.get(i);
-                EdgeIterable iter = null;
-                if (isDirected) {
-                    iter = ((DirectedGraph) hgraph).getInEdges(u);
-                } else {
-                    iter = ((UndirectedGraph) hgraph).getEdges(u);
-                }
-
-                for (Edge e : iter) {
-                    Node v = hgraph.getOpposite(u, e);
-                    Integer id = invIndicies.get(v);
-                    tmp[i] += centralities[id];
+                for (int k = inOffsets[i]; k < inOffsets[i + 1]; k++) {
+                    tmp[i] += centralities[inSources[k]];
                 }
                 max = Math.max(max, tmp[i]);
-                if (isCanceled) {
-                    return;
-                }
+            }
+            if (isCanceled) {
+                return;
             }
             sumChange = 0;
             for (int k = 0; k < N; k++) {
@@ -202,8 +185,7 @@ public class EigenvectorCentrality implements Statistics, LongTask {
         }
 
         for (int i = 0; i < N; i++) {
-            Node s = indicies.get(i);
-         //   AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
+            Node s = compact.getNode(i);
             s.setAttribute((Column) eigenCol, centralities[i]);
             if (isCanceled) {
                 return;
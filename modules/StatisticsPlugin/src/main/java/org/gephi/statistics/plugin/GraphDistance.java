@@ -42,13 +42,15 @@ Portions Copyrighted 2011 Gephi Consortium.
 package org.gephi.statistics.plugin;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.graph.api.*;
-import java.util.LinkedList;
-import java.util.ListIterator;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.gephi.attribute.api.Column;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeColumn;
@@ -72,6 +74,9 @@ import org.openide.util.Lookup;
 /**
  * Ref: Ulrik Brandes, A Faster Algorithm for Betweenness Centrality,
  * in Journal of Mathematical Sociology 25(2):163-177, (2001)
+ * <p>
+ * Approximation: Ulrik Brandes, Christian Pich, Centrality Estimation in Large
+ * Networks, in International Journal of Bifurcation and Chaos 17(7):2303-2318, (2007)
  *
  * @author pjmcswee
  */
@@ -98,9 +103,35 @@ public class GraphDistance implements Statistics, LongTask {
     /** */
     private ProgressTicket progress;
     /** */
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     private int shortestPaths;
     private boolean isNormalized;
+    /** Number of threads the shortest path searches are split across */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    /** Out-adjacency of the node indices, shared read-only by the tasks */
+    private int[] outOffsets;
+    private int[] outTargets;
+    /** In-adjacency, used to find the predecessors of a node */
+    private int[] inOffsets;
+    private int[] inSources;
+    private AtomicInteger processed;
+    /** Approximate the measures from a sample of pivot sources */
+    private boolean approximate;
+    private int pivotCount = 100;
+    private boolean degreeWeightedPivots;
+    /** Seed of the pivot draws, fixed so that runs are reproducible */
+    private long pivotSeed = 42;
+    /** Sources of the searches, with the weight and number of draws of each one when sampling */
+    private int[] sources;
+    private double[] sourceWeights;
+    private int[] sourceDraws;
+    private int sampleSize;
+    private double[] sourcePathSums;
+    private int[] sourceReachable;
+    /** Half-widths of the 95% confidence intervals of the estimates */
+    private double pathLengthBound;
+    private double betweennessBound;
+    private static final double Z_95 = 1.96;
 
     public GraphDistance() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -152,129 +183,378 @@ public class GraphDistance implements Statistics, LongTask {
         }
 
         hgraph.readLock();
+        //The lock is released whatever the tasks throw, errors included
+        try {
+            N = hgraph.getNodeCount();
+
+            betweenness = new double[N];
+            eccentricity = new double[N];
+            closeness = new double[N];
+            diameter = 0;
+            avgDist = 0;
+            shortestPaths = 0;
+            radius = Integer.MAX_VALUE;
+            //The searches below only work on node indices
+            CompactGraph compact = CompactGraph.get(hgraph, isDirected);
+            outOffsets = compact.getOutOffsets();
+            outTargets = compact.getOutTargets();
+            inOffsets = compact.getInOffsets();
+            inSources = compact.getInSources();
+
+            //Pick the sources, every node unless the approximation is enabled
+            sources = null;
+            sourceWeights = null;
+            sourceDraws = null;
+            sampleSize = N;
+            if (approximate && pivotCount < N) {
+                selectPivots();
+            } else {
+                sources = new int[N];
+                for (int i = 0; i < N; i++) {
+                    sources[i] = i;
+                }
+            }
+            boolean sampled = sourceWeights != null;
+            sourcePathSums = new double[sources.length];
+            sourceReachable = new int[sources.length];
 
-        N = hgraph.getNodeCount();
-
-        betweenness = new double[N];
-        eccentricity = new double[N];
-        closeness = new double[N];
-        diameter = 0;
-        avgDist = 0;
-        shortestPaths = 0;
-        radius = Integer.MAX_VALUE;
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            index++;
-        }
-
-        Progress.start(progress, hgraph.getNodeCount());
-        int count = 0;
-        for (Node s : hgraph.getNodes()) {
-            Stack<Node> S = new Stack<Node>();
+            Progress.start(progress, sources.length);
+            processed = new AtomicInteger();
 
-            LinkedList<Node>[] P = new LinkedList[N];
-            double[] theta = new double[N];
-            int[] d = new int[N];
-            for (int j = 0; j < N; j++) {
-                P[j] = new LinkedList<Node>();
-                theta[j] = 0;
-                d[j] = -1;
+            int taskCount = Math.max(1, Math.min(threadCount, sources.length));
+            ShortestPathsTask[] tasks = new ShortestPathsTask[taskCount];
+            for (int t = 0; t < taskCount; t++) {
+                tasks[t] = new ShortestPathsTask(t, taskCount, sampled);
+            }
+            if (taskCount == 1) {
+                tasks[0].run();
+            } else {
+                ExecutorService pool = Executors.newFixedThreadPool(taskCount);
+                try {
+                    ParallelTasks.invokeAll(pool, tasks);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            if (isCanceled) {
+                return;
             }
 
-            int s_index = indicies.get(s);
+            //Reduce the per-task accumulators, always in the same order
+            for (ShortestPathsTask task : tasks) {
+                for (int i = 0; i < N; i++) {
+                    betweenness[i] += task.betweenness[i];
+                }
+                avgDist += task.avgDist;
+                shortestPaths += task.shortestPaths;
+                diameter = Math.max(diameter, task.diameter);
+                radius = Math.min(radius, task.radius);
+            }
 
-            theta[s_index] = 1;
-            d[s_index] = 0;
+            if (sampled) {
+                estimateFromPivots(tasks);
+            } else {
+                avgDist /= shortestPaths;//mN * (mN - 1.0f);
+            }
 
-            LinkedList<Node> Q = new LinkedList<Node>();
-            Q.addLast(s);
-            while (!Q.isEmpty()) {
-                Node v = Q.removeFirst();
-                S.push(v);
-                int v_index = indicies.get(v);
+            for (int s_index = 0; s_index < N; s_index++) {
+                Node s = compact.getNode(s_index);
 
-                EdgeIterable edgeIter = null;
-                if (isDirected) {
-                    edgeIter = ((DirectedGraph) hgraph).getOutEdges(v);
-                } else {
-                    edgeIter = hgraph.getEdges(v);
+                if (!isDirected) {
+                    betweenness[s_index] /= 2;
                 }
+                if (isNormalized) {
+                    closeness[s_index] = (closeness[s_index] == 0) ? 0 : 1.0 / closeness[s_index];
+                    betweenness[s_index] /= isDirected ? (N - 1.0) * (N - 2.0) : (N - 1.0) * (N - 2.0) / 2.0;
+                }
+                s.setAttribute((Column) eccentricityCol, eccentricity[s_index]);
+                s.setAttribute((Column)closenessCol, closeness[s_index]);
+                s.setAttribute((Column)betweenessCol, betweenness[s_index]);
+            }
+        } finally {
+            outOffsets = outTargets = inOffsets = inSources = null;
+            hgraph.readUnlock();
+        }
+    }
 
-                for (Edge edge : edgeIter) {
-                    Node reachable = hgraph.getOpposite(v, edge);
-
-                    int r_index = indicies.get(reachable);
-                    if (d[r_index] < 0) {
-                        Q.addLast(reachable);
-                        d[r_index] = d[v_index] + 1;
-                    }
-                    if (d[r_index] == (d[v_index] + 1)) {
-                        theta[r_index] = theta[r_index] + theta[v_index];
-                        P[r_index].addLast(v);
-                    }
+    /**
+     * Draws <code>pivotCount</code> sources. Uniform pivots are drawn without
+     * replacement and all weigh <code>N / pivotCount</code>. Degree-weighted
+     * pivots are drawn with replacement with a probability proportional to
+     * their degree, each draw weighs the inverse of that probability (Hansen-Hurwitz
+     * estimator), and repeated draws of the same node are searched only once.
+     */
+    private void selectPivots() {
+        Random random = new Random(pivotSeed);
+        sampleSize = pivotCount;
+        if (degreeWeightedPivots) {
+            double[] cumulated = new double[N];
+            double total = 0;
+            for (int i = 0; i < N; i++) {
+                total += outOffsets[i + 1] - outOffsets[i] + 1;
+                cumulated[i] = total;
+            }
+            int[] draws = new int[N];
+            int distinct = 0;
+            for (int k = 0; k < pivotCount; k++) {
+                int i = Arrays.binarySearch(cumulated, random.nextDouble() * total);
+                i = i < 0 ? -i - 1 : i + 1;
+                i = Math.min(i, N - 1);
+                if (draws[i]++ == 0) {
+                    distinct++;
                 }
             }
-            double reachable = 0;
+            sources = new int[distinct];
+            sourceWeights = new double[distinct];
+            sourceDraws = new int[distinct];
+            int p = 0;
             for (int i = 0; i < N; i++) {
-                if (d[i] > 0) {
-                    avgDist += d[i];
-                    eccentricity[s_index] = (int) Math.max(eccentricity[s_index], d[i]);
-                    closeness[s_index] += d[i];
-                    diameter = Math.max(diameter, d[i]);
-                    reachable++;
+                if (draws[i] > 0) {
+                    sources[p] = i;
+                    sourceWeights[p] = total / (outOffsets[i + 1] - outOffsets[i] + 1);
+                    sourceDraws[p] = draws[i];
+                    p++;
                 }
             }
+        } else {
+            int[] permutation = new int[N];
+            for (int i = 0; i < N; i++) {
+                permutation[i] = i;
+            }
+            sources = new int[pivotCount];
+            sourceWeights = new double[pivotCount];
+            sourceDraws = new int[pivotCount];
+            for (int k = 0; k < pivotCount; k++) {
+                int j = k + random.nextInt(N - k);
+                int tmp = permutation[j];
+                permutation[j] = permutation[k];
+                permutation[k] = tmp;
+                sources[k] = tmp;
+                sourceWeights[k] = N;
+                sourceDraws[k] = 1;
+            }
+            Arrays.sort(sources);
+        }
+    }
 
-            radius = (int) Math.min(eccentricity[s_index], radius);
-
-            if (reachable != 0) {
-                closeness[s_index] /= reachable;
+    /**
+     * Turns the pivot searches into estimates. Average path length is a ratio
+     * estimator over the pivot draws, with a 95% normal confidence interval from
+     * its linearized variance. Closeness and eccentricity of non-pivot nodes are
+     * estimated from their distances to the pivots, pivots keep exact values.
+     * Diameter and radius are the extremes of the pivot eccentricities, hence a
+     * lower and an upper bound respectively.
+     */
+    private void estimateFromPivots(ShortestPathsTask[] tasks) {
+        boolean[] isPivot = new boolean[N];
+        for (int s : sources) {
+            isPivot[s] = true;
+        }
+        double[] distanceSum = new double[N];
+        double[] distanceWeight = new double[N];
+        int[] distanceMax = new int[N];
+        for (ShortestPathsTask task : tasks) {
+            for (int i = 0; i < N; i++) {
+                distanceSum[i] += task.distanceSum[i];
+                distanceWeight[i] += task.distanceWeight[i];
+                distanceMax[i] = Math.max(distanceMax[i], task.distanceMax[i]);
+            }
+        }
+        for (int i = 0; i < N; i++) {
+            if (!isPivot[i]) {
+                closeness[i] = distanceWeight[i] > 0 ? distanceSum[i] / distanceWeight[i] : 0;
+                eccentricity[i] = distanceMax[i];
             }
+        }
+
+        //Ratio estimator of the average path length over all draws
+        double pathSum = 0;
+        double reachableSum = 0;
+        for (int p = 0; p < sources.length; p++) {
+            pathSum += sourceDraws[p] * sourceWeights[p] * sourcePathSums[p];
+            reachableSum += sourceDraws[p] * sourceWeights[p] * sourceReachable[p];
+        }
+        avgDist = reachableSum > 0 ? pathSum / reachableSum : Double.NaN;
+        shortestPaths = (int) Math.round(reachableSum / sampleSize);
+
+        double zMean = 0;
+        for (int p = 0; p < sources.length; p++) {
+            zMean += sourceDraws[p] * sourceWeights[p] * (sourcePathSums[p] - avgDist * sourceReachable[p]);
+        }
+        zMean /= sampleSize;
+        double zVariance = 0;
+        for (int p = 0; p < sources.length; p++) {
+            double z = sourceWeights[p] * (sourcePathSums[p] - avgDist * sourceReachable[p]) - zMean;
+            zVariance += sourceDraws[p] * z * z;
+        }
+        zVariance = sampleSize > 1 ? zVariance / (sampleSize - 1) : 0;
+        double standardError = reachableSum > 0 ? Math.sqrt(zVariance / sampleSize) / (reachableSum / sampleSize) : 0;
+        if (!degreeWeightedPivots && N > 1) {
+            standardError *= Math.sqrt((double) (N - sampleSize) / (N - 1));
+        }
+        pathLengthBound = Z_95 * standardError;
+
+        //Hoeffding bound on the betweenness estimator, each draw contributes a
+        //dependency in [0, N - 2] times its weight
+        double maxWeight = 0;
+        for (double w : sourceWeights) {
+            maxWeight = Math.max(maxWeight, w);
+        }
+        betweennessBound = Math.sqrt(Math.log(2 / 0.05) / (2.0 * sampleSize)) * (N - 2) * maxWeight;
+        if (!isDirected) {
+            betweennessBound /= 2;
+        }
+        if (isNormalized && N > 2) {
+            betweennessBound /= isDirected ? (N - 1.0) * (N - 2.0) : (N - 1.0) * (N - 2.0) / 2.0;
+        }
+    }
 
-            shortestPaths += reachable;
+    /**
+     * Runs Brandes' single-source shortest paths from every
+     * <code>taskCount</code>-th entry of <code>sources</code>, starting at
+     * <code>taskIndex</code>.
+     * <p>
+     * Search buffers are allocated once per task and reset after each source,
+     * betweenness is accumulated locally and summed up by <code>execute</code>.
+     * Closeness and eccentricity are only written at the source index, so tasks
+     * never write the same slot. When sampling, dependencies are scaled by the
+     * weight of the pivot and the distances to each pivot are collected to
+     * estimate closeness and eccentricity of the other nodes.
+     */
+    private class ShortestPathsTask implements Runnable {
+
+        private final int taskIndex;
+        private final int taskCount;
+        private final boolean sampled;
+        private final double[] betweenness;
+        private double avgDist;
+        private int shortestPaths;
+        private int diameter;
+        private int radius = Integer.MAX_VALUE;
+        private double[] distanceSum;
+        private double[] distanceWeight;
+        private int[] distanceMax;
+
+        public ShortestPathsTask(int taskIndex, int taskCount, boolean sampled) {
+            this.taskIndex = taskIndex;
+            this.taskCount = taskCount;
+            this.sampled = sampled;
+            this.betweenness = new double[N];
+            if (sampled) {
+                distanceSum = new double[N];
+                distanceWeight = new double[N];
+                distanceMax = new int[N];
+            }
+        }
 
+        public void run() {
+            int[] queue = new int[N];
+            int[] d = new int[N];
+            double[] theta = new double[N];
             double[] delta = new double[N];
-            while (!S.empty()) {
-                Node w = S.pop();
-                int w_index = indicies.get(w);
-                ListIterator<Node> iter1 = P[w_index].listIterator();
-                while (iter1.hasNext()) {
-                    Node u = iter1.next();
-                    int u_index = indicies.get(u);
-                    delta[u_index] += (theta[u_index] / theta[w_index]) * (1 + delta[w_index]);
+            Arrays.fill(d, -1);
+
+            for (int p = taskIndex; p < sources.length; p += taskCount) {
+                int s = sources[p];
+                double scale = sampled ? sourceDraws[p] * sourceWeights[p] / sampleSize : 1.0;
+                theta[s] = 1;
+                d[s] = 0;
+
+                //Breadth-first search, the queue doubles as the stack of visited nodes
+                int tail = search(s, outOffsets, outTargets, queue, d, theta);
+
+                double reachable = 0;
+                double pathSum = 0;
+                for (int k = 1; k < tail; k++) {
+                    int dist = d[queue[k]];
+                    pathSum += dist;
+                    eccentricity[s] = (int) Math.max(eccentricity[s], dist);
+                    closeness[s] += dist;
+                    diameter = Math.max(diameter, dist);
+                    reachable++;
                 }
-                if (w != s) {
-                    betweenness[w_index] += delta[w_index];
+                avgDist += pathSum;
+                sourcePathSums[p] = pathSum;
+                sourceReachable[p] = (int) reachable;
+
+                radius = (int) Math.min(eccentricity[s], radius);
+
+                if (reachable != 0) {
+                    closeness[s] /= reachable;
                 }
+
+                shortestPaths += reachable;
+
+                //Accumulate dependencies in reverse order, predecessors are the
+                //in-neighbours one level closer to the source
+                for (int k = tail - 1; k > 0; k--) {
+                    int w = queue[k];
+                    for (int j = inOffsets[w]; j < inOffsets[w + 1]; j++) {
+                        int u = inSources[j];
+                        if (d[u] == d[w] - 1) {
+                            delta[u] += (theta[u] / theta[w]) * (1 + delta[w]);
+                        }
+                    }
+                    betweenness[w] += sampled ? scale * delta[w] : delta[w];
+                }
+
+                if (sampled && !isDirected) {
+                    collectDistances(queue, tail, d, scale);
+                }
+                reset(queue, tail, d, theta, delta);
+
+                if (sampled && isDirected) {
+                    //Distances towards the pivot need a search on the reversed edges
+                    d[s] = 0;
+                    tail = search(s, inOffsets, inSources, queue, d, theta);
+                    collectDistances(queue, tail, d, scale);
+                    reset(queue, tail, d, theta, delta);
+                }
+
+                if (isCanceled) {
+                    return;
+                }
+                Progress.progress(progress, processed.incrementAndGet());
             }
-            count++;
-            if (isCanceled) {
-                hgraph.readUnlockAll();
-                return;
-            }
-            Progress.progress(progress, count);
         }
 
-        avgDist /= shortestPaths;//mN * (mN - 1.0f);
-
-        for (Node s : hgraph.getNodes()) {
-          //  AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-            int s_index = indicies.get(s);
+        private int search(int s, int[] offsets, int[] targets, int[] queue, int[] d, double[] theta) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = s;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int r = targets[k];
+                    if (d[r] < 0) {
+                        queue[tail++] = r;
+                        d[r] = d[v] + 1;
+                    }
+                    if (d[r] == (d[v] + 1)) {
+                        theta[r] = theta[r] + theta[v];
+                    }
+                }
+            }
+            return tail;
+        }
 
-            if (!isDirected) {
-                betweenness[s_index] /= 2;
+        private void collectDistances(int[] queue, int tail, int[] d, double scale) {
+            for (int k = 1; k < tail; k++) {
+                int v = queue[k];
+                distanceSum[v] += scale * d[v];
+                distanceWeight[v] += scale;
+                distanceMax[v] = Math.max(distanceMax[v], d[v]);
             }
-            if (isNormalized) {
-                closeness[s_index] = (closeness[s_index] == 0) ? 0 : 1.0 / closeness[s_index];
-                betweenness[s_index] /= isDirected ? (N - 1) * (N - 2) : (N - 1) * (N - 2) / 2;
+        }
+
+        private void reset(int[] queue, int tail, int[] d, double[] theta, double[] delta) {
+            for (int k = 0; k < tail; k++) {
+                int v = queue[k];
+                d[v] = -1;
+                theta[v] = 0;
+                delta[v] = 0;
             }
-            s.setAttribute((Column) eccentricityCol, eccentricity[s_index]);
-            s.setAttribute((Column)closenessCol, closeness[s_index]);
-            s.setAttribute((Column)betweenessCol, betweenness[s_index]);
         }
-        hgraph.readUnlock();
     }
 
     public void setNormalized(boolean isNormalized) {
@@ -293,6 +573,65 @@ public class GraphDistance implements Statistics, LongTask {
         return isDirected;
     }
 
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Estimates betweenness, closeness, eccentricity, diameter and average path
+     * length from searches started at a sample of pivot nodes instead of every
+     * node. Has no effect when the graph has no more nodes than pivots.
+     */
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setPivotCount(int pivotCount) {
+        if (pivotCount < 1) {
+            throw new IllegalArgumentException("Pivot count must be at least 1");
+        }
+        this.pivotCount = pivotCount;
+    }
+
+    public int getPivotCount() {
+        return pivotCount;
+    }
+
+    /**
+     * Draws pivots with a probability proportional to their degree rather than
+     * uniformly.
+     */
+    public void setDegreeWeightedPivots(boolean degreeWeightedPivots) {
+        this.degreeWeightedPivots = degreeWeightedPivots;
+    }
+
+    public boolean isDegreeWeightedPivots() {
+        return degreeWeightedPivots;
+    }
+
+    /**
+     * Sets the seed of the pivot draws. The same seed on the same graph draws
+     * the same pivots, hence the same estimates.
+     */
+    public void setPivotSeed(long pivotSeed) {
+        this.pivotSeed = pivotSeed;
+    }
+
+    public long getPivotSeed() {
+        return pivotSeed;
+    }
+
     private String createImageFile(TempDir tempDir, double[] pVals, String pName, String pX, String pY) {
         //distribution of values
         Map<Double, Integer> dist = new HashMap<Double, Integer>();
@@ -344,21 +683,35 @@ public class GraphDistance implements Statistics, LongTask {
             Exceptions.printStackTrace(ex);
         }
 
+        boolean sampled = sourceWeights != null;
         String report = "<HTML> <BODY> <h1>Graph Distance  Report </h1> "
                 + "<hr>"
                 + "<br>"
                 + "<h2> Parameters: </h2>"
                 + "Network Interpretation:  " + (isDirected ? "directed" : "undirected") + "<br />"
+                + (sampled
+                ? "Approximation: " + sampleSize + " " + (degreeWeightedPivots ? "degree-weighted" : "uniform") + " pivots out of " + N + " nodes (seed " + pivotSeed + ")<br />"
+                : "")
                 + "<br /> <h2> Results: </h2>"
-                + "Diameter: " + diameter + "<br />"
+                + (sampled
+                ? "Diameter (lower bound): " + diameter + "<br />"
+                + "Radius (upper bound): " + radius + "<br />"
+                + "Average Path length: " + avgDist + " &plusmn; " + pathLengthBound + " (95% confidence)<br />"
+                + "Estimated number of shortest paths: " + shortestPaths + "<br />"
+                + "Betweenness Centrality error: &plusmn; " + betweennessBound + " (95% confidence)<br /><br />"
+                : "Diameter: " + diameter + "<br />"
                 + "Radius: " + radius + "<br />"
                 + "Average Path length: " + avgDist + "<br />"
-                + "Number of shortest paths: " + shortestPaths + "<br /><br />"
+                + "Number of shortest paths: " + shortestPaths + "<br /><br />")
                 + htmlIMG1 + "<br /><br />"
                 + htmlIMG2 + "<br /><br />"
                 + htmlIMG3
                 + "<br /><br />" + "<h2> Algorithm: </h2>"
                 + "Ulrik Brandes, <i>A Faster Algorithm for Betweenness Centrality</i>, in Journal of Mathematical Sociology 25(2):163-177, (2001)<br />"
+                + (sampled
+                ? "Ulrik Brandes, Christian Pich, <i>Centrality Estimation in Large Networks</i>, in International Journal of Bifurcation and Chaos 17(7):2303-2318, (2007)<br />"
+                + "David Eppstein, Joseph Wang, <i>Fast Approximation of Centrality</i>, in Journal of Graph Algorithms and Applications 8(1):39-45, (2004)<br />"
+                : "")
                 + "</BODY> </HTML>";
 
         return report;
@@ -41,8 +41,8 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.statistics.plugin;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import org.gephi.attribute.api.Column;
 import org.gephi.data.attributes.api.AttributeTable;
@@ -51,15 +51,11 @@ import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.DirectedGraph;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
 
 import org.gephi.graph.api.Node;
-import org.gephi.graph.api.UndirectedGraph;
 import org.gephi.statistics.spi.Statistics;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.Progress;
@@ -87,9 +83,8 @@ public class Hits implements Statistics, LongTask {
     private double[] hubs;
     private boolean useUndirected;
     private double epsilon = 0.0001;
-    private LinkedList<Node> hub_list;
-    private LinkedList<Node> auth_list;
-    private HashMap<Node, Integer> indicies;
+    private int[] hub_list;
+    private int[] auth_list;
 
     public Hits() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -123,45 +118,36 @@ public class Hits implements Statistics, LongTask {
     public void execute(Graph hgraph, AttributeModel attributeModel) {
         hgraph.readLock();
 
-        int N = hgraph.getNodeCount();
+        CompactGraph compact = CompactGraph.get(hgraph, !useUndirected);
+        int N = compact.getNodeCount();
+        int[] inOffsets = compact.getInOffsets();
+        int[] inSources = compact.getInSources();
         authority = new double[N];
         hubs = new double[N];
         double[] temp_authority = new double[N];
         double[] temp_hubs = new double[N];
 
-        hub_list = new LinkedList<Node>();
-        auth_list = new LinkedList<Node>();
-
         Progress.start(progress);
 
-        indicies = new HashMap<Node, Integer>();
-        int index = 0;
-        for (Node node : hgraph.getNodes()) {
-            indicies.put(node, new Integer(index));
-            index++;
-
-            if (!useUndirected) {
-                if (((DirectedGraph) hgraph).getOutDegree(node) > 0) {
-                    hub_list.add(node);
-                }
-                if (((DirectedGraph) hgraph).getInDegree(node) > 0) {
-                    auth_list.add(node);
-                }
-            } else {
-                if (((UndirectedGraph) hgraph).getDegree(node) > 0) {
-                    hub_list.add(node);
-                    auth_list.add(node);
-                }
+        int hubCount = 0;
+        int authCount = 0;
+        hub_list = new int[N];
+        auth_list = new int[N];
+        for (int n_index = 0; n_index < N; n_index++) {
+            if (compact.getOutDegree(n_index) > 0) {
+                hub_list[hubCount++] = n_index;
+            }
+            if (compact.getInDegree(n_index) > 0) {
+                auth_list[authCount++] = n_index;
             }
         }
+        hub_list = Arrays.copyOf(hub_list, hubCount);
+        auth_list = Arrays.copyOf(auth_list, authCount);
 
-
-        for (Node node : hub_list) {
-            int n_index = indicies.get(node);
+        for (int n_index : hub_list) {
             hubs[n_index] = 1.0f;
         }
-        for (Node node : auth_list) {
-            int n_index = indicies.get(node);
+        for (int n_index : auth_list) {
             authority[n_index] = 1.0f;
         }
 
@@ -169,20 +155,10 @@ public class Hits implements Statistics, LongTask {
 
             boolean done = true;
             double auth_sum = 0;
-            for (Node node : auth_list) {
-
-                int n_index = indicies.get(node);
+            for (int n_index : auth_list) {
                 temp_authority[n_index] = authority[n_index];
-                EdgeIterable edge_iter;
-                if (!useUndirected) {
-                    edge_iter = ((DirectedGraph) hgraph).getInEdges(node);
-                } else {
-                    edge_iter = ((UndirectedGraph) hgraph).getEdges(node);
-                }
-                for (Edge edge : edge_iter) {
-                    Node target = hgraph.getOpposite(node, edge);
-                    int target_index = indicies.get(target);
-                    temp_authority[n_index] += hubs[target_index];
+                for (int k = inOffsets[n_index]; k < inOffsets[n_index + 1]; k++) {
+                    temp_authority[n_index] += hubs[inSources[k]];
                 }
 
                 auth_sum += temp_authority[n_index];
@@ -193,20 +169,10 @@ public class Hits implements Statistics, LongTask {
             }
 
             double hub_sum = 0;
-            for (Node node : hub_list) {
-
-                int n_index = indicies.get(node);
+            for (int n_index : hub_list) {
                 temp_hubs[n_index] = hubs[n_index];
-                EdgeIterable edge_iter;
-                if (!useUndirected) {
-                    edge_iter = ((DirectedGraph) hgraph).getInEdges(node);
-                } else {
-                    edge_iter = ((UndirectedGraph) hgraph).getEdges(node);
-                }
-                for (Edge edge : edge_iter) {
-                    Node target = hgraph.getOpposite(node, edge);
-                    int target_index = indicies.get(target);
-                    temp_hubs[n_index] += authority[target_index];
+                for (int k = inOffsets[n_index]; k < inOffsets[n_index + 1]; k++) {
+                    temp_hubs[n_index] += authority[inSources[k]];
                 }
                 hub_sum += temp_hubs[n_index];
                 if (isCanceled) {
@@ -214,15 +180,13 @@ public class Hits implements Statistics, LongTask {
                 }
             }
 
-            for (Node node : auth_list) {
-                int n_index = indicies.get(node);
+            for (int n_index : auth_list) {
                 temp_authority[n_index] /= auth_sum;
                 if (((temp_authority[n_index] - authority[n_index]) / authority[n_index]) >= epsilon) {
                     done = false;
                 }
             }
-            for (Node node : hub_list) {
-                int n_index = indicies.get(node);
+            for (int n_index : hub_list) {
                 temp_hubs[n_index] /= hub_sum;
                 if (((temp_hubs[n_index] - hubs[n_index]) / hubs[n_index]) >= epsilon) {
                     done = false;
@@ -250,9 +214,8 @@ public class Hits implements Statistics, LongTask {
             hubsCol = nodeTable.addColumn(HUB, "Hub", AttributeType.FLOAT, AttributeOrigin.COMPUTED, new Float(0));
         }
 
-        for (Node s : hgraph.getNodes()) {
-            int s_index = indicies.get(s);
-            //AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
+        for (int s_index = 0; s_index < N; s_index++) {
+            Node s = compact.getNode(s_index);
             s.setAttribute((Column)authorityCol, (float) authority[s_index]);
             s.setAttribute((Column) hubsCol, (float) hubs[s_index]);
         }
@@ -267,8 +230,7 @@ public class Hits implements Statistics, LongTask {
     public String getReport() {
         //distribution of hub values
         Map<Double, Integer> distHubs = new HashMap<Double, Integer>();
-        for (Node node : hub_list) {
-            int n_index = indicies.get(node);
+        for (int n_index : hub_list) {
             Double d = hubs[n_index];
             if (distHubs.containsKey(d)) {
                 Integer v = distHubs.get(d);
@@ -280,8 +242,7 @@ public class Hits implements Statistics, LongTask {
 
         //distribution of authority values
         Map<Double, Integer> distAuthorities = new HashMap<Double, Integer>();
-        for (Node node : auth_list) {
-            int n_index = indicies.get(node);
+        for (int n_index : auth_list) {
             Double d = authority[n_index];
             if (distAuthorities.containsKey(d)) {
                 Integer v = distAuthorities.get(d);
@@ -44,6 +44,10 @@ package org.gephi.statistics.plugin;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import org.gephi.attribute.api.Column;
 import org.gephi.data.attributes.api.*;
 import org.gephi.graph.api.GraphModel;
@@ -68,8 +72,11 @@ public class Modularity implements Statistics, LongTask {
 
     public static final String MODULARITY_CLASS = "modularity_class";
     private ProgressTicket progress;
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     private CommunityStructure structure;
+    private UndirectedGraph graph;
+    private int communityCount;
+    private int threadCount = 1;
     private double modularity;
     private double modularityResolution;
     private boolean isRandomized = false;
@@ -109,345 +116,281 @@ public class Modularity implements Statistics, LongTask {
         this.progress = progressTicket;
     }
 
-    class ModEdge {
-
-        int source;
-        int target;
-        float weight;
-
-        public ModEdge(int s, int t, float w) {
-            source = s;
-            target = t;
-            weight = w;
-        }
-    }
-
+    /**
+     * Louvain state of the current level. The graph of a level is stored in
+     * compressed sparse row form, without self-loops. Their weight, the
+     * weight inside a community of the previous level, only counts in the
+     * node weight. Coarsening writes the next level
+     * into a second set of buffers allocated once, then swaps them.
+     */
     class CommunityStructure {
 
-        HashMap<Modularity.Community, Float>[] nodeConnectionsWeight;
-        HashMap<Modularity.Community, Integer>[] nodeConnectionsCount;
-        HashMap<Node, Integer> map;
-        Community[] nodeCommunities;
-        UndirectedGraph graph;
+        int N;
+        int[] offsets;
+        int[] targets;
+        float[] edgeWeights;
         double[] weights;
+        int[] nodeCommunities;
+        AtomicLongArray communityWeights;
+        AtomicIntegerArray communitySizes;
         double graphWeightSum;
-        LinkedList<ModEdge>[] topology;
-        LinkedList<Community> communities;
-        int N;
-        HashMap<Integer, Community> invMap;
-
-        CommunityStructure(UndirectedGraph hgraph) {
-            this.graph = hgraph;
-            N = hgraph.getNodeCount();
-            invMap = new HashMap<Integer, Community>();
-            nodeConnectionsWeight = new HashMap[N];
-            nodeConnectionsCount = new HashMap[N];
-            nodeCommunities = new Community[N];
-            map = new HashMap<Node, Integer>();
-            topology = new LinkedList[N];
-            communities = new LinkedList<Community>();
-            int index = 0;
+        //Level node of every node of the graph
+        int[] membership;
+        //Spare buffers for the next level
+        int[] nextOffsets;
+        int[] nextTargets;
+        float[] nextEdgeWeights;
+
+        CommunityStructure(CompactGraph compact) {
+            N = compact.getNodeCount();
+            int[] compactOffsets = compact.getOutOffsets();
+            int[] compactTargets = compact.getOutTargets();
+            double[] compactWeights = useWeight ? compact.getOutWeights() : null;
+            int size = compactTargets.length;
+            offsets = new int[N + 1];
+            targets = new int[size];
+            edgeWeights = new float[size];
+            nextOffsets = new int[N + 1];
+            nextTargets = new int[size];
+            nextEdgeWeights = new float[size];
             weights = new double[N];
-            for (Node node : hgraph.getNodes()) {
-                map.put(node, index);
-                nodeCommunities[index] = new Community(this);
-                nodeConnectionsWeight[index] = new HashMap<Community, Float>();
-                nodeConnectionsCount[index] = new HashMap<Community, Integer>();
-                weights[index] = 0;
-                nodeCommunities[index].seed(index);
-                Community hidden = new Community(structure);
-                hidden.nodes.add(index);
-                invMap.put(index, hidden);
-                communities.add(nodeCommunities[index]);               
-                index++;
-                if (isCanceled) {
-                    return;
-                }
-            } 
-
-            for (Node node : hgraph.getNodes()) {
-                int node_index = map.get(node);
-                topology[node_index] = new LinkedList<ModEdge>();
-
-                for (Node neighbor : hgraph.getNeighbors(node)) {
-                    if (node == neighbor) {
+            nodeCommunities = new int[N];
+            communityWeights = new AtomicLongArray(N);
+            communitySizes = new AtomicIntegerArray(N);
+            membership = new int[N];
+
+            //Parallel edges are merged, the first one gives the weight, self-loops are ignored
+            int[] lastSeen = new int[N];
+            Arrays.fill(lastSeen, -1);
+            int k = 0;
+            for (int node = 0; node < N; node++) {
+                for (int e = compactOffsets[node]; e < compactOffsets[node + 1]; e++) {
+                    int neighbor = compactTargets[e];
+                    if (neighbor == node || lastSeen[neighbor] == node) {
                         continue;
                     }
-                    int neighbor_index = map.get(neighbor);
-                    float weight = 1;
-                    if(useWeight) {
-                        weight = (float) hgraph.getEdge(node, neighbor, node_index).getWeight();
-                    } 
-                      
-                    weights[node_index] += weight;
-                    Modularity.ModEdge me = new ModEdge(node_index, neighbor_index, weight);
-                    topology[node_index].add(me);
-                    Community adjCom = nodeCommunities[neighbor_index];
-                    nodeConnectionsWeight[node_index].put(adjCom, weight);
-                    nodeConnectionsCount[node_index].put(adjCom, 1);
-                    nodeCommunities[node_index].connectionsWeight.put(adjCom, weight);
-                    nodeCommunities[node_index].connectionsCount.put(adjCom, 1);
-                    nodeConnectionsWeight[neighbor_index].put(nodeCommunities[node_index], weight);
-                    nodeConnectionsCount[neighbor_index].put(nodeCommunities[node_index], 1);
-                    nodeCommunities[neighbor_index].connectionsWeight.put(nodeCommunities[node_index], weight);
-                    nodeCommunities[neighbor_index].connectionsCount.put(nodeCommunities[node_index], 1);
+                    lastSeen[neighbor] = node;
+                    float weight = useWeight ? (float) compactWeights[e] : 1f;
+                    targets[k] = neighbor;
+                    edgeWeights[k] = weight;
+                    k++;
+                    weights[node] += weight;
                     graphWeightSum += weight;
                 }
-
-                if (isCanceled) {
-                    return;
-                }
+                offsets[node + 1] = k;
             }
             graphWeightSum /= 2.0;
+            for (int node = 0; node < N; node++) {
+                nodeCommunities[node] = node;
+                communityWeights.set(node, Double.doubleToRawLongBits(weights[node]));
+                communitySizes.set(node, 1);
+                membership[node] = node;
+            }
         }
 
-        private void addNodeTo(int node, Community to) {
-            to.add(new Integer(node));
-            nodeCommunities[node] = to;
-
-            for (ModEdge e : topology[node]) {
-                int neighbor = e.target;
-
-                ////////
-                //Remove Node Connection to this community
-                Float neighEdgesTo = nodeConnectionsWeight[neighbor].get(to);
-                if (neighEdgesTo == null) {
-                    nodeConnectionsWeight[neighbor].put(to, e.weight);
-                } else {
-                    nodeConnectionsWeight[neighbor].put(to, neighEdgesTo + e.weight);
-                }
-                Integer neighCountEdgesTo = nodeConnectionsCount[neighbor].get(to);
-                if (neighCountEdgesTo == null) {
-                    nodeConnectionsCount[neighbor].put(to, 1);
-                } else {
-                    nodeConnectionsCount[neighbor].put(to, neighCountEdgesTo + 1);
-                }
-
-
-
-
-                ///////////////////
-                Modularity.Community adjCom = nodeCommunities[neighbor];
-                Float wEdgesto = adjCom.connectionsWeight.get(to);
-                if (wEdgesto == null) {
-                    adjCom.connectionsWeight.put(to, e.weight);
-                } else {
-                    adjCom.connectionsWeight.put(to, wEdgesto + e.weight);
-                }
-                
-                Integer cEdgesto = adjCom.connectionsCount.get(to);
-                if (cEdgesto == null) {
-                    adjCom.connectionsCount.put(to, 1);
-                } else {
-                    adjCom.connectionsCount.put(to, cEdgesto + 1);
-                }
-
-                Float nodeEdgesTo = nodeConnectionsWeight[node].get(adjCom);
-                if (nodeEdgesTo == null) {
-                    nodeConnectionsWeight[node].put(adjCom, e.weight);
-                } else {
-                    nodeConnectionsWeight[node].put(adjCom, nodeEdgesTo + e.weight);
-                }
-                
-                Integer nodeCountEdgesTo = nodeConnectionsCount[node].get(adjCom);
-                if (nodeCountEdgesTo == null) {
-                    nodeConnectionsCount[node].put(adjCom, 1);
-                } else {
-                    nodeConnectionsCount[node].put(adjCom, nodeCountEdgesTo + 1);
-                }
+        double communityWeight(int community) {
+            return Double.longBitsToDouble(communityWeights.get(community));
+        }
 
-                if (to != adjCom) {
-                    Float comEdgesto = to.connectionsWeight.get(adjCom);
-                    if (comEdgesto == null) {
-                        to.connectionsWeight.put(adjCom, e.weight);
-                    } else {
-                        to.connectionsWeight.put(adjCom, comEdgesto + e.weight);
-                    }
-                    
-                    Integer comCountEdgesto = to.connectionsCount.get(adjCom);
-                    if (comCountEdgesto == null) {
-                        to.connectionsCount.put(adjCom, 1);
-                    } else {
-                        to.connectionsCount.put(adjCom, comCountEdgesto + 1);
-                    }
-                    
-                    
+        void addCommunityWeight(int community, double delta) {
+            while (true) {
+                long current = communityWeights.get(community);
+                long next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + delta);
+                if (communityWeights.compareAndSet(community, current, next)) {
+                    return;
                 }
             }
         }
 
-        private void removeNodeFrom(int node, Community from) {
-                       
-            Community community = nodeCommunities[node];
-            for (ModEdge e : topology[node]) {
-                int neighbor = e.target;
-
-                ////////
-                //Remove Node Connection to this community
-                Float edgesTo = nodeConnectionsWeight[neighbor].get(community);
-                Integer countEdgesTo = nodeConnectionsCount[neighbor].get(community);
-                if (countEdgesTo - 1 == 0) {
-                    nodeConnectionsWeight[neighbor].remove(community);
-                    nodeConnectionsCount[neighbor].remove(community);
-                } else {
-                    nodeConnectionsWeight[neighbor].put(community, edgesTo - e.weight);
-                    nodeConnectionsCount[neighbor].put(community, countEdgesTo - 1);
-                }
-
-                ///////////////////
-                //Remove Adjacency Community's connection to this community
-                Modularity.Community adjCom = nodeCommunities[neighbor];
-                Float oEdgesto = adjCom.connectionsWeight.get(community);
-                Integer oCountEdgesto = adjCom.connectionsCount.get(community);
-                if (oCountEdgesto - 1 == 0) {
-                    adjCom.connectionsWeight.remove(community);
-                    adjCom.connectionsCount.remove(community);
-                } else {
-                    adjCom.connectionsWeight.put(community, oEdgesto - e.weight);
-                    adjCom.connectionsCount.put(community, oCountEdgesto - 1);
+        /**
+         * Replaces the level graph by its community graph, one node per
+         * non-empty community, numbered in increasing community order.
+         */
+        void zoomOut() {
+            int[] newIds = new int[N];
+            Arrays.fill(newIds, -1);
+            for (int node = 0; node < N; node++) {
+                newIds[nodeCommunities[node]] = 0;
+            }
+            int M = 0;
+            for (int com = 0; com < N; com++) {
+                if (newIds[com] == 0) {
+                    newIds[com] = M++;
                 }
-                
+            }
+            for (int i = 0; i < membership.length; i++) {
+                membership[i] = newIds[nodeCommunities[membership[i]]];
+            }
 
-                
-                if (node == neighbor) {
-                    continue;
-                }
+            //Group the nodes by community
+            int[] start = new int[M + 1];
+            for (int node = 0; node < N; node++) {
+                start[newIds[nodeCommunities[node]] + 1]++;
+            }
+            for (int com = 0; com < M; com++) {
+                start[com + 1] += start[com];
+            }
+            int[] members = new int[N];
+            int[] fill = new int[M];
+            for (int node = 0; node < N; node++) {
+                int com = newIds[nodeCommunities[node]];
+                members[start[com] + fill[com]++] = node;
+            }
 
-                if (adjCom != community) {
-                    Float comEdgesto = community.connectionsWeight.get(adjCom);
-                    Integer comCountEdgesto = community.connectionsCount.get(adjCom);
-                    if (comCountEdgesto - 1 == 0) {
-                        community.connectionsWeight.remove(adjCom);
-                        community.connectionsCount.remove(adjCom);
-                    } else {
-                        community.connectionsWeight.put(adjCom, comEdgesto - e.weight);
-                        community.connectionsCount.put(adjCom, comCountEdgesto - 1);
+            double[] newWeights = new double[M];
+            double[] accumulator = new double[M];
+            int[] lastSeen = new int[M];
+            Arrays.fill(lastSeen, -1);
+            int[] neighbors = new int[M];
+            int k = 0;
+            nextOffsets[0] = 0;
+            for (int com = 0; com < M; com++) {
+                int count = 0;
+                for (int m = start[com]; m < start[com + 1]; m++) {
+                    int node = members[m];
+                    newWeights[com] += weights[node];
+                    for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                        int target = newIds[nodeCommunities[targets[e]]];
+                        if (target != com) {
+                            if (lastSeen[target] != com) {
+                                lastSeen[target] = com;
+                                accumulator[target] = 0;
+                                neighbors[count++] = target;
+                            }
+                            accumulator[target] += edgeWeights[e];
+                        }
                     }
                 }
-
-                Float nodeEgesTo = nodeConnectionsWeight[node].get(adjCom);
-                Integer nodeCountEgesTo = nodeConnectionsCount[node].get(adjCom);
-                if (nodeCountEgesTo - 1 == 0) {
-                    nodeConnectionsWeight[node].remove(adjCom);
-                    nodeConnectionsCount[node].remove(adjCom);
-                } else {
-                    nodeConnectionsWeight[node].put(adjCom, nodeEgesTo - e.weight);
-                    nodeConnectionsCount[node].put(adjCom, nodeCountEgesTo - 1);
+                for (int i = 0; i < count; i++) {
+                    nextTargets[k] = neighbors[i];
+                    nextEdgeWeights[k] = (float) accumulator[neighbors[i]];
+                    k++;
                 }
+                nextOffsets[com + 1] = k;
+            }
 
+            int[] swapOffsets = offsets;
+            offsets = nextOffsets;
+            nextOffsets = swapOffsets;
+            int[] swapTargets = targets;
+            targets = nextTargets;
+            nextTargets = swapTargets;
+            float[] swapWeights = edgeWeights;
+            edgeWeights = nextEdgeWeights;
+            nextEdgeWeights = swapWeights;
 
+            N = M;
+            weights = newWeights;
+            for (int com = 0; com < M; com++) {
+                nodeCommunities[com] = com;
+                communityWeights.set(com, Double.doubleToRawLongBits(newWeights[com]));
+                communitySizes.set(com, 1);
             }
-            from.remove(new Integer(node));
-        }
-
-        private void moveNodeTo(int node, Community to) {
-            Community from = nodeCommunities[node];
-            removeNodeFrom(node, from);
-            addNodeTo(node, to);
         }
 
-        private void zoomOut() {
-            int M = communities.size();
-            LinkedList<ModEdge>[] newTopology = new LinkedList[M];
-            int index = 0;
-            nodeCommunities = new Community[M];
-            nodeConnectionsWeight = new HashMap[M];
-            nodeConnectionsCount = new HashMap[M];
-            HashMap<Integer, Community> newInvMap = new HashMap<Integer, Community>();
-            for (int i = 0; i < communities.size(); i++) {//Community com : mCommunities) {
-                Community com = communities.get(i);
-                nodeConnectionsWeight[index] = new HashMap<Community, Float>();
-                nodeConnectionsCount[index] = new HashMap<Community, Integer>();
-                newTopology[index] = new LinkedList<ModEdge>();
-                nodeCommunities[index] = new Community(com);
-                Set<Community> iter = com.connectionsWeight.keySet();
-                double weightSum = 0;
-
-                Community hidden = new Community(structure);
-                for (Integer nodeInt : com.nodes) {
-                    Community oldHidden = invMap.get(nodeInt);
-                    hidden.nodes.addAll(oldHidden.nodes);
-                }
-                newInvMap.put(index, hidden);
-                for(Modularity.Community adjCom : iter) {
-                    int target = communities.indexOf(adjCom);
-                    float weight = com.connectionsWeight.get(adjCom);
-                    if(target == index)
-                        weightSum += 2.*weight;
-                    else
-                        weightSum += weight;
-                    ModEdge e = new ModEdge(index, target, weight);
-                    newTopology[index].add(e);
-                }
-                weights[index] = weightSum;
-                nodeCommunities[index].seed(index);
-
-                index++;
+        /**
+         * Returns the number of communities and writes the community of
+         * every graph node in <code>struct</code>, numbered in increasing
+         * community order.
+         */
+        int communities(int[] struct) {
+            int[] newIds = new int[N];
+            Arrays.fill(newIds, -1);
+            for (int node = 0; node < N; node++) {
+                newIds[nodeCommunities[node]] = 0;
             }
-            communities.clear();
-
-            for (int i = 0; i < M; i++) {
-                Community com = nodeCommunities[i];
-                communities.add(com);
-                for (ModEdge e : newTopology[i]) {
-                    nodeConnectionsWeight[i].put(nodeCommunities[e.target], e.weight);
-                    nodeConnectionsCount[i].put(nodeCommunities[e.target], 1);
-                    com.connectionsWeight.put(nodeCommunities[e.target], e.weight);
-                    com.connectionsCount.put(nodeCommunities[e.target], 1);
+            int count = 0;
+            for (int com = 0; com < N; com++) {
+                if (newIds[com] == 0) {
+                    newIds[com] = count++;
                 }
-
             }
-
-            N = M;
-            topology = newTopology;
-            invMap = newInvMap;
+            for (int i = 0; i < membership.length; i++) {
+                struct[i] = newIds[nodeCommunities[membership[i]]];
+            }
+            return count;
         }
     }
 
-    class Community {
-        double weightSum;
-        CommunityStructure structure;
-        LinkedList<Integer> nodes;
-        HashMap<Modularity.Community, Float> connectionsWeight;
-        HashMap<Modularity.Community, Integer> connectionsCount;
-
-        public int size() {
-            return nodes.size();
+    /**
+     * Local moving phase for every <code>stride</code>-th position of the
+     * node order, starting at <code>first</code>. Each node goes to the
+     * neighbor community with the best positive gain. With several movers the
+     * moves are applied concurrently, and a mover may see slightly stale
+     * communities of the other movers' nodes. Two singletons could then move
+     * into each other's community on every pass, so a singleton only moves
+     * into a singleton community with a lower label.
+     */
+    private class LocalMover implements Runnable {
+
+        private final int first;
+        private final int stride;
+        private final double[] accumulator;
+        private final int[] lastSeen;
+        private final int[] neighbors;
+        private int start;
+        private boolean moved;
+
+        LocalMover(int first, int stride, int size) {
+            this.first = first;
+            this.stride = stride;
+            this.accumulator = new double[size];
+            this.lastSeen = new int[size];
+            this.neighbors = new int[size];
         }
 
-        public Community(Modularity.Community com) {
-            structure = com.structure;
-            connectionsWeight = new HashMap<Modularity.Community, Float>();
-            connectionsCount = new HashMap<Modularity.Community, Integer>();
-            nodes = new LinkedList<Integer>();
-            //mHidden = pCom.mHidden;
+        void reset(int start) {
+            this.start = start;
+            Arrays.fill(lastSeen, 0, structure.N, -1);
         }
 
-        public Community(CommunityStructure structure) {
-            this.structure = structure;
-            connectionsWeight = new HashMap<Modularity.Community, Float>();
-            connectionsCount = new HashMap<Modularity.Community, Integer>();
-            nodes = new LinkedList<Integer>();
-        }
-
-        public void seed(int node) {
-            nodes.add(node);
-            weightSum += structure.weights[node];
-        }
-
-        public boolean add(int node) {
-            nodes.addLast(new Integer(node));
-            weightSum += structure.weights[node];
-            return true;
-        }
+        public void run() {
+            moved = false;
+            CommunityStructure s = structure;
+            int n = s.N;
+            for (int step = first; step < n; step += stride) {
+                int node = (start + step) % n;
+                int nodecom = s.nodeCommunities[node];
+                int count = 0;
+                for (int e = s.offsets[node]; e < s.offsets[node + 1]; e++) {
+                    int com = s.nodeCommunities[s.targets[e]];
+                    if (lastSeen[com] != node) {
+                        lastSeen[com] = node;
+                        accumulator[com] = 0;
+                        neighbors[count++] = com;
+                    }
+                    accumulator[com] += s.edgeWeights[e];
+                }
 
-        public boolean remove(int node) {
-            boolean result = nodes.remove(new Integer(node));
-            weightSum -= structure.weights[node];
-            if (nodes.size() == 0) {
-                structure.communities.remove(this);
+                double nodeWeight = s.weights[node];
+                double best = 0.;
+                int bestCommunity = -1;
+                for (int i = 0; i < count; i++) {
+                    int com = neighbors[i];
+                    double weightSum = s.communityWeight(com);
+                    if (com == nodecom) {
+                        weightSum -= nodeWeight;
+                    }
+                    double qValue = resolution * accumulator[com] - (nodeWeight * weightSum) / (2.0 * s.graphWeightSum);
+                    if (qValue > best) {
+                        best = qValue;
+                        bestCommunity = com;
+                    }
+                }
+                if (bestCommunity != -1 && bestCommunity != nodecom
+                        && (stride == 1 || bestCommunity < nodecom
+                        || s.communitySizes.get(nodecom) > 1 || s.communitySizes.get(bestCommunity) > 1)) {
+                    s.addCommunityWeight(nodecom, -nodeWeight);
+                    s.addCommunityWeight(bestCommunity, nodeWeight);
+                    s.communitySizes.decrementAndGet(nodecom);
+                    s.communitySizes.incrementAndGet(bestCommunity);
+                    s.nodeCommunities[node] = bestCommunity;
+                    moved = true;
+                }
+                if (isCanceled) {
+                    return;
+                }
             }
-            return result;
         }
     }
 
@@ -461,107 +404,110 @@ public class Modularity implements Statistics, LongTask {
         Progress.start(progress);
         Random rand = new Random();
         hgraph.readLock();
-        structure = new Modularity.CommunityStructure(hgraph);
+        graph = hgraph;
+        CompactGraph compact = CompactGraph.get(hgraph, false);
+        structure = new Modularity.CommunityStructure(compact);
         double totalWeight = structure.graphWeightSum;
         double[] nodeDegrees = structure.weights.clone();
-        if (isCanceled) {
-            hgraph.readUnlockAll();
-            return;
+
+        int moverCount = Math.max(1, Math.min(threadCount, structure.N));
+        LocalMover[] movers = new LocalMover[moverCount];
+        for (int t = 0; t < moverCount; t++) {
+            movers[t] = new LocalMover(t, moverCount, structure.N);
         }
-        boolean someChange = true;
-        while (someChange) {
-            someChange = false;
-            boolean localChange = true;
-            while (localChange) {
-                localChange = false;
-                int start = 0;
-                if (isRandomized) {
-                    start = Math.abs(rand.nextInt()) % structure.N;
-                }
-                int step = 0;
-                for (int i = start; step < structure.N; i = (i + 1) % structure.N) {
-                    step++;
-                    double best = 0.;
-                    Community bestCommunity = null;
-                    Community nodecom = structure.nodeCommunities[i];
-                    Set<Community> iter = structure.nodeConnectionsWeight[i].keySet();
-                    for(Community com : iter) {
-                        double qValue = q(i, com);
-                        if (qValue > best) {
-                            best = qValue;
-                            bestCommunity = com;
-                        } 
+        ExecutorService pool = moverCount > 1 ? Executors.newFixedThreadPool(moverCount) : null;
+        try {
+            boolean someChange = true;
+            while (someChange) {
+                someChange = false;
+                boolean localChange = true;
+                while (localChange) {
+                    localChange = false;
+                    int start = 0;
+                    if (isRandomized && structure.N > 0) {
+                        start = Math.abs(rand.nextInt()) % structure.N;
+                    }
+                    for (LocalMover mover : movers) {
+                        mover.reset(start);
                     }
-                    if ((structure.nodeCommunities[i] != bestCommunity) && (bestCommunity != null)) {
-                        structure.moveNodeTo(i, bestCommunity);
-                        localChange = true;
+                    if (pool == null) {
+                        movers[0].run();
+                    } else {
+                        ParallelTasks.invokeAll(pool, movers);
+                    }
+                    for (LocalMover mover : movers) {
+                        localChange |= mover.moved;
                     }
+                    someChange = localChange || someChange;
                     if (isCanceled) {
                         hgraph.readUnlockAll();
                         return;
                     }
                 }
-                someChange = localChange || someChange;
-                if (isCanceled) {
-                    hgraph.readUnlockAll();
-                    return;
+
+                if (someChange) {
+                    structure.zoomOut();
                 }
             }
-
-            if (someChange) {
-                structure.zoomOut();
+        } catch (RuntimeException ex) {
+            hgraph.readUnlockAll();
+            throw ex;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
             }
         }
 
-        int[] comStructure = new int[hgraph.getNodeCount()];
-        int count = 0;
-        double[] degreeCount = new double[structure.communities.size()];
-        for (Community com : structure.communities) {
-            for (Integer node : com.nodes) {
-                Community hidden = structure.invMap.get(node);
-                for (Integer nodeInt : hidden.nodes) {
-                    comStructure[nodeInt] = count;
-                }
-            }
-            count++;
-        }
-        for (Node node : hgraph.getNodes()) {
-            int index = structure.map.get(node);
+        int[] comStructure = new int[compact.getNodeCount()];
+        communityCount = structure.communities(comStructure);
+        double[] degreeCount = new double[communityCount];
+        for (int index = 0; index < comStructure.length; index++) {
             if(useWeight) {
                 degreeCount[comStructure[index]] += nodeDegrees[index];
             } else {                
-                degreeCount[comStructure[index]] += hgraph.getDegree(node);
+                degreeCount[comStructure[index]] += hgraph.getDegree(compact.getNode(index));
             }
             
         }
+        structure = null;
         
-        modularity = finalQ(comStructure, degreeCount, hgraph, attributeModel, totalWeight, 1.);
-        modularityResolution = finalQ(comStructure, degreeCount, hgraph, attributeModel, totalWeight, resolution);
+        modularity = finalQ(comStructure, degreeCount, compact, attributeModel, totalWeight, 1.);
+        modularityResolution = finalQ(comStructure, degreeCount, compact, attributeModel, totalWeight, resolution);
         
         hgraph.readUnlock();
     }
 
-    private double finalQ(int[] struct, double[] degrees, UndirectedGraph hgraph, AttributeModel attributeModel, double totalWeight, double usedResolution) {
-        AttributeTable nodeTable = attributeModel.getNodeTable();
-        AttributeColumn modCol = nodeTable.getColumn(MODULARITY_CLASS);
-        if (modCol == null) {
-            modCol = nodeTable.addColumn(MODULARITY_CLASS, "Modularity Class", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+    private double finalQ(int[] struct, double[] degrees, CompactGraph compact, AttributeModel attributeModel, double totalWeight, double usedResolution) {
+        //Without attribute model the classes are not saved, only the results are kept
+        AttributeColumn modCol = null;
+        if (attributeModel != null) {
+            AttributeTable nodeTable = attributeModel.getNodeTable();
+            modCol = nodeTable.getColumn(MODULARITY_CLASS);
+            if (modCol == null) {
+                modCol = nodeTable.addColumn(MODULARITY_CLASS, "Modularity Class", AttributeType.INT, AttributeOrigin.COMPUTED, new Integer(0));
+            }
         }
 
         double res = 0;
         double[] internal = new double[degrees.length];
-        for (Node n : hgraph.getNodes()) {
-            int n_index = structure.map.get(n);
-            //AttributeRow row = (AttributeRow) n.getNodeData().getAttributes();
-            n.setAttribute((Column) modCol, struct[n_index]);
-            for (Node neighbor : hgraph.getNeighbors(n)) {
-                if (n == neighbor) {
+        int[] offsets = compact.getOutOffsets();
+        int[] targets = compact.getOutTargets();
+        double[] edgeWeights = useWeight ? compact.getOutWeights() : null;
+        int[] lastSeen = new int[struct.length];
+        Arrays.fill(lastSeen, -1);
+        for (int n_index = 0; n_index < struct.length; n_index++) {
+            if (modCol != null) {
+                compact.getNode(n_index).setAttribute((Column) modCol, struct[n_index]);
+            }
+            for (int k = offsets[n_index]; k < offsets[n_index + 1]; k++) {
+                int neigh_index = targets[k];
+                if (neigh_index == n_index || lastSeen[neigh_index] == n_index) {
                     continue;
                 }
-                int neigh_index = structure.map.get(neighbor);
+                lastSeen[neigh_index] = n_index;
                 if (struct[neigh_index] == struct[n_index]) {
                     if(useWeight) {
-                        internal[struct[neigh_index]] += hgraph.getEdge(n, neighbor,n_index).getWeight();
+                        internal[struct[neigh_index]] += edgeWeights[k];
                     } else {
                         internal[struct[neigh_index]]++;
                     }
@@ -579,10 +525,14 @@ public class Modularity implements Statistics, LongTask {
         return modularity;
     }
 
+    public int getCommunityCount() {
+        return communityCount;
+    }
+
     public String getReport() {
         //Distribution series
         Map<Integer, Integer> sizeDist = new HashMap<Integer, Integer>();
-        for(Node n : structure.graph.getNodes()) {
+        for(Node n : graph.getNodes()) {
             Integer v = (Integer) n.getAttribute(MODULARITY_CLASS);
             if(!sizeDist.containsKey(v)) {
                 sizeDist.put(v, 0);
@@ -621,7 +571,7 @@ public class Modularity implements Statistics, LongTask {
                 + "<br> <h2> Results: </h2>"
                 + "Modularity: " + f.format(modularity) + "<br>"
                 + "Modularity with resolution: " + f.format(modularityResolution) + "<br>"
-                + "Number of Communities: " + structure.communities.size()
+                + "Number of Communities: " + communityCount
                 + "<br /><br />"+imageFile
                 + "<br /><br />" + "<h2> Algorithm: </h2>"
                 + "Vincent D Blondel, Jean-Loup Guillaume, Renaud Lambiotte, Etienne Lefebvre, <i>Fast unfolding of communities in large networks</i>, in Journal of Statistical Mechanics: Theory and Experiment 2008 (10), P1000<br />"
@@ -632,21 +582,19 @@ public class Modularity implements Statistics, LongTask {
         return report;
     }
 
-    private double q(int node, Community community) {
-        Float edgesToFloat = structure.nodeConnectionsWeight[node].get(community);
-        double edgesTo = 0;
-        if (edgesToFloat != null) {
-            edgesTo = edgesToFloat.doubleValue();
-        }
-        double weightSum = community.weightSum;
-        double nodeWeight = structure.weights[node];
-        double qValue = resolution * edgesTo - (nodeWeight * weightSum) / (2.0 * structure.graphWeightSum);
-        if ((structure.nodeCommunities[node] == community) && (structure.nodeCommunities[node].size() > 1)) {
-            qValue = resolution * edgesTo - (nodeWeight * (weightSum - nodeWeight)) / (2.0 * structure.graphWeightSum);
-        }
-        if ((structure.nodeCommunities[node] == community) && (structure.nodeCommunities[node].size() == 1)) {
-            qValue = 0.;
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the number of threads of the local moving phase. With more than
+     * one thread nodes are moved concurrently, which is faster on large
+     * graphs but makes the result depend on scheduling.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
         }
-        return qValue;
+        this.threadCount = threadCount;
     }
 }
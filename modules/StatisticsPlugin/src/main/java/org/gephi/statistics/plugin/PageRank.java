@@ -41,8 +41,14 @@ Portions Copyrighted 2011 Gephi Consortium.
  */
 package org.gephi.statistics.plugin;
 
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.gephi.attribute.api.Column;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeColumn;
@@ -50,10 +56,6 @@ import org.gephi.data.attributes.api.AttributeModel;
 import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeRow;
 import org.gephi.data.attributes.api.AttributeType;
-import org.gephi.graph.api.DirectedGraph;
-import org.gephi.graph.api.UndirectedGraph;
-import org.gephi.graph.api.Edge;
-import org.gephi.graph.api.EdgeIterable;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
@@ -81,7 +83,7 @@ public class PageRank implements Statistics, LongTask {
     /** */
     private ProgressTicket progress;
     /** */
-    private boolean isCanceled;
+    private volatile boolean isCanceled;
     /** */
     private double epsilon = 0.001;
     /** */
@@ -91,6 +93,21 @@ public class PageRank implements Statistics, LongTask {
     private double[] pageranks;
     /** */
     private boolean isDirected;
+    /** Seed the iteration with the previous values of the PageRank column */
+    private boolean warmStart = false;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    /** L1 distance between consecutive rank vectors, one entry per iteration */
+    private List<Double> residuals;
+    private boolean warmStarted;
+    private static final int CHUNK_SIZE = 4096;
+    //Iteration state, shared with the chunks
+    private int N;
+    private double[] temp;
+    private double[] weights;
+    private double[] inWeights;
+    private int[] outOffsets;
+    private int[] inOffsets;
+    private int[] inSources;
 
     public PageRank() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -123,129 +140,205 @@ public class PageRank implements Statistics, LongTask {
 
     public void execute(Graph hgraph, AttributeModel attributeModel) {
         isCanceled = false;
+        residuals = new ArrayList<Double>();
+        warmStarted = false;
 
         hgraph.readLock();
 
-        int N = hgraph.getNodeCount();
+        CompactGraph compact = CompactGraph.get(hgraph, isDirected);
+        N = compact.getNodeCount();
+        outOffsets = compact.getOutOffsets();
+        inOffsets = compact.getInOffsets();
+        inSources = compact.getInSources();
         pageranks = new double[N];
-        double[] temp = new double[N];
-        HashMap<Node, Integer> indicies = new HashMap<Node, Integer>();
-        int index = 0;
+        temp = new double[N];
 
         Progress.start(progress);
-        double[] weights = null;
+        weights = null;
+        inWeights = null;
         if (useEdgeWeight) {
             weights = new double[N];
-        }
-
-        for (Node s : hgraph.getNodes()) {
-            indicies.put(s, index);
-            pageranks[index] = 1.0f / N;
-            if (useEdgeWeight) {
+            double[] outWeights = compact.getOutWeights();
+            for (int i = 0; i < N; i++) {
                 double sum = 0;
-                EdgeIterable eIter;
-                if (isDirected) {
-                    eIter = ((DirectedGraph) hgraph).getOutEdges(s);
-                } else {
-                    eIter = ((UndirectedGraph) hgraph).getEdges(s);
+                for (int k = outOffsets[i]; k < outOffsets[i + 1]; k++) {
+                    sum += outWeights[k];
                 }
-                for (Edge edge : eIter) {
-                    sum += edge.getWeight();
-                }
-                weights[index] = sum;
+                weights[i] = sum;
             }
-            index++;
+            inWeights = compact.getInWeights();
         }
 
-        while (true) {
+        AttributeTable nodeTable = attributeModel.getNodeTable();
+        AttributeColumn pangeRanksCol = nodeTable.getColumn(PAGERANK);
+        if (warmStart && pangeRanksCol != null) {
+            warmStarted = seedFromColumn(compact);
+        }
+        if (!warmStarted) {
+            for (int i = 0; i < N; i++) {
+                pageranks[i] = 1.0f / N;
+            }
+        }
+
+        //Split the nodes into chunks of fixed size, so the result does not depend on the number of threads
+        int chunkCount = Math.max(1, (N + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        RankChunk[] chunks = new RankChunk[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            chunks[c] = new RankChunk(c * CHUNK_SIZE, Math.min(N, (c + 1) * CHUNK_SIZE));
+        }
+        int poolSize = Math.min(threadCount, chunkCount);
+        ExecutorService pool = poolSize > 1 ? Executors.newFixedThreadPool(poolSize) : null;
+        try {
+            //Teleportation and dangling nodes share of the first iteration, then each chunk computes the next one
             double r = 0;
-            for (Node s : hgraph.getNodes()) {
-                int s_index = indicies.get(s);
-                boolean out;
-                if (isDirected) {
-                    out = ((DirectedGraph) hgraph).getOutDegree(s) > 0;
-                } else {
-                    out = hgraph.getDegree(s) > 0;
-                }
+            for (int s_index = 0; s_index < N; s_index++) {
+                r += teleport(s_index, pageranks[s_index]);
+            }
 
-                if (out) {
-                    r += (1.0 - probability) * (pageranks[s_index] / N);
+            while (true) {
+                for (RankChunk chunk : chunks) {
+                    chunk.r = r;
+                }
+                if (pool == null) {
+                    for (RankChunk chunk : chunks) {
+                        chunk.run();
+                    }
                 } else {
-                    r += (pageranks[s_index] / N);
+                    ParallelTasks.invokeAll(pool, chunks);
                 }
                 if (isCanceled) {
                     hgraph.readUnlockAll();
                     return;
                 }
-            }
 
-            boolean done = true;
-            for (Node s : hgraph.getNodes()) {
-                int s_index = indicies.get(s);
-                temp[s_index] = r;
-
-                EdgeIterable eIter;
-                if (isDirected) {
-                    eIter = ((DirectedGraph) hgraph).getInEdges(s);
-                } else {
-                    eIter = ((UndirectedGraph) hgraph).getEdges(s);
+                boolean done = true;
+                double residual = 0;
+                r = 0;
+                for (RankChunk chunk : chunks) {
+                    done &= chunk.done;
+                    residual += chunk.residual;
+                    r += chunk.nextR;
                 }
+                residuals.add(residual);
 
-                for (Edge edge : eIter) {
-                    Node neighbor = hgraph.getOpposite(s, edge);
-                    int neigh_index = indicies.get(neighbor);
-                    int normalize;
-                    if (isDirected) {
-                        normalize = ((DirectedGraph) hgraph).getOutDegree(neighbor);
-                    } else {
-                        normalize = ((UndirectedGraph) hgraph).getDegree(neighbor);
-                    }
-                    if (useEdgeWeight) {
-                        double weight = edge.getWeight() / weights[neigh_index];
-                        temp[s_index] += probability * pageranks[neigh_index] * weight;
-                    } else {
-                        temp[s_index] += probability * (pageranks[neigh_index] / normalize);
-                    }
-
-                }
-
-                if ((temp[s_index] - pageranks[s_index]) / pageranks[s_index] >= epsilon) {
-                    done = false;
-                }
-
-                if (isCanceled) {
-                    hgraph.readUnlockAll();
-                    return;
+                double[] swap = pageranks;
+                pageranks = temp;
+                temp = swap;
+                if (done) {
+                    break;
                 }
-
             }
-            pageranks = temp;
-            temp = new double[N];
-            if ((done) || (isCanceled)) {
-                break;
+        } catch (RuntimeException ex) {
+            temp = weights = inWeights = null;
+            outOffsets = inOffsets = inSources = null;
+            hgraph.readUnlockAll();
+            throw ex;
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
             }
-
         }
+        temp = weights = inWeights = null;
+        outOffsets = inOffsets = inSources = null;
 
-        AttributeTable nodeTable = attributeModel.getNodeTable();
-        AttributeColumn pangeRanksCol = nodeTable.getColumn(PAGERANK);
         if (pangeRanksCol == null) {
             pangeRanksCol = nodeTable.addColumn(PAGERANK, "PageRank", AttributeType.DOUBLE, AttributeOrigin.COMPUTED, new Double(0));
         }
 
-        for (Node s : hgraph.getNodes()) {
-            int s_index = indicies.get(s);
-         //   AttributeRow row = (AttributeRow) s.getNodeData().getAttributes();
-            s.setAttribute((Column) pangeRanksCol, pageranks[s_index]);
+        for (int s_index = 0; s_index < N; s_index++) {
+            compact.getNode(s_index).setAttribute((Column) pangeRanksCol, pageranks[s_index]);
         }
 
         hgraph.readUnlockAll();
     }
 
     /**
+     * Seeds <code>pageranks</code> with the values of the PageRank column.
+     * Nodes without a positive value, for instance nodes added since the last
+     * run, start at <code>1 / N</code>. The vector is then scaled to sum to
+     * one, so the fixed point is the same as from the uniform vector.
      *
-     * @return
+     * @return <code>false</code> if no node had a previous value
      */
+    private boolean seedFromColumn(CompactGraph compact) {
+        boolean found = false;
+        double sum = 0;
+        for (int i = 0; i < N; i++) {
+            Object value = compact.getNode(i).getAttribute(PAGERANK);
+            double rank = value instanceof Number ? ((Number) value).doubleValue() : 0;
+            if (rank > 0 && !Double.isInfinite(rank)) {
+                found = true;
+            } else {
+                rank = 1.0 / N;
+            }
+            pageranks[i] = rank;
+            sum += rank;
+        }
+        if (!found) {
+            return false;
+        }
+        for (int i = 0; i < N; i++) {
+            pageranks[i] /= sum;
+        }
+        return true;
+    }
+
+    private double teleport(int s_index, double rank) {
+        if (outOffsets[s_index + 1] > outOffsets[s_index]) {
+            return (1.0 - probability) * (rank / N);
+        }
+        return rank / N;
+    }
+
+    /**
+     * One power iteration step for the nodes in <code>[from, to)</code>.
+     * Reads <code>pageranks</code> and writes <code>temp</code>, so chunks
+     * never write to the same entries.
+     */
+    private class RankChunk implements Runnable {
+
+        private final int from;
+        private final int to;
+        private double r;
+        private double nextR;
+        private double residual;
+        private boolean done;
+
+        RankChunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public void run() {
+            done = true;
+            residual = 0;
+            nextR = 0;
+            for (int s_index = from; s_index < to; s_index++) {
+                double rank = r;
+                for (int k = inOffsets[s_index]; k < inOffsets[s_index + 1]; k++) {
+                    int neigh_index = inSources[k];
+                    if (useEdgeWeight) {
+                        double weight = inWeights[k] / weights[neigh_index];
+                        rank += probability * pageranks[neigh_index] * weight;
+                    } else {
+                        int normalize = outOffsets[neigh_index + 1] - outOffsets[neigh_index];
+                        rank += probability * (pageranks[neigh_index] / normalize);
+                    }
+                }
+                temp[s_index] = rank;
+
+                if ((rank - pageranks[s_index]) / pageranks[s_index] >= epsilon) {
+                    done = false;
+                }
+                residual += Math.abs(rank - pageranks[s_index]);
+                nextR += teleport(s_index, rank);
+                if (isCanceled) {
+                    return;
+                }
+            }
+        }
+    }
+
     public String getReport() {
         //distribution of values
         Map<Double, Integer> dist = new HashMap<Double, Integer>();
@@ -283,9 +376,13 @@ public class PageRank implements Statistics, LongTask {
                 + "<hr> <br />"
                 + "<h2> Parameters: </h2>"
                 + "Epsilon = " + epsilon + "<br>"
-                + "Probability = " + probability
+                + "Probability = " + probability + "<br>"
+                + "Warm start = " + (warmStarted ? "yes" : (warmStart ? "no previous values" : "no"))
                 + "<br> <h2> Results: </h2>"
                 + imageFile
+                + "<br /><br />" + "<h2> Convergence: </h2>"
+                + "Number of iterations: " + residuals.size() + "<br />"
+                + residualTable()
                 + "<br /><br />" + "<h2> Algorithm: </h2>"
                 + "Sergey Brin, Lawrence Page, <i>The Anatomy of a Large-Scale Hypertextual Web Search Engine</i>, in Proceedings of the seventh International Conference on the World Wide Web (WWW1998):107-117<br />"
                 + "</BODY> </HTML>";
@@ -294,6 +391,15 @@ public class PageRank implements Statistics, LongTask {
 
     }
 
+    private String residualTable() {
+        NumberFormat f = new DecimalFormat("0.###E0");
+        StringBuilder table = new StringBuilder("<table><tr><th>Iteration</th><th>L1 residual</th></tr>");
+        for (int i = 0; i < residuals.size(); i++) {
+            table.append("<tr><td>").append(i + 1).append("</td><td>").append(f.format(residuals.get(i))).append("</td></tr>");
+        }
+        return table.append("</table>").toString();
+    }
+
     /**
      *
      * @return
@@ -350,4 +456,36 @@ public class PageRank implements Statistics, LongTask {
     public void setUseEdgeWeight(boolean useEdgeWeight) {
         this.useEdgeWeight = useEdgeWeight;
     }
+
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    /**
+     * Starts the iteration from the values already in the PageRank column
+     * instead of the uniform vector. After small changes to the graph, for
+     * instance an append import, this converges in a few iterations.
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Returns the L1 distance between consecutive rank vectors, one entry per
+     * iteration of the last run.
+     */
+    public List<Double> getResiduals() {
+        return residuals;
+    }
 }
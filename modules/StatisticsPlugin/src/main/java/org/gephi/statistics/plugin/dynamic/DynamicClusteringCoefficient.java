@@ -51,6 +51,7 @@ import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
 import org.gephi.data.attributes.type.DynamicDouble;
+import org.gephi.data.attributes.type.DynamicDoubleBuilder;
 import org.gephi.data.attributes.type.Interval;
 import org.gephi.dynamic.api.DynamicController;
 import org.gephi.dynamic.api.DynamicModel;
@@ -95,6 +96,9 @@ public class DynamicClusteringCoefficient implements DynamicStatistics, LongTask
     //Average
     private AttributeColumn dynamicAverageCoefficientColumn;
     private DynamicDouble averages;
+    private DynamicDoubleBuilder averageBuilder;
+    //Series, written to the column at the end
+    private Map<Node, DynamicDoubleBuilder> coefficientBuilders;
 
     public DynamicClusteringCoefficient() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -106,6 +110,8 @@ public class DynamicClusteringCoefficient implements DynamicStatistics, LongTask
     public void execute(GraphModel graphModel, AttributeModel attributeModel) {
         this.graphModel = graphModel;
         this.isDirected = graphModel.isDirected();
+        this.averageBuilder = new DynamicDoubleBuilder(averages);
+        this.coefficientBuilders = new HashMap<Node, DynamicDoubleBuilder>();
 
         //Attributes cols
         if (!averageOnly) {
@@ -189,14 +195,12 @@ public class DynamicClusteringCoefficient implements DynamicStatistics, LongTask
             int i = 0;
             for (Node n : graph.getNodes()) {
                 double coef = coefficients[i++];
-                Interval<Double> valInterval = new Interval<Double>(interval, coef);
-                DynamicDouble val = (DynamicDouble) n.getAttributes().getValue(dynamicCoefficientColumn.getIndex());
-                if (val == null) {
-                    val = new DynamicDouble(valInterval);
-                } else {
-                    val = new DynamicDouble(val, valInterval);
+                DynamicDoubleBuilder builder = coefficientBuilders.get(n);
+                if (builder == null) {
+                    builder = new DynamicDoubleBuilder((DynamicDouble) n.getAttributes().getValue(dynamicCoefficientColumn.getIndex()));
+                    coefficientBuilders.put(n, builder);
                 }
-                n.getAttributes().setValue(dynamicCoefficientColumn.getIndex(), val);
+                builder.add(interval, coef);
                 if (cancel) {
                     break;
                 }
@@ -208,12 +212,18 @@ public class DynamicClusteringCoefficient implements DynamicStatistics, LongTask
         //Average
         double avg = clusteringCoefficientStat.getAverageClusteringCoefficient();
 
-        averages = new DynamicDouble(averages, new Interval<Double>(interval.getLow(), interval.getHigh(), false, true, avg));
+        averageBuilder.add(interval.getLow(), interval.getHigh(), false, true, avg);
     }
 
     public void end() {
         clusteringCoefficientStat = null;
 
+        for (Map.Entry<Node, DynamicDoubleBuilder> entry : coefficientBuilders.entrySet()) {
+            entry.getKey().getAttributes().setValue(dynamicCoefficientColumn.getIndex(), entry.getValue().build());
+        }
+        coefficientBuilders.clear();
+        averages = averageBuilder.build();
+
         graphModel.getGraphVisible().getAttributes().setValue(dynamicAverageCoefficientColumn.getIndex(), averages);
     }
 
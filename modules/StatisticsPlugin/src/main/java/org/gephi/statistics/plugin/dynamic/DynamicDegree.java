@@ -51,16 +51,20 @@ import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
 import org.gephi.data.attributes.type.DynamicDouble;
+import org.gephi.data.attributes.type.DynamicDoubleBuilder;
 import org.gephi.data.attributes.type.DynamicInteger;
+import org.gephi.data.attributes.type.DynamicIntegerBuilder;
 import org.gephi.data.attributes.type.Interval;
 import org.gephi.graph.api.DirectedGraph;
+import org.gephi.graph.api.Edge;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphController;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.graph.api.GraphView;
 import org.gephi.graph.api.Node;
 import org.gephi.statistics.plugin.ChartUtils;
-import org.gephi.statistics.spi.DynamicStatistics;
+import org.gephi.statistics.spi.IncrementalDynamicStatistics;
+import org.gephi.statistics.spi.WindowDelta;
 import org.gephi.utils.longtask.spi.LongTask;
 import org.gephi.utils.progress.ProgressTicket;
 import org.jfree.chart.ChartFactory;
@@ -75,7 +79,7 @@ import org.openide.util.NbBundle;
  *
  * @author Mathieu Bastian
  */
-public class DynamicDegree implements DynamicStatistics, LongTask {
+public class DynamicDegree implements IncrementalDynamicStatistics, LongTask {
 
     public static final String DYNAMIC_AVGDEGREE = "dynamic_avgdegree";
     public static final String DYNAMIC_INDEGREE = "dynamic_indegree";
@@ -96,6 +100,14 @@ public class DynamicDegree implements DynamicStatistics, LongTask {
     //Average
     private AttributeColumn dynamicAverageDegreeColumn;
     private DynamicDouble averages;
+    private DynamicDoubleBuilder averageBuilder;
+    //Series, written to the columns at the end
+    private Map<Node, DynamicIntegerBuilder> degreeBuilders;
+    private Map<Node, DynamicIntegerBuilder> inDegreeBuilders;
+    private Map<Node, DynamicIntegerBuilder> outDegreeBuilders;
+    //Incremental, in and out degrees of the nodes in the window
+    private Map<Node, int[]> degrees;
+    private int edgeCount;
 
     public DynamicDegree() {
         GraphController graphController = Lookup.getDefault().lookup(GraphController.class);
@@ -107,6 +119,12 @@ public class DynamicDegree implements DynamicStatistics, LongTask {
     public void execute(GraphModel graphModel, AttributeModel attributeModel) {
         this.graphModel = graphModel;
         this.isDirected = graphModel.isDirected();
+        this.degrees = new HashMap<Node, int[]>();
+        this.edgeCount = 0;
+        this.averageBuilder = new DynamicDoubleBuilder(averages);
+        this.degreeBuilders = new HashMap<Node, DynamicIntegerBuilder>();
+        this.inDegreeBuilders = new HashMap<Node, DynamicIntegerBuilder>();
+        this.outDegreeBuilders = new HashMap<Node, DynamicIntegerBuilder>();
 
         //Attributes cols
         if (!averageOnly) {
@@ -192,35 +210,10 @@ public class DynamicDegree implements DynamicStatistics, LongTask {
             int degree = graph.getDegree(n);
 
             if (!averageOnly) {
-                Interval<Integer> degreeInInterval = new Interval<Integer>(interval, degree);
-                DynamicInteger val = (DynamicInteger) n.getAttributes().getValue(dynamicDegreeColumn.getIndex());
-                if (val == null) {
-                    val = new DynamicInteger(degreeInInterval);
-                } else {
-                    val = new DynamicInteger(val, degreeInInterval);
-                }
-                n.getAttributes().setValue(dynamicDegreeColumn.getIndex(), val);
-
                 if (isDirected) {
-                    int indegree = directedGraph.getInDegree(n);
-                    Interval<Integer> inDegreeInInterval = new Interval<Integer>(interval, indegree);
-                    DynamicInteger inVal = (DynamicInteger) n.getAttributes().getValue(dynamicInDegreeColumn.getIndex());
-                    if (inVal == null) {
-                        inVal = new DynamicInteger(inDegreeInInterval);
-                    } else {
-                        inVal = new DynamicInteger(inVal, inDegreeInInterval);
-                    }
-                    n.getAttributes().setValue(dynamicInDegreeColumn.getIndex(), inVal);
-
-                    int outdegree = directedGraph.getOutDegree(n);
-                    Interval<Integer> outDegreeInInterval = new Interval<Integer>(interval, outdegree);
-                    DynamicInteger outVal = (DynamicInteger) n.getAttributes().getValue(dynamicOutDegreeColumn.getIndex());
-                    if (outVal == null) {
-                        outVal = new DynamicInteger(outDegreeInInterval);
-                    } else {
-                        outVal = new DynamicInteger(outVal, outDegreeInInterval);
-                    }
-                    n.getAttributes().setValue(dynamicOutDegreeColumn.getIndex(), outVal);
+                    writeDegrees(n, interval, degree, directedGraph.getInDegree(n), directedGraph.getOutDegree(n));
+                } else {
+                    writeDegrees(n, interval, degree, 0, 0);
                 }
             }
             sum += degree;
@@ -231,13 +224,76 @@ public class DynamicDegree implements DynamicStatistics, LongTask {
 
         double avg = sum / (double) graph.getNodeCount();
 
-        averages = new DynamicDouble(averages, new Interval<Double>(interval.getLow(), interval.getHigh(), false, true, avg));
+        averageBuilder.add(interval.getLow(), interval.getHigh(), false, true, avg);
+    }
+
+    public void loop(GraphView window, Interval interval, WindowDelta delta) {
+        //Update the degrees of the nodes in the window
+        for (Node n : delta.getAddedNodes()) {
+            degrees.put(n, new int[2]);
+        }
+        for (Edge e : delta.getRemovedEdges()) {
+            degrees.get(e.getSource())[1]--;
+            degrees.get(e.getTarget())[0]--;
+        }
+        for (Edge e : delta.getAddedEdges()) {
+            degrees.get(e.getSource())[1]++;
+            degrees.get(e.getTarget())[0]++;
+        }
+        for (Node n : delta.getRemovedNodes()) {
+            degrees.remove(n);
+        }
+        edgeCount += delta.getAddedEdges().length - delta.getRemovedEdges().length;
+
+        if (!averageOnly) {
+            for (Map.Entry<Node, int[]> entry : degrees.entrySet()) {
+                int[] d = entry.getValue();
+                writeDegrees(entry.getKey(), interval, d[0] + d[1], d[0], d[1]);
+                if (cancel) {
+                    break;
+                }
+            }
+        }
+
+        double avg = 2.0 * edgeCount / degrees.size();
+
+        averageBuilder.add(interval.getLow(), interval.getHigh(), false, true, avg);
+    }
+
+    private void writeDegrees(Node n, Interval interval, int degree, int indegree, int outdegree) {
+        builder(degreeBuilders, n, dynamicDegreeColumn).add(interval, degree);
+        if (isDirected) {
+            builder(inDegreeBuilders, n, dynamicInDegreeColumn).add(interval, indegree);
+            builder(outDegreeBuilders, n, dynamicOutDegreeColumn).add(interval, outdegree);
+        }
+    }
+
+    private DynamicIntegerBuilder builder(Map<Node, DynamicIntegerBuilder> builders, Node n, AttributeColumn column) {
+        DynamicIntegerBuilder builder = builders.get(n);
+        if (builder == null) {
+            builder = new DynamicIntegerBuilder((DynamicInteger) n.getAttributes().getValue(column.getIndex()));
+            builders.put(n, builder);
+        }
+        return builder;
     }
 
     public void end() {
+        writeColumn(degreeBuilders, dynamicDegreeColumn);
+        if (isDirected) {
+            writeColumn(inDegreeBuilders, dynamicInDegreeColumn);
+            writeColumn(outDegreeBuilders, dynamicOutDegreeColumn);
+        }
+        averages = averageBuilder.build();
         graphModel.getGraphVisible().getAttributes().setValue(dynamicAverageDegreeColumn.getIndex(), averages);
     }
 
+    private void writeColumn(Map<Node, DynamicIntegerBuilder> builders, AttributeColumn column) {
+        for (Map.Entry<Node, DynamicIntegerBuilder> entry : builders.entrySet()) {
+            entry.getKey().getAttributes().setValue(column.getIndex(), entry.getValue().build());
+        }
+        builders.clear();
+    }
+
     public void setBounds(Interval bounds) {
         this.bounds = bounds;
     }
@@ -51,12 +51,14 @@ import org.gephi.data.attributes.api.AttributeOrigin;
 import org.gephi.data.attributes.api.AttributeTable;
 import org.gephi.data.attributes.api.AttributeType;
 import org.gephi.data.attributes.type.DynamicInteger;
+import org.gephi.data.attributes.type.DynamicIntegerBuilder;
 import org.gephi.data.attributes.type.Interval;
 import org.gephi.graph.api.Graph;
 import org.gephi.graph.api.GraphModel;
 import org.gephi.graph.api.GraphView;
 import org.gephi.statistics.plugin.ChartUtils;
-import org.gephi.statistics.spi.DynamicStatistics;
+import org.gephi.statistics.spi.IncrementalDynamicStatistics;
+import org.gephi.statistics.spi.WindowDelta;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
@@ -68,7 +70,7 @@ import org.openide.util.NbBundle;
  *
  * @author Sébastien Heymann
  */
-public class DynamicNbNodes implements DynamicStatistics {
+public class DynamicNbNodes implements IncrementalDynamicStatistics {
 
     public static final String NB_NODES = "dynamic nodecount";
     //Data
@@ -79,9 +81,12 @@ public class DynamicNbNodes implements DynamicStatistics {
     //Average
     private AttributeColumn nbNodesCol;
     private DynamicInteger counts;
+    private DynamicIntegerBuilder countBuilder;
+    private int count;
 
     public void execute(GraphModel graphModel, AttributeModel attributeModel) {
         this.graphModel = graphModel;
+        this.count = 0;
 
         //Column
         AttributeTable graphTable = attributeModel.getGraphTable();
@@ -90,6 +95,7 @@ public class DynamicNbNodes implements DynamicStatistics {
             nbNodesCol = graphTable.addColumn(NB_NODES, NbBundle.getMessage(DynamicNbNodes.class, "DynamicNbNodes.graphcolumn.NbNodes"), AttributeType.DYNAMIC_INT, AttributeOrigin.COMPUTED, new DynamicInteger());
         }
         counts = new DynamicInteger();
+        countBuilder = new DynamicIntegerBuilder();
         graphModel.getGraphVisible().getAttributes().setValue(nbNodesCol.getIndex(), counts);
     }
 
@@ -141,12 +147,19 @@ public class DynamicNbNodes implements DynamicStatistics {
     public void loop(GraphView window, Interval interval) {
         Graph graph = graphModel.getGraph(window);
 
-        int count = graph.getNodeCount();
+        count = graph.getNodeCount();
 
-        counts = new DynamicInteger(counts, new Interval<Integer>(interval.getLow(), interval.getHigh(), false, true, count));
+        countBuilder.add(interval.getLow(), interval.getHigh(), false, true, count);
+    }
+
+    public void loop(GraphView window, Interval interval, WindowDelta delta) {
+        count += delta.getAddedNodes().length - delta.getRemovedNodes().length;
+
+        countBuilder.add(interval.getLow(), interval.getHigh(), false, true, count);
     }
 
     public void end() {
+        counts = countBuilder.build();
         graphModel.getGraphVisible().getAttributes().setValue(nbNodesCol.getIndex(), counts);
     }
 
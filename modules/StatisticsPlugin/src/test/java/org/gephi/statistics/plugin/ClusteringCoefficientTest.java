@@ -0,0 +1,129 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.statistics.plugin;
+
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.graph.store.GraphModelImpl;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Triangle counts of the undirected clustering coefficient.
+ */
+public class ClusteringCoefficientTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testTriangles() {
+        //A 4-clique, node 4 closing a triangle with 0 and 1, a self-loop on 4 and node 5 hanging from 4
+        GraphModel graphModel = new GraphModelImpl();
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        Node[] nodes = addNodes(graphModel, 6);
+        for (int i = 0; i < 4; i++) {
+            for (int j = i + 1; j < 4; j++) {
+                addEdge(graphModel, nodes[i], nodes[j]);
+            }
+        }
+        addEdge(graphModel, nodes[4], nodes[0]);
+        addEdge(graphModel, nodes[4], nodes[1]);
+        addEdge(graphModel, nodes[4], nodes[4]);
+        addEdge(graphModel, nodes[4], nodes[5]);
+
+        ClusteringCoefficient clusteringCoefficient = new ClusteringCoefficient();
+        clusteringCoefficient.triangles(graph);
+
+        double[] triangles = clusteringCoefficient.getTriangesReuslts();
+        assertEquals(4, triangles[0], EPSILON);
+        assertEquals(4, triangles[1], EPSILON);
+        assertEquals(3, triangles[2], EPSILON);
+        assertEquals(3, triangles[3], EPSILON);
+        //The self-loop never closes a triangle
+        assertEquals(1, triangles[4], EPSILON);
+        assertEquals(0, triangles[5], EPSILON);
+
+        double[] coefficients = clusteringCoefficient.getCoefficientReuslts();
+        assertEquals(2.0 / 3, coefficients[0], EPSILON);
+        assertEquals(1, coefficients[2], EPSILON);
+        assertEquals(0, coefficients[5], EPSILON);
+    }
+
+    @Test
+    public void testCompleteGraph() {
+        //Nodes have more than 64 higher ranked neighbors, and are intersected with bitsets
+        int n = 70;
+        GraphModel graphModel = new GraphModelImpl();
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        Node[] nodes = addNodes(graphModel, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                addEdge(graphModel, nodes[i], nodes[j]);
+            }
+        }
+
+        for (int threadCount : new int[]{1, 4}) {
+            ClusteringCoefficient clusteringCoefficient = new ClusteringCoefficient();
+            clusteringCoefficient.setThreadCount(threadCount);
+            clusteringCoefficient.triangles(graph);
+
+            double[] triangles = clusteringCoefficient.getTriangesReuslts();
+            for (int i = 0; i < n; i++) {
+                assertEquals((n - 1) * (n - 2) / 2, triangles[i], EPSILON);
+            }
+            assertEquals(1, clusteringCoefficient.getAverageClusteringCoefficient(), EPSILON);
+        }
+    }
+
+    private static Node[] addNodes(GraphModel graphModel, int count) {
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = graphModel.factory().newNode(String.valueOf(i));
+            graphModel.getUndirectedGraph().addNode(nodes[i]);
+        }
+        return nodes;
+    }
+
+    private static void addEdge(GraphModel graphModel, Node source, Node target) {
+        graphModel.getUndirectedGraph().addEdge(graphModel.factory().newEdge(source, target, 1f, false));
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.statistics.plugin;
+
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.store.GraphModelImpl;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Weakly and strongly connected components on small fixed graphs and on
+ * long chains.
+ */
+public class ConnectedComponentsTest {
+
+    @Test
+    public void testWeaklyConnected() {
+        //{0, 1, 2}, {3, 4}, {5} and the triangle {6, 7, 8}
+        GraphModel graphModel = new GraphModelImpl();
+        Node[] nodes = addNodes(graphModel, 9);
+        addEdge(graphModel, nodes[0], nodes[1]);
+        addEdge(graphModel, nodes[1], nodes[2]);
+        addEdge(graphModel, nodes[3], nodes[4]);
+        addEdge(graphModel, nodes[6], nodes[7]);
+        addEdge(graphModel, nodes[7], nodes[8]);
+        addEdge(graphModel, nodes[8], nodes[6]);
+
+        ConnectedComponents connectedComponents = new ConnectedComponents();
+        connectedComponents.weaklyConnected(graphModel.getUndirectedGraph(), null);
+
+        assertEquals(4, connectedComponents.getConnectedComponentsCount());
+        //Numbered in the order of their first node
+        assertArrayEquals(new int[]{3, 2, 1, 3}, connectedComponents.getComponentsSize());
+        assertEquals(0, connectedComponents.getGiantComponent());
+    }
+
+    @Test
+    public void testStronglyConnected() {
+        //Cycle 0 -> 1 -> 2 -> 0, then 2 -> 3, 3 <-> 4, isolated 5 and 6 -> 7
+        GraphModel graphModel = new GraphModelImpl();
+        Node[] nodes = addNodes(graphModel, 8);
+        addEdge(graphModel, nodes[0], nodes[1]);
+        addEdge(graphModel, nodes[1], nodes[2]);
+        addEdge(graphModel, nodes[2], nodes[0]);
+        addEdge(graphModel, nodes[2], nodes[3]);
+        addEdge(graphModel, nodes[3], nodes[4]);
+        addEdge(graphModel, nodes[4], nodes[3]);
+        addEdge(graphModel, nodes[6], nodes[7]);
+
+        ConnectedComponents connectedComponents = new ConnectedComponents();
+        connectedComponents.setDirected(true);
+        connectedComponents.top_tarjans(graphModel.getDirectedGraph(), null);
+        connectedComponents.weaklyConnected(graphModel.getUndirectedGraph(), null);
+
+        //{0, 1, 2}, {3, 4}, {5}, {6} and {7}
+        assertEquals(5, connectedComponents.getStronglyConnectedComponentsCount());
+        assertEquals(3, connectedComponents.getConnectedComponentsCount());
+        assertArrayEquals(new int[]{5, 1, 2}, connectedComponents.getComponentsSize());
+    }
+
+    @Test
+    public void testLongChains() {
+        //Three directed chains of 1000 nodes, the last node of each one linked back to its first node
+        int length = 1000;
+        GraphModel graphModel = new GraphModelImpl();
+        Node[] nodes = addNodes(graphModel, 3 * length);
+        for (int c = 0; c < 3; c++) {
+            for (int i = 0; i < length - 1; i++) {
+                addEdge(graphModel, nodes[c * length + i], nodes[c * length + i + 1]);
+            }
+            addEdge(graphModel, nodes[c * length + length - 1], nodes[c * length]);
+        }
+
+        ConnectedComponents connectedComponents = new ConnectedComponents();
+        connectedComponents.setDirected(true);
+        //The union of the edges runs in several chunks
+        connectedComponents.setThreadCount(4);
+        connectedComponents.weaklyConnected(graphModel.getUndirectedGraph(), null);
+        connectedComponents.top_tarjans(graphModel.getDirectedGraph(), null);
+
+        assertEquals(3, connectedComponents.getConnectedComponentsCount());
+        assertArrayEquals(new int[]{length, length, length}, connectedComponents.getComponentsSize());
+        assertEquals(3, connectedComponents.getStronglyConnectedComponentsCount());
+    }
+
+    @Test
+    public void testSelfLoops() {
+        //Seed 0 with a self-loop linked to 1, and 2 with only a self-loop
+        GraphModel graphModel = new GraphModelImpl();
+        Node[] nodes = addNodes(graphModel, 3);
+        addEdge(graphModel, nodes[0], nodes[0]);
+        addEdge(graphModel, nodes[0], nodes[1]);
+        addEdge(graphModel, nodes[1], nodes[0]);
+        addEdge(graphModel, nodes[2], nodes[2]);
+
+        ConnectedComponents connectedComponents = new ConnectedComponents();
+        connectedComponents.setDirected(true);
+        connectedComponents.weaklyConnected(graphModel.getUndirectedGraph(), null);
+        connectedComponents.top_tarjans(graphModel.getDirectedGraph(), null);
+
+        //Seeds are counted once
+        assertEquals(2, connectedComponents.getConnectedComponentsCount());
+        assertArrayEquals(new int[]{2, 1}, connectedComponents.getComponentsSize());
+        assertEquals(2, connectedComponents.getStronglyConnectedComponentsCount());
+    }
+
+    @Test
+    public void testFinishedComponents() {
+        //Cycle 0 <-> 1, 2 -> 0 and 2 <-> 3, 4 -> 2: edges to components already closed don't merge them
+        GraphModel graphModel = new GraphModelImpl();
+        Node[] nodes = addNodes(graphModel, 5);
+        addEdge(graphModel, nodes[0], nodes[1]);
+        addEdge(graphModel, nodes[1], nodes[0]);
+        addEdge(graphModel, nodes[2], nodes[0]);
+        addEdge(graphModel, nodes[2], nodes[3]);
+        addEdge(graphModel, nodes[3], nodes[2]);
+        addEdge(graphModel, nodes[4], nodes[2]);
+
+        ConnectedComponents connectedComponents = new ConnectedComponents();
+        connectedComponents.setDirected(true);
+        connectedComponents.top_tarjans(graphModel.getDirectedGraph(), null);
+
+        //{0, 1}, {2, 3} and {4}
+        assertEquals(3, connectedComponents.getStronglyConnectedComponentsCount());
+    }
+
+    private static Node[] addNodes(GraphModel graphModel, int count) {
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = graphModel.factory().newNode(String.valueOf(i));
+            graphModel.getDirectedGraph().addNode(nodes[i]);
+        }
+        return nodes;
+    }
+
+    private static void addEdge(GraphModel graphModel, Node source, Node target) {
+        graphModel.getDirectedGraph().addEdge(graphModel.factory().newEdge(source, target, 1f, true));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ Copyright 2008-2010 Gephi
+ Website : http://www.gephi.org
+
+ This file is part of Gephi.
+
+ DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+
+ Copyright 2011 Gephi Consortium. All rights reserved.
+
+ The contents of this file are subject to the terms of either the GNU
+ General Public License Version 3 only ("GPL") or the Common
+ Development and Distribution License("CDDL") (collectively, the
+ "License"). You may not use this file except in compliance with the
+ License. You can obtain a copy of the License at
+ http://gephi.org/about/legal/license-notice/
+ or /cddl-1.0.txt and /gpl-3.0.txt. See the License for the
+ specific language governing permissions and limitations under the
+ License.  When distributing the software, include this License Header
+ Notice in each file and include the License files at
+ /cddl-1.0.txt and /gpl-3.0.txt. If applicable, add the following below the
+ License Header, with the fields enclosed by brackets [] replaced by
+ your own identifying information:
+ "Portions Copyrighted [year] [name of copyright owner]"
+
+ If you wish your version of this file to be governed by only the CDDL
+ or only the GPL Version 3, indicate your decision by adding
+ "[Contributor] elects to include this software in this distribution
+ under the [CDDL or GPL Version 3] license." If you do not indicate a
+ single choice of license, a recipient has the option to distribute
+ your version of this file under either the CDDL, the GPL Version 3 or
+ to extend the choice of license to its licensees as provided above.
+ However, if you add GPL Version 3 code and therefore, elected the GPL
+ Version 3 license, then the option applies only if the new code is
+ made subject to such option by the copyright holder.
+
+ Contributor(s):
+
+ Portions Copyrighted 2011 Gephi Consortium.
+ */
+package org.gephi.statistics.plugin;
+
+import org.gephi.graph.api.GraphModel;
+import org.gephi.graph.api.Node;
+import org.gephi.graph.api.UndirectedGraph;
+import org.gephi.graph.store.GraphModelImpl;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Community detection on rings of 4-cliques, each clique joined to the next
+ * one by a single edge, and on disjoint pairs of nodes. The expected
+ * communities are the cliques and the pairs.
+ */
+public class ModularityTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testTwoCliques() {
+        Modularity modularity = new Modularity();
+        modularity.execute(newCliques(2), null);
+
+        assertEquals(2, modularity.getCommunityCount());
+        //13 edges, 6 internal ones and a degree sum of 13 per clique
+        assertEquals(2 * (6.0 / 13 - 0.25), modularity.getModularity(), EPSILON);
+    }
+
+    @Test
+    public void testThreeCliques() {
+        Modularity modularity = new Modularity();
+        modularity.execute(newCliques(3), null);
+
+        assertEquals(3, modularity.getCommunityCount());
+        //21 edges, 6 internal ones and a degree sum of 14 per clique
+        assertEquals(3 * (6.0 / 21 - 1.0 / 9), modularity.getModularity(), EPSILON);
+    }
+
+    @Test
+    public void testParallelMoving() {
+        Modularity modularity = new Modularity();
+        modularity.setThreadCount(4);
+        modularity.execute(newCliques(3), null);
+
+        assertEquals(3, modularity.getCommunityCount());
+        assertEquals(3 * (6.0 / 21 - 1.0 / 9), modularity.getModularity(), EPSILON);
+    }
+
+    @Test(timeout = 10000)
+    public void testParallelSingletons() {
+        //Both nodes are moved at the same time, each one towards the other one
+        Modularity modularity = new Modularity();
+        modularity.setThreadCount(2);
+        modularity.execute(newPairs(1), null);
+
+        assertEquals(1, modularity.getCommunityCount());
+        assertEquals(0.0, modularity.getModularity(), EPSILON);
+    }
+
+    @Test(timeout = 10000)
+    public void testParallelPairs() {
+        Modularity modularity = new Modularity();
+        modularity.setThreadCount(2);
+        modularity.execute(newPairs(1000), null);
+
+        assertEquals(1000, modularity.getCommunityCount());
+        //1000 edges, each one internal with a degree sum of 2
+        assertEquals(1 - 1.0 / 1000, modularity.getModularity(), EPSILON);
+    }
+
+    private static UndirectedGraph newPairs(int pairCount) {
+        GraphModel graphModel = new GraphModelImpl();
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        for (int p = 0; p < pairCount; p++) {
+            Node first = graphModel.factory().newNode(String.valueOf(2 * p));
+            Node second = graphModel.factory().newNode(String.valueOf(2 * p + 1));
+            graph.addNode(first);
+            graph.addNode(second);
+            graph.addEdge(graphModel.factory().newEdge(first, second, 1f, false));
+        }
+        return graph;
+    }
+
+    private static UndirectedGraph newCliques(int cliqueCount) {
+        GraphModel graphModel = new GraphModelImpl();
+        UndirectedGraph graph = graphModel.getUndirectedGraph();
+        Node[] nodes = new Node[cliqueCount * 4];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graphModel.factory().newNode(String.valueOf(i));
+            graph.addNode(nodes[i]);
+        }
+        for (int c = 0; c < cliqueCount; c++) {
+            for (int i = 0; i < 4; i++) {
+                for (int j = i + 1; j < 4; j++) {
+                    graph.addEdge(graphModel.factory().newEdge(nodes[4 * c + i], nodes[4 * c + j], 1f, false));
+                }
+            }
+        }
+        //Last node of each clique to the first node of the next one, two cliques share one edge
+        int bridgeCount = cliqueCount == 2 ? 1 : cliqueCount;
+        for (int c = 0; c < bridgeCount; c++) {
+            graph.addEdge(graphModel.factory().newEdge(nodes[4 * c + 3], nodes[(4 * c + 4) % nodes.length], 1f, false));
+        }
+        return graph;
+    }
+}
@@ -41,6 +41,7 @@ Portions Copyrighted 2011 Gephi Consortium.
 */
 package org.gephi.ui.statistics.plugin;
 
+import javax.swing.SpinnerNumberModel;
 import org.gephi.graph.api.GraphController;
 import org.openide.util.Lookup;
 
@@ -58,6 +59,10 @@ public class GraphDistancePanel extends javax.swing.JPanel {
         if(graphController.getModel().isUndirected()){
             directedRadioButton.setEnabled(false);
         }
+        threadsSpinner.setModel(new SpinnerNumberModel(1, 1, Math.max(64, Runtime.getRuntime().availableProcessors()), 1));
+        pivotsSpinner.setModel(new SpinnerNumberModel(100, 1, Integer.MAX_VALUE, 10));
+        pivotsSpinner.setEnabled(false);
+        degreeWeightedCheckBox.setEnabled(false);
     }
 
     public boolean isDirected() {
@@ -78,6 +83,40 @@ public class GraphDistancePanel extends javax.swing.JPanel {
         this.normalizeButton.setSelected(pNormalize);
     }
 
+    public int getThreadCount() {
+        return (Integer) threadsSpinner.getValue();
+    }
+
+    public void setThreadCount(int threadCount) {
+        threadsSpinner.setValue(threadCount);
+    }
+
+    public boolean isApproximate() {
+        return approximateCheckBox.isSelected();
+    }
+
+    public void setApproximate(boolean approximate) {
+        approximateCheckBox.setSelected(approximate);
+        pivotsSpinner.setEnabled(approximate);
+        degreeWeightedCheckBox.setEnabled(approximate);
+    }
+
+    public int getPivotCount() {
+        return (Integer) pivotsSpinner.getValue();
+    }
+
+    public void setPivotCount(int pivotCount) {
+        pivotsSpinner.setValue(pivotCount);
+    }
+
+    public boolean isDegreeWeightedPivots() {
+        return degreeWeightedCheckBox.isSelected();
+    }
+
+    public void setDegreeWeightedPivots(boolean degreeWeighted) {
+        degreeWeightedCheckBox.setSelected(degreeWeighted);
+    }
+
 
     /** This method is called from within the constructor to
      * initialize the form.
@@ -100,6 +139,11 @@ public class GraphDistancePanel extends javax.swing.JPanel {
         jLabel2 = new javax.swing.JLabel();
         jLabel3 = new javax.swing.JLabel();
         normalizeButton = new javax.swing.JCheckBox();
+        threadsLabel = new javax.swing.JLabel();
+        threadsSpinner = new javax.swing.JSpinner();
+        approximateCheckBox = new javax.swing.JCheckBox();
+        pivotsSpinner = new javax.swing.JSpinner();
+        degreeWeightedCheckBox = new javax.swing.JCheckBox();
 
         directedButtonGroup.add(directedRadioButton);
         directedRadioButton.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.directedRadioButton.text")); // NOI18N
@@ -142,6 +186,17 @@ public class GraphDistancePanel extends javax.swing.JPanel {
 
         normalizeButton.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.normalizeButton.text")); // NOI18N
 
+        threadsLabel.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.threadsLabel.text")); // NOI18N
+
+        approximateCheckBox.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.approximateCheckBox.text")); // NOI18N
+        approximateCheckBox.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                approximateCheckBoxActionPerformed(evt);
+            }
+        });
+
+        degreeWeightedCheckBox.setText(org.openide.util.NbBundle.getMessage(GraphDistancePanel.class, "GraphDistancePanel.degreeWeightedCheckBox.text")); // NOI18N
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -163,6 +218,20 @@ public class GraphDistancePanel extends javax.swing.JPanel {
                 .addContainerGap()
                 .addComponent(undirectedRadioButton)
                 .addContainerGap(628, Short.MAX_VALUE))
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(threadsLabel)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(threadsSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, 58, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addComponent(approximateCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(pivotsSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, 80, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(degreeWeightedCheckBox)
+                .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
             .addGroup(layout.createSequentialGroup()
                 .addContainerGap()
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
@@ -186,6 +255,15 @@ public class GraphDistancePanel extends javax.swing.JPanel {
                     .addComponent(normalizeButton))
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                 .addComponent(undirectedRadioButton)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(threadsLabel)
+                    .addComponent(threadsSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE))
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
+                    .addComponent(approximateCheckBox)
+                    .addComponent(pivotsSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                    .addComponent(degreeWeightedCheckBox))
                 .addGap(18, 18, 18)
                 .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                     .addComponent(jLabel1)
@@ -207,7 +285,14 @@ public class GraphDistancePanel extends javax.swing.JPanel {
     private void directedRadioButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_directedRadioButtonActionPerformed
         // TODO add your handling code here:
 }//GEN-LAST:event_directedRadioButtonActionPerformed
+
+    private void approximateCheckBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_approximateCheckBoxActionPerformed
+        pivotsSpinner.setEnabled(approximateCheckBox.isSelected());
+        degreeWeightedCheckBox.setEnabled(approximateCheckBox.isSelected());
+    }//GEN-LAST:event_approximateCheckBoxActionPerformed
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private javax.swing.JCheckBox approximateCheckBox;
+    private javax.swing.JCheckBox degreeWeightedCheckBox;
     private org.jdesktop.swingx.JXLabel descriptionLabel;
     private javax.swing.ButtonGroup directedButtonGroup;
     protected javax.swing.JRadioButton directedRadioButton;
@@ -219,6 +304,9 @@ public class GraphDistancePanel extends javax.swing.JPanel {
     private org.jdesktop.swingx.JXLabel jXLabel2;
     private org.jdesktop.swingx.JXLabel jXLabel3;
     private javax.swing.JCheckBox normalizeButton;
+    private javax.swing.JSpinner pivotsSpinner;
+    private javax.swing.JLabel threadsLabel;
+    private javax.swing.JSpinner threadsSpinner;
     protected javax.swing.JRadioButton undirectedRadioButton;
     // End of variables declaration//GEN-END:variables
 }
@@ -88,6 +88,14 @@ public class PageRankPanel extends javax.swing.JPanel {
         edgeWeightCheckbox.setSelected(edgeWeight);
     }
 
+    public boolean isWarmStart() {
+        return warmStartCheckbox.isSelected();
+    }
+
+    public void setWarmStart(boolean warmStart) {
+        warmStartCheckbox.setSelected(warmStart);
+    }
+
     public void setDirected(boolean directed) {
         directedButtonGroup.setSelected(directed ? directedRadioButton.getModel() : undirectedRadioButton.getModel(), true);
         if (!directed) {
@@ -123,6 +131,7 @@ public class PageRankPanel extends javax.swing.JPanel {
         jXLabel1 = new org.jdesktop.swingx.JXLabel();
         jXLabel2 = new org.jdesktop.swingx.JXLabel();
         edgeWeightCheckbox = new javax.swing.JCheckBox();
+        warmStartCheckbox = new javax.swing.JCheckBox();
 
         labelP.setText(org.openide.util.NbBundle.getMessage(PageRankPanel.class, "PageRankPanel.labelP.text")); // NOI18N
 
@@ -158,6 +167,10 @@ public class PageRankPanel extends javax.swing.JPanel {
         edgeWeightCheckbox.setText(org.openide.util.NbBundle.getMessage(PageRankPanel.class, "PageRankPanel.edgeWeightCheckbox.text")); // NOI18N
         edgeWeightCheckbox.setHorizontalTextPosition(javax.swing.SwingConstants.LEADING);
 
+        warmStartCheckbox.setText(org.openide.util.NbBundle.getMessage(PageRankPanel.class, "PageRankPanel.warmStartCheckbox.text")); // NOI18N
+        warmStartCheckbox.setToolTipText(org.openide.util.NbBundle.getMessage(PageRankPanel.class, "PageRankPanel.warmStartCheckbox.toolTipText")); // NOI18N
+        warmStartCheckbox.setHorizontalTextPosition(javax.swing.SwingConstants.LEADING);
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -173,6 +186,9 @@ public class PageRankPanel extends javax.swing.JPanel {
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(edgeWeightCheckbox)
                         .addContainerGap())
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(warmStartCheckbox)
+                        .addContainerGap())
                     .addGroup(layout.createSequentialGroup()
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addGroup(layout.createSequentialGroup()
@@ -208,6 +224,8 @@ public class PageRankPanel extends javax.swing.JPanel {
                 .addComponent(jXLabel2, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
                 .addGap(18, 18, 18)
                 .addComponent(edgeWeightCheckbox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(warmStartCheckbox)
                 .addContainerGap(36, Short.MAX_VALUE))
         );
     }// </editor-fold>//GEN-END:initComponents
@@ -223,5 +241,6 @@ public class PageRankPanel extends javax.swing.JPanel {
     private javax.swing.JLabel labelP;
     protected javax.swing.JTextField probTextField;
     protected javax.swing.JRadioButton undirectedRadioButton;
+    private javax.swing.JCheckBox warmStartCheckbox;
     // End of variables declaration//GEN-END:variables
 }
@@ -68,6 +68,7 @@ public class PageRankUI implements StatisticsUI {
             panel.setProbability(pageRank.getProbability());
             panel.setDirected(pageRank.getDirected());
             panel.setEdgeWeight(pageRank.isUseEdgeWeight());
+            panel.setWarmStart(pageRank.isWarmStart());
         }
     }
 
@@ -77,6 +78,7 @@ public class PageRankUI implements StatisticsUI {
             pageRank.setProbability(panel.getProbability());
             pageRank.setDirected(panel.isDirected());
             pageRank.setUseEdgeWeight(panel.isEdgeWeight());
+            pageRank.setWarmStart(panel.isWarmStart());
             settings.save(pageRank);
         }
         panel = null;
@@ -112,17 +114,20 @@ public class PageRankUI implements StatisticsUI {
         private double epsilon = 0.001;
         private double probability = 0.85;
         private boolean useEdgeWeight = false;
+        private boolean warmStart = false;
 
         private void save(PageRank stat) {
             this.epsilon = stat.getEpsilon();
             this.probability = stat.getProbability();
             this.useEdgeWeight = stat.isUseEdgeWeight();
+            this.warmStart = stat.isWarmStart();
         }
 
         private void load(PageRank stat) {
             stat.setEpsilon(epsilon);
             stat.setProbability(probability);
             stat.setUseEdgeWeight(useEdgeWeight);
+            stat.setWarmStart(warmStart);
         }
     }
 }
@@ -65,6 +65,10 @@ public class PathLengthUI implements StatisticsUI {
         if (panel != null) {
             panel.setDirected(graphDistance.isDirected());
             panel.doNormalize(graphDistance.isNormalized());
+            panel.setThreadCount(graphDistance.getThreadCount());
+            panel.setApproximate(graphDistance.isApproximate());
+            panel.setPivotCount(graphDistance.getPivotCount());
+            panel.setDegreeWeightedPivots(graphDistance.isDegreeWeightedPivots());
         }
     }
 
@@ -72,6 +76,10 @@ public class PathLengthUI implements StatisticsUI {
         if (panel != null) {
             graphDistance.setDirected(panel.isDirected());
             graphDistance.setNormalized(panel.normalize());
+            graphDistance.setThreadCount(panel.getThreadCount());
+            graphDistance.setApproximate(panel.isApproximate());
+            graphDistance.setPivotCount(panel.getPivotCount());
+            graphDistance.setDegreeWeightedPivots(panel.isDegreeWeightedPivots());
         }
         graphDistance = null;
         panel = null;